@@ -0,0 +1,73 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the indexes of the keys to insert and counts the keys whose insert was acknowledged, as YCSB's
+ * AcknowledgedCounterGenerator: the count only moves past a key once it and every key before it were written, so the
+ * operations drawing existing keys never pick a key still being written.
+ *
+ * The index of a failed insert is handed out again by a later insert rather than left as a gap which would stop the count.
+ */
+class AcknowledgedCounter {
+
+    /**
+     * Maximum number of keys between the count and the latest acknowledged key.
+     */
+    private static final int WINDOW_SIZE = 1 << 20;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final AtomicLong nextIndex;
+    private final ConcurrentLinkedQueue<Long> failedIndexes = new ConcurrentLinkedQueue<>();
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private volatile long count;
+
+    /**
+     * @param initialCount number of keys already written, the index of the first key to insert
+     */
+    AcknowledgedCounter(long initialCount) {
+        this.nextIndex = new AtomicLong(initialCount);
+        this.count = initialCount;
+    }
+
+    /**
+     * @return the index of the next key to insert, to pass to {@link #acknowledge(long)} or {@link #fail(long)} once the
+     * insert completes
+     */
+    long next() {
+        Long failed = failedIndexes.poll();
+        return failed != null ? failed : nextIndex.getAndIncrement();
+    }
+
+    /**
+     * Records that the key was written.
+     */
+    synchronized void acknowledge(long index) {
+        if (index - count >= WINDOW_SIZE) {
+            throw new IllegalStateException(String.format("Too many inserts in flight, key %d acknowledged before key %d", index, count));
+        }
+        window[(int) (index & WINDOW_MASK)] = true;
+
+        long limit = count;
+        while (window[(int) (limit & WINDOW_MASK)]) {
+            window[(int) (limit & WINDOW_MASK)] = false;
+            limit++;
+        }
+        count = limit;
+    }
+
+    /**
+     * Records that the key was not written, its index being handed out again.
+     */
+    void fail(long index) {
+        failedIndexes.add(index);
+    }
+
+    /**
+     * @return the number of keys such that this key and all the keys before it were written
+     */
+    long get() {
+        return count;
+    }
+}
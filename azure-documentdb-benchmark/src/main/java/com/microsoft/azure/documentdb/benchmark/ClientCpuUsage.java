@@ -0,0 +1,95 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * CPU and garbage collection time of the benchmark process since its creation, to tell whether the client or the service limits a run: a client
+ * using most of its cores, or whose CPU time per operation grows with the concurrency, is the bottleneck.
+ *
+ * Relies on the process CPU time of the com.sun.management extension of the operating system bean, available on HotSpot
+ * and OpenJ9; elsewhere the CPU time is reported as unavailable (negative).
+ */
+class ClientCpuUsage {
+
+    private final com.sun.management.OperatingSystemMXBean operatingSystem;
+    private final int processors = Runtime.getRuntime().availableProcessors();
+    private final long startCpuNanos;
+    private final long startNanos = System.nanoTime();
+    private final long startGcCount = gcCount();
+    private final long startGcMillis = gcMillis();
+
+    ClientCpuUsage() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        operatingSystem = bean instanceof com.sun.management.OperatingSystemMXBean ? (com.sun.management.OperatingSystemMXBean) bean : null;
+        startCpuNanos = processCpuNanos();
+    }
+
+    private long processCpuNanos() {
+        return operatingSystem != null ? operatingSystem.getProcessCpuTime() : -1;
+    }
+
+    /**
+     * @return the CPU time of the process since the creation in nanoseconds, negative if unavailable
+     */
+    long getCpuNanos() {
+        long cpuNanos = processCpuNanos();
+        return cpuNanos < 0 || startCpuNanos < 0 ? -1 : cpuNanos - startCpuNanos;
+    }
+
+    /**
+     * @param operations number of operations run since the creation
+     * @return the CPU time per operation in milliseconds, negative if unavailable
+     */
+    double getCpuMillisPerOperation(long operations) {
+        long cpuNanos = getCpuNanos();
+        return cpuNanos < 0 || operations == 0 ? -1 : cpuNanos / 1e6 / operations;
+    }
+
+    /**
+     * @return the average use of all the cores since the creation in percent, negative if unavailable
+     */
+    double getCpuLoadPercent() {
+        long cpuNanos = getCpuNanos();
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return cpuNanos < 0 || elapsedNanos == 0 ? -1 : 100.0 * cpuNanos / elapsedNanos / processors;
+    }
+
+    /**
+     * @return the number of garbage collections since the creation
+     */
+    long getGcCount() {
+        return gcCount() - startGcCount;
+    }
+
+    /**
+     * @return the time spent in garbage collections since the creation in milliseconds
+     */
+    long getGcMillis() {
+        return gcMillis() - startGcMillis;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * @return the number of cores available to the process
+     */
+    int getProcessors() {
+        return processors;
+    }
+}
@@ -0,0 +1,281 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the latencies recorded by the threads of a run without allocating nor synchronizing on the request path.
+ *
+ * Each thread records into its own {@link SingleWriterRecorder}; a background thread merges their interval
+ * histograms every second into an HdrHistogram interval log ({@code <runId>-<name>.hlog}, read with HistogramLogProcessor
+ * or HdrHistogramVisualizer). Optionally every request is also appended to a binary log per thread
+ * ({@code <runId>-<name>-thread<index>.bin}): 12 bytes per request, the start time in nanoseconds since the start of the run
+ * as a long and the latency in microseconds as an int, big endian. The per thread buffers are handed to a background writer
+ * and recycled.
+ */
+class HistogramLogger implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistogramLogger.class);
+
+    private static final int REQUEST_RECORD_SIZE = 12;
+
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private final String name;
+    private final Path directory;
+    private final long runId;
+    private final boolean requestsLogged;
+    private final int requestBufferEntries;
+    private final long runStartNanos = System.nanoTime();
+    private final long runStartMillis = System.currentTimeMillis();
+
+    private final List<ThreadRecorder> recorders = new CopyOnWriteArrayList<>();
+    private final Histogram totalHistogram = new Histogram(3);
+    private final Histogram mergedIntervalHistogram = new Histogram(3);
+    private final HistogramLogWriter intervalLogWriter;
+    private final ScheduledExecutorService intervalExecutor;
+    private long intervalStartMillis = runStartMillis;
+
+    private final BlockingQueue<FilledBuffer> filledBuffers = new LinkedBlockingQueue<>();
+    private final Thread requestLogWriter;
+    private volatile boolean closed;
+
+    /**
+     * @param name name of the recorded operation, e.g. read
+     * @param directory directory of the log files, null to only print the percentiles when closed
+     * @param runId prefix of the log files
+     * @param requestsLogged whether to log every request in binary
+     * @param requestBufferEntries number of requests buffered per thread before being handed to the writer
+     */
+    HistogramLogger(String name, Path directory, long runId, boolean requestsLogged, int requestBufferEntries) throws IOException {
+        this.name = name;
+        this.directory = directory;
+        this.runId = runId;
+        this.requestsLogged = requestsLogged && directory != null;
+        this.requestBufferEntries = requestBufferEntries;
+
+        if (directory != null) {
+            Files.createDirectories(directory);
+            intervalLogWriter = new HistogramLogWriter(new PrintStream(directory.resolve(String.format("%d-%s.hlog", runId, name)).toFile()));
+            intervalLogWriter.outputLogFormatVersion();
+            intervalLogWriter.outputStartTime(runStartMillis);
+            intervalLogWriter.setBaseTime(runStartMillis);
+            intervalLogWriter.outputLegend();
+        } else {
+            intervalLogWriter = null;
+        }
+
+        intervalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "histogram-logger-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        intervalExecutor.scheduleAtFixedRate(this::logInterval, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (this.requestsLogged) {
+            requestLogWriter = new Thread(this::writeRequestLogs, "request-log-writer-" + name);
+            requestLogWriter.setDaemon(true);
+            requestLogWriter.start();
+        } else {
+            requestLogWriter = null;
+        }
+    }
+
+    /**
+     * @param threadIndex index of the thread in the file names
+     * @return a recorder to be used by a single thread
+     */
+    ThreadRecorder newRecorder(int threadIndex) throws IOException {
+        ThreadRecorder recorder = new ThreadRecorder(threadIndex);
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Records the latencies of one thread.
+     */
+    class ThreadRecorder {
+        private final SingleWriterRecorder recorder = new SingleWriterRecorder(3);
+        private Histogram intervalHistogram;
+        private final BlockingQueue<ByteBuffer> freeBuffers;
+        private final FileChannel requestLog;
+        private ByteBuffer buffer;
+
+        private ThreadRecorder(int threadIndex) throws IOException {
+            if (requestsLogged) {
+                requestLog = FileChannel.open(directory.resolve(String.format("%d-%s-thread%03d.bin", runId, name, threadIndex)),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                freeBuffers = new ArrayBlockingQueue<>(2);
+                freeBuffers.add(newBuffer());
+                buffer = newBuffer();
+            } else {
+                requestLog = null;
+                freeBuffers = null;
+            }
+        }
+
+        /**
+         * @param startNanos {@link System#nanoTime()} at the start of the request
+         * @param latencyNanos latency of the request
+         */
+        void record(long startNanos, long latencyNanos) {
+            recorder.recordValue(latencyNanos);
+
+            if (requestLog != null) {
+                buffer.putLong(startNanos - runStartNanos);
+                buffer.putInt((int) Math.min(Integer.MAX_VALUE, latencyNanos / 1000));
+                if (!buffer.hasRemaining()) {
+                    handOff();
+                }
+            }
+        }
+
+        /**
+         * Hands the buffered requests to the writer, e.g. before the thread ends.
+         */
+        void flush() {
+            if (requestLog != null && buffer.position() > 0) {
+                handOff();
+            }
+        }
+
+        private void handOff() {
+            buffer.flip();
+            filledBuffers.add(new FilledBuffer(this, buffer));
+            ByteBuffer free = freeBuffers.poll();
+            // the writer fell behind: allocate rather than block the request path
+            buffer = free != null ? free : newBuffer();
+        }
+
+        private ByteBuffer newBuffer() {
+            return ByteBuffer.allocate(requestBufferEntries * REQUEST_RECORD_SIZE);
+        }
+
+        private void write(ByteBuffer filled) throws IOException {
+            while (filled.hasRemaining()) {
+                requestLog.write(filled);
+            }
+            filled.clear();
+            freeBuffers.offer(filled);
+        }
+    }
+
+    private static class FilledBuffer {
+        private final ThreadRecorder recorder;
+        private final ByteBuffer buffer;
+
+        FilledBuffer(ThreadRecorder recorder, ByteBuffer buffer) {
+            this.recorder = recorder;
+            this.buffer = buffer;
+        }
+    }
+
+    private synchronized void logInterval() {
+        long now = System.currentTimeMillis();
+        for (ThreadRecorder threadRecorder : recorders) {
+            Histogram intervalHistogram = threadRecorder.recorder.getIntervalHistogram(threadRecorder.intervalHistogram);
+            threadRecorder.intervalHistogram = intervalHistogram;
+            totalHistogram.add(intervalHistogram);
+            mergedIntervalHistogram.add(intervalHistogram);
+        }
+
+        if (intervalLogWriter != null) {
+            mergedIntervalHistogram.setStartTimeStamp(intervalStartMillis);
+            mergedIntervalHistogram.setEndTimeStamp(now);
+            intervalLogWriter.outputIntervalHistogram(mergedIntervalHistogram);
+        }
+        mergedIntervalHistogram.reset();
+        intervalStartMillis = now;
+    }
+
+    private void writeRequestLogs() {
+        try {
+            while (!closed || !filledBuffers.isEmpty()) {
+                FilledBuffer filled = filledBuffers.poll(100, TimeUnit.MILLISECONDS);
+                if (filled != null) {
+                    filled.recorder.write(filled.buffer);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Failed to write the request log", e);
+        }
+    }
+
+    /**
+     * Logs the last interval, closes the files and prints the percentiles of the whole run.
+     * If interrupted the pending request logs are dropped and the interrupt status is restored.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean interrupted = false;
+
+        intervalExecutor.shutdown();
+        try {
+            intervalExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        logInterval();
+
+        if (intervalLogWriter != null) {
+            intervalLogWriter.close();
+        }
+
+        if (requestLogWriter != null) {
+            closed = true;
+            try {
+                requestLogWriter.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                requestLogWriter.interrupt();
+            }
+            for (ThreadRecorder recorder : recorders) {
+                recorder.requestLog.close();
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.info("{}: {} requests, latency (ms) p50 {}, p90 {}, p99 {}, p99.9 {}, max {}", name,
+                totalHistogram.getTotalCount(),
+                millis(totalHistogram.getValueAtPercentile(50)),
+                millis(totalHistogram.getValueAtPercentile(90)),
+                millis(totalHistogram.getValueAtPercentile(99)),
+                millis(totalHistogram.getValueAtPercentile(99.9)),
+                millis(totalHistogram.getMaxValue()));
+    }
+
+    /**
+     * @return the latencies of the whole run in nanoseconds, complete once closed
+     */
+    synchronized Histogram getTotalHistogram() {
+        return totalHistogram;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
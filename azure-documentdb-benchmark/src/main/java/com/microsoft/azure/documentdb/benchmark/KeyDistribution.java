@@ -0,0 +1,103 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Chooses the key of the next operation of a mixed workload among the keys inserted so far, as YCSB does:
+ * uniformly, following a zipfian distribution where key 0 is the most popular, or favoring the latest inserted keys.
+ * The key counts passed to the distributions only count the keys whose insert was acknowledged, see {@link AcknowledgedCounter}.
+ */
+abstract class KeyDistribution {
+
+    /**
+     * @param random source of randomness of the calling thread
+     * @return the index of the key, between 0 and the number of keys acknowledged so far
+     */
+    abstract long nextKey(Random random);
+
+    /**
+     * @param keyCount number of keys acknowledged so far, growing with the inserts of the workload
+     */
+    static KeyDistribution uniform(LongSupplier keyCount) {
+        return new KeyDistribution() {
+            @Override
+            long nextKey(Random random) {
+                return (long) (random.nextDouble() * keyCount.getAsLong());
+            }
+        };
+    }
+
+    /**
+     * @param recordCount number of keys the popularity is spread over
+     * @param constant skew of the distribution, between 0 (uniform) and 1 excluded, 0.99 in YCSB
+     */
+    static KeyDistribution zipfian(long recordCount, double constant) {
+        Zipfian zipfian = new Zipfian(recordCount, constant);
+        return new KeyDistribution() {
+            @Override
+            long nextKey(Random random) {
+                return zipfian.next(random);
+            }
+        };
+    }
+
+    /**
+     * @param recordCount number of latest keys the popularity is spread over
+     * @param constant skew of the distribution, see {@link #zipfian(long, double)}
+     * @param keyCount number of keys acknowledged so far, the latest being the most popular
+     */
+    static KeyDistribution latest(long recordCount, double constant, LongSupplier keyCount) {
+        Zipfian zipfian = new Zipfian(recordCount, constant);
+        return new KeyDistribution() {
+            @Override
+            long nextKey(Random random) {
+                return Math.max(0, keyCount.getAsLong() - 1 - zipfian.next(random));
+            }
+        };
+    }
+
+    /**
+     * Zipfian ranks by inverting the cumulative distribution, "Quickly Generating Billion-Record Synthetic Databases",
+     * Gray et al., as YCSB's ZipfianGenerator.
+     */
+    private static class Zipfian {
+        private final long itemCount;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(long itemCount, double theta) {
+            if (itemCount <= 0) {
+                throw new IllegalArgumentException("the number of keys must be positive");
+            }
+            if (theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("the zipfian constant must be between 0 and 1 excluded");
+            }
+            this.itemCount = itemCount;
+            this.theta = theta;
+
+            double sum = 0;
+            for (long i = 1; i <= itemCount; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            zetan = sum;
+            double zeta2 = 1 + 1 / Math.pow(2, theta);
+            alpha = 1 / (1 - theta);
+            eta = (1 - Math.pow(2.0 / itemCount, 1 - theta)) / (1 - zeta2 / zetan);
+        }
+
+        long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, itemCount - 1);
+            }
+            return Math.min(itemCount - 1, (long) (itemCount * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+/**
+ * Target rate of an open-loop run over time: constant, ramping linearly, or increasing by steps to find the rate at which
+ * the latency of a collection takes off.
+ */
+abstract class LoadPattern {
+
+    /**
+     * @param elapsedSeconds seconds since the start of the run
+     * @return the number of operations per second to schedule at that time, 0 once the pattern is over
+     */
+    abstract double rateAt(double elapsedSeconds);
+
+    /**
+     * @param rate operations per second
+     * @return a pattern scheduling operations at the given rate until the end of the run
+     */
+    static LoadPattern fixed(double rate) {
+        checkRate(rate);
+        return new LoadPattern() {
+            @Override
+            double rateAt(double elapsedSeconds) {
+                return rate;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("fixed %.1f ops/s", rate);
+            }
+        };
+    }
+
+    /**
+     * @param fromRate operations per second at the start of the run
+     * @param toRate operations per second at the end of the ramp, kept until the end of the run
+     * @param rampSeconds duration of the ramp
+     * @return a pattern going linearly from one rate to the other
+     */
+    static LoadPattern ramp(double fromRate, double toRate, double rampSeconds) {
+        checkRate(fromRate);
+        checkRate(toRate);
+        if (rampSeconds <= 0) {
+            throw new IllegalArgumentException("the ramp duration must be positive");
+        }
+        return new LoadPattern() {
+            @Override
+            double rateAt(double elapsedSeconds) {
+                if (elapsedSeconds >= rampSeconds) {
+                    return toRate;
+                }
+                return fromRate + (toRate - fromRate) * elapsedSeconds / rampSeconds;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("ramp %.1f to %.1f ops/s over %.0fs", fromRate, toRate, rampSeconds);
+            }
+        };
+    }
+
+    /**
+     * @param fromRate operations per second of the first step
+     * @param increment operations per second added at each step
+     * @param toRate operations per second of the last step, the pattern ends with it
+     * @param stepSeconds duration of each step
+     * @return a pattern holding each rate for a step
+     */
+    static LoadPattern step(double fromRate, double increment, double toRate, double stepSeconds) {
+        checkRate(fromRate);
+        if (increment <= 0 || toRate < fromRate) {
+            throw new IllegalArgumentException("the steps must increase the rate up to a rate above the first one");
+        }
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("the step duration must be positive");
+        }
+        final long stepCount = (long) Math.floor((toRate - fromRate) / increment) + 1;
+        return new LoadPattern() {
+            @Override
+            double rateAt(double elapsedSeconds) {
+                long step = (long) (elapsedSeconds / stepSeconds);
+                return step < stepCount ? fromRate + step * increment : 0;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("%d steps of %.0fs from %.1f ops/s by %.1f ops/s", stepCount, stepSeconds, fromRate, increment);
+            }
+        };
+    }
+
+    private static void checkRate(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("the rate must be positive");
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.FeedOptions;
+import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.PartitionKey;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.SqlParameter;
+import com.microsoft.azure.documentdb.SqlParameterCollection;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
+
+/**
+ * Runs the mix of operations of a {@link WorkloadSpec}: each operation is drawn according to the weights of the spec and
+ * applied to a key drawn from its key distribution.
+ *
+ * The operations are looked up by name in a registry holding read, write (create of a new key), upsert (of an existing
+ * key), query (of the documents of a partition key value) and upsertBatch (point upserts of a batch of new keys, one
+ * after the other, timed together; not a bulk import through the stored procedure); other
+ * operations can be registered before the spec is loaded. The keys 0 to recordCount - 1 are written by the load phase,
+ * the keys written by the workload are prefixed with the id of the run so that reruns do not conflict. A key is only
+ * drawn by the other operations once its write, and the writes of the keys before it, succeeded.
+ */
+class MixedWorkload {
+
+    /**
+     * An operation of a mixed workload.
+     */
+    interface WorkloadOperation {
+        void run(MixedWorkload workload, Random random) throws Exception;
+    }
+
+    private static final Map<String, WorkloadOperation> operations = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    static {
+        register("read", MixedWorkload::read);
+        register("write", MixedWorkload::write);
+        register("upsert", MixedWorkload::upsert);
+        register("query", MixedWorkload::query);
+        register("upsertBatch", MixedWorkload::upsertBatch);
+    }
+
+    /**
+     * Registers an operation which workload specs can then weigh.
+     *
+     * @param name the name of the operation in the spec
+     * @param operation the operation
+     */
+    static void register(String name, WorkloadOperation operation) {
+        operations.put(name, operation);
+    }
+
+    /**
+     * @return the names of the registered operations
+     */
+    static Set<String> getOperationNames() {
+        return operations.keySet();
+    }
+
+    private final DocumentClient client;
+    private final String collectionLink;
+    private final String partitionKeyField;
+    private final WorkloadSpec spec;
+    private final String runPrefix;
+    private final DoubleAdder requestUnits;
+
+    private final String[] names;
+    private final WorkloadOperation[] selected;
+    private final Timer[] timers;
+    private final double[] cumulativeWeights;
+
+    private final AcknowledgedCounter keyCount;
+    private final KeyDistribution keyDistribution;
+    private final String padding;
+
+    /**
+     * @param client the client
+     * @param collectionLink the collection
+     * @param partitionKeyField the partition key property, set to the id of the documents
+     * @param spec the workload
+     * @param runId the id of the run, prefixing the keys it writes
+     * @param metrics registers a timer per operation of the mix
+     * @param requestUnits receives the request charges of the operations
+     */
+    MixedWorkload(DocumentClient client, String collectionLink, String partitionKeyField, WorkloadSpec spec, long runId,
+                  MetricRegistry metrics, DoubleAdder requestUnits) {
+        this.client = client;
+        this.collectionLink = collectionLink;
+        this.partitionKeyField = partitionKeyField;
+        this.spec = spec;
+        this.runPrefix = runId + "-";
+        this.requestUnits = requestUnits;
+
+        Map<String, Double> weights = spec.getWeights();
+        names = weights.keySet().toArray(new String[0]);
+        selected = new WorkloadOperation[names.length];
+        timers = new Timer[names.length];
+        cumulativeWeights = new double[names.length];
+        double total = 0;
+        for (int i = 0; i < names.length; i++) {
+            selected[i] = operations.get(names[i]);
+            timers[i] = metrics.timer(String.format("Mixed %s latency", names[i]));
+            total += weights.get(names[i]);
+            cumulativeWeights[i] = total;
+        }
+
+        keyCount = new AcknowledgedCounter(spec.getRecordCount());
+        switch (spec.getKeyDistribution()) {
+            case "uniform":
+                keyDistribution = KeyDistribution.uniform(keyCount::get);
+                break;
+            case "zipfian":
+                keyDistribution = KeyDistribution.zipfian(spec.getRecordCount(), spec.getZipfianConstant());
+                break;
+            case "latest":
+                keyDistribution = KeyDistribution.latest(spec.getRecordCount(), spec.getZipfianConstant(), keyCount::get);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Invalid key distribution %s, expecting uniform, zipfian or latest",
+                        spec.getKeyDistribution()));
+        }
+
+        StringBuilder builder = new StringBuilder(2 * spec.getDocumentSizeMax());
+        Random random = new Random(runId);
+        for (int i = 0; i < 2 * spec.getDocumentSizeMax(); i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        padding = builder.toString();
+    }
+
+    /**
+     * @return the operation of the load phase, writing the recordCount keys across the threads
+     */
+    SimpleTests.Operation loadOperation(int threadCount) {
+        return (threadIndex, operationIndex) -> {
+            long keyIndex = operationIndex * threadCount + threadIndex;
+            if (keyIndex < spec.getRecordCount()) {
+                Document document = newDocument(keyIndex, ThreadLocalRandom.current());
+                requestUnits.add(client.upsertDocument(collectionLink, document, null, true).getRequestCharge());
+            }
+        };
+    }
+
+    /**
+     * @return the number of operations each thread runs in the load phase
+     */
+    long getLoadOperationsPerThread(int threadCount) {
+        return (spec.getRecordCount() + threadCount - 1) / threadCount;
+    }
+
+    /**
+     * @return an operation drawing and running one of the operations of the mix
+     */
+    SimpleTests.Operation mixOperation() {
+        return (threadIndex, operationIndex) -> {
+            Random random = ThreadLocalRandom.current();
+            double draw = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            int i = 0;
+            while (i < cumulativeWeights.length - 1 && draw >= cumulativeWeights[i]) {
+                i++;
+            }
+
+            Timer.Context context = timers[i].time();
+            try {
+                selected[i].run(this, random);
+            } finally {
+                context.stop();
+            }
+        };
+    }
+
+    WorkloadSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * @return the id of a key drawn from the key distribution
+     */
+    String nextKey(Random random) {
+        return key(keyDistribution.nextKey(random));
+    }
+
+    /**
+     * @return the index of a new key, made visible to the key distribution by {@link #acknowledgeKey(long, boolean)}
+     */
+    long insertKey() {
+        return keyCount.next();
+    }
+
+    /**
+     * Makes the key visible to the key distribution once written, or hands it out again if its write failed.
+     */
+    void acknowledgeKey(long keyIndex, boolean written) {
+        if (written) {
+            keyCount.acknowledge(keyIndex);
+        } else {
+            keyCount.fail(keyIndex);
+        }
+    }
+
+    String key(long keyIndex) {
+        return keyIndex < spec.getRecordCount() ? "key" + keyIndex : runPrefix + "key" + keyIndex;
+    }
+
+    /**
+     * @return a document of the given key, of a size drawn from the size distribution
+     */
+    Document newDocument(long keyIndex, Random random) {
+        int size = spec.getDocumentSize();
+        if (spec.getDocumentSizeDistribution().equals("uniform") && spec.getDocumentSizeMax() > size) {
+            size += random.nextInt(spec.getDocumentSizeMax() - size + 1);
+        }
+        int offset = random.nextInt(spec.getDocumentSizeMax() + 1);
+
+        String id = key(keyIndex);
+        Document document = new Document();
+        document.setId(id);
+        document.set(partitionKeyField, id);
+        document.set("payload", padding.substring(offset, offset + size));
+        return document;
+    }
+
+    private RequestOptions requestOptions(String key) {
+        RequestOptions options = new RequestOptions();
+        options.setPartitionKey(new PartitionKey(key));
+        return options;
+    }
+
+    private static void read(MixedWorkload workload, Random random) throws Exception {
+        String key = workload.nextKey(random);
+        String documentLink = String.format("%s/docs/%s", workload.collectionLink, key);
+        workload.requestUnits.add(workload.client.readDocument(documentLink, workload.requestOptions(key)).getRequestCharge());
+    }
+
+    private static void write(MixedWorkload workload, Random random) throws Exception {
+        long keyIndex = workload.insertKey();
+        boolean written = false;
+        try {
+            Document document = workload.newDocument(keyIndex, random);
+            workload.requestUnits.add(workload.client.createDocument(workload.collectionLink, document, null, true).getRequestCharge());
+            written = true;
+        } catch (DocumentClientException e) {
+            // a conflict on a key handed out again means its earlier write went through after all
+            written = e.getStatusCode() == 409;
+            throw e;
+        } finally {
+            workload.acknowledgeKey(keyIndex, written);
+        }
+    }
+
+    private static void upsert(MixedWorkload workload, Random random) throws Exception {
+        Document document = workload.newDocument(workload.keyDistribution.nextKey(random), random);
+        workload.requestUnits.add(workload.client.upsertDocument(workload.collectionLink, document, null, true).getRequestCharge());
+    }
+
+    private static void query(MixedWorkload workload, Random random) throws Exception {
+        String key = workload.nextKey(random);
+        SqlQuerySpec query = new SqlQuerySpec(String.format("SELECT * FROM c WHERE c.%s = @key", workload.partitionKeyField),
+                new SqlParameterCollection(new SqlParameter("@key", key)));
+        FeedOptions options = new FeedOptions();
+        options.setPartitionKey(new PartitionKey(key));
+
+        FeedResponse<Document> response = workload.client.queryDocuments(workload.collectionLink, query, options);
+        List<Document> page;
+        do {
+            page = response.getQueryIterable().fetchNextBlock();
+            workload.requestUnits.add(response.getRequestCharge());
+        } while (page != null && response.getResponseContinuation() != null);
+    }
+
+    private static void upsertBatch(MixedWorkload workload, Random random) throws Exception {
+        for (int i = 0; i < workload.spec.getUpsertBatchSize(); i++) {
+            long keyIndex = workload.insertKey();
+            boolean written = false;
+            try {
+                Document document = workload.newDocument(keyIndex, random);
+                workload.requestUnits.add(workload.client.upsertDocument(workload.collectionLink, document, null, true).getRequestCharge());
+                written = true;
+            } finally {
+                workload.acknowledgeKey(keyIndex, written);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs an operation open-loop: the operations are scheduled at the rate of a {@link LoadPattern} whatever their latency,
+ * and each latency is measured from the time the operation was scheduled to start rather than from the time a thread got
+ * to it. When the service slows down the operations queue up and the queuing shows in the latency, where a closed loop
+ * would issue fewer operations and report the service time only (coordinated omission).
+ *
+ * The operations are run by a fixed number of workers, each taking the next scheduled time, waiting for it and running
+ * the operation. If all the workers are busy the operations start late; the start delay is reported along with the
+ * latency so that a knee caused by too few workers is not mistaken for the one of the collection.
+ *
+ * Every report interval (each step of a step pattern) the target and achieved rates and the latency percentiles of the
+ * interval are logged, and the whole table again at the end of the run.
+ */
+class OpenLoopDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenLoopDriver.class);
+
+    private final LoadPattern pattern;
+    private final int workerCount;
+    private final ThreadFactory workerFactory;
+    private final long maxOperations;
+    private final long durationNanos;
+    private final long reportIntervalMillis;
+
+    private final Recorder latencyRecorder = new Recorder(3);
+    private final Recorder startDelayRecorder = new Recorder(3);
+    private final List<String> reports = new ArrayList<>();
+    private Histogram latencyHistogram;
+    private Histogram startDelayHistogram;
+
+    private long startNanos;
+    private long reportStartNanos;
+    private double nextOffsetNanos;
+    private long scheduled;
+
+    /**
+     * @param pattern target rate over time
+     * @param workerCount number of operations which can run at once
+     * @param workerFactory creates the workers
+     * @param maxOperations number of operations after which the run ends
+     * @param durationSeconds duration after which the run ends, 0 to end with the pattern or the operations
+     * @param reportIntervalSeconds interval of the reports
+     */
+    OpenLoopDriver(LoadPattern pattern, int workerCount, ThreadFactory workerFactory, long maxOperations, long durationSeconds, long reportIntervalSeconds) {
+        if (durationSeconds == 0 && maxOperations == Long.MAX_VALUE && pattern.rateAt(Double.MAX_VALUE) > 0) {
+            throw new IllegalArgumentException("the run must be bounded by a duration, a number of operations or a step pattern");
+        }
+        this.pattern = pattern;
+        this.workerCount = workerCount;
+        this.workerFactory = workerFactory;
+        this.maxOperations = maxOperations;
+        this.durationNanos = durationSeconds > 0 ? TimeUnit.SECONDS.toNanos(durationSeconds) : Long.MAX_VALUE;
+        this.reportIntervalMillis = TimeUnit.SECONDS.toMillis(reportIntervalSeconds);
+    }
+
+    /**
+     * Runs the operation until the end of the pattern, the duration or the number of operations.
+     *
+     * @param operation the operation, called with the index of the worker and of the operation
+     * @param histogramLogger records the latency from the scheduled start of every operation
+     */
+    void run(SimpleTests.Operation operation, HistogramLogger histogramLogger) throws IOException, InterruptedException {
+        logger.info("Open loop: {}, {} workers", pattern, workerCount);
+
+        HistogramLogger.ThreadRecorder[] threadRecorders = new HistogramLogger.ThreadRecorder[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            threadRecorders[i] = histogramLogger.newRecorder(i);
+        }
+
+        ScheduledExecutorService reportExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "open-loop-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        synchronized (this) {
+            startNanos = System.nanoTime();
+            reportStartNanos = startNanos;
+        }
+        reportExecutor.scheduleAtFixedRate(this::report, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+
+        Thread[] workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            final int index = i;
+            workers[i] = workerFactory.newThread(() -> work(index, operation, threadRecorders[index]));
+            workers[i].start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        reportExecutor.shutdown();
+        reportExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        report();
+
+        logger.info("Open loop summary ({}):", pattern);
+        for (String report : reports) {
+            logger.info(report);
+        }
+    }
+
+    private void work(int workerIndex, SimpleTests.Operation operation, HistogramLogger.ThreadRecorder threadRecorder) {
+        long[] next = new long[2];
+        while (nextOperation(next)) {
+            long operationIndex = next[0];
+            long intendedStart = next[1];
+
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+            startDelayRecorder.recordValue(now - intendedStart);
+
+            try {
+                operation.run(workerIndex, operationIndex);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+
+            long latency = System.nanoTime() - intendedStart;
+            latencyRecorder.recordValue(latency);
+            threadRecorder.record(intendedStart, latency);
+        }
+        threadRecorder.flush();
+    }
+
+    /**
+     * Takes the next operation of the schedule.
+     *
+     * @param next receives the index of the operation and its scheduled start
+     * @return false once the run is over
+     */
+    private synchronized boolean nextOperation(long[] next) {
+        if (scheduled >= maxOperations || nextOffsetNanos >= durationNanos) {
+            return false;
+        }
+        double rate = pattern.rateAt(nextOffsetNanos / 1e9);
+        if (rate <= 0) {
+            return false;
+        }
+
+        next[0] = scheduled++;
+        next[1] = startNanos + (long) nextOffsetNanos;
+        nextOffsetNanos += 1e9 / rate;
+        return true;
+    }
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        double seconds = (now - reportStartNanos) / 1e9;
+        if (seconds <= 0) {
+            return;
+        }
+
+        // the rate at the middle of the interval, exact for the linear ramp and the steps the intervals are aligned with
+        double middleSeconds = (reportStartNanos + (now - reportStartNanos) / 2 - startNanos) / 1e9;
+        double targetRate = pattern.rateAt(Math.min(middleSeconds, nextOffsetNanos / 1e9));
+
+        latencyHistogram = latencyRecorder.getIntervalHistogram(latencyHistogram);
+        startDelayHistogram = startDelayRecorder.getIntervalHistogram(startDelayHistogram);
+
+        String report = String.format("%6.0fs  target %10.1f ops/s  achieved %10.1f ops/s  latency (ms) p50 %9.3f  p99 %9.3f  p99.9 %9.3f  max %9.3f"
+                        + "  start delay (ms) p99 %9.3f",
+                (now - startNanos) / 1e9,
+                targetRate,
+                latencyHistogram.getTotalCount() / seconds,
+                latencyHistogram.getValueAtPercentile(50) / 1e6,
+                latencyHistogram.getValueAtPercentile(99) / 1e6,
+                latencyHistogram.getValueAtPercentile(99.9) / 1e6,
+                latencyHistogram.getMaxValue() / 1e6,
+                startDelayHistogram.getValueAtPercentile(99) / 1e6);
+        logger.info(report);
+        reports.add(report);
+
+        reportStartNanos = now;
+    }
+}
@@ -6,19 +6,20 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
 
 import org.apache.commons.logging.LogFactory;
+import org.HdrHistogram.Histogram;
 import org.apache.log4j.BasicConfigurator;
 import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
@@ -27,9 +28,12 @@ import org.slf4j.LoggerFactory;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.codahale.metrics.ConsoleReporter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.RateLimiter;
 import com.fasterxml.uuid.EthernetAddress;
 import com.fasterxml.uuid.Generators;
 import com.fasterxml.uuid.impl.TimeBasedGenerator;
@@ -43,6 +47,8 @@ import com.microsoft.azure.documentdb.FeedOptions;
 import com.microsoft.azure.documentdb.PartitionKey;
 import com.microsoft.azure.documentdb.PartitionKeyRange;
 import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.ResourceResponse;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
 
 import sun.rmi.runtime.Log;
 
@@ -61,6 +67,9 @@ import sun.rmi.runtime.Log;
  *
  * Write throughput:
  * java -cp simpletests-0.0.1-jar-with-dependencies.jar SimpleTests --endpoint https://ENDPOINT.documents.azure.com:443/ --key KEYVALUE --database testdb --collection testcol2 --partitionKey id --connectionPoolSize 12800 --docIdsFilePath khdangoath-testcol2-id4.txt  --operation write-throughput --threads 256 --operations 250000  --logLatencyPath write-throughput-0949 --warmupRequestCount 2000 --logBatchEntryCount 250000
+ *
+ * Read-your-writes latency at 500 writes/s:
+ * java -cp simpletests-0.0.1-jar-with-dependencies.jar SimpleTests --endpoint https://ENDPOINT.documents.azure.com:443/ --key KEYVALUE --database testdb --collection testcol2 --partitionKey id --operation write-read --consistency Session --threads 32 --operations 10000 --operationsPerSecond 500
  */
 public class SimpleTests {
 
@@ -70,18 +79,19 @@ public class SimpleTests {
     private static TimeBasedGenerator TB_GENERATOR = Generators.timeBasedGenerator(EthernetAddress.fromInterface());
     private static long runId;
 
-    private static SimpleDateFormat dateFormat;
     private static DocumentClient client;
+    private static DocumentClient readClient;
     private static final MetricRegistry metricsRegistry = new MetricRegistry();
     private static final ScheduledReporter reporter = ConsoleReporter.forRegistry(metricsRegistry).convertRatesTo(TimeUnit.SECONDS)
             .convertDurationsTo(TimeUnit.MILLISECONDS).build();
     private static Meter successMeter = metricsRegistry.meter("#Successful Operations");
     private static Meter failureMeter = metricsRegistry.meter("#Unsuccessful Operations");
-
-    static {
-        dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss.SSS zzz",Locale.US);
-        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
+    private static Meter throttleMeter = metricsRegistry.meter("#Throttled Operations");
+    private static final DoubleAdder requestUnits = new DoubleAdder();
+    private static Timer readTimer = metricsRegistry.timer("Read latency");
+    private static Timer writeTimer = metricsRegistry.timer("Write latency");
+    private static Timer readAfterWriteTimer = metricsRegistry.timer("Read after write latency");
+    private static Meter staleReadMeter = metricsRegistry.meter("#Reads after write missing the write");
 
     @Parameter
     private List<String> parameters = new ArrayList<>();
@@ -98,7 +108,7 @@ public class SimpleTests {
     @Parameter(names = {"--collection", "-col"}, description = "CosmosDB collection ID")
     private String collectionName = "testcol";
 
-    @Parameter(names = {"--operation", "-o"}, description = "Operation (read, write, write-read, read-throughput)")
+    @Parameter(names = {"--operation", "-o"}, description = "Operation (read, write, write-read, load, mixed, compare, read-throughput, write-throughput, read-ids)")
     private String operation = "write-read";
 
     @Parameter(names = {"--partitionKey", "-pk"}, description = "CosmosDB partition key")
@@ -125,6 +135,61 @@ public class SimpleTests {
     @Parameter(names = "--consistency", description = "Set the consistency level for the client")
     private String consistencyLevel = "Session";
 
+    @Parameter(names = "--readConsistency", description = "Set a weaker consistency level for the reads of the read and write-read operations")
+    private String readConsistencyLevel = "";
+
+    @Parameter(names = "--skipSessionToken", description = "write-read: read without the session token of the write")
+    private boolean skipSessionToken = false;
+
+    @Parameter(names = "--operationsPerSecond", description = "read, write and write-read: target number of operations per second across all the threads,"
+            + " 0 to issue the operations back to back")
+    private double operationsPerSecond = 0;
+
+    @Parameter(names = "--virtualThreads", description = "read, write and write-read: run the --threads operations in flight on virtual threads"
+            + " (Java 21 or later) carried by one thread per core, rather than on as many platform threads")
+    private boolean virtualThreads = false;
+
+    @Parameter(names = "--openLoop", description = "read, write and write-read: schedule the operations at --operationsPerSecond whatever their latency"
+            + " and measure the latency from their scheduled start, --threads being the number of operations which can run at once")
+    private boolean openLoop = false;
+
+    @Parameter(names = "--loadPattern", description = "Open loop: fixed, ramp (from --operationsPerSecond to --maxOperationsPerSecond over --rampSeconds)"
+            + " or step (from --operationsPerSecond to --maxOperationsPerSecond by --stepOperationsPerSecond every --stepSeconds)")
+    private String loadPattern = "fixed";
+
+    @Parameter(names = "--maxOperationsPerSecond", description = "Open loop: operations per second at the end of the ramp or of the last step")
+    private double maxOperationsPerSecond = 0;
+
+    @Parameter(names = "--rampSeconds", description = "Open loop: duration of the ramp")
+    private long rampSeconds = 60;
+
+    @Parameter(names = "--stepOperationsPerSecond", description = "Open loop: operations per second added at each step")
+    private double stepOperationsPerSecond = 0;
+
+    @Parameter(names = "--stepSeconds", description = "Open loop: duration of each step, also the report interval of a step pattern")
+    private long stepSeconds = 30;
+
+    @Parameter(names = "--durationSeconds", description = "read, write, write-read and mixed: duration of the run, 0 to run until the end of the operations"
+            + " or of the steps")
+    private long durationSeconds = 0;
+
+    @Parameter(names = "--workload", description = "load and mixed: properties file of the mix of operations, key and document size distributions"
+            + " and duration, see the workloads directory")
+    private String workloadPath = "";
+
+    @Parameter(names = "--resultPath", description = "Write the throughput, request units, latency percentiles, errors, throttles and client CPU"
+            + " and GC of the run to this JSON file, or append them to this CSV file if it ends with .csv")
+    private String resultPath = "";
+
+    @Parameter(names = "--baseline", description = "compare: JSON result file of the reference run")
+    private String baselinePath = "";
+
+    @Parameter(names = "--candidate", description = "compare: JSON result file of the run to check against the baseline")
+    private String candidatePath = "";
+
+    @Parameter(names = "--regressionThreshold", description = "compare: change in percent beyond which a worse metric is a regression")
+    private double regressionThreshold = 10;
+
     @Parameter(names = "--connectionMode", description = "Set the connection mode for the client")
     private String connectionMode = "DirectHttps";
 
@@ -134,10 +199,13 @@ public class SimpleTests {
     @Parameter(names = "--idleConnectionTimeout", description = "Set the idle connection timeout time in seconds for the client")
     private int idleConnectionTimeout = -1;
 
-    @Parameter(names = "--logLatencyPath", description = "Latency logging: Log latency from the requests to this path")
+    @Parameter(names = "--logLatencyPath", description = "Latency logging: Log an HdrHistogram interval log of the latencies to this directory")
     private String logLatencyPath = "";
 
-    @Parameter(names = "--logBatchEntryCount", description = "Latency logging: Number of requests to write in one log file")
+    @Parameter(names = "--logRequests", description = "Latency logging: Also log the start time and latency of every request to a binary file per thread")
+    private boolean logRequests = false;
+
+    @Parameter(names = "--logBatchEntryCount", description = "Latency logging: Number of requests buffered per thread before being written to the binary file")
     private int logBatchEntryCount = 250000;
 
     @Parameter(names = "--warmupRequestCount", description = "Latency logging: Number of requests which latency is not logged at the start of the run")
@@ -155,6 +223,9 @@ public class SimpleTests {
         WRITE,
         WRITE_THROUGHPUT,
         WRITE_READ,
+        LOAD,
+        MIXED,
+        COMPARE,
         INVALID_OPERATION,
         READ_IDS
     }
@@ -168,6 +239,12 @@ public class SimpleTests {
             operationName = OperationName.WRITE;
         } else if ( operation.equalsIgnoreCase("write-read") ) {
             operationName = OperationName.WRITE_READ;
+        } else if ( operation.equalsIgnoreCase("load") ) {
+            operationName = OperationName.LOAD;
+        } else if ( operation.equalsIgnoreCase("mixed") ) {
+            operationName = OperationName.MIXED;
+        } else if ( operation.equalsIgnoreCase("compare") ) {
+            operationName = OperationName.COMPARE;
         } else if ( operation.equalsIgnoreCase("read-throughput") ) {
             operationName = OperationName.READ_THROUGHPUT;
         } else if ( operation.equalsIgnoreCase("write-throughput") ) {
@@ -185,78 +262,47 @@ public class SimpleTests {
     }
 
     /**
+     * Records the latencies of one thread, after its warm up requests.
      * This class is not thread-safe. It's for use within one thread.
      */
     static class LatencyLogger {
-        StringBuilder sb = new StringBuilder(1024 * 1024);
-        long start = 0;
-        long end = 0;
-        boolean enabled = false;
-        String logFilePath;
-        long warmupOperations;
-        long operationCount;
-        long batchId;
-        long logBatchSize;
-        boolean printLatency;
+        private final HistogramLogger.ThreadRecorder recorder;
+        private final long warmupOperations;
+        private final boolean printLatency;
+        private long operationCount;
+        private long start;
 
         static Logger logger = LoggerFactory.getLogger(LatencyLogger.class);
 
-        public LatencyLogger(boolean logLatency,
-                             String logFilePath,
+        public LatencyLogger(HistogramLogger.ThreadRecorder recorder,
                              long warmupOperations,
-                             long logBatchSize,
-                             boolean printLantecy) {
-            this.enabled = logLatency;
-            this.logFilePath = logFilePath;
+                             boolean printLatency) {
+            this.recorder = recorder;
             this.warmupOperations = warmupOperations;
-            this.operationCount = 0;
-            this.batchId = 0;
-            this.logBatchSize = logBatchSize;
-            this.printLatency = printLantecy;
+            this.printLatency = printLatency;
         }
 
         public void requestStart() {
             start = System.nanoTime();
-            if (!this.enabled || this.operationCount < warmupOperations) {
-                return;
-            }
         }
 
         public void requestEnd() {
-            this.operationCount++;
-            end = System.nanoTime();
-            String logLine = null;
-            if (printLatency) {
-                logLine = String.format("%s,%d\n", dateFormat.format(new Date()), end - start);
-                logger.debug(logLine);
+            long latency = System.nanoTime() - start;
+            if (printLatency && logger.isDebugEnabled()) {
+                logger.debug("{}", latency);
             }
-            if (!this.enabled || this.operationCount < warmupOperations) {
+            if (operationCount++ < warmupOperations) {
                 return;
             }
-            sb.append(logLine);
-            if (operationCount >= logBatchSize) {
-                operationCount = 0;
-                writeToLogFile();
-                sb.setLength(0);
-            }
+            recorder.record(start, latency);
         }
 
-        public void writeToLogFile() {
-            if (!this.enabled || sb.length() == 0) {
-               return;
-            }
-            try {
-                FileWriter writer = new FileWriter(String.format("%s-batch%03d.log", logFilePath, batchId));
-                batchId++;
-                writer.write(sb.toString());
-                writer.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        public void flush() {
+            recorder.flush();
         }
     }
 
-    private void writeThroughput() throws InterruptedException {
+    private void writeThroughput() throws InterruptedException, IOException {
         ConnectionPolicy connectionPolicy = new ConnectionPolicy();
         connectionPolicy.setConnectionMode(ConnectionMode.valueOf(connectionMode));
         if (connectionPoolSize > 0) {
@@ -275,16 +321,19 @@ public class SimpleTests {
 
         final String collectionLink = String.format("dbs/%s/colls/%s", dbName, collectionName);
 
+        Instant startTime = Instant.now();
+        long startNanos = System.nanoTime();
+        ClientCpuUsage cpuUsage = new ClientCpuUsage();
+        HistogramLogger histogramLogger = newHistogramLogger("write");
+
         for (int i = 0; i < threadCount; ++i) {
             final int index = i;
+            final LatencyLogger latencyLogger = new LatencyLogger(histogramLogger.newRecorder(index),
+                    warmupRequestCount,
+                    printLatency);
             threads[i] = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    LatencyLogger latencyLogger = new LatencyLogger(!StringUtils.isEmpty(logLatencyPath),
-                            String.format("%s/%d-thread%03d", logLatencyPath, runId, index),
-                            warmupRequestCount,
-                            logBatchEntryCount,
-                            printLatency);
                     long remainingOperations = totalOperations;
 
                     while (remainingOperations-- > 0) {
@@ -294,16 +343,17 @@ public class SimpleTests {
                             newDoc.setId(idString);
                             newDoc.set(pKey, idString);
                             latencyLogger.requestStart();
-                            Document createdDoc = client.upsertDocument(collectionLink,
-                                    newDoc, null, true).getResource();
+                            ResourceResponse<Document> response = client.upsertDocument(collectionLink,
+                                    newDoc, null, true);
                             latencyLogger.requestEnd();
+                            requestUnits.add(response.getRequestCharge());
                             successMeter.mark();
                         } catch (Exception e) {
                             failureMeter.mark();
                             logger.error(e.getMessage(), e);
                         }
                     }
-                    latencyLogger.writeToLogFile();
+                    latencyLogger.flush();
                 }
             });
             threads[i].start();
@@ -314,9 +364,11 @@ public class SimpleTests {
                 t.join();
             }
         }
+        histogramLogger.close();
+        writeResult("write-throughput", startTime, startNanos, histogramLogger, cpuUsage);
     }
 
-    private void readThroughput() throws InterruptedException {
+    private void readThroughput() throws InterruptedException, IOException {
         ConnectionPolicy connectionPolicy = new ConnectionPolicy();
         connectionPolicy.setConnectionMode(ConnectionMode.valueOf(connectionMode));
         if (connectionPoolSize > 0) {
@@ -333,24 +385,7 @@ public class SimpleTests {
         connectionPolicy.setPreferredLocations(regions);
         client = new DocumentClient(endpoint, key, connectionPolicy, ConsistencyLevel.valueOf(consistencyLevel));
 
-        List<String> documentIds = new ArrayList<>();
-
-        if (!StringUtils.isEmpty(docIdFilePath)) {
-            try {
-                File file = new File(docIdFilePath);
-                FileReader fileReader = new FileReader(file);
-                BufferedReader bufferedReader = new BufferedReader(fileReader);
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    documentIds.add(line);
-                }
-                fileReader.close();
-            } catch (Exception e) {
-                logger.error("Failed to read document IDs list at {}", docIdFilePath, e);
-            }
-        } else if (!StringUtils.isEmpty(docId)) {
-            documentIds.add(docId);
-        }
+        List<String> documentIds = loadDocumentIds();
 
         if (documentIds.size() == 0) {
             logger.error("Cannot continue with empty Document IDs list.");
@@ -359,16 +394,19 @@ public class SimpleTests {
 
         Thread[] threads = new Thread[threadCount];
 
+        Instant startTime = Instant.now();
+        long startNanos = System.nanoTime();
+        ClientCpuUsage cpuUsage = new ClientCpuUsage();
+        HistogramLogger histogramLogger = newHistogramLogger("read");
+
         for (int i = 0; i < threadCount; ++i) {
             final int index = i;
+            final LatencyLogger latencyLogger = new LatencyLogger(histogramLogger.newRecorder(index),
+                    warmupRequestCount,
+                    printLatency);
             threads[i] = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    LatencyLogger latencyLogger = new LatencyLogger(!StringUtils.isEmpty(logLatencyPath),
-                            String.format("%s/%d-thread%03d.log", logLatencyPath, runId, index),
-                            warmupRequestCount,
-                            logBatchEntryCount,
-                            printLatency);
                     long remainingOperations = totalOperations;
 
                     while (remainingOperations-- > 0) {
@@ -378,15 +416,16 @@ public class SimpleTests {
                             options.setPartitionKey(new PartitionKey(docId));
                             String documentLink = String.format("dbs/%s/colls/%s/docs/%s", dbName, collectionName, docId);
                             latencyLogger.requestStart();
-                            Document readDocument = client.readDocument(documentLink, options).getResource();
+                            ResourceResponse<Document> response = client.readDocument(documentLink, options);
                             latencyLogger.requestEnd();
+                            requestUnits.add(response.getRequestCharge());
                             successMeter.mark();
                         } catch (Exception e) {
                             logger.error(e.getMessage(), e);
                             failureMeter.mark();
                         }
                     }
-                    latencyLogger.writeToLogFile();
+                    latencyLogger.flush();
                 }
             });
             threads[i].start();
@@ -397,6 +436,395 @@ public class SimpleTests {
                 t.join();
             }
         }
+        histogramLogger.close();
+        writeResult("read-throughput", startTime, startNanos, histogramLogger, cpuUsage);
+    }
+
+    private HistogramLogger newHistogramLogger(String name) throws IOException {
+        return new HistogramLogger(name,
+                StringUtils.isEmpty(logLatencyPath) ? null : Paths.get(logLatencyPath),
+                runId,
+                logRequests,
+                logBatchEntryCount);
+    }
+
+    private List<String> loadDocumentIds() {
+        List<String> documentIds = new ArrayList<>();
+
+        if (!StringUtils.isEmpty(docIdFilePath)) {
+            try {
+                File file = new File(docIdFilePath);
+                FileReader fileReader = new FileReader(file);
+                BufferedReader bufferedReader = new BufferedReader(fileReader);
+                String line;
+                while ((line = bufferedReader.readLine()) != null) {
+                    documentIds.add(line);
+                }
+                fileReader.close();
+            } catch (Exception e) {
+                logger.error("Failed to read document IDs list at {}", docIdFilePath, e);
+            }
+        } else if (!StringUtils.isEmpty(docId)) {
+            documentIds.add(docId);
+        }
+
+        return documentIds;
+    }
+
+    private DocumentClient createClient() {
+        ConnectionPolicy connectionPolicy = new ConnectionPolicy();
+        connectionPolicy.setConnectionMode(ConnectionMode.valueOf(connectionMode));
+        if (connectionPoolSize > 0) {
+            connectionPolicy.setMaxPoolSize(connectionPoolSize);
+        }
+        if (requestTimeout > 0) {
+            connectionPolicy.setRequestTimeout(requestTimeout);
+        }
+        if (idleConnectionTimeout > 0) {
+            connectionPolicy.setIdleConnectionTimeout(idleConnectionTimeout);
+        }
+        connectionPolicy.setEnableEndpointDiscovery(false);
+        List<String> regions = Arrays.asList(preferredRegions.split(";"));
+        connectionPolicy.setPreferredLocations(regions);
+        return new DocumentClient(endpoint, key, connectionPolicy, ConsistencyLevel.valueOf(consistencyLevel));
+    }
+
+    private RequestOptions readOptions(String docId) {
+        RequestOptions options = new RequestOptions();
+        options.setPartitionKey(new PartitionKey(docId));
+        if (!StringUtils.isEmpty(readConsistencyLevel)) {
+            options.setConsistencyLevel(ConsistencyLevel.valueOf(readConsistencyLevel));
+        }
+        return options;
+    }
+
+    private Document newDocument() {
+        Document newDoc = new Document();
+        String idString = TB_GENERATOR.generate().toString();
+        newDoc.setId(idString);
+        newDoc.set(pKey, idString);
+        return newDoc;
+    }
+
+    /**
+     * One operation of a workload, run by the given thread.
+     */
+    interface Operation {
+        void run(int threadIndex, long operationIndex) throws Exception;
+    }
+
+    /**
+     * Runs the operation --operations times on each of --threads threads, back to back or at --operationsPerSecond
+     * across all the threads, or open-loop with --openLoop, then logs the CPU time of the client per operation and
+     * writes the result of the run to --resultPath.
+     */
+    private void runWorkload(String name, Operation operation) throws InterruptedException, IOException {
+        LoadPattern pattern = null;
+        if (openLoop) {
+            pattern = newLoadPattern();
+            if (pattern == null) {
+                return;
+            }
+        }
+
+        ThreadFactory threadFactory = WorkerThreads.factory(name + "-", virtualThreads);
+        if (connectionPoolSize > 0 && connectionPoolSize < threadCount) {
+            logger.warn("At most --connectionPoolSize {} of the --threads {} operations can be in flight", connectionPoolSize, threadCount);
+        }
+
+        ClientCpuUsage cpuUsage = new ClientCpuUsage();
+        metricsRegistry.register("Client CPU per operation (ms)",
+                (Gauge<Double>) () -> cpuUsage.getCpuMillisPerOperation(successMeter.getCount() + failureMeter.getCount()));
+        metricsRegistry.register("Client CPU load (%)", (Gauge<Double>) cpuUsage::getCpuLoadPercent);
+
+        Instant startTime = Instant.now();
+        long startNanos = System.nanoTime();
+        HistogramLogger histogramLogger = newHistogramLogger(openLoop ? name + "-open-loop" : name);
+        try {
+            if (openLoop) {
+                runOpenLoop(pattern, operation, threadFactory, histogramLogger);
+            } else {
+                runClosedLoop(operation, threadFactory, histogramLogger);
+            }
+        } finally {
+            histogramLogger.close();
+        }
+
+        logger.info("Client CPU: {} ms per operation, {}% of {} cores",
+                String.format("%.3f", cpuUsage.getCpuMillisPerOperation(successMeter.getCount() + failureMeter.getCount())),
+                String.format("%.1f", cpuUsage.getCpuLoadPercent()),
+                cpuUsage.getProcessors());
+        writeResult(name, startTime, startNanos, histogramLogger, cpuUsage);
+    }
+
+    private void runClosedLoop(Operation operation, ThreadFactory threadFactory, HistogramLogger histogramLogger)
+            throws InterruptedException, IOException {
+        RateLimiter rateLimiter = operationsPerSecond > 0 ? RateLimiter.create(operationsPerSecond) : null;
+        long deadline = durationSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds) : Long.MAX_VALUE;
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; ++i) {
+            final int index = i;
+            final LatencyLogger latencyLogger = new LatencyLogger(histogramLogger.newRecorder(index),
+                    warmupRequestCount,
+                    printLatency);
+            threads[i] = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long operationIndex = 0; operationIndex < totalOperations && System.nanoTime() < deadline; operationIndex++) {
+                        if (rateLimiter != null) {
+                            rateLimiter.acquire();
+                        }
+                        latencyLogger.requestStart();
+                        runOperation(operation, index, operationIndex);
+                        latencyLogger.requestEnd();
+                    }
+                    latencyLogger.flush();
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    private LoadPattern newLoadPattern() {
+        if (operationsPerSecond <= 0) {
+            logger.error("--openLoop requires --operationsPerSecond");
+            return null;
+        }
+
+        if (loadPattern.equalsIgnoreCase("fixed")) {
+            return LoadPattern.fixed(operationsPerSecond);
+        } else if (loadPattern.equalsIgnoreCase("ramp")) {
+            return LoadPattern.ramp(operationsPerSecond, maxOperationsPerSecond, rampSeconds);
+        } else if (loadPattern.equalsIgnoreCase("step")) {
+            return LoadPattern.step(operationsPerSecond, stepOperationsPerSecond, maxOperationsPerSecond, stepSeconds);
+        }
+        logger.error("Invalid load pattern {}, expecting fixed, ramp or step", loadPattern);
+        return null;
+    }
+
+    /**
+     * Runs --threads times --operations operations at the rate of --loadPattern, logging the latencies from their
+     * scheduled start to the HdrHistogram interval log of the workload.
+     */
+    private void runOpenLoop(LoadPattern pattern, Operation operation, ThreadFactory threadFactory, HistogramLogger histogramLogger)
+            throws InterruptedException, IOException {
+        long reportSeconds = loadPattern.equalsIgnoreCase("step") ? stepSeconds : 10;
+        long maxOperations = totalOperations > Long.MAX_VALUE / threadCount ? Long.MAX_VALUE : totalOperations * threadCount;
+        OpenLoopDriver driver = new OpenLoopDriver(pattern, threadCount, threadFactory, maxOperations, durationSeconds, reportSeconds);
+
+        driver.run((threadIndex, operationIndex) -> runOperation(operation, threadIndex, operationIndex), histogramLogger);
+    }
+
+    private void runOperation(Operation operation, int threadIndex, long operationIndex) {
+        try {
+            operation.run(threadIndex, operationIndex);
+            successMeter.mark();
+        } catch (Exception e) {
+            failureMeter.mark();
+            if (e instanceof DocumentClientException
+                    && ((DocumentClientException) e).getStatusCode() == HttpConstants.StatusCodes.TOO_MANY_REQUESTS) {
+                throttleMeter.mark();
+            }
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the result of the run to --resultPath, if any.
+     */
+    private void writeResult(String name, Instant startTime, long startNanos, HistogramLogger histogramLogger, ClientCpuUsage cpuUsage)
+            throws IOException {
+        if (StringUtils.isEmpty(resultPath)) {
+            return;
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long operations = successMeter.getCount();
+        BenchmarkResult result = new BenchmarkResult("SimpleTests", name, startTime)
+                .put("durationSeconds", seconds)
+                .put("operations", operations)
+                .put("operationsPerSecond", operations / seconds)
+                .put("requestUnits", requestUnits.sum())
+                .put("requestUnitsPerSecond", requestUnits.sum() / seconds)
+                .put("requestUnitsPerOperation", operations > 0 ? requestUnits.sum() / operations : -1)
+                .put("errors", failureMeter.getCount())
+                .put("throttles", throttleMeter.getCount())
+                .put("cpuMillisPerOperation", cpuUsage.getCpuMillisPerOperation(operations + failureMeter.getCount()))
+                .put("cpuLoadPercent", cpuUsage.getCpuLoadPercent())
+                .put("gcCount", cpuUsage.getGcCount())
+                .put("gcMillis", cpuUsage.getGcMillis());
+
+        Histogram latencies = histogramLogger.getTotalHistogram();
+        if (latencies.getTotalCount() > 0) {
+            result.put("latencyP50Ms", latencies.getValueAtPercentile(50) / 1e6)
+                    .put("latencyP90Ms", latencies.getValueAtPercentile(90) / 1e6)
+                    .put("latencyP99Ms", latencies.getValueAtPercentile(99) / 1e6)
+                    .put("latencyP999Ms", latencies.getValueAtPercentile(99.9) / 1e6)
+                    .put("latencyMaxMs", latencies.getMaxValue() / 1e6);
+        }
+
+        result.write(Paths.get(resultPath));
+        logger.info("Result written to {}", resultPath);
+    }
+
+    /**
+     * Compares the --candidate result with the --baseline result.
+     *
+     * @return whether no metric regressed by more than --regressionThreshold
+     */
+    private boolean compare() throws IOException {
+        if (StringUtils.isEmpty(baselinePath) || StringUtils.isEmpty(candidatePath)) {
+            logger.error("The compare operation requires --baseline and --candidate result files");
+            return false;
+        }
+
+        BenchmarkResult baseline = BenchmarkResult.read(Paths.get(baselinePath));
+        BenchmarkResult candidate = BenchmarkResult.read(Paths.get(candidatePath));
+
+        List<String> report = new ArrayList<>();
+        List<String> regressions = BenchmarkResult.compare(baseline, candidate, regressionThreshold, report);
+        System.out.println("Baseline:  " + baseline);
+        System.out.println("Candidate: " + candidate);
+        for (String line : report) {
+            System.out.println(line);
+        }
+
+        if (!regressions.isEmpty()) {
+            System.out.println(String.format("%d metrics regressed by more than %.1f%%: %s", regressions.size(), regressionThreshold, regressions));
+            return false;
+        }
+        System.out.println(String.format("No metric regressed by more than %.1f%%", regressionThreshold));
+        return true;
+    }
+
+    /**
+     * Reads the documents of the ids file, each thread going through all of them from its own offset.
+     */
+    private void read() throws InterruptedException, IOException {
+        client = createClient();
+
+        List<String> documentIds = loadDocumentIds();
+
+        if (documentIds.size() == 0) {
+            logger.error("Cannot continue with empty Document IDs list.");
+            return;
+        }
+
+        runWorkload("read", (threadIndex, operationIndex) -> {
+            String docId = documentIds.get((int) ((threadIndex + operationIndex) % documentIds.size()));
+            String documentLink = String.format("dbs/%s/colls/%s/docs/%s", dbName, collectionName, docId);
+            Timer.Context context = readTimer.time();
+            requestUnits.add(client.readDocument(documentLink, readOptions(docId)).getRequestCharge());
+            context.stop();
+        });
+    }
+
+    /**
+     * Creates new documents.
+     */
+    private void write() throws InterruptedException, IOException {
+        client = createClient();
+
+        final String collectionLink = String.format("dbs/%s/colls/%s", dbName, collectionName);
+
+        runWorkload("write", (threadIndex, operationIndex) -> {
+            Document newDoc = newDocument();
+            Timer.Context context = writeTimer.time();
+            ResourceResponse<Document> written = client.createDocument(collectionLink, newDoc, null, true);
+            context.stop();
+            requestUnits.add(written.getRequestCharge());
+        });
+    }
+
+    /**
+     * Creates a document then reads it back, measuring the latency of both and counting the reads which miss the write.
+     *
+     * The reads go through a second client, as a reader in another process would: only the session token of the
+     * write, passed with the read unless --skipSessionToken, makes a Session consistency read see the write.
+     */
+    private void writeRead() throws InterruptedException, IOException {
+        client = createClient();
+        readClient = createClient();
+
+        final String collectionLink = String.format("dbs/%s/colls/%s", dbName, collectionName);
+
+        runWorkload("write-read", (threadIndex, operationIndex) -> {
+            Document newDoc = newDocument();
+            Timer.Context writeContext = writeTimer.time();
+            ResourceResponse<Document> written = client.createDocument(collectionLink, newDoc, null, true);
+            writeContext.stop();
+            requestUnits.add(written.getRequestCharge());
+
+            RequestOptions options = readOptions(newDoc.getId());
+            if (!skipSessionToken) {
+                options.setSessionToken(written.getSessionToken());
+            }
+
+            String documentLink = String.format("%s/docs/%s", collectionLink, newDoc.getId());
+            Timer.Context readContext = readAfterWriteTimer.time();
+            try {
+                ResourceResponse<Document> read = readClient.readDocument(documentLink, options);
+                readContext.stop();
+                requestUnits.add(read.getRequestCharge());
+                Document readDocument = read.getResource();
+                if (!written.getResource().getETag().equals(readDocument.getETag())) {
+                    staleReadMeter.mark();
+                }
+            } catch (DocumentClientException e) {
+                readContext.stop();
+                if (e.getStatusCode() != HttpConstants.StatusCodes.NOTFOUND) {
+                    throw e;
+                }
+                staleReadMeter.mark();
+            }
+        });
+    }
+
+    /**
+     * Writes the recordCount documents of the --workload spec, which the mixed operation then reads and updates.
+     */
+    private void load() throws InterruptedException, IOException {
+        MixedWorkload workload = newMixedWorkload();
+        if (workload == null) {
+            return;
+        }
+
+        totalOperations = workload.getLoadOperationsPerThread(threadCount);
+        runWorkload("load", workload.loadOperation(threadCount));
+    }
+
+    /**
+     * Runs the mix of operations of the --workload spec, with a latency timer per operation.
+     */
+    private void mixed() throws InterruptedException, IOException {
+        MixedWorkload workload = newMixedWorkload();
+        if (workload == null) {
+            return;
+        }
+
+        if (durationSeconds == 0) {
+            durationSeconds = workload.getSpec().getDurationSeconds();
+        }
+        runWorkload("mixed", workload.mixOperation());
+    }
+
+    private MixedWorkload newMixedWorkload() throws IOException {
+        if (StringUtils.isEmpty(workloadPath)) {
+            logger.error("The load and mixed operations require a --workload spec");
+            return null;
+        }
+
+        WorkloadSpec spec = WorkloadSpec.load(Paths.get(workloadPath), MixedWorkload.getOperationNames());
+        logger.info("Workload {}: {}", workloadPath, spec);
+
+        client = createClient();
+        final String collectionLink = String.format("dbs/%s/colls/%s", dbName, collectionName);
+        return new MixedWorkload(client, collectionLink, pKey, spec, runId, metricsRegistry, requestUnits);
     }
 
     private void readIds() throws IOException {
@@ -460,6 +888,25 @@ public class SimpleTests {
         runId = System.nanoTime();
 
         switch ( test.operationName ) {
+            case READ:
+                test.read();
+                break;
+            case WRITE:
+                test.write();
+                break;
+            case WRITE_READ:
+                test.writeRead();
+                break;
+            case LOAD:
+                test.load();
+                break;
+            case MIXED:
+                test.mixed();
+                break;
+            case COMPARE:
+                reporter.close();
+                System.exit(test.compare() ? 0 : 1);
+                break;
             case READ_THROUGHPUT:
                 test.readThroughput();
                 break;
@@ -470,7 +917,7 @@ public class SimpleTests {
                 test.readIds();
                 break;
             default:
-                System.err.println("Operation name (-o) must be createTable, deleteTable, listTables, or loadTable");
+                System.err.println("Operation name (-o) must be read, write, write-read, load, mixed, compare, read-throughput, write-throughput or read-ids");
                 break;
         }
 
@@ -479,5 +926,8 @@ public class SimpleTests {
         if (client != null) {
             client.close();
         }
+        if (readClient != null) {
+            readClient.close();
+        }
     }
 }
@@ -0,0 +1,50 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the threads running the operations of a workload: platform threads, or virtual threads on a Java 21 or later
+ * runtime. A blocked virtual thread releases its carrier, so thousands of operations can be kept in flight with the
+ * blocking client on a pool of carriers the size of the number of cores.
+ *
+ * Virtual threads are created by reflection so that the benchmark still builds and runs on Java 8.
+ */
+class WorkerThreads {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerThreads.class);
+
+    /**
+     * @param name prefix of the names of the threads
+     * @param virtual whether to create virtual threads, if the runtime supports them
+     * @return the factory of the worker threads
+     */
+    static ThreadFactory factory(String name, boolean virtual) {
+        if (virtual) {
+            ThreadFactory factory = virtualThreadFactory(name);
+            if (factory != null) {
+                return factory;
+            }
+            logger.warn("Virtual threads require Java 21 or later, running on {} with platform threads", System.getProperty("java.version"));
+        }
+
+        AtomicLong counter = new AtomicLong();
+        return runnable -> new Thread(runnable, name + counter.getAndIncrement());
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.microsoft.azure.documentdb.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A mixed workload read from a properties file, in the spirit of the YCSB core workloads:
+ *
+ * <pre>
+ * # relative weights of the operations, see {@link MixedWorkload} for the registered ones
+ * read=0.5
+ * upsert=0.5
+ * # keys of the load phase, then chosen by the operations uniformly, zipfian or latest
+ * recordCount=100000
+ * keyDistribution=zipfian
+ * zipfianConstant=0.99
+ * # size of the documents in bytes, constant or uniform between documentSize and documentSizeMax
+ * documentSize=1024
+ * documentSizeDistribution=constant
+ * documentSizeMax=1024
+ * # documents per upsertBatch operation
+ * upsertBatchSize=100
+ * # duration of the run, 0 to run --operations per thread
+ * durationSeconds=300
+ * </pre>
+ */
+class WorkloadSpec {
+
+    private final Map<String, Double> weights;
+    private final long recordCount;
+    private final String keyDistribution;
+    private final double zipfianConstant;
+    private final int documentSize;
+    private final String documentSizeDistribution;
+    private final int documentSizeMax;
+    private final int upsertBatchSize;
+    private final long durationSeconds;
+
+    private WorkloadSpec(Properties properties, Iterable<String> operationNames) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String name : operationNames) {
+            double weight = Double.parseDouble(properties.getProperty(name, "0"));
+            if (weight < 0) {
+                throw new IllegalArgumentException(String.format("the weight of %s must not be negative", name));
+            }
+            if (weight > 0) {
+                weights.put(name, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException(String.format("the workload must weigh at least one of the operations %s", operationNames));
+        }
+        this.weights = Collections.unmodifiableMap(weights);
+
+        recordCount = Long.parseLong(properties.getProperty("recordCount", "100000"));
+        keyDistribution = properties.getProperty("keyDistribution", "uniform");
+        zipfianConstant = Double.parseDouble(properties.getProperty("zipfianConstant", "0.99"));
+        documentSize = Integer.parseInt(properties.getProperty("documentSize", "1024"));
+        documentSizeDistribution = properties.getProperty("documentSizeDistribution", "constant");
+        documentSizeMax = Integer.parseInt(properties.getProperty("documentSizeMax", String.valueOf(documentSize)));
+        upsertBatchSize = Integer.parseInt(properties.getProperty("upsertBatchSize", "100"));
+        durationSeconds = Long.parseLong(properties.getProperty("durationSeconds", "0"));
+
+        if (recordCount <= 0) {
+            throw new IllegalArgumentException("recordCount must be positive");
+        }
+        if (documentSizeMax < documentSize) {
+            throw new IllegalArgumentException("documentSizeMax must not be less than documentSize");
+        }
+    }
+
+    /**
+     * @param path the properties file
+     * @param operationNames names of the operations which may be weighed
+     */
+    static WorkloadSpec load(Path path, Iterable<String> operationNames) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new WorkloadSpec(properties, operationNames);
+    }
+
+    /**
+     * @return the relative weights of the operations, only those weighing more than 0
+     */
+    Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    long getRecordCount() {
+        return recordCount;
+    }
+
+    String getKeyDistribution() {
+        return keyDistribution;
+    }
+
+    double getZipfianConstant() {
+        return zipfianConstant;
+    }
+
+    int getDocumentSize() {
+        return documentSize;
+    }
+
+    String getDocumentSizeDistribution() {
+        return documentSizeDistribution;
+    }
+
+    int getDocumentSizeMax() {
+        return documentSizeMax;
+    }
+
+    int getUpsertBatchSize() {
+        return upsertBatchSize;
+    }
+
+    long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %d records, %s keys, %s documents of %d to %d bytes", weights, recordCount, keyDistribution,
+                documentSizeDistribution, documentSize, documentSizeMax);
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The result of a run in a machine readable form, written as a JSON object or appended as a CSV row, and compared with the
+ * result of another run to detect regressions, e.g. before upgrading the SDK. The results have the schema of the results
+ * of the benchmark module, described in its README, so that either tool can compare them.
+ *
+ * <pre>
+ * {"tool":"bulkimport","name":"import","startTime":"2017-10-19T13:00:00Z","metrics":{"operations":100000,"operationsPerSecond":2000.0,...}}
+ * </pre>
+ *
+ * The CPU and garbage collection time of the process are measured from the creation of the result.
+ */
+class BenchmarkResult {
+
+    /**
+     * The metrics of a result, in the order of the CSV columns, with whether a higher value is better (true), worse
+     * (false) or neither (null) when comparing runs.
+     */
+    static final Map<String, Boolean> METRICS;
+
+    static {
+        Map<String, Boolean> metrics = new LinkedHashMap<>();
+        metrics.put("durationSeconds", null);
+        metrics.put("operations", null);
+        metrics.put("operationsPerSecond", true);
+        metrics.put("requestUnits", null);
+        metrics.put("requestUnitsPerSecond", null);
+        metrics.put("requestUnitsPerOperation", false);
+        metrics.put("errors", false);
+        metrics.put("throttles", false);
+        metrics.put("latencyP50Ms", false);
+        metrics.put("latencyP90Ms", false);
+        metrics.put("latencyP99Ms", false);
+        metrics.put("latencyP999Ms", false);
+        metrics.put("latencyMaxMs", false);
+        metrics.put("cpuMillisPerOperation", false);
+        metrics.put("cpuLoadPercent", null);
+        metrics.put("gcCount", null);
+        metrics.put("gcMillis", false);
+        METRICS = Collections.unmodifiableMap(metrics);
+    }
+
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final String tool;
+    private final String name;
+    private final Instant startTime;
+    private final Map<String, Double> metrics = new LinkedHashMap<>();
+
+    private final long startNanos = System.nanoTime();
+    private final long startCpuNanos = processCpuNanos();
+    private final long startGcCount = gcCount();
+    private final long startGcMillis = gcMillis();
+
+    /**
+     * @param tool the tool of the run, e.g. bulkimport
+     * @param name the workload of the run, e.g. import
+     */
+    BenchmarkResult(String tool, String name) {
+        this(tool, name, Instant.now());
+    }
+
+    /**
+     * @param tool the tool of the run, e.g. SimpleTests
+     * @param name the workload of the run, e.g. read
+     * @param startTime the start of the run
+     */
+    BenchmarkResult(String tool, String name, Instant startTime) {
+        this.tool = tool;
+        this.name = name;
+        this.startTime = startTime;
+    }
+
+    /**
+     * @param metric one of {@link #METRICS}
+     * @param value the value, skipped if negative (unavailable) or not finite
+     * @return this result
+     */
+    BenchmarkResult put(String metric, double value) {
+        if (!METRICS.containsKey(metric)) {
+            throw new IllegalArgumentException(String.format("Unknown metric %s", metric));
+        }
+        if (value >= 0 && !Double.isInfinite(value)) {
+            metrics.put(metric, value);
+        }
+        return this;
+    }
+
+    /**
+     * Puts the throughput metrics of the run and the CPU and garbage collection time since the creation of the result.
+     *
+     * @param operations number of operations, e.g. documents imported
+     * @param requestUnits request units consumed
+     * @param seconds duration of the operations
+     * @return this result
+     */
+    BenchmarkResult putThroughput(long operations, double requestUnits, double seconds) {
+        long cpuNanos = processCpuNanos();
+        double elapsedNanos = System.nanoTime() - startNanos;
+
+        put("durationSeconds", seconds);
+        put("operations", operations);
+        put("operationsPerSecond", operations / seconds);
+        put("requestUnits", requestUnits);
+        put("requestUnitsPerSecond", requestUnits / seconds);
+        put("requestUnitsPerOperation", operations > 0 ? requestUnits / operations : -1);
+        if (cpuNanos >= 0 && startCpuNanos >= 0) {
+            put("cpuMillisPerOperation", operations > 0 ? (cpuNanos - startCpuNanos) / 1e6 / operations : -1);
+            put("cpuLoadPercent", 100.0 * (cpuNanos - startCpuNanos) / elapsedNanos / Runtime.getRuntime().availableProcessors());
+        }
+        put("gcCount", gcCount() - startGcCount);
+        put("gcMillis", gcMillis() - startGcMillis);
+        return this;
+    }
+
+    Map<String, Double> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Writes the result as a JSON object, or appends it as a row to a file ending with .csv, with a header if the file is new.
+     *
+     * @param path the result file
+     */
+    void write(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".csv")) {
+            appendCsv(path);
+            return;
+        }
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("tool", tool);
+        json.put("name", name);
+        json.put("startTime", startTime.toString());
+        json.put("metrics", metrics);
+        objectMapper.writeValue(path.toFile(), json);
+    }
+
+    private void appendCsv(Path path) throws IOException {
+        boolean header = !Files.exists(path) || Files.size(path) == 0;
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write("tool,name,startTime," + String.join(",", METRICS.keySet()) + "\n");
+            }
+            StringBuilder row = new StringBuilder();
+            row.append(tool).append(',').append(name).append(',').append(startTime);
+            for (String metric : METRICS.keySet()) {
+                row.append(',');
+                Double value = metrics.get(metric);
+                if (value != null) {
+                    row.append(value);
+                }
+            }
+            writer.write(row.append('\n').toString());
+        }
+    }
+
+    /**
+     * @param path a result file written as JSON
+     * @return the result
+     */
+    static BenchmarkResult read(Path path) throws IOException {
+        JsonNode json = objectMapper.readTree(path.toFile());
+        BenchmarkResult result = new BenchmarkResult(json.path("tool").asText(), json.path("name").asText(),
+                Instant.parse(json.path("startTime").asText()));
+        json.path("metrics").fields().forEachRemaining(field -> {
+            if (METRICS.containsKey(field.getKey())) {
+                result.put(field.getKey(), field.getValue().asDouble());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Compares the metrics of two runs. A metric for which a higher or a lower value is better regresses when it got worse
+     * by more than the threshold, or got above 0 from 0.
+     *
+     * @param baseline the reference run
+     * @param candidate the run to check
+     * @param thresholdPercent the tolerated change in percent
+     * @param report receives a line per metric of both runs
+     * @return the names of the metrics which regressed
+     */
+    static List<String> compare(BenchmarkResult baseline, BenchmarkResult candidate, double thresholdPercent, List<String> report) {
+        List<String> regressions = new ArrayList<>();
+        report.add(String.format("%-26s %16s %16s %9s", "metric", "baseline", "candidate", "change"));
+
+        for (Map.Entry<String, Boolean> metric : METRICS.entrySet()) {
+            Double before = baseline.metrics.get(metric.getKey());
+            Double after = candidate.metrics.get(metric.getKey());
+            if (before == null || after == null) {
+                continue;
+            }
+
+            double changePercent = before == 0 ? (after == 0 ? 0 : Double.POSITIVE_INFINITY) : 100 * (after - before) / before;
+            boolean regressed = false;
+            if (Boolean.TRUE.equals(metric.getValue())) {
+                regressed = changePercent < -thresholdPercent;
+            } else if (Boolean.FALSE.equals(metric.getValue())) {
+                regressed = changePercent > thresholdPercent;
+            }
+            if (regressed) {
+                regressions.add(metric.getKey());
+            }
+
+            report.add(String.format("%-26s %16.3f %16.3f %8.1f%%%s", metric.getKey(), before, after, changePercent,
+                    regressed ? "  REGRESSION" : ""));
+        }
+        return regressions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s %s", tool, name, startTime, metrics);
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        return bean instanceof com.sun.management.OperatingSystemMXBean ? ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime() : -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
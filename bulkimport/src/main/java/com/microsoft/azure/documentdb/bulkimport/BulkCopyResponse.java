@@ -0,0 +1,127 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+public class BulkCopyResponse {
+    /**
+     * Number of documents read from the source in this copy.
+     */
+    final private long numberOfDocumentsRead;
+
+    /**
+     * Number of documents imported into the target in this copy.
+     */
+    final private long numberOfDocumentsImported;
+
+    /**
+     * Number of documents dropped by the transform.
+     */
+    final private long numberOfDocumentsDropped;
+
+    /**
+     * Request units consumed reading the source.
+     */
+    final private double sourceRequestUnitsConsumed;
+
+    /**
+     * Request units consumed importing into the target.
+     */
+    final private double targetRequestUnitsConsumed;
+
+    /**
+     * Total copy time.
+     */
+    final private Duration totalTimeTaken;
+
+    /**
+     * keeps failures which surfaced out
+     */
+    final private List<Exception> failures;
+
+    BulkCopyResponse(long numberOfDocumentsRead, long numberOfDocumentsImported, long numberOfDocumentsDropped,
+            double sourceRequestUnitsConsumed, double targetRequestUnitsConsumed, Duration totalTimeTaken, List<Exception> failures) {
+        this.numberOfDocumentsRead = numberOfDocumentsRead;
+        this.numberOfDocumentsImported = numberOfDocumentsImported;
+        this.numberOfDocumentsDropped = numberOfDocumentsDropped;
+        this.sourceRequestUnitsConsumed = sourceRequestUnitsConsumed;
+        this.targetRequestUnitsConsumed = targetRequestUnitsConsumed;
+        this.totalTimeTaken = totalTimeTaken;
+        this.failures = failures;
+    }
+
+    /**
+     * Gets failure list if some source partition key ranges failed to get copied. Copying again resumes them
+     * from the checkpoint of the exporter.
+     *
+     * @return list of errors or empty list if no error.
+     */
+    public List<Exception> getErrors() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return the numberOfDocumentsRead
+     */
+    public long getNumberOfDocumentsRead() {
+        return numberOfDocumentsRead;
+    }
+
+    /**
+     * @return the numberOfDocumentsImported
+     */
+    public long getNumberOfDocumentsImported() {
+        return numberOfDocumentsImported;
+    }
+
+    /**
+     * @return the numberOfDocumentsDropped
+     */
+    public long getNumberOfDocumentsDropped() {
+        return numberOfDocumentsDropped;
+    }
+
+    /**
+     * @return the sourceRequestUnitsConsumed
+     */
+    public double getSourceRequestUnitsConsumed() {
+        return sourceRequestUnitsConsumed;
+    }
+
+    /**
+     * @return the targetRequestUnitsConsumed
+     */
+    public double getTargetRequestUnitsConsumed() {
+        return targetRequestUnitsConsumed;
+    }
+
+    /**
+     * @return the totalTimeTaken
+     */
+    public Duration getTotalTimeTaken() {
+        return totalTimeTaken;
+    }
+}
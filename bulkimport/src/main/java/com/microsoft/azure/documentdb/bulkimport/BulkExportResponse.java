@@ -0,0 +1,89 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+public class BulkExportResponse {
+    /**
+     * Total number of documents exported, including the ones exported before a resume.
+     */
+    final private long numberOfDocumentsExported;
+
+    /**
+     * Total request units consumed.
+     */
+    final private double totalRequestUnitsConsumed;
+
+    /**
+     * Total bulk export time.
+     */
+    final private Duration totalTimeTaken;
+
+    /**
+     * keeps failures which surfaced out
+     */
+    final private List<Exception> failures;
+
+    BulkExportResponse(long numberOfDocumentsExported, double totalRequestUnitsConsumed, Duration totalTimeTaken, List<Exception> failures) {
+        this.numberOfDocumentsExported = numberOfDocumentsExported;
+        this.totalRequestUnitsConsumed = totalRequestUnitsConsumed;
+        this.totalTimeTaken = totalTimeTaken;
+        this.failures = failures;
+    }
+
+    /**
+     * Gets failure list if some partition key ranges failed to get exported. Their progress is kept in the
+     * checkpoint, so exporting again resumes them.
+     *
+     * @return list of errors or empty list if no error.
+     */
+    public List<Exception> getErrors() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Gets number of documents exported, including the ones exported before a resume.
+     *
+     * @return the numberOfDocumentsExported
+     */
+    public long getNumberOfDocumentsExported() {
+        return numberOfDocumentsExported;
+    }
+
+    /**
+     * @return the totalRequestUnitsConsumed
+     */
+    public double getTotalRequestUnitsConsumed() {
+        return totalRequestUnitsConsumed;
+    }
+
+    /**
+     * @return the totalTimeTaken
+     */
+    public Duration getTotalTimeTaken() {
+        return totalTimeTaken;
+    }
+}
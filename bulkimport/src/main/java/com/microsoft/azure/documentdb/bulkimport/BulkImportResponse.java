@@ -47,11 +47,33 @@ public class BulkImportResponse {
      */
     final private List<Exception> failures;
 
+    /**
+     * Number of input documents dropped as duplicates.
+     */
+    final private int numberOfDuplicatesDropped;
+
+    /**
+     * Number of throttled stored procedure calls, retried by the importer.
+     */
+    final private long numberOfThrottles;
+
     BulkImportResponse(int numberOfDocumentsImported, double totalRequestUnitsConsumed, Duration totalTimeTaken, List<Exception> failures) {
+        this(numberOfDocumentsImported, totalRequestUnitsConsumed, totalTimeTaken, failures, 0);
+    }
+
+    BulkImportResponse(int numberOfDocumentsImported, double totalRequestUnitsConsumed, Duration totalTimeTaken, List<Exception> failures,
+            int numberOfDuplicatesDropped) {
+        this(numberOfDocumentsImported, totalRequestUnitsConsumed, totalTimeTaken, failures, numberOfDuplicatesDropped, 0);
+    }
+
+    BulkImportResponse(int numberOfDocumentsImported, double totalRequestUnitsConsumed, Duration totalTimeTaken, List<Exception> failures,
+            int numberOfDuplicatesDropped, long numberOfThrottles) {
         this.numberOfDocumentsImported = numberOfDocumentsImported;
         this.totalRequestUnitsConsumed = totalRequestUnitsConsumed;
         this.totalTimeTaken = totalTimeTaken;
         this.failures = failures;
+        this.numberOfDuplicatesDropped = numberOfDuplicatesDropped;
+        this.numberOfThrottles = numberOfThrottles;
     }
 
     /**
@@ -66,8 +88,8 @@ public class BulkImportResponse {
     /**
      * Gets number of documents successfully inserted.
      *
-     * <p> If this number is less than actual batch size (meaning some documents failed to get inserted),
-     * use {@link #getErrors()} to get the failure cause.
+     * <p> If this number plus {@link #getNumberOfDuplicatesDropped()} is less than actual batch size
+     * (meaning some documents failed to get inserted), use {@link #getErrors()} to get the failure cause.
      * @return the numberOfDocumentsImported
      */
     public int getNumberOfDocumentsImported() {
@@ -87,4 +109,24 @@ public class BulkImportResponse {
     public Duration getTotalTimeTaken() {
         return totalTimeTaken;
     }
+
+    /**
+     * Gets number of input documents which were not imported because another document with the same id and
+     * partition key was imported instead, as configured by {@link DeduplicationPolicy}.
+     *
+     * @return the numberOfDuplicatesDropped
+     */
+    public int getNumberOfDuplicatesDropped() {
+        return numberOfDuplicatesDropped;
+    }
+
+    /**
+     * Gets number of stored procedure calls which were throttled and retried; a large number relative to the
+     * documents imported means the throughput of the collection limited the import.
+     *
+     * @return the numberOfThrottles
+     */
+    public long getNumberOfThrottles() {
+        return numberOfThrottles;
+    }
 }
@@ -0,0 +1,205 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * A long lived bulk import session accepting an unbounded feed of documents.
+ *
+ * <p> Submitted documents are bucketed by partition key range and merged into mini-batches per partition
+ * (by size or once the linger time elapsed). The per partition {@link CongestionController}s stay warm for the
+ * whole lifetime of the session, so small and frequent submissions do not pay the setup cost of
+ * {@link DocumentBulkImporter#importAll(java.util.Collection, boolean)}.
+ *
+ * <blockquote>
+ * <pre>
+ * {@code
+ * try (BulkImportSession session = importer.openSession(true)) {
+ *     for (String document : documentFeed) {
+ *         ListenableFuture<Void> imported = session.submit(document);
+ *         // acknowledge the source once the document is imported
+ *     }
+ * } // waits for the submitted documents to be imported
+ * }
+ * </pre>
+ * </blockquote>
+ */
+public class BulkImportSession implements AutoCloseable {
+
+    /**
+     * Max time the first document of a mini-batch waits for more documents.
+     */
+    final static Duration LINGER_TIME = Duration.ofMillis(5);
+
+    /**
+     * The max number of bytes submitted but not imported yet, after which {@link #submit(String)} blocks.
+     */
+    final static int MAX_PENDING_BYTES = 256 * 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(BulkImportSession.class);
+
+    private final DocumentBulkImporter importer;
+
+    private final Map<String, MiniBatchAccumulator> accumulators;
+
+    private final Map<String, CongestionController> congestionControllers;
+
+    private final Semaphore pendingBytes;
+
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private final Stopwatch watch = Stopwatch.createStarted();
+
+    private boolean closed = false;
+
+    BulkImportSession(DocumentBulkImporter importer,
+            ListeningExecutorService executor,
+            Semaphore pendingBytes,
+            Map<String, MiniBatchAccumulator> accumulators,
+            Map<String, CongestionController> congestionControllers) {
+        this.importer = importer;
+        this.pendingBytes = pendingBytes;
+        this.accumulators = accumulators;
+        this.congestionControllers = congestionControllers;
+
+        for (String partitionKeyRangeId : accumulators.keySet()) {
+            congestionControllers.get(partitionKeyRangeId).start();
+            accumulators.get(partitionKeyRangeId).start(executor);
+        }
+    }
+
+    /**
+     * Submits a document to be imported.
+     *
+     * <p> Blocks if too many submitted documents are waiting to be imported.
+     * @param document the serialized document
+     * @return future which completes once the document is imported, or fails with the cause of the failure.
+     * A failed document may still have been imported if the failure happened in the middle of its mini-batch, so retry
+     * it in a session with upsert enabled.
+     * @throws InterruptedException if interrupted while waiting for pending documents to get imported
+     */
+    public ListenableFuture<Void> submit(String document) throws InterruptedException {
+        Preconditions.checkNotNull(document, "document cannot be null");
+
+        String partitionKeyRangeId;
+        int documentSize;
+        try {
+            partitionKeyRangeId = importer.getPartitionKeyRangeId(document);
+            documentSize = importer.getDocumentSizeOrThrow(document);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+
+        closeLock.readLock().lock();
+        try {
+            Preconditions.checkState(!closed, "session is closed");
+            pendingBytes.acquire(documentSize);
+            ListenableFuture<Void> imported = accumulators.get(partitionKeyRangeId).add(document, documentSize);
+            importer.invalidateCachedDocumentOnCompletion(imported, document);
+            return imported;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets number of documents successfully imported so far.
+     * @return the number of documents imported
+     */
+    public long getNumberOfDocumentsImported() {
+        return accumulators.values().stream().mapToLong(a -> a.getInsertMetrics().numberOfDocumentsInserted).sum();
+    }
+
+    /**
+     * Gets the request units consumed so far.
+     * @return the total request units consumed
+     */
+    public double getTotalRequestUnitsConsumed() {
+        return accumulators.values().stream().mapToDouble(a -> a.getInsertMetrics().requestUnitsConsumed).sum();
+    }
+
+    /**
+     * Gets the time elapsed since the session was opened.
+     * @return the elapsed time
+     */
+    public Duration getTimeElapsed() {
+        return watch.elapsed();
+    }
+
+    /**
+     * Stops accepting new documents and waits for the already submitted ones to be imported.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        logger.debug("Closing session, draining accumulators");
+
+        List<ListenableFuture<Void>> drainFutures = new ArrayList<>();
+        for (MiniBatchAccumulator accumulator : accumulators.values()) {
+            accumulator.close();
+            drainFutures.add(accumulator.getCompletionFuture());
+        }
+
+        try {
+            Futures.successfulAsList(drainFutures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Failed to drain session", e);
+        } finally {
+            for (Map.Entry<String, CongestionController> entry : congestionControllers.entrySet()) {
+                entry.getValue().stop();
+            }
+            importer.onSessionClosed(this, congestionControllers);
+        }
+
+        watch.stop();
+        logger.debug("Session closed");
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.List;
+
+import com.microsoft.azure.documentdb.DocumentClientException;
+
+/**
+ * Reads one page of the change feed of a partition key range.
+ */
+interface ChangeFeedReader {
+
+    class Changes {
+        private final List<String> documents;
+        private final String continuation;
+        private final double requestCharge;
+        private final long latestLsn;
+        private final long lastDocumentLsn;
+
+        Changes(List<String> documents, String continuation, double requestCharge, long latestLsn, long lastDocumentLsn) {
+            this.documents = documents;
+            this.continuation = continuation;
+            this.requestCharge = requestCharge;
+            this.latestLsn = latestLsn;
+            this.lastDocumentLsn = lastDocumentLsn;
+        }
+
+        /**
+         * @return the changed documents, without their system properties, at most one version per document
+         */
+        List<String> getDocuments() {
+            return documents;
+        }
+
+        /**
+         * @return the continuation to read the changes after this page
+         */
+        String getContinuation() {
+            return continuation;
+        }
+
+        double getRequestCharge() {
+            return requestCharge;
+        }
+
+        /**
+         * @return the latest log sequence number of the partition key range, -1 if unknown
+         */
+        long getLatestLsn() {
+            return latestLsn;
+        }
+
+        /**
+         * @return the log sequence number of the last change of the page, -1 if the page is empty
+         */
+        long getLastDocumentLsn() {
+            return lastDocumentLsn;
+        }
+    }
+
+    /**
+     * @param partitionKeyRangeId the partition key range to read
+     * @param continuation the continuation returned with the previous page, or null to start
+     * @param startFromBeginning whether to start from the beginning rather than from now when there is no continuation
+     * @param pageSize max number of changes of the page
+     * @return the page, with no documents once there are no more changes for now
+     * @throws DocumentClientException if the read fails, including when it is throttled
+     */
+    Changes readChanges(String partitionKeyRangeId, String continuation, boolean startFromBeginning, int pageSize) throws DocumentClientException;
+}
@@ -0,0 +1,561 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.microsoft.azure.documentdb.ChangeFeedOptions;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+
+/**
+ * Keeps a target collection in sync with a source collection by replaying the change feed of the source into
+ * the target through a {@link BulkImportSession} with upsert enabled.
+ *
+ * <p> Every partition key range of the source is polled with its own continuation. The changes of a page are
+ * submitted together, so they are merged with the changes of the other ranges into the same stored procedure
+ * calls, and the continuation is checkpointed once they are all imported. With a checkpoint file a restarted
+ * worker resumes where it stopped; the changes in flight are upserted again, which is harmless.
+ *
+ * <p> A change which fails to get upserted is retried on its own, so it does not fail the changes sharing its
+ * mini-batch, up to 3 attempts (withMaxAttempts). A change which still fails permanently (e.g., too large for the
+ * target or rejected with a 4xx status code) is skipped and handed to the dead letter handler, if any, so the
+ * partition key range keeps syncing; {@link #getNumberOfDocumentsSkipped()} counts them. After other failures
+ * (e.g., the target is unavailable) the range is polled again from its last checkpoint.
+ *
+ * <p> Deletes are not replicated: the change feed only holds the current version of the created and updated
+ * documents, so a document deleted from the source stays in the target.
+ *
+ * <blockquote>
+ * <pre>
+ * {@code
+ * try (DocumentBulkImporter importer = DocumentBulkImporter.builder().from(client, "db", "replica", partitionKey, throughput).build();
+ *         ChangeFeedSyncWorker worker = ChangeFeedSyncWorker.builder()
+ *                 .from(client, "db", "source")
+ *                 .to(importer)
+ *                 .withCheckpointFile(Paths.get("sync-checkpoint.json"))
+ *                 .build()) {
+ *     worker.start();
+ *     // ...
+ *     Map<String, Long> lag = worker.getEstimatedLag();
+ * }
+ * }
+ * </pre>
+ * </blockquote>
+ */
+public class ChangeFeedSyncWorker implements AutoCloseable {
+
+    public static class Builder {
+
+        private DocumentClient client;
+        private String collectionLink;
+        private DocumentBulkImporter importer;
+        private Path checkpointFile;
+        private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private boolean startFromBeginning = true;
+        private Collection<PartitionKeyRange> partitionKeyRanges;
+        private ChangeFeedReader changeFeedReader;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private BiConsumer<String, Exception> deadLetterHandler;
+
+        /**
+         * Use the instance of {@link DocumentClient} to read the change feed of the given collection.
+         *
+         * Throttled reads are retried by the worker, so the retries of the client on throttled requests can be
+         * disabled.
+         * @param client an instance of {@link DocumentClient}
+         * @param databaseName name of the source database
+         * @param collectionName name of the source collection
+         * @return an instance of {@link Builder}
+         */
+        public Builder from(DocumentClient client, String databaseName, String collectionName) {
+            this.client = client;
+            this.collectionLink = String.format("/dbs/%s/colls/%s", databaseName, collectionName);
+            return this;
+        }
+
+        /**
+         * Use the given importer to upsert the changes into the target collection.
+         * @param importer an instance of {@link DocumentBulkImporter} of the target collection
+         * @return an instance of {@link Builder}
+         */
+        public Builder to(DocumentBulkImporter importer) {
+            this.importer = importer;
+            return this;
+        }
+
+        /**
+         * use the given file to checkpoint the continuation of each partition key range.
+         *
+         * If not specified a restarted worker starts over.
+         * @param checkpointFile the checkpoint file
+         * @return {@link Builder}
+         */
+        public Builder withCheckpointFile(Path checkpointFile) {
+            this.checkpointFile = checkpointFile;
+            return this;
+        }
+
+        /**
+         * use the given delay between two polls of a partition key range which had no more changes.
+         *
+         * If not specified will use 1s.
+         * @param pollInterval the delay between two polls
+         * @return {@link Builder}
+         */
+        public Builder withPollInterval(Duration pollInterval) {
+            Preconditions.checkNotNull(pollInterval, "pollInterval cannot be null");
+            Preconditions.checkArgument(!pollInterval.isNegative(), "pollInterval cannot be negative");
+
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        /**
+         * use the given max number of changes per read.
+         *
+         * If not specified will use 1000.
+         * @param pageSize max number of changes per read
+         * @return {@link Builder}
+         */
+        public Builder withPageSize(int pageSize) {
+            Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * use the given setting to replay the whole change feed (the current version of every document) or only
+         * the changes made after the worker started, for partition key ranges which have no checkpoint.
+         *
+         * If not specified the change feed is replayed from the beginning.
+         * @param startFromBeginning whether to start from the beginning of the change feed
+         * @return {@link Builder}
+         */
+        public Builder withStartFromBeginning(boolean startFromBeginning) {
+            this.startFromBeginning = startFromBeginning;
+            return this;
+        }
+
+        /**
+         * use the given max number of attempts to upsert a change before skipping it, if it failed permanently.
+         *
+         * If not specified will use 3.
+         * @param maxAttempts max number of attempts to upsert a change
+         * @return {@link Builder}
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * use the given handler to receive the changes skipped after failing permanently, with their last failure
+         * (e.g., to write them to a file and upsert them once fixed). The handler is called from the polling threads.
+         *
+         * If not specified the skipped changes are only logged and counted.
+         * @param deadLetterHandler the handler of the skipped changes
+         * @return {@link Builder}
+         */
+        public Builder withDeadLetterHandler(BiConsumer<String, Exception> deadLetterHandler) {
+            this.deadLetterHandler = deadLetterHandler;
+            return this;
+        }
+
+        /**
+         * use the given partition key ranges instead of reading them from the collection.
+         *
+         * @param partitionKeyRanges the complete set of partition key ranges of the source collection
+         * @return {@link Builder}
+         */
+        Builder withPartitionKeyRanges(Collection<PartitionKeyRange> partitionKeyRanges) {
+            this.partitionKeyRanges = partitionKeyRanges;
+            return this;
+        }
+
+        /**
+         * use the given reader instead of reading the change feed with the client.
+         *
+         * @param changeFeedReader an instance of {@link ChangeFeedReader}
+         * @return {@link Builder}
+         */
+        Builder withChangeFeedReader(ChangeFeedReader changeFeedReader) {
+            this.changeFeedReader = changeFeedReader;
+            return this;
+        }
+
+        /**
+         * Instantiates {@link ChangeFeedSyncWorker} given the configured {@link Builder}.
+         *
+         * @return the new worker, not started yet
+         * @throws IOException if the checkpoint file cannot be read
+         */
+        public ChangeFeedSyncWorker build() throws IOException {
+            Preconditions.checkNotNull(client, "client cannot be null");
+            Preconditions.checkNotNull(importer, "importer cannot be null");
+
+            return new ChangeFeedSyncWorker(this);
+        }
+
+        private Builder() {}
+    }
+
+    /**
+     * Creates a new {@link ChangeFeedSyncWorker.Builder} instance
+     * @return an instance of {@link ChangeFeedSyncWorker.Builder}
+     */
+    public static ChangeFeedSyncWorker.Builder builder() {
+        return new ChangeFeedSyncWorker.Builder();
+    }
+
+    private final static Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final static int DEFAULT_PAGE_SIZE = 1000;
+
+    private final static int MAX_NUMBER_OF_THREADS = 20;
+
+    private final static int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Min time between two writes of the checkpoint file.
+     */
+    private final static Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(1);
+
+    private final Logger logger = LoggerFactory.getLogger(ChangeFeedSyncWorker.class);
+
+    private final DocumentClient client;
+
+    private final String collectionLink;
+
+    private final DocumentBulkImporter importer;
+
+    private final Duration pollInterval;
+
+    private final int pageSize;
+
+    private final boolean startFromBeginning;
+
+    private final ChangeFeedReader changeFeedReader;
+
+    private final int maxAttempts;
+
+    private final BiConsumer<String, Exception> deadLetterHandler;
+
+    private final ExportCheckpoint checkpoint;
+
+    private final List<String> partitionKeyRangeIds;
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Latest log sequence number of each partition key range minus the one of its last synced change.
+     */
+    private final Map<String, Long> estimatedLag = new ConcurrentHashMap<>();
+
+    private final AtomicLong numberOfDocumentsSynced = new AtomicLong();
+
+    private final AtomicLong numberOfDocumentsSkipped = new AtomicLong();
+
+    private final DoubleAdder requestUnitsConsumed = new DoubleAdder();
+
+    private BulkImportSession session;
+
+    private ChangeFeedSyncWorker(Builder builder) throws IOException {
+        this.client = builder.client;
+        this.collectionLink = builder.collectionLink;
+        this.importer = builder.importer;
+        this.pollInterval = builder.pollInterval;
+        this.pageSize = builder.pageSize;
+        this.startFromBeginning = builder.startFromBeginning;
+        this.changeFeedReader = builder.changeFeedReader != null ? builder.changeFeedReader : this::readChangesFromClient;
+        this.maxAttempts = builder.maxAttempts;
+        this.deadLetterHandler = builder.deadLetterHandler;
+        this.checkpoint = ExportCheckpoint.load(builder.checkpointFile, CHECKPOINT_INTERVAL);
+        this.partitionKeyRangeIds = DocumentBulkImporter.getPartitionKeyRangeIds(
+                DocumentBulkImporter.getCollectionRoutingMap(client, collectionLink, builder.partitionKeyRanges));
+
+        for (String partitionKeyRangeId : checkpoint.getRanges().keySet()) {
+            if (!partitionKeyRangeIds.contains(partitionKeyRangeId)) {
+                throw new IllegalStateException(String.format(
+                        "Partition key range %s of the checkpoint no longer exists, the source collection was repartitioned", partitionKeyRangeId));
+            }
+        }
+
+        this.executor = Executors.newScheduledThreadPool(Math.min(MAX_NUMBER_OF_THREADS, partitionKeyRangeIds.size()));
+    }
+
+    /**
+     * Starts polling the change feed of every partition key range of the source.
+     */
+    public synchronized void start() {
+        Preconditions.checkState(session == null, "worker already started");
+
+        session = importer.openSession(true);
+        for (String partitionKeyRangeId : partitionKeyRangeIds) {
+            executor.scheduleWithFixedDelay(() -> syncRange(partitionKeyRangeId), 0, pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Gets the estimated lag of each partition key range of the source: the number of log sequence numbers
+     * between its latest change and its last synced change, 0 once all the changes are synced. A range not polled
+     * yet has no lag.
+     * @return the estimated lag by partition key range id
+     */
+    public Map<String, Long> getEstimatedLag() {
+        return Collections.unmodifiableMap(new TreeMap<>(estimatedLag));
+    }
+
+    /**
+     * Gets number of changed documents upserted into the target so far.
+     * @return the numberOfDocumentsSynced
+     */
+    public long getNumberOfDocumentsSynced() {
+        return numberOfDocumentsSynced.get();
+    }
+
+    /**
+     * Gets number of changed documents skipped so far, as they failed permanently to get upserted into the target.
+     * @return the numberOfDocumentsSkipped
+     */
+    public long getNumberOfDocumentsSkipped() {
+        return numberOfDocumentsSkipped.get();
+    }
+
+    /**
+     * Gets the request units consumed reading the change feed so far.
+     * @return the request units consumed
+     */
+    public double getTotalRequestUnitsConsumed() {
+        return requestUnitsConsumed.sum();
+    }
+
+    /**
+     * Stops polling, waits for the submitted changes to be upserted and writes the checkpoint.
+     * It is responsibility of the caller to close the {@link DocumentBulkImporter} and the {@link DocumentClient}.
+     */
+    @Override
+    public synchronized void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.error("some tasks did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (session != null) {
+            session.close();
+        }
+
+        try {
+            checkpoint.write();
+        } catch (IOException e) {
+            logger.error("Failed to write the checkpoint", e);
+        }
+    }
+
+    /**
+     * Syncs the changes of the partition key range until there are no more, then returns to be polled again.
+     */
+    private void syncRange(String partitionKeyRangeId) {
+        try {
+            ExportCheckpoint.RangeState state = checkpoint.get(partitionKeyRangeId);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                ChangeFeedReader.Changes changes;
+                try {
+                    changes = changeFeedReader.readChanges(partitionKeyRangeId, state.continuation, startFromBeginning, pageSize);
+                } catch (DocumentClientException e) {
+                    if (ExceptionUtils.isThrottled(e)) {
+                        Thread.sleep(e.getRetryAfterInMilliseconds());
+                        continue;
+                    }
+                    throw e;
+                }
+                requestUnitsConsumed.add(changes.getRequestCharge());
+
+                if (!changes.getDocuments().isEmpty()) {
+                    int numberOfDocumentsUpserted = upsert(partitionKeyRangeId, changes.getDocuments());
+                    numberOfDocumentsSynced.addAndGet(numberOfDocumentsUpserted);
+                    state.numberOfDocuments += numberOfDocumentsUpserted;
+                }
+
+                if (changes.getContinuation() != null) {
+                    state.continuation = changes.getContinuation();
+                }
+                checkpoint.update(partitionKeyRangeId, state);
+
+                if (changes.getDocuments().isEmpty()) {
+                    estimatedLag.put(partitionKeyRangeId, 0L);
+                    return;
+                }
+
+                if (changes.getLatestLsn() >= 0 && changes.getLastDocumentLsn() >= 0) {
+                    estimatedLag.put(partitionKeyRangeId, Math.max(0, changes.getLatestLsn() - changes.getLastDocumentLsn()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // polled again after the poll interval, from the last checkpointed continuation
+            logger.error("Failed to sync partition key range {}", partitionKeyRangeId, e);
+        }
+    }
+
+    /**
+     * Upserts the changes through the session. A change which fails is retried alone, and skipped once it failed
+     * {@link #maxAttempts} times if its last failure is permanent.
+     * @return the number of changes upserted
+     * @throws Exception the failure of a change which is not permanent, for the page to be synced again
+     */
+    private int upsert(String partitionKeyRangeId, List<String> documents) throws Exception {
+        List<ListenableFuture<Void>> upserted = new ArrayList<>(documents.size());
+        for (String document : documents) {
+            upserted.add(session.submit(document));
+        }
+
+        int numberOfDocumentsSkipped = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            Exception failure = getFailure(upserted.get(i));
+            for (int attempt = 2; failure != null && attempt <= maxAttempts; attempt++) {
+                logger.debug("Retrying a change of partition key range {}, attempt {}", partitionKeyRangeId, attempt, failure);
+                failure = getFailure(session.submit(documents.get(i)));
+            }
+
+            if (failure == null) {
+                continue;
+            }
+            if (!isPermanent(failure)) {
+                throw failure;
+            }
+
+            logger.warn("Skipping a change of partition key range {} which failed {} times", partitionKeyRangeId, maxAttempts, failure);
+            numberOfDocumentsSkipped++;
+            this.numberOfDocumentsSkipped.incrementAndGet();
+            if (deadLetterHandler != null) {
+                deadLetterHandler.accept(documents.get(i), failure);
+            }
+        }
+
+        return documents.size() - numberOfDocumentsSkipped;
+    }
+
+    /**
+     * @return the cause of the failure of the upsert, null if it succeeded
+     */
+    private static Exception getFailure(ListenableFuture<Void> upserted) throws InterruptedException {
+        try {
+            upserted.get();
+            return null;
+        } catch (ExecutionException e) {
+            return ExceptionUtils.toException(e.getCause());
+        }
+    }
+
+    /**
+     * @return whether retrying the change later would fail the same way: it was rejected by the session (e.g., too
+     * large or without a valid partition key), or by the service with a 4xx status code other than a timeout, a gone
+     * partition or a throttle
+     */
+    static boolean isPermanent(Exception failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof DocumentClientException) {
+                DocumentClientException e = (DocumentClientException) t;
+                return e.getStatusCode() >= 400 && e.getStatusCode() < 500
+                        && !ExceptionUtils.isThrottled(e) && !ExceptionUtils.isTimedOut(e) && !ExceptionUtils.isGone(e);
+            }
+        }
+        return failure instanceof IllegalArgumentException || failure instanceof UnsupportedOperationException;
+    }
+
+    private ChangeFeedReader.Changes readChangesFromClient(String partitionKeyRangeId, String continuation, boolean startFromBeginning,
+            int pageSize) throws DocumentClientException {
+        ChangeFeedOptions options = new ChangeFeedOptions();
+        options.setPartitionKeyRangeId(partitionKeyRangeId);
+        options.setPageSize(pageSize);
+        options.setRequestContinuation(continuation);
+        options.setStartFromBeginning(startFromBeginning);
+
+        FeedResponse<Document> response = client.queryDocumentChangeFeed(collectionLink, options);
+        List<Document> documents = response.getQueryIterable().fetchNextBlock();
+
+        // a page may hold several versions of a document, only its last one is upserted
+        Map<String, String> documentsByResourceId = new LinkedHashMap<>();
+        long lastDocumentLsn = -1;
+        if (documents != null) {
+            for (Document document : documents) {
+                Long lsn = document.getLong("_lsn");
+                if (lsn != null) {
+                    lastDocumentLsn = Math.max(lastDocumentLsn, lsn);
+                }
+
+                String resourceId = document.getResourceId();
+                DocumentBulkExporter.SYSTEM_PROPERTIES.forEach(document::remove);
+                document.remove("_lsn");
+
+                documentsByResourceId.remove(resourceId);
+                documentsByResourceId.put(resourceId, document.toJson());
+            }
+        }
+
+        String latestLsn = response.getResponseHeaders().get(HttpConstants.HttpHeaders.LSN);
+
+        return new ChangeFeedReader.Changes(new ArrayList<>(documentsByResourceId.values()),
+                response.getResponseContinuation(),
+                response.getRequestCharge(),
+                latestLsn != null ? Long.parseLong(latestLsn) : -1,
+                lastDocumentLsn);
+    }
+}
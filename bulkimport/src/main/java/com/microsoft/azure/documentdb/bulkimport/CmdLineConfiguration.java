@@ -1,5 +1,8 @@
 package com.microsoft.azure.documentdb.bulkimport;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
@@ -9,16 +12,16 @@ import com.microsoft.azure.documentdb.ConsistencyLevel;
 
 class CmdLineConfiguration {
 
-    @Parameter(names = "-serviceEndpoint", description = "Service Endpoint", required = true)
+    @Parameter(names = "-serviceEndpoint", description = "Service Endpoint, required unless -offline")
     private String serviceEndpoint;
 
-    @Parameter(names = "-masterKey", description = "Master Key", required = true)
+    @Parameter(names = "-masterKey", description = "Master Key, required unless -offline")
     private String masterKey;
 
-    @Parameter(names = "-databaseId", description = "Database ID", required = true)
+    @Parameter(names = "-databaseId", description = "Database ID, required unless -offline")
     private String databaseId;
 
-    @Parameter(names = "-collectionId", description = "Collection ID", required = true)
+    @Parameter(names = "-collectionId", description = "Collection ID, required unless -offline")
     private String collectionId;
 
     @Parameter(names = "-maxConnectionPoolSize", description = "Max Connection Pool Size")
@@ -36,6 +39,95 @@ class CmdLineConfiguration {
     @Parameter(names = "-numberOfCheckpoints", description = "Number of checkpoints.")
     private int numberOfCheckpoints = 10;
 
+    @Parameter(names = "-inputFile", description = "File of newline delimited JSON documents or of a JSON array of documents, optionally gzip compressed."
+            + " Imported checkpoint by checkpoint until the end of the file, instead of generated documents.")
+    private String inputFile;
+
+    @Parameter(names = "-inputDirectory", description = "Directory of input files, see -inputFile. Several files are imported at once.")
+    private String inputDirectory;
+
+    @Parameter(names = "-inputGlob", description = "Glob the names of the files in -inputDirectory must match.")
+    private String inputGlob = "*";
+
+    @Parameter(names = "-numberOfFileReaders", description = "Number of files of -inputDirectory read at once.")
+    private int numberOfFileReaders = 2;
+
+    @Parameter(names = "-manifestFile", description = "File recording the imported files of -inputDirectory, which are skipped when restarting."
+            + " Defaults to bulkimport-manifest.txt in -inputDirectory.")
+    private String manifestFile;
+
+    @Parameter(names = "-upsert", description = "Upsert the documents instead of inserting them, overwriting the existing ones."
+            + " Restart an interrupted -inputDirectory import with it, as the documents of the file in flight may already be imported.")
+    private boolean upsert = false;
+
+    @Parameter(names = "-exportDirectory", description = "Export the collection to this directory instead of importing, one newline delimited JSON file per partition key range.")
+    private String exportDirectory;
+
+    @Parameter(names = "-exportCheckpointFile", description = "File recording the progress of -exportDirectory, from which an interrupted export resumes."
+            + " Defaults to bulkexport-checkpoint.json in -exportDirectory.")
+    private String exportCheckpointFile;
+
+    @Parameter(names = "-resultFile", description = "Write the throughput, request units, errors, throttles and client CPU and GC of the import or export"
+            + " to this JSON file, or append them to this CSV file if it ends with .csv.")
+    private String resultFile;
+
+    @Parameter(names = "-offHeapStaging", description = "Stage the documents of each checkpoint in direct memory while reading"
+            + " (or generating) them, instead of holding them on the heap.")
+    private boolean offHeapStaging = false;
+
+    @Parameter(names = "-partitionKeyDistribution", description = "Distribution of the partition key values of the generated documents:"
+            + " UNIQUE (a value per document), UNIFORM, ZIPFIAN or HOT_KEY among -partitionKeyCount values.")
+    private DocumentGenerator.KeyDistribution partitionKeyDistribution = DocumentGenerator.KeyDistribution.UNIQUE;
+
+    @Parameter(names = "-partitionKeyCount", description = "Number of distinct partition key values of the generated documents.")
+    private int partitionKeyCount = 10000;
+
+    @Parameter(names = "-zipfianExponent", description = "Exponent of the ZIPFIAN -partitionKeyDistribution, the higher the more skewed.")
+    private double zipfianExponent = 1;
+
+    @Parameter(names = "-hotKeyFraction", description = "Fraction of the generated documents with the hot key of the HOT_KEY -partitionKeyDistribution.")
+    private double hotKeyFraction = 0.5;
+
+    @Parameter(names = "-partitionKeyType", description = "JSON type of the partition key values of the generated documents: STRING, NUMBER, BOOLEAN or NULL.")
+    private DocumentGenerator.KeyType partitionKeyType = DocumentGenerator.KeyType.STRING;
+
+    @Parameter(names = "-documentShape", description = "Structure of the generated documents: FLAT (ten string fields) or NESTED (nested objects and arrays).")
+    private DocumentGenerator.Shape documentShape = DocumentGenerator.Shape.FLAT;
+
+    @Parameter(names = "-documentSize", description = "Size in bytes of the generated documents.")
+    private int documentSize = 1024;
+
+    @Parameter(names = "-documentSizeMax", description = "Maximum size in bytes of the generated documents, drawn uniformly from -documentSize. Defaults to -documentSize.")
+    private int documentSizeMax = 0;
+
+    @Parameter(names = "-sweep", description = "Import -numberOfDocumentsForEachCheckpoint generated documents for every combination of the -sweep*"
+            + " settings and print the docs/s, RU/s and RU per document of each.")
+    private boolean sweep = false;
+
+    @Parameter(names = "-sweepMaxMiniBatchSizes", description = "Max mini batch sizes in bytes of -sweep.")
+    private List<Integer> sweepMaxMiniBatchSizes = Arrays.asList(100 * 1024, 200 * 1024);
+
+    @Parameter(names = "-sweepStartingConcurrencies", description = "Starting degrees of concurrency per partition of -sweep.")
+    private List<Integer> sweepStartingConcurrencies = Arrays.asList(3, 10);
+
+    @Parameter(names = "-sweepDocumentSizes", description = "Document sizes in bytes of -sweep.")
+    private List<Integer> sweepDocumentSizes = Arrays.asList(1024);
+
+    @Parameter(names = "-sweepKeySkews", description = "Zipf exponents of the -partitionKeyCount partition key values of -sweep, 0 for uniform.")
+    private List<Double> sweepKeySkews = Arrays.asList(0.0, 1.0);
+
+    @Parameter(names = "-sweepPartitionCounts", description = "Numbers of partitions of the simulated collection of an -offline -sweep.")
+    private List<Integer> sweepPartitionCounts = Arrays.asList(10);
+
+    @Parameter(names = "-offline", description = "Run -sweep against a simulated collection instead of an account.")
+    private boolean offline = false;
+
+    @Parameter(names = "-offlineThroughput", description = "Throughput in RU/s of the simulated collection.")
+    private int offlineThroughput = 100000;
+
+    @Parameter(names = "-offlineLatencyMillis", description = "Round trip latency of the stored procedure calls of the simulated collection.")
+    private int offlineLatencyMillis = 5;
+
     @Parameter(names = {"-h", "-help", "--help"}, description = "Help", help = true)
     private boolean help = false;
 
@@ -47,6 +139,114 @@ class CmdLineConfiguration {
         return numberOfDocumentsForEachCheckpoint;
     }
 
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getInputDirectory() {
+        return inputDirectory;
+    }
+
+    public String getInputGlob() {
+        return inputGlob;
+    }
+
+    public int getNumberOfFileReaders() {
+        return numberOfFileReaders;
+    }
+
+    public String getManifestFile() {
+        return manifestFile;
+    }
+
+    public boolean isUpsert() {
+        return upsert;
+    }
+
+    public String getExportDirectory() {
+        return exportDirectory;
+    }
+
+    public String getExportCheckpointFile() {
+        return exportCheckpointFile;
+    }
+
+    public String getResultFile() {
+        return resultFile;
+    }
+
+    public DocumentGenerator.KeyDistribution getPartitionKeyDistribution() {
+        return partitionKeyDistribution;
+    }
+
+    public int getPartitionKeyCount() {
+        return partitionKeyCount;
+    }
+
+    public double getZipfianExponent() {
+        return zipfianExponent;
+    }
+
+    public double getHotKeyFraction() {
+        return hotKeyFraction;
+    }
+
+    public DocumentGenerator.KeyType getPartitionKeyType() {
+        return partitionKeyType;
+    }
+
+    public DocumentGenerator.Shape getDocumentShape() {
+        return documentShape;
+    }
+
+    public int getDocumentSize() {
+        return documentSize;
+    }
+
+    public int getDocumentSizeMax() {
+        return documentSizeMax > 0 ? documentSizeMax : documentSize;
+    }
+
+    public boolean isSweep() {
+        return sweep;
+    }
+
+    public List<Integer> getSweepMaxMiniBatchSizes() {
+        return sweepMaxMiniBatchSizes;
+    }
+
+    public List<Integer> getSweepStartingConcurrencies() {
+        return sweepStartingConcurrencies;
+    }
+
+    public List<Integer> getSweepDocumentSizes() {
+        return sweepDocumentSizes;
+    }
+
+    public List<Double> getSweepKeySkews() {
+        return sweepKeySkews;
+    }
+
+    public List<Integer> getSweepPartitionCounts() {
+        return sweepPartitionCounts;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public int getOfflineThroughput() {
+        return offlineThroughput;
+    }
+
+    public int getOfflineLatencyMillis() {
+        return offlineLatencyMillis;
+    }
+
+    public boolean isOffHeapStaging() {
+        return offHeapStaging;
+    }
+
     public String getServiceEndpoint() {
         return serviceEndpoint;
     }
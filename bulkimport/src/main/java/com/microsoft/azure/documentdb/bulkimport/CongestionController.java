@@ -82,7 +82,12 @@ class CongestionController {
     /**
      * This determines how often the code will sample the InsertMetrics and check to see if the degree of concurrency needs to be changed.
      */
-    private final Duration samplePeriod = Duration.ofSeconds(1);
+    private final Duration samplePeriod;
+
+    /**
+     * The default {@link #samplePeriod}.
+     */
+    static final Duration DEFAULT_SAMPLE_PERIOD = Duration.ofSeconds(1);
 
     /**
      * The {@link BatchInserter} that exposes a stream of {@link Callable} that insert document batches and returns an {@link InsertMetrics}
@@ -140,6 +145,11 @@ class CongestionController {
 
     public CongestionController(ListeningExecutorService executor, int partitionThroughput, String partitionKeyRangeId,
             BatchInserter batchInserter, Integer startingDegreeOfConcurrency) {
+        this(executor, partitionThroughput, partitionKeyRangeId, batchInserter, startingDegreeOfConcurrency, DEFAULT_SAMPLE_PERIOD);
+    }
+
+    CongestionController(ListeningExecutorService executor, int partitionThroughput, String partitionKeyRangeId,
+            BatchInserter batchInserter, Integer startingDegreeOfConcurrency, Duration samplePeriod) {
         this.partitionKeyRangeId = partitionKeyRangeId;
         this.batchInserter = batchInserter;
 
@@ -150,6 +160,7 @@ class CongestionController {
         this.aggregatedInsertMetrics = new InsertMetrics();
         this.executor = executor;
         this.partitionThroughput = partitionThroughput;
+        this.samplePeriod = samplePeriod;
     }
 
     private void addFailure(Exception e) {
@@ -176,8 +187,8 @@ class CongestionController {
                 while (isRunning()) {
                     try {
 
-                        logger.debug("pki {} goes to sleep for {} seconds. availabel semaphore permits {}, current degree of parallelism {}",
-                                partitionKeyRangeId, samplePeriod.getSeconds(), throttleSemaphore.availablePermits(), degreeOfConcurrency);
+                        logger.debug("pki {} goes to sleep for {} milli seconds. availabel semaphore permits {}, current degree of parallelism {}",
+                                partitionKeyRangeId, samplePeriod.toMillis(), throttleSemaphore.availablePermits(), degreeOfConcurrency);
                         Thread.sleep(samplePeriod.toMillis());
                         logger.debug("pki {} wakes up", partitionKeyRangeId);
 
@@ -206,8 +217,10 @@ class CongestionController {
 
                         logger.debug("pki {} aggregating inserts metrics", partitionKeyRangeId);
 
+                        double ruPerSecond = insertMetricsSample.requestUnitsConsumed * 1000 / samplePeriod.toMillis();
+
                         if (insertMetricsSample.numberOfThrottles == 0) {
-                            if ((insertMetricsSample.requestUnitsConsumed < THROUGHPUT_THRESHOLD * partitionThroughput) &&
+                            if ((ruPerSecond < THROUGHPUT_THRESHOLD * partitionThroughput) &&
                                     degreeOfConcurrency + ADDITIVE_INCREASE_FACTOR <= MAX_DEGREE_OF_CONCURRENCY) {
                                 // We aren't getting throttles, so we should bump of the degree of concurrency (AIMD).
                                 logger.debug("pki {} increasing degree of prallelism and releasing semaphore", partitionKeyRangeId);
@@ -219,7 +232,6 @@ class CongestionController {
                             }
                         }
 
-                        double ruPerSecond = insertMetricsSample.requestUnitsConsumed / samplePeriod.getSeconds();
                         documentsInsertedSoFar += insertMetricsSample.numberOfDocumentsInserted;
 
                         logger.debug("pki {} : Inserted {} docs in {} milli seconds at {} RU/s with {} tasks."
@@ -347,6 +359,63 @@ class CongestionController {
         return completionFuture;
     }
 
+    /**
+     * Starts the congestion control loop of a long lived controller which is fed through {@link #submit(Callable)}
+     * instead of draining a {@link BatchInserter} at once. The loop keeps running until {@link #stop()} is invoked.
+     * @return future which completes when the congestion control loop exits
+     */
+    public ListenableFuture<Void> start() {
+        logger.debug("pki {} starting long lived congestion control", partitionKeyRangeId);
+        return executor.submit(congestionControlTask());
+    }
+
+    /**
+     * Submits a single mini-batch task, blocking while the current degree of concurrency is exhausted.
+     *
+     * <p> A failed task only fails the returned future, the controller keeps accepting new tasks.
+     * @param task mini-batch import task
+     * @return future of the task {@link InsertMetrics}
+     * @throws InterruptedException if interrupted while waiting for the degree of concurrency
+     */
+    public ListenableFuture<InsertMetrics> submit(Callable<InsertMetrics> task) throws InterruptedException {
+        this.throttleSemaphore.acquire();
+
+        if (!isRunning()) {
+            this.throttleSemaphore.release();
+            return Futures.immediateFailedFuture(new IllegalStateException(
+                    String.format("pki %s congestion controller is not running", partitionKeyRangeId)));
+        }
+
+        ListenableFuture<InsertMetrics> insertMetricsFuture = executor.submit(task);
+
+        FutureCallback<InsertMetrics> aggregateMetricsReleaseSemaphoreCallback = new FutureCallback<InsertMetrics>() {
+
+            @Override
+            public void onSuccess(InsertMetrics result) {
+                synchronized (aggregateLock) {
+                    aggregatedInsertMetrics = InsertMetrics.sum(aggregatedInsertMetrics, result);
+                }
+                throttleSemaphore.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                logger.warn("pki {} mini-batch failed, releasing semaphore", partitionKeyRangeId, t);
+                throttleSemaphore.release();
+            }
+        };
+
+        Futures.addCallback(insertMetricsFuture, aggregateMetricsReleaseSemaphoreCallback, MoreExecutors.directExecutor());
+        return insertMetricsFuture;
+    }
+
+    /**
+     * Stops the congestion control loop of a long lived controller.
+     */
+    public void stop() {
+        setState(State.Completed);
+    }
+
     public void setState(State state) {
         logger.debug("pki {} state set to {}", partitionKeyRangeId, state);
         this.state = state;
@@ -0,0 +1,700 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads the rows of a CSV file (RFC 4180: quoted fields, doubled quotes, line breaks in quoted fields) as JSON
+ * documents, given a mapping from the header columns to JSON paths.
+ *
+ * <p> Rows are parsed as a stream into reused buffers and written straight to JSON, so the only allocation per
+ * row is the document itself. {@link #readBatch(int, List)} also returns the value of the partition key column,
+ * to be passed to {@link DocumentBulkImporter#importAll(List, List, boolean)} which then does not parse the
+ * documents again.
+ *
+ * <blockquote>
+ * <pre>
+ * {@code
+ * try (CsvDocumentSource source = CsvDocumentSource.builder(Paths.get("orders.csv"))
+ *         .withColumn("order_id", "/id", ColumnType.STRING)
+ *         .withColumn("customer_id", "/customer/id", ColumnType.STRING)
+ *         .withColumn("amount", "/amount", ColumnType.NUMBER)
+ *         .withPartitionKeyColumn("customer_id")
+ *         .build()) {
+ *     List<Object> partitionKeyValues = new ArrayList<>();
+ *     List<String> documents;
+ *     while (!(documents = source.readBatch(500000, partitionKeyValues)).isEmpty()) {
+ *         importer.importAll(documents, partitionKeyValues, false);
+ *         partitionKeyValues.clear();
+ *     }
+ * }
+ * }
+ * </pre>
+ * </blockquote>
+ */
+public class CsvDocumentSource implements DocumentSource {
+
+    /**
+     * How the text of a column is written to JSON. An empty field is written as null, except for {@link #STRING}.
+     */
+    public enum ColumnType {
+        /**
+         * A JSON string, as is.
+         */
+        STRING,
+
+        /**
+         * A JSON number without fraction or exponent.
+         */
+        INTEGER,
+
+        /**
+         * A JSON number.
+         */
+        NUMBER,
+
+        /**
+         * A JSON boolean, from true/false (case insensitive) or 1/0.
+         */
+        BOOLEAN
+    }
+
+    public static class Builder {
+        private final Path file;
+        private char delimiter = ',';
+        private char quote = '"';
+        private final Map<String, ColumnMapping> columns = new LinkedHashMap<>();
+        private String partitionKeyColumn;
+
+        private Builder(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * use the given field delimiter.
+         *
+         * If not specified will use ','.
+         * @param delimiter the field delimiter
+         * @return {@link Builder}
+         */
+        public Builder withDelimiter(char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * use the given quote character.
+         *
+         * If not specified will use '"'.
+         * @param quote the quote character
+         * @return {@link Builder}
+         */
+        public Builder withQuote(char quote) {
+            this.quote = quote;
+            return this;
+        }
+
+        /**
+         * maps the given column of the header to the given JSON path of the documents.
+         *
+         * Columns which are not mapped are ignored.
+         * @param column name of the column in the header
+         * @param jsonPath path of the property in the documents, e.g. "/address/city"
+         * @param type how the column is written to JSON
+         * @return {@link Builder}
+         */
+        public Builder withColumn(String column, String jsonPath, ColumnType type) {
+            Preconditions.checkNotNull(column, "column cannot be null");
+            Preconditions.checkArgument(jsonPath != null && jsonPath.startsWith("/") && jsonPath.length() > 1, "jsonPath must start with /");
+            Preconditions.checkNotNull(type, "type cannot be null");
+
+            columns.put(column, new ColumnMapping(column, jsonPath.substring(1).split("/"), type));
+            return this;
+        }
+
+        /**
+         * use the given mapped column as partition key value. Its JSON path has to be the partition key path of
+         * the collection.
+         * @param column name of a mapped column
+         * @return {@link Builder}
+         */
+        public Builder withPartitionKeyColumn(String column) {
+            this.partitionKeyColumn = column;
+            return this;
+        }
+
+        /**
+         * Opens the file and reads its header.
+         * @return a new {@link CsvDocumentSource}
+         * @throws IOException if the file cannot be read or the header misses a mapped column
+         */
+        public CsvDocumentSource build() throws IOException {
+            Preconditions.checkArgument(!columns.isEmpty(), "no column mapped");
+            Preconditions.checkArgument(partitionKeyColumn == null || columns.containsKey(partitionKeyColumn),
+                    "the partition key column is not mapped");
+            Preconditions.checkArgument(delimiter != quote && delimiter != '\n' && delimiter != '\r', "invalid delimiter");
+
+            return new CsvDocumentSource(this);
+        }
+    }
+
+    /**
+     * @param file the CSV file, with a header row, in UTF-8
+     * @return a new {@link Builder}
+     */
+    public static Builder builder(Path file) {
+        return new Builder(file);
+    }
+
+    private static class ColumnMapping {
+        final String column;
+        final String[] path;
+        final ColumnType type;
+        int index;
+
+        ColumnMapping(String column, String[] path, ColumnType type) {
+            this.column = column;
+            this.path = path;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A property of the documents: either an object (with children) or a mapped column.
+     */
+    private static class JsonNode {
+        /**
+         * The quoted name followed by ':', written as is.
+         */
+        final String key;
+        final Map<String, JsonNode> children = new LinkedHashMap<>();
+        ColumnMapping column;
+
+        JsonNode(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Reader reader;
+
+    private final char delimiter;
+
+    private final char quote;
+
+    private final JsonNode root = new JsonNode(null);
+
+    private final ColumnMapping partitionKeyColumn;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int bufferPosition;
+
+    private int bufferLimit;
+
+    /**
+     * The fields of the current row, concatenated.
+     */
+    private char[] row = new char[1024];
+
+    private int rowLength;
+
+    private int[] fieldStarts = new int[64];
+
+    private int[] fieldEnds = new int[64];
+
+    private boolean[] fieldQuoted = new boolean[64];
+
+    private int numberOfFields;
+
+    private long line = 1;
+
+    /**
+     * First line of the current row, for error messages.
+     */
+    private long rowLine;
+
+    private final StringBuilder document = new StringBuilder(1024);
+
+    private CsvDocumentSource(Builder builder) throws IOException {
+        this.delimiter = builder.delimiter;
+        this.quote = builder.quote;
+        this.reader = new InputStreamReader(Files.newInputStream(builder.file), StandardCharsets.UTF_8);
+
+        try {
+            if (!readRow()) {
+                throw new IOException("missing header");
+            }
+
+            Map<String, Integer> header = new HashMap<>();
+            for (int i = 0; i < numberOfFields; i++) {
+                String name = field(i);
+                if (i == 0 && name.startsWith("\uFEFF")) {
+                    name = name.substring(1);
+                }
+                header.put(name, i);
+            }
+
+            for (ColumnMapping column : builder.columns.values()) {
+                Integer index = header.get(column.column);
+                if (index == null) {
+                    throw new IOException(String.format("column %s is not in the header", column.column));
+                }
+                column.index = index;
+                addToTree(column);
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        this.partitionKeyColumn = builder.partitionKeyColumn != null ? builder.columns.get(builder.partitionKeyColumn) : null;
+    }
+
+    private void addToTree(ColumnMapping column) {
+        JsonNode node = root;
+        for (int i = 0; i < column.path.length; i++) {
+            if (node.column != null) {
+                throw new IllegalArgumentException(String.format("column %s is nested in column %s", column.column, node.column.column));
+            }
+            node = node.children.computeIfAbsent(column.path[i], name -> new JsonNode(jsonKey(name)));
+        }
+
+        if (node.column != null || !node.children.isEmpty()) {
+            throw new IllegalArgumentException(String.format("path of column %s is already mapped", column.column));
+        }
+        node.column = column;
+    }
+
+    @Override
+    public List<String> readBatch(int maxNumberOfDocuments) throws IOException {
+        List<String> batch = new ArrayList<>(maxNumberOfDocuments);
+        while (batch.size() < maxNumberOfDocuments && readRow()) {
+            batch.add(writeDocument());
+        }
+        return batch;
+    }
+
+    /**
+     * Reads the next documents, in file order, and appends the value of their partition key column to the given
+     * list, in the same order.
+     *
+     * @param maxNumberOfDocuments max number of documents to return
+     * @param partitionKeyValues list the partition key values are appended to
+     * @return the next documents, or an empty list once the file is exhausted
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public List<String> readBatch(int maxNumberOfDocuments, List<Object> partitionKeyValues) throws IOException {
+        Preconditions.checkState(partitionKeyColumn != null, "no partition key column");
+
+        List<String> batch = new ArrayList<>(maxNumberOfDocuments);
+        while (batch.size() < maxNumberOfDocuments && readRow()) {
+            batch.add(writeDocument());
+            partitionKeyValues.add(partitionKeyValue());
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Parses the next non empty row into {@link #row}. The fields are scanned in the read buffer and copied by
+     * ranges rather than char by char.
+     * @return false at the end of the file
+     */
+    private boolean readRow() throws IOException {
+        while (true) {
+            numberOfFields = 0;
+            rowLine = line;
+            rowLength = 0;
+            int c = nextChar();
+            if (c < 0) {
+                return false;
+            }
+
+            boolean endOfRow = false;
+            while (!endOfRow) {
+                if (numberOfFields == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, numberOfFields * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, numberOfFields * 2);
+                    fieldQuoted = Arrays.copyOf(fieldQuoted, numberOfFields * 2);
+                }
+                fieldStarts[numberOfFields] = rowLength;
+                fieldQuoted[numberOfFields] = c == quote;
+
+                if (c == quote) {
+                    while (true) {
+                        scanQuoted();
+                        c = nextChar();
+                        if (c < 0) {
+                            throw new IOException(String.format("unterminated quoted field at line %d", rowLine));
+                        }
+                        // c is the closing quote, or the first of a doubled quote
+                        c = nextChar();
+                        if (c != quote) {
+                            break;
+                        }
+                        append(quote);
+                    }
+                    if (c >= 0 && c != delimiter && c != '\n' && c != '\r') {
+                        throw new IOException(String.format("unexpected character after quoted field at line %d", rowLine));
+                    }
+                } else if (c >= 0) {
+                    // c is still in the buffer, as nextChar() only refills an exhausted buffer
+                    bufferPosition--;
+                    scanUnquoted();
+                    c = nextChar();
+                }
+
+                fieldEnds[numberOfFields++] = rowLength;
+
+                if (c == delimiter) {
+                    c = nextChar();
+                } else {
+                    if (c == '\r' && peekChar() == '\n') {
+                        nextChar();
+                    }
+                    if (c >= 0) {
+                        line++;
+                    }
+                    endOfRow = true;
+                }
+            }
+
+            if (numberOfFields > 1 || fieldEnds[0] > 0 || fieldQuoted[0]) {
+                return true;
+            }
+            // skip empty lines
+        }
+    }
+
+    /**
+     * Appends the chars up to the next delimiter or line break, which is left in the buffer.
+     */
+    private void scanUnquoted() throws IOException {
+        do {
+            int start = bufferPosition;
+            int position = start;
+            while (position < bufferLimit) {
+                char c = buffer[position];
+                if (c == delimiter || c == '\n' || c == '\r') {
+                    break;
+                }
+                position++;
+            }
+            append(start, position);
+            bufferPosition = position;
+        } while (bufferPosition == bufferLimit && fill());
+    }
+
+    /**
+     * Appends the chars up to the next quote, which is left in the buffer.
+     */
+    private void scanQuoted() throws IOException {
+        do {
+            int start = bufferPosition;
+            int position = start;
+            while (position < bufferLimit) {
+                char c = buffer[position];
+                if (c == quote) {
+                    break;
+                }
+                if (c == '\n') {
+                    line++;
+                }
+                position++;
+            }
+            append(start, position);
+            bufferPosition = position;
+        } while (bufferPosition == bufferLimit && fill());
+    }
+
+    private void append(int start, int end) {
+        int length = end - start;
+        if (rowLength + length > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + length));
+        }
+        System.arraycopy(buffer, start, row, rowLength, length);
+        rowLength += length;
+    }
+
+    private void append(char c) {
+        if (rowLength == row.length) {
+            row = Arrays.copyOf(row, rowLength * 2);
+        }
+        row[rowLength++] = c;
+    }
+
+    private int nextChar() throws IOException {
+        if (bufferPosition == bufferLimit && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPosition++];
+    }
+
+    private int peekChar() throws IOException {
+        if (bufferPosition == bufferLimit && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPosition];
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        while ((read = reader.read(buffer)) == 0) {
+        }
+        if (read < 0) {
+            return false;
+        }
+        bufferPosition = 0;
+        bufferLimit = read;
+        return true;
+    }
+
+    private String field(int index) {
+        return new String(row, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    private String writeDocument() throws IOException {
+        document.setLength(0);
+        writeObject(root);
+        return document.toString();
+    }
+
+    private void writeObject(JsonNode node) throws IOException {
+        document.append('{');
+        boolean first = true;
+        for (JsonNode child : node.children.values()) {
+            if (!first) {
+                document.append(',');
+            }
+            first = false;
+
+            document.append(child.key);
+            if (child.column != null) {
+                writeValue(child.column);
+            } else {
+                writeObject(child);
+            }
+        }
+        document.append('}');
+    }
+
+    private void writeValue(ColumnMapping column) throws IOException {
+        if (column.index >= numberOfFields) {
+            throw new IOException(String.format("missing column %s at line %d", column.column, rowLine));
+        }
+
+        int start = fieldStarts[column.index];
+        int end = fieldEnds[column.index];
+
+        if (column.type == ColumnType.STRING) {
+            writeString(row, start, end);
+            return;
+        }
+
+        // surrounding spaces are not significant for the other types
+        while (start < end && row[start] == ' ') {
+            start++;
+        }
+        while (end > start && row[end - 1] == ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            document.append("null");
+            return;
+        }
+
+        switch (column.type) {
+        case INTEGER:
+        case NUMBER:
+            if (!isNumber(row, start, end, column.type == ColumnType.INTEGER)) {
+                throw new IOException(String.format("column %s is not a number at line %d", column.column, rowLine));
+            }
+            document.append(row, start, end - start);
+            break;
+        case BOOLEAN:
+            document.append(parseBoolean(column, start, end));
+            break;
+        default:
+            throw new IllegalStateException(column.type.toString());
+        }
+    }
+
+    private boolean parseBoolean(ColumnMapping column, int start, int end) throws IOException {
+        int length = end - start;
+        if (length == 1 && (row[start] == '1' || row[start] == '0')) {
+            return row[start] == '1';
+        }
+        if (regionMatches(start, length, "true")) {
+            return true;
+        }
+        if (regionMatches(start, length, "false")) {
+            return false;
+        }
+        throw new IOException(String.format("column %s is not a boolean at line %d", column.column, rowLine));
+    }
+
+    private boolean regionMatches(int start, int length, String value) {
+        return length == value.length() && new String(row, start, length).equalsIgnoreCase(value);
+    }
+
+    /**
+     * @return whether the chars are a JSON number
+     */
+    static boolean isNumber(char[] chars, int start, int end, boolean integer) {
+        int i = start;
+        if (i < end && chars[i] == '-') {
+            i++;
+        }
+
+        int digits = i;
+        while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+            i++;
+        }
+        if (i == digits || (chars[digits] == '0' && i - digits > 1)) {
+            return false;
+        }
+        if (integer || i == end) {
+            return i == end;
+        }
+
+        if (chars[i] == '.') {
+            int fraction = ++i;
+            while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+                i++;
+            }
+            if (i == fraction) {
+                return false;
+            }
+        }
+
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            if (i < end && (chars[i] == '+' || chars[i] == '-')) {
+                i++;
+            }
+            int exponent = i;
+            while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+                i++;
+            }
+            if (i == exponent) {
+                return false;
+            }
+        }
+
+        return i == end;
+    }
+
+    private Object partitionKeyValue() throws IOException {
+        int start = fieldStarts[partitionKeyColumn.index];
+        int end = fieldEnds[partitionKeyColumn.index];
+
+        if (partitionKeyColumn.type == ColumnType.STRING) {
+            return new String(row, start, end - start);
+        }
+
+        while (start < end && row[start] == ' ') {
+            start++;
+        }
+        while (end > start && row[end - 1] == ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return JSONObject.NULL;
+        }
+
+        switch (partitionKeyColumn.type) {
+        case INTEGER:
+            return Long.parseLong(new String(row, start, end - start));
+        case NUMBER:
+            return Double.parseDouble(new String(row, start, end - start));
+        case BOOLEAN:
+            return parseBoolean(partitionKeyColumn, start, end);
+        default:
+            throw new IllegalStateException(partitionKeyColumn.type.toString());
+        }
+    }
+
+    private String jsonKey(String name) {
+        document.setLength(0);
+        writeString(name.toCharArray(), 0, name.length());
+        document.append(':');
+        return document.toString();
+    }
+
+    private void writeString(char[] chars, int start, int end) {
+        document.append('"');
+        int unescaped = start;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '"' || c == '\\' || c < 0x20) {
+                document.append(chars, unescaped, i - unescaped);
+                switch (c) {
+                case '"':
+                    document.append("\\\"");
+                    break;
+                case '\\':
+                    document.append("\\\\");
+                    break;
+                case '\n':
+                    document.append("\\n");
+                    break;
+                case '\r':
+                    document.append("\\r");
+                    break;
+                case '\t':
+                    document.append("\\t");
+                    break;
+                default:
+                    document.append(String.format("\\u%04x", (int) c));
+                }
+                unescaped = i + 1;
+            }
+        }
+        document.append(chars, unescaped, end - unescaped);
+        document.append('"');
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size direct {@link ByteBuffer} segments, reused across imports so the
+ * (slow) allocation of direct memory happens only once.
+ */
+class DirectBufferPool {
+
+    private final int segmentSize;
+
+    private final int maxPooledSegments;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> pooledSegments = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger numberOfPooledSegments = new AtomicInteger();
+
+    private final AtomicInteger numberOfAllocatedSegments = new AtomicInteger();
+
+    DirectBufferPool(int segmentSize, int maxPooledSegments) {
+        this.segmentSize = segmentSize;
+        this.maxPooledSegments = maxPooledSegments;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the number of segments allocated by this pool so far
+     */
+    int getNumberOfAllocatedSegments() {
+        return numberOfAllocatedSegments.get();
+    }
+
+    /**
+     * @return an empty segment, from the pool if any
+     */
+    ByteBuffer acquire() {
+        ByteBuffer segment = pooledSegments.poll();
+        if (segment == null) {
+            numberOfAllocatedSegments.incrementAndGet();
+            return ByteBuffer.allocateDirect(segmentSize);
+        }
+
+        numberOfPooledSegments.decrementAndGet();
+        segment.clear();
+        return segment;
+    }
+
+    /**
+     * Returns the segment to the pool, or leaves it to the garbage collector if the pool is full.
+     * @param segment a segment acquired from this pool
+     */
+    void release(ByteBuffer segment) {
+        if (numberOfPooledSegments.incrementAndGet() <= maxPooledSegments) {
+            pooledSegments.add(segment);
+        } else {
+            numberOfPooledSegments.decrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all the pooled segments.
+     */
+    void clear() {
+        while (pooledSegments.poll() != null) {
+            numberOfPooledSegments.decrementAndGet();
+        }
+    }
+}
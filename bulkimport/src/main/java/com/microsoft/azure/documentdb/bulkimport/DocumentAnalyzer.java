@@ -23,16 +23,14 @@
 package com.microsoft.azure.documentdb.bulkimport;
 
 import java.util.Collections;
-import java.util.Iterator;
 
-import org.json.JSONObject;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.documentdb.PartitionKeyDefinition;
-import com.microsoft.azure.documentdb.Undefined;
 import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
 
 class DocumentAnalyzer {
@@ -46,57 +44,72 @@ class DocumentAnalyzer {
      */
     public static PartitionKeyInternal extractPartitionKeyValue(String documentAsString,
             PartitionKeyDefinition partitionKeyDefinition)  {
+        return extractPartitionKeyValue(documentAsString, PartitionKeyAccessor.compile(partitionKeyDefinition));
+    }
+
+    /**
+     * Extracts effective {@link PartitionKeyInternal} from serialized document.
+     * @param documentAsString Serialized document to extract partition key value from.
+     * @param partitionKeyAccessor Compiled partition key paths.
+     * @return PartitionKeyInternal
+     */
+    public static PartitionKeyInternal extractPartitionKeyValue(String documentAsString,
+            PartitionKeyAccessor partitionKeyAccessor)  {
 
-        if (partitionKeyDefinition == null || partitionKeyDefinition.getPaths().size() == 0) {
+        if (partitionKeyAccessor.isEmpty()) {
             return PartitionKeyInternal.getEmpty();
         }
 
-        return DocumentAnalyzer.extractPartitionKeyValueInternal(documentAsString, partitionKeyDefinition);
-    }
-
-    private static PartitionKeyInternal extractPartitionKeyValueInternal(String documentAsString, PartitionKeyDefinition partitionKeyDefinition) {
-        JsonNode root;
         try {
-            root = objectMapper.readTree(documentAsString);
+            return partitionKeyAccessor.extract(objectMapper.readTree(documentAsString));
 
-            Iterator<String> path = partitionKeyDefinition.getPaths().iterator();   
-            JsonNode node =  root.path(path.next().substring(1));
-
-            while(path.hasNext() && node != null) {
-                node = node.path(path.next());
-            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to extract partition key value from document {}", documentAsString, e);
+            throw ExceptionUtils.toRuntimeException(e);
+        }
+    }
 
-            Object partitionKeyValue = null;
+    /**
+     * Extracts the id and the effective {@link PartitionKeyInternal} from serialized document, parsing it only once.
+     * @param documentAsString Serialized document to extract the id and the partition key value from.
+     * @param partitionKeyDefinition Information about partition key.
+     * @return the id (null if the document has none) and the PartitionKeyInternal
+     */
+    public static ImmutablePair<String, PartitionKeyInternal> extractIdAndPartitionKeyValue(String documentAsString,
+            PartitionKeyDefinition partitionKeyDefinition) {
+        return extractIdAndPartitionKeyValue(documentAsString, PartitionKeyAccessor.compile(partitionKeyDefinition));
+    }
 
-            if (node != null) {
+    /**
+     * Extracts the id and the effective {@link PartitionKeyInternal} from serialized document, parsing it only once.
+     * @param documentAsString Serialized document to extract the id and the partition key value from.
+     * @param partitionKeyAccessor Compiled partition key paths.
+     * @return the id (null if the document has none) and the PartitionKeyInternal
+     */
+    public static ImmutablePair<String, PartitionKeyInternal> extractIdAndPartitionKeyValue(String documentAsString,
+            PartitionKeyAccessor partitionKeyAccessor) {
+        try {
+            JsonNode root = objectMapper.readTree(documentAsString);
+            JsonNode id = root.get("id");
 
-                switch (node.getNodeType()) {
-                case BOOLEAN:
-                    partitionKeyValue = node.booleanValue();
-                    break;
-                case MISSING:
-                    partitionKeyValue = Undefined.Value();
-                    break;
-                case NULL:
-                    partitionKeyValue = JSONObject.NULL;
-                    break;
-                case NUMBER:
-                    partitionKeyValue = node.numberValue();
-                    break;
-                case STRING:
-                    partitionKeyValue = node.textValue();
-                    break;
-                default:
-                    throw new RuntimeException(String.format("undefined json type %s", node.getNodeType()));
-                }
-            } else {
-                partitionKeyValue = Undefined.Value();
-            }
+            return new ImmutablePair<>(id != null && id.isTextual() ? id.textValue() : null, partitionKeyAccessor.extract(root));
 
-            return fromPartitionKeyvalue(partitionKeyValue);
+        } catch (Exception e) {
+            LOGGER.error("Failed to extract id and partition key value from document {}", documentAsString, e);
+            throw ExceptionUtils.toRuntimeException(e);
+        }
+    }
 
+    /**
+     * Parses a serialized document.
+     * @param documentAsString Serialized document.
+     * @return the root of the document
+     */
+    static JsonNode parse(String documentAsString) {
+        try {
+            return objectMapper.readTree(documentAsString);
         } catch (Exception e) {
-            LOGGER.error("Failed to extract partition key value from document {}", documentAsString, e);
+            LOGGER.error("Failed to parse document {}", documentAsString, e);
             throw ExceptionUtils.toRuntimeException(e);
         }
     }
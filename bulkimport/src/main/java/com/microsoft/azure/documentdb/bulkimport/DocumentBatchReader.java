@@ -0,0 +1,64 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.List;
+
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClientException;
+
+/**
+ * Reads the documents of the given ids from one partition key range.
+ */
+interface DocumentBatchReader {
+
+    class Batch {
+        private final List<Document> documents;
+        private final double requestCharge;
+
+        Batch(List<Document> documents, double requestCharge) {
+            this.documents = documents;
+            this.requestCharge = requestCharge;
+        }
+
+        /**
+         * @return the documents found, which may include documents of the same ids but other partition key values
+         */
+        List<Document> getDocuments() {
+            return documents;
+        }
+
+        double getRequestCharge() {
+            return requestCharge;
+        }
+    }
+
+    /**
+     * @param partitionKeyRangeId the partition key range of all the documents
+     * @param ids the ids of the documents
+     * @param partitionKeyValues the partition key values of the documents, in the order of the ids
+     * @return the documents found
+     * @throws DocumentClientException if the read fails, including when it is throttled
+     */
+    Batch read(String partitionKeyRangeId, List<String> ids, List<Object> partitionKeyValues) throws DocumentClientException;
+}
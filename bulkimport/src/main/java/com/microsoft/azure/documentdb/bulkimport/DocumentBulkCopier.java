@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Copies the documents of a collection into another one, e.g. to change the partition key: the source partition
+ * key ranges are read in parallel by a {@link DocumentBulkExporter}, optionally transformed, and imported through
+ * a {@link BulkImportSession} of a {@link DocumentBulkImporter}, which routes them by the partition key ranges of
+ * the target.
+ *
+ * <p> A page of a source range is checkpointed only once all its documents are imported, and the next page of the
+ * range is read only then; {@link BulkImportSession#submit(String)} also blocks while too many documents are
+ * pending. So a slow target slows down the reads, and at most one page per source range read concurrently is held
+ * in memory. With a checkpoint file configured on the exporter an interrupted copy resumes from the last imported
+ * page of each source range; the pages in flight are imported again, so copy with upsert enabled.
+ *
+ * <blockquote>
+ * <pre>
+ * {@code
+ * try (DocumentBulkExporter exporter = DocumentBulkExporter.builder().from(client, "db", "source", sourceThroughput)
+ *             .withSystemPropertiesRemoved(true)
+ *             .withCheckpointFile(Paths.get("copy-checkpoint.json"))
+ *             .build();
+ *         DocumentBulkImporter importer = DocumentBulkImporter.builder().from(client, "db", "target", targetPartitionKey, targetThroughput)
+ *             .build()) {
+ *     BulkCopyResponse response = new DocumentBulkCopier(exporter, importer).copyAll(document -> document, true);
+ * }
+ * }
+ * </pre>
+ * </blockquote>
+ */
+public class DocumentBulkCopier {
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentBulkCopier.class);
+
+    private final DocumentBulkExporter exporter;
+
+    private final DocumentBulkImporter importer;
+
+    /**
+     * @param exporter reads the source collection; its checkpoint file, if any, records the progress of the copy
+     * @param importer imports into the target collection
+     */
+    public DocumentBulkCopier(DocumentBulkExporter exporter, DocumentBulkImporter importer) {
+        Preconditions.checkNotNull(exporter, "exporter cannot be null");
+        Preconditions.checkNotNull(importer, "importer cannot be null");
+
+        this.exporter = exporter;
+        this.importer = importer;
+    }
+
+    /**
+     * Copies all the documents of the source collection into the target collection.
+     *
+     * @param transform applied to each serialized document before it is imported, returns null to drop the document.
+     * It is called concurrently for different source partition key ranges.
+     * @param isUpsert whether enable upsert (overwrite if it exists)
+     * @return an instance of {@link BulkCopyResponse}
+     * @throws IOException if the checkpoint of the exporter cannot be read or written
+     */
+    public BulkCopyResponse copyAll(Function<String, String> transform, boolean isUpsert) throws IOException {
+        Preconditions.checkNotNull(transform, "transform cannot be null");
+
+        Stopwatch watch = Stopwatch.createStarted();
+        AtomicLong numberOfDocumentsRead = new AtomicLong();
+        AtomicLong numberOfDocumentsDropped = new AtomicLong();
+
+        BulkExportResponse exportResponse;
+        BulkImportSession session = importer.openSession(isUpsert);
+        try {
+            exportResponse = exporter.exportAll((partitionKeyRangeId, documents) -> {
+                numberOfDocumentsRead.addAndGet(documents.size());
+
+                List<ListenableFuture<Void>> imported = new ArrayList<>(documents.size());
+                for (String document : documents) {
+                    String transformed = transform.apply(document);
+                    if (transformed == null) {
+                        numberOfDocumentsDropped.incrementAndGet();
+                    } else {
+                        imported.add(session.submit(transformed));
+                    }
+                }
+
+                // the page gets checkpointed once this returns
+                Futures.allAsList(imported).get();
+            });
+        } finally {
+            session.close();
+        }
+
+        watch.stop();
+        logger.debug("Copied {} documents in {}", session.getNumberOfDocumentsImported(), watch.elapsed());
+
+        return new BulkCopyResponse(numberOfDocumentsRead.get(),
+                session.getNumberOfDocumentsImported(),
+                numberOfDocumentsDropped.get(),
+                exportResponse.getTotalRequestUnitsConsumed(),
+                session.getTotalRequestUnitsConsumed(),
+                watch.elapsed(),
+                exportResponse.getErrors());
+    }
+}
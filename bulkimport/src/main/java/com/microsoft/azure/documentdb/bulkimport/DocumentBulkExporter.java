@@ -0,0 +1,467 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.FeedOptions;
+import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+
+/**
+ * Reads all the documents of a collection, the counterpart of {@link DocumentBulkImporter}: every partition key
+ * range is drained page by page with its own continuation, several ranges at once, and the number of reads in
+ * flight adapts to throttling. The progress can be checkpointed to a file to resume an interrupted export.
+ */
+public class DocumentBulkExporter implements AutoCloseable {
+
+    public static class Builder {
+
+        private DocumentClient client;
+        private String collectionLink;
+        private int offerThroughput;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+        private int maxDegreeOfConcurrency = DEFAULT_MAX_DEGREE_OF_CONCURRENCY;
+        private Path checkpointFile;
+        private boolean systemPropertiesRemoved = false;
+        private Collection<PartitionKeyRange> partitionKeyRanges;
+        private PageReader pageReader;
+
+        /**
+         * Use the instance of {@link DocumentClient} to bulk export the given collection.
+         *
+         * Throttled reads are retried by the exporter, so set the max retry attempts on throttled requests of the
+         * client to 0 to let the exporter adapt its concurrency instead.
+         * @param client an instance of {@link DocumentClient}
+         * @param databaseName name of the database
+         * @param collectionName name of the collection
+         * @param offerThroughput specifies the collection throughput
+         * @return an instance of {@link Builder}
+         */
+        public Builder from(DocumentClient client,
+                String databaseName,
+                String collectionName,
+                int offerThroughput) {
+
+            this.client = client;
+            this.collectionLink = String.format("/dbs/%s/colls/%s", databaseName, collectionName);
+            this.offerThroughput = offerThroughput;
+            return this;
+        }
+
+        /**
+         * use the given max number of documents per read.
+         *
+         * If not specified will use 1000.
+         * @param pageSize max number of documents per read
+         * @return {@link Builder}
+         */
+        public Builder withPageSize(int pageSize) {
+            Preconditions.checkArgument(pageSize > 0, "pageSize must be positive");
+
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * use the given max number of reads in flight, across all the partition key ranges.
+         *
+         * If not specified will use 20.
+         * @param maxDegreeOfConcurrency max number of reads in flight
+         * @return {@link Builder}
+         */
+        public Builder withMaxDegreeOfConcurrency(int maxDegreeOfConcurrency) {
+            Preconditions.checkArgument(maxDegreeOfConcurrency > 0, "maxDegreeOfConcurrency must be positive");
+
+            this.maxDegreeOfConcurrency = maxDegreeOfConcurrency;
+            return this;
+        }
+
+        /**
+         * use the given file to checkpoint the progress of each partition key range.
+         *
+         * If the file exists, exporting resumes from it: ranges already exported are skipped and the others
+         * continue from their last checkpointed page. If not specified an interrupted export starts over.
+         * @param checkpointFile the checkpoint file
+         * @return {@link Builder}
+         */
+        public Builder withCheckpointFile(Path checkpointFile) {
+            this.checkpointFile = checkpointFile;
+            return this;
+        }
+
+        /**
+         * use the given setting to remove the system properties (_rid, _self, _etag, _attachments and _ts) from the
+         * exported documents, e.g. to import them into another collection.
+         *
+         * If not specified the documents are exported as read.
+         * @param systemPropertiesRemoved whether to remove the system properties
+         * @return {@link Builder}
+         */
+        public Builder withSystemPropertiesRemoved(boolean systemPropertiesRemoved) {
+            this.systemPropertiesRemoved = systemPropertiesRemoved;
+            return this;
+        }
+
+        /**
+         * use the given partition key ranges instead of reading them from the collection.
+         *
+         * @param partitionKeyRanges the complete set of partition key ranges of the collection
+         * @return {@link Builder}
+         */
+        Builder withPartitionKeyRanges(Collection<PartitionKeyRange> partitionKeyRanges) {
+            this.partitionKeyRanges = partitionKeyRanges;
+            return this;
+        }
+
+        /**
+         * use the given reader instead of reading the documents with the client.
+         *
+         * @param pageReader an instance of {@link PageReader}
+         * @return {@link Builder}
+         */
+        Builder withPageReader(PageReader pageReader) {
+            this.pageReader = pageReader;
+            return this;
+        }
+
+        /**
+         * Instantiates {@link DocumentBulkExporter} given the configured {@link Builder}.
+         *
+         * @return the new exporter
+         */
+        public DocumentBulkExporter build() {
+            Preconditions.checkNotNull(client, "client cannot be null");
+            Preconditions.checkArgument(offerThroughput > 0, "offerThroughput must be positive");
+
+            return new DocumentBulkExporter(this);
+        }
+
+        private Builder() {}
+    }
+
+    /**
+     * Creates a new {@link DocumentBulkExporter.Builder} instance
+     * @return an instance of {@link DocumentBulkExporter.Builder}
+     */
+    public static DocumentBulkExporter.Builder builder() {
+        return new DocumentBulkExporter.Builder();
+    }
+
+    private final static int DEFAULT_PAGE_SIZE = 1000;
+
+    private final static int DEFAULT_MAX_DEGREE_OF_CONCURRENCY = 20;
+
+    /**
+     * Min time between two writes of the checkpoint file.
+     */
+    private final static Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(1);
+
+    final static List<String> SYSTEM_PROPERTIES = Collections.unmodifiableList(
+            Arrays.asList("_rid", "_self", "_etag", "_attachments", "_ts"));
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentBulkExporter.class);
+
+    private final DocumentClient client;
+
+    private final String collectionLink;
+
+    private final int pageSize;
+
+    private final Path checkpointFile;
+
+    private final boolean systemPropertiesRemoved;
+
+    private final Collection<PartitionKeyRange> givenPartitionKeyRanges;
+
+    private final PageReader pageReader;
+
+    private final ReadCongestionController congestionController;
+
+    private final ListeningExecutorService listeningExecutorService;
+
+    private DocumentBulkExporter(Builder builder) {
+        this.client = builder.client;
+        this.collectionLink = builder.collectionLink;
+        this.pageSize = builder.pageSize;
+        this.checkpointFile = builder.checkpointFile;
+        this.systemPropertiesRemoved = builder.systemPropertiesRemoved;
+        this.givenPartitionKeyRanges = builder.partitionKeyRanges;
+        this.pageReader = builder.pageReader != null ? builder.pageReader : this::readPageFromClient;
+        this.congestionController = new ReadCongestionController(builder.offerThroughput, builder.maxDegreeOfConcurrency, Duration.ofSeconds(1));
+        this.listeningExecutorService = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(builder.maxDegreeOfConcurrency));
+    }
+
+    /**
+     * Exports all the documents of the collection as newline delimited JSON, one file named
+     * {@code <partition key range id>.ndjson} per partition key range in the given directory.
+     *
+     * <p> When resuming from a checkpoint the files are truncated to their checkpointed length first, so every
+     * document ends up exactly once in the files. The resulting directory can be imported again with
+     * {@code -inputDirectory} (see {@link Main}).
+     *
+     * @param directory the output directory, created if needed
+     * @return an instance of {@link BulkExportResponse}
+     * @throws IOException if the checkpoint cannot be read or written, or a file cannot be created
+     */
+    public BulkExportResponse exportAll(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return exportAllInternal((partitionKeyRangeId, position) -> new NdjsonRangeWriter(directory.resolve(partitionKeyRangeId + ".ndjson"), position));
+    }
+
+    /**
+     * Exports all the documents of the collection to the given handler, page by page.
+     *
+     * @param handler receives the pages, concurrently for different partition key ranges
+     * @return an instance of {@link BulkExportResponse}
+     * @throws IOException if the checkpoint cannot be read or written
+     */
+    public BulkExportResponse exportAll(ExportPageHandler handler) throws IOException {
+        Preconditions.checkNotNull(handler, "handler cannot be null");
+        return exportAllInternal((partitionKeyRangeId, position) -> documents -> {
+            handler.handle(partitionKeyRangeId, documents);
+            return 0;
+        });
+    }
+
+    /**
+     * Releases any internal resources.
+     * It is responsibility of the caller to close {@link DocumentClient}.
+     */
+    @Override
+    public void close() {
+        listeningExecutorService.shutdownNow();
+        try {
+            if (!listeningExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.error("some tasks did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getDegreeOfConcurrency() {
+        return congestionController.getDegreeOfConcurrency();
+    }
+
+    /**
+     * Writes the pages of a partition key range.
+     */
+    private interface RangeWriter extends Closeable {
+        /**
+         * @return the position to checkpoint once the documents are written
+         */
+        long write(List<String> documents) throws Exception;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private interface RangeWriterFactory {
+        /**
+         * @param position the checkpointed position of the range, to resume from
+         */
+        RangeWriter open(String partitionKeyRangeId, long position) throws IOException;
+    }
+
+    private static class NdjsonRangeWriter implements RangeWriter {
+        private final FileChannel channel;
+        private final StringBuilder page = new StringBuilder();
+
+        NdjsonRangeWriter(Path file, long position) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                channel.truncate(position);
+                channel.position(position);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public long write(List<String> documents) throws IOException {
+            page.setLength(0);
+            for (String document : documents) {
+                page.append(document).append('\n');
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(page.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return channel.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private BulkExportResponse exportAllInternal(RangeWriterFactory writerFactory) throws IOException {
+        Stopwatch watch = Stopwatch.createStarted();
+
+        List<String> partitionKeyRangeIds = DocumentBulkImporter.getPartitionKeyRangeIds(
+                DocumentBulkImporter.getCollectionRoutingMap(client, collectionLink, givenPartitionKeyRanges));
+        ExportCheckpoint checkpoint = ExportCheckpoint.load(checkpointFile, CHECKPOINT_INTERVAL);
+
+        for (String partitionKeyRangeId : checkpoint.getRanges().keySet()) {
+            if (!partitionKeyRangeIds.contains(partitionKeyRangeId)) {
+                throw new IllegalStateException(String.format(
+                        "Partition key range %s of the checkpoint no longer exists, the collection was repartitioned: export again without the checkpoint",
+                        partitionKeyRangeId));
+            }
+        }
+
+        AtomicLong numberOfDocumentsExported = new AtomicLong();
+        DoubleAdder requestUnitsConsumed = new DoubleAdder();
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (String partitionKeyRangeId : partitionKeyRangeIds) {
+            futures.add(listeningExecutorService.submit(() -> {
+                try {
+                    exportRange(partitionKeyRangeId, writerFactory, checkpoint, numberOfDocumentsExported, requestUnitsConsumed);
+                } catch (Exception e) {
+                    logger.error("Failed to export partition key range {}", partitionKeyRangeId, e);
+                    failures.add(e);
+                }
+                return null;
+            }));
+        }
+
+        try {
+            Futures.allAsList(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            failures.add(e);
+        } catch (ExecutionException e) {
+            failures.add(ExceptionUtils.toException(e.getCause()));
+        } finally {
+            checkpoint.write();
+        }
+
+        watch.stop();
+
+        long total = checkpoint.getRanges().values().stream().mapToLong(state -> state.numberOfDocuments).sum();
+        logger.debug("Exported {} documents ({} in this run) in {}", total, numberOfDocumentsExported.get(), watch.elapsed());
+
+        return new BulkExportResponse(total, requestUnitsConsumed.sum(), watch.elapsed(), failures);
+    }
+
+    private void exportRange(String partitionKeyRangeId,
+            RangeWriterFactory writerFactory,
+            ExportCheckpoint checkpoint,
+            AtomicLong numberOfDocumentsExported,
+            DoubleAdder requestUnitsConsumed) throws Exception {
+
+        ExportCheckpoint.RangeState state = checkpoint.get(partitionKeyRangeId);
+        if (state.done) {
+            logger.debug("Partition key range {} already exported", partitionKeyRangeId);
+            return;
+        }
+
+        try (RangeWriter writer = writerFactory.open(partitionKeyRangeId, state.position)) {
+            while (!state.done) {
+                PageReader.Page page;
+
+                congestionController.acquire();
+                try {
+                    page = pageReader.readPage(partitionKeyRangeId, state.continuation, pageSize);
+                } catch (DocumentClientException e) {
+                    congestionController.release(0, ExceptionUtils.isThrottled(e));
+                    if (ExceptionUtils.isThrottled(e)) {
+                        Thread.sleep(e.getRetryAfterInMilliseconds());
+                        continue;
+                    }
+                    throw e;
+                }
+                congestionController.release(page.getRequestCharge(), false);
+                requestUnitsConsumed.add(page.getRequestCharge());
+
+                state.position = writer.write(page.getDocuments());
+                state.numberOfDocuments += page.getDocuments().size();
+                state.continuation = page.getContinuation();
+                state.done = page.getContinuation() == null;
+                checkpoint.update(partitionKeyRangeId, state);
+
+                numberOfDocumentsExported.addAndGet(page.getDocuments().size());
+            }
+        }
+    }
+
+    private PageReader.Page readPageFromClient(String partitionKeyRangeId, String continuation, int pageSize) throws DocumentClientException {
+        FeedOptions feedOptions = new FeedOptions();
+        feedOptions.setPartitionKeyRangeIdInternal(partitionKeyRangeId);
+        feedOptions.setPageSize(pageSize);
+        feedOptions.setRequestContinuation(continuation);
+
+        FeedResponse<Document> response = client.readDocuments(collectionLink, feedOptions);
+        List<Document> documents = response.getQueryIterable().fetchNextBlock();
+
+        List<String> documentsAsString = new ArrayList<>(documents != null ? documents.size() : 0);
+        if (documents != null) {
+            for (Document document : documents) {
+                if (systemPropertiesRemoved) {
+                    SYSTEM_PROPERTIES.forEach(document::remove);
+                }
+                documentsAsString.add(document.toJson());
+            }
+        }
+
+        return new PageReader.Page(documentsAsString, response.getResponseContinuation(), response.getRequestCharge());
+    }
+}
@@ -23,27 +23,37 @@
 package com.microsoft.azure.documentdb.bulkimport;
 
 
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.AsyncCallable;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.Futures.FutureCombiner;
@@ -86,6 +96,15 @@ public class DocumentBulkImporter implements AutoCloseable {
 
         private RetryOptions retryOptions = DEFAULT_INIT_RETRY_OPTIONS; 
 
+        private Duration sessionLingerTime = BulkImportSession.LINGER_TIME;
+        private int sessionLingerBytes = Integer.MAX_VALUE;
+        private Collection<PartitionKeyRange> partitionKeyRanges;
+        private DeduplicationPolicy deduplicationPolicy = DeduplicationPolicy.NONE;
+        private boolean inputOrderPreserved = false;
+        private DocumentCache documentCache;
+        private Integer startingDegreeOfConcurrency;
+        private int partitionKeyCacheSize = DEFAULT_PARTITION_KEY_CACHE_SIZE;
+
         /**
          * Use the instance of {@link DocumentClient} to bulk import to the given instance of {@link DocumentCollection}
          * @param client an instance of {@link DocumentClient}
@@ -135,6 +154,121 @@ public class DocumentBulkImporter implements AutoCloseable {
             return this;
         }
 
+        /**
+         * use the given linger configuration for the {@link BulkImportSession}s opened by the importer.
+         *
+         * A mini-batch of a session is dispatched once it reaches {@code lingerBytes} or once {@code lingerTime}
+         * elapsed since its first document, whichever comes first. Larger values make fewer and larger
+         * stored procedure calls (higher throughput, fewer request units per document) at the cost of a higher
+         * latency per document. {@code lingerBytes} is capped by the max mini batch size.
+         *
+         * If not specified will linger for 5ms or until the mini-batch is full.
+         * @param lingerTime max time the first document of a mini-batch waits for more documents
+         * @param lingerBytes mini-batch size in bytes at which the mini-batch is dispatched right away
+         * @return {@link Builder}
+         */
+        public Builder withSessionLinger(Duration lingerTime, int lingerBytes) {
+            Preconditions.checkNotNull(lingerTime, "lingerTime cannot be null");
+            Preconditions.checkArgument(!lingerTime.isNegative(), "lingerTime cannot be negative");
+            Preconditions.checkArgument(lingerBytes > 0, "lingerBytes must be positive");
+
+            this.sessionLingerTime = lingerTime;
+            this.sessionLingerBytes = lingerBytes;
+            return this;
+        }
+
+        /**
+         * use the given policy to import a single document per (id, partition key) in
+         * {@link DocumentBulkImporter#importAll(Collection, boolean)}.
+         *
+         * Importing several versions of the same document either conflicts or upserts it several times,
+         * wasting request units. If not specified will send all the documents.
+         * @param policy an instance of {@link DeduplicationPolicy}
+         * @return {@link Builder}
+         */
+        public Builder withDeduplicationPolicy(DeduplicationPolicy policy) {
+            Preconditions.checkNotNull(policy, "policy cannot be null");
+
+            this.deduplicationPolicy = policy;
+            return this;
+        }
+
+        /**
+         * use the given setting to keep the input order of the documents within each partition key range in
+         * {@link DocumentBulkImporter#importAll(Collection, boolean)}.
+         *
+         * Sorted inputs (e.g., sequential ids) then reach the stored procedure in sorted mini-batches, and among
+         * several upserts of the same document the last one in input order is applied last within its mini-batch.
+         * Byte identical documents are no longer collapsed in this mode.
+         *
+         * If not specified the documents are imported in no particular order.
+         * @param inputOrderPreserved whether to keep the input order within each partition key range
+         * @return {@link Builder}
+         */
+        public Builder withInputOrderPreserved(boolean inputOrderPreserved) {
+            this.inputOrderPreserved = inputOrderPreserved;
+            return this;
+        }
+
+        /**
+         * use the given cache to invalidate the imported documents, so the cache does not serve their previous version.
+         *
+         * The documents are parsed once more to read their id and partition key value.
+         * If not specified no cache is invalidated.
+         * @param documentCache the {@link DocumentCache} of the collection
+         * @return {@link Builder}
+         */
+        public Builder withDocumentCache(DocumentCache documentCache) {
+            this.documentCache = documentCache;
+            return this;
+        }
+
+        /**
+         * use the given number of concurrent stored procedure calls per partition key range at the start of the first import.
+         *
+         * The congestion control then increases it while no call is throttled and halves it on throttling, and later
+         * imports start from the degree of concurrency it settled on. Starting close to that degree shortens the ramp up
+         * of short imports; starting too high gets the first calls throttled.
+         *
+         * If not specified will start with 3.
+         * @param degreeOfConcurrency the starting number of concurrent calls per partition key range
+         * @return {@link Builder}
+         */
+        public Builder withStartingDegreeOfConcurrency(int degreeOfConcurrency) {
+            Preconditions.checkArgument(degreeOfConcurrency > 0, "degreeOfConcurrency must be positive");
+
+            this.startingDegreeOfConcurrency = degreeOfConcurrency;
+            return this;
+        }
+
+        /**
+         * use the given number of partition key values whose partition key range is cached.
+         *
+         * Documents with a cached partition key value are routed without hashing it. The cache pays off with partition
+         * keys shared by many documents (e.g. a tenant id); 0 disables it, e.g. for a distinct value per document.
+         *
+         * If not specified will cache 10,000 values.
+         * @param size the maximum number of cached values
+         * @return {@link Builder}
+         */
+        public Builder withPartitionKeyCacheSize(int size) {
+            Preconditions.checkArgument(size >= 0, "size cannot be negative");
+
+            this.partitionKeyCacheSize = size;
+            return this;
+        }
+
+        /**
+         * use the given partition key ranges instead of reading them from the collection.
+         *
+         * @param partitionKeyRanges the complete set of partition key ranges of the collection
+         * @return {@link Builder}
+         */
+        Builder withPartitionKeyRanges(Collection<PartitionKeyRange> partitionKeyRanges) {
+            this.partitionKeyRanges = partitionKeyRanges;
+            return this;
+        }
+
         /**
          * Instantiates {@link DocumentBulkImporter} given the configured {@link Builder}.
          *
@@ -146,6 +280,13 @@ public class DocumentBulkImporter implements AutoCloseable {
             try {
                 importer.setInitializationRetryOptions(retryOptions);
                 importer.setMaxMiniBatchSize(maxMiniBatchSize);
+                importer.setSessionLinger(sessionLingerTime, sessionLingerBytes);
+                importer.setPartitionKeyRanges(partitionKeyRanges);
+                importer.setDeduplicationPolicy(deduplicationPolicy);
+                importer.setInputOrderPreserved(inputOrderPreserved);
+                importer.setDocumentCache(documentCache);
+                importer.setStartingDegreeOfConcurrency(startingDegreeOfConcurrency);
+                importer.setPartitionKeyCacheSize(partitionKeyCacheSize);
 
                 importer.safeInit();
 
@@ -187,6 +328,31 @@ public class DocumentBulkImporter implements AutoCloseable {
      */
     private final static int INITIALIZATION_SLEEP_TIME_ON_THROTTLING = 500;
 
+    /**
+     * Size of the direct memory segments used for staging, larger than any mini-batch
+     */
+    private final static int STAGING_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Max number of direct memory segments kept for the next import (256MB)
+     */
+    private final static int MAX_POOLED_STAGING_SEGMENTS = 64;
+
+    /**
+     * Number of documents read from a source at a time while staging
+     */
+    private final static int STAGING_READ_SIZE = 10000;
+
+    /**
+     * Hash function of the (id, partition key) of the documents to deduplicate.
+     */
+    private final static HashFunction DEDUPLICATION_HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * Default number of partition key values whose partition key range is cached.
+     */
+    private final static int DEFAULT_PARTITION_KEY_CACHE_SIZE = 10000;
+
     /**
      * Logger
      */
@@ -197,6 +363,11 @@ public class DocumentBulkImporter implements AutoCloseable {
      */
     private final Map<String, Integer> partitionKeyRangeIdToInferredDegreeOfParallelism = new ConcurrentHashMap<>();
 
+    /**
+     * Sessions opened through {@link #openSession(boolean)} which are not closed yet.
+     */
+    private final Set<BulkImportSession> openSessions = ConcurrentHashMap.newKeySet();
+
     /**
      * Executor Service
      */
@@ -217,11 +388,21 @@ public class DocumentBulkImporter implements AutoCloseable {
      */
     private final PartitionKeyDefinition partitionKeyDefinition;
 
+    /**
+     * Partition key paths of the underlying collection, parsed once.
+     */
+    private final PartitionKeyAccessor partitionKeyAccessor;
+
     /**
      * Partition Key Range Ids
      */
     private List<String> partitionKeyRangeIds;
 
+    /**
+     * Index of each partition key range id in {@link #partitionKeyRangeIds}
+     */
+    private Map<String, Integer> partitionKeyRangeIdToIndex;
+
     /**
      * Collection routing map used to retrieve partition key range Ids of a given collection
      */
@@ -244,10 +425,94 @@ public class DocumentBulkImporter implements AutoCloseable {
 
     private RetryOptions retryOptions;
 
+    /**
+     * Linger time of the mini-batches of the sessions
+     */
+    private Duration sessionLingerTime;
+
+    /**
+     * Linger bytes of the mini-batches of the sessions
+     */
+    private int sessionLingerBytes;
+
+    /**
+     * Partition key ranges given to the builder, read from the collection if null
+     */
+    private Collection<PartitionKeyRange> givenPartitionKeyRanges;
+
+    /**
+     * Which document to import among the ones with the same id and partition key
+     */
+    private DeduplicationPolicy deduplicationPolicy = DeduplicationPolicy.NONE;
+
+    /**
+     * Whether the documents keep their input order within each partition key range
+     */
+    private boolean inputOrderPreserved;
+
+    /**
+     * Cache invalidated for the imported documents, if any
+     */
+    private DocumentCache documentCache;
+
+    /**
+     * Degree of concurrency of each partition key range at the start of the first import, null for the default
+     */
+    private Integer startingDegreeOfConcurrency;
+
+    /**
+     * Maximum number of partition key values whose partition key range is cached, 0 for none
+     */
+    private int partitionKeyCacheSize;
+
+    /**
+     * Resolves the partition key values to their partition key range, created along with {@link #collectionRoutingMap}
+     */
+    private PartitionKeyRangeResolver partitionKeyRangeResolver;
+
+    /**
+     * Pool of the direct memory segments used for staging
+     */
+    private final DirectBufferPool directBufferPool = new DirectBufferPool(STAGING_SEGMENT_SIZE, MAX_POOLED_STAGING_SEGMENTS);
+
+    /**
+     * How often the congestion controllers sample the import metrics to adjust the degree of concurrency
+     */
+    private Duration congestionControlSamplePeriod = CongestionController.DEFAULT_SAMPLE_PERIOD;
+
     private void setMaxMiniBatchSize(int size) {
         this.maxMiniBatchSize = size;
     }
 
+    private void setSessionLinger(Duration lingerTime, int lingerBytes) {
+        this.sessionLingerTime = lingerTime;
+        this.sessionLingerBytes = lingerBytes;
+    }
+
+    private void setDeduplicationPolicy(DeduplicationPolicy policy) {
+        this.deduplicationPolicy = policy;
+    }
+
+    private void setInputOrderPreserved(boolean inputOrderPreserved) {
+        this.inputOrderPreserved = inputOrderPreserved;
+    }
+
+    private void setDocumentCache(DocumentCache documentCache) {
+        this.documentCache = documentCache;
+    }
+
+    private void setStartingDegreeOfConcurrency(Integer startingDegreeOfConcurrency) {
+        this.startingDegreeOfConcurrency = startingDegreeOfConcurrency;
+    }
+
+    private void setPartitionKeyCacheSize(int partitionKeyCacheSize) {
+        this.partitionKeyCacheSize = partitionKeyCacheSize;
+    }
+
+    private void setPartitionKeyRanges(Collection<PartitionKeyRange> partitionKeyRanges) {
+        this.givenPartitionKeyRanges = partitionKeyRanges;
+    }
+
     private void setInitializationRetryOptions(RetryOptions options) {
         this.retryOptions = options;
     }
@@ -273,6 +538,7 @@ public class DocumentBulkImporter implements AutoCloseable {
         this.collectionLink = collectionLink;
         this.collectionThroughput =  collectionOfferThroughput;
         this.partitionKeyDefinition = partitionKeyDefinition;
+        this.partitionKeyAccessor = PartitionKeyAccessor.compile(partitionKeyDefinition);
         this.listeningExecutorService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
     }
 
@@ -306,8 +572,14 @@ public class DocumentBulkImporter implements AutoCloseable {
      */
     @Override
     public void close() {
+        // drain the sessions which are still open
+        for (BulkImportSession session : new ArrayList<>(openSessions)) {
+            session.close();
+        }
+
         // disable submission of new tasks
         listeningExecutorService.shutdown();
+        directBufferPool.clear();
         try {
             // wait for existing tasks to terminate
             if (!listeningExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
@@ -334,16 +606,22 @@ public class DocumentBulkImporter implements AutoCloseable {
         this.bulkImportStoredProcLink = String.format("%s/sprocs/%s", collectionLink, BULK_IMPORT_STORED_PROCECURE_NAME);
 
         logger.trace("Fetching partition map of collection");
-        Range<String> fullRange = new Range<String>(
-                PartitionKeyInternal.MinimumInclusiveEffectivePartitionKey,
-                PartitionKeyInternal.MaximumExclusiveEffectivePartitionKey,
-                true,
-                false);
+        this.collectionRoutingMap = getCollectionRoutingMap(client, collectionLink, givenPartitionKeyRanges);
+        this.partitionKeyRangeIds = getPartitionKeyRangeIds(collectionRoutingMap);
+        this.partitionKeyRangeIdToIndex = new HashMap<>();
+        for (int i = 0; i < partitionKeyRangeIds.size(); i++) {
+            partitionKeyRangeIdToIndex.put(partitionKeyRangeIds.get(i), i);
+        }
 
-        this.collectionRoutingMap = getCollectionRoutingMap(client);
-        Collection<PartitionKeyRange> partitionKeyRanges = this.collectionRoutingMap.getOverlappingRanges(fullRange);
+        // a new routing map invalidates the cached partition key ranges
+        this.partitionKeyRangeResolver = new PartitionKeyRangeResolver(new PartitionKeyRangeIndex(collectionRoutingMap, partitionKeyRangeIdToIndex),
+                partitionKeyDefinition, partitionKeyAccessor, partitionKeyCacheSize);
 
-        this.partitionKeyRangeIds = partitionKeyRanges.stream().map(partitionKeyRange -> partitionKeyRange.getId()).collect(Collectors.toList());
+        if (startingDegreeOfConcurrency != null) {
+            for (String partitionKeyRangeId : partitionKeyRangeIds) {
+                partitionKeyRangeIdToInferredDegreeOfParallelism.putIfAbsent(partitionKeyRangeId, startingDegreeOfConcurrency);
+            }
+        }
 
         logger.debug("Initialization completed");
     }
@@ -399,14 +677,150 @@ public class DocumentBulkImporter implements AutoCloseable {
      */
     public BulkImportResponse importAll(Collection<String> documents, boolean isUpsert) throws DocumentClientException {
         return executeBulkImportInternal(documents,
+                null,
                 isUpsert);
     }
 
+    /**
+     * Executes a bulk import in the Azure Cosmos DB database service of documents whose partition key value is
+     * already known (e.g., read from a column by {@link CsvDocumentSource}), so the documents are not parsed to
+     * route them. The documents are bucketed in input order, as with {@link Builder#withInputOrderPreserved(boolean)}.
+     *
+     * <p> The partition key values are String, Number, Boolean or {@link org.json.JSONObject#NULL} and have to be
+     * the values at the partition key path of the documents; they are not checked against the documents.
+     * With a {@link DeduplicationPolicy} other than NONE the documents are still parsed, to read their id.
+     *
+     * @param documents to insert
+     * @param partitionKeyValues the partition key value of each document, in the same order
+     * @param isUpsert whether enable upsert (overwrite if it exists)
+     * @return an instance of {@link BulkImportResponse}
+     * @throws DocumentClientException if any failure happens
+     */
+    public BulkImportResponse importAll(List<String> documents, List<Object> partitionKeyValues, boolean isUpsert) throws DocumentClientException {
+        Preconditions.checkNotNull(partitionKeyValues, "partition key values cannot be null");
+        Preconditions.checkArgument(documents == null || documents.size() == partitionKeyValues.size(),
+                "there must be one partition key value per document");
+        return executeBulkImportInternal(documents,
+                partitionKeyValues,
+                isUpsert);
+    }
+
+    /**
+     * Executes a bulk import in the Azure Cosmos DB database service of the next documents of a source, staging them
+     * as UTF-8 bytes in pooled direct memory while reading them instead of holding them on the heap.
+     *
+     * <p> The source is read 10,000 documents at a time and each read is dropped once its documents are staged, so the
+     * importer keeps only 16 bytes per document on the heap while the import is in progress and the stored procedure
+     * payloads are decoded from direct memory right before each call. This cuts the old generation garbage collection
+     * pressure of large imports. The partition key ranges share the same 4MB segments, so the import needs up to
+     * {@code -XX:MaxDirectMemorySize} of about the size of the imported documents in UTF-8 whatever the number of
+     * partition key ranges; bound it with maxNumberOfDocuments. The documents keep their source order within each partition key range, and the time taken includes
+     * reading the source. Only {@link DeduplicationPolicy#NONE} is supported.
+     * <blockquote>
+     * <pre>
+     * {@code
+     * try (DocumentSource source = DocumentSources.open(Paths.get("documents.json.gz"))) {
+     *     BulkImportResponse response;
+     *     do {
+     *         response = importer.importAll(source, 1000000, false);
+     *     } while (response.getNumberOfDocumentsImported() > 0 && response.getErrors().isEmpty());
+     * }
+     * }
+     * </pre>
+     * </blockquote>
+     *
+     * @param source to read the documents from
+     * @param maxNumberOfDocuments max number of documents to read from the source and import
+     * @param isUpsert whether enable upsert (overwrite if it exists)
+     * @return an instance of {@link BulkImportResponse}, with no document imported once the source is exhausted
+     * @throws IOException if the source cannot be read or is malformed
+     * @throws DocumentClientException if any failure happens
+     */
+    public BulkImportResponse importAll(DocumentSource source, int maxNumberOfDocuments, boolean isUpsert) throws DocumentClientException, IOException {
+        Preconditions.checkNotNull(source, "document source cannot be null");
+        Preconditions.checkArgument(maxNumberOfDocuments > 0, "maxNumberOfDocuments must be positive");
+        Preconditions.checkState(deduplicationPolicy == DeduplicationPolicy.NONE, "documents read from a source cannot be deduplicated");
+
+        Stopwatch watch = Stopwatch.createStarted();
+        OffHeapDocumentStaging staging = stage(source, maxNumberOfDocuments);
+        return waitForImport(() -> executeStagedBulkImportAsyncImpl(staging, isUpsert, watch));
+    }
+
+    /**
+     * Opens a long lived {@link BulkImportSession} which accepts documents one at a time.
+     *
+     * <p> Prefer a session over calling {@link #importAll(Collection, boolean)} many times with small collections
+     * (e.g., when consuming a message queue): the per partition congestion control stays warm across submissions
+     * and documents submitted concurrently are merged into the same stored procedure calls.
+     * <blockquote>
+     * <pre>
+     * {@code
+     * try (BulkImportSession session = importer.openSession(true)) {
+     *     ListenableFuture<Void> imported = session.submit(document);
+     * }
+     * }
+     * </pre>
+     * </blockquote>
+     *
+     * @param isUpsert whether enable upsert (overwrite if it exists)
+     * @return an instance of {@link BulkImportSession}, which has to be closed before closing this importer.
+     */
+    public BulkImportSession openSession(boolean isUpsert) {
+        BulkImportStoredProcedureOptions options = new BulkImportStoredProcedureOptions(true, true, null, false, isUpsert);
+
+        Map<String, MiniBatchAccumulator> accumulators = new HashMap<>();
+        Map<String, CongestionController> congestionControllers = new HashMap<>();
+        Semaphore pendingBytes = new Semaphore(BulkImportSession.MAX_PENDING_BYTES);
+
+        for (String partitionKeyRangeId: this.partitionKeyRangeIds) {
+            BatchInserter batchInserter = new BatchInserter(
+                    partitionKeyRangeId,
+                    Collections.emptyList(),
+                    this.client,
+                    bulkImportStoredProcLink,
+                    options);
+
+            CongestionController cc = new CongestionController(listeningExecutorService,
+                    collectionThroughput / partitionKeyRangeIds.size(),
+                    partitionKeyRangeId,
+                    batchInserter,
+                    partitionKeyRangeIdToInferredDegreeOfParallelism.get(partitionKeyRangeId),
+                    congestionControlSamplePeriod);
+
+            congestionControllers.put(partitionKeyRangeId, cc);
+            accumulators.put(partitionKeyRangeId, new MiniBatchAccumulator(partitionKeyRangeId, batchInserter, cc,
+                    pendingBytes, maxMiniBatchSize, sessionLingerTime, sessionLingerBytes));
+        }
+
+        BulkImportSession session = new BulkImportSession(this, listeningExecutorService, pendingBytes, accumulators, congestionControllers);
+        openSessions.add(session);
+        return session;
+    }
+
+    void onSessionClosed(BulkImportSession session, Map<String, CongestionController> congestionControllers) {
+        for (Map.Entry<String, CongestionController> entry : congestionControllers.entrySet()) {
+            partitionKeyRangeIdToInferredDegreeOfParallelism.put(entry.getKey(), entry.getValue().getDegreeOfConcurrency());
+        }
+        openSessions.remove(session);
+    }
+
     private BulkImportResponse executeBulkImportInternal(Collection<String> input,
+            List<Object> partitionKeyValues,
             boolean isUpsert) throws DocumentClientException {
         Preconditions.checkNotNull(input, "document collection cannot be null");
         try {
-            return executeBulkImportAsyncImpl(input, isUpsert).get();
+            return waitForImport(() -> executeBulkImportAsyncImpl(input, partitionKeyValues, isUpsert));
+        } finally {
+            // failed imports may still have written some of the documents
+            if (documentCache != null) {
+                input.forEach(this::invalidateCachedDocument);
+            }
+        }
+    }
+
+    private BulkImportResponse waitForImport(Callable<ListenableFuture<BulkImportResponse>> importCall) throws DocumentClientException {
+        try {
+            return importCall.call().get();
 
         } catch (ExecutionException e) {
             logger.debug("Failed to import documents", e);
@@ -422,6 +836,23 @@ public class DocumentBulkImporter implements AutoCloseable {
         }
     }
 
+    /**
+     * Invalidates the cached version of the document once the given future of its import completes.
+     */
+    void invalidateCachedDocumentOnCompletion(ListenableFuture<Void> future, String document) {
+        if (documentCache != null) {
+            future.addListener(() -> invalidateCachedDocument(document), MoreExecutors.directExecutor());
+        }
+    }
+
+    private void invalidateCachedDocument(String document) {
+        try {
+            documentCache.invalidate(document);
+        } catch (Exception e) {
+            logger.debug("Failed to invalidate the cached version of document {}", document, e);
+        }
+    }
+
     private DocumentClientException toDocumentClientException(Exception e) {
         if (e instanceof DocumentClientException) {
             return (DocumentClientException) e;
@@ -430,8 +861,90 @@ public class DocumentBulkImporter implements AutoCloseable {
         }
     }
 
-    private int getDocumentSizeOrThrow(String document) {
-        int documentSize = document.getBytes(Charset.forName("UTF-8")).length;
+    String getPartitionKeyRangeId(String document) {
+        return partitionKeyRangeIds.get(partitionKeyRangeResolver.resolveDocument(document).rangeIndex);
+    }
+
+    String getPartitionKeyRangeIdFromValue(Object partitionKeyValue) {
+        return partitionKeyRangeIds.get(partitionKeyRangeResolver.resolveValue(partitionKeyValue).rangeIndex);
+    }
+
+    DirectBufferPool getDirectBufferPool() {
+        return directBufferPool;
+    }
+
+    void setCongestionControlSamplePeriod(Duration samplePeriod) {
+        this.congestionControlSamplePeriod = samplePeriod;
+    }
+
+    /**
+     * Buckets the documents by partition key range in input order, without hashing the documents themselves:
+     * the ranges are resolved in parallel, then each document is appended to an exactly sized list.
+     * The ranges are resolved from the given partition key values if any, else by parsing the documents.
+     */
+    private Map<String, List<String>> bucketInInputOrder(Collection<String> documents, List<Object> partitionKeyValues) {
+        String[] documentsAsArray = documents.toArray(new String[0]);
+        Object[] partitionKeyValuesAsArray = partitionKeyValues != null ? partitionKeyValues.toArray() : null;
+        int[] rangeIndexes = new int[documentsAsArray.length];
+
+        IntStream.range(0, documentsAsArray.length).parallel().forEach(i -> {
+            rangeIndexes[i] = partitionKeyValuesAsArray != null
+                    ? partitionKeyRangeResolver.resolveValue(partitionKeyValuesAsArray[i]).rangeIndex
+                    : partitionKeyRangeResolver.resolveDocument(documentsAsArray[i]).rangeIndex;
+        });
+
+        int[] counts = new int[partitionKeyRangeIds.size()];
+        for (int rangeIndex : rangeIndexes) {
+            counts[rangeIndex]++;
+        }
+
+        List<List<String>> buckets = new ArrayList<>(counts.length);
+        for (int count : counts) {
+            buckets.add(new ArrayList<>(count));
+        }
+
+        for (int i = 0; i < documentsAsArray.length; i++) {
+            buckets.get(rangeIndexes[i]).add(documentsAsArray[i]);
+        }
+
+        Map<String, List<String>> documentsByPartition = new HashMap<>();
+        for (int r = 0; r < counts.length; r++) {
+            documentsByPartition.put(partitionKeyRangeIds.get(r), buckets.get(r));
+        }
+        return documentsByPartition;
+    }
+
+    private Map<String, List<String>> bucketAndDeduplicate(Collection<String> documents, DocumentDeduplicator deduplicator) {
+        String[] documentsAsArray = documents.toArray(new String[0]);
+        int[] rangeIndexes = new int[documentsAsArray.length];
+        long[] keys = new long[documentsAsArray.length];
+        boolean[] hasKey = new boolean[documentsAsArray.length];
+
+        IntStream.range(0, documentsAsArray.length).parallel().forEach(i -> {
+            JsonNode root = DocumentAnalyzer.parse(documentsAsArray[i]);
+            JsonNode id = root.get("id");
+            PartitionKeyRangeResolver.Resolution resolution = partitionKeyRangeResolver.resolveDocument(root);
+
+            rangeIndexes[i] = resolution.rangeIndex;
+            // a document without a string id is not deduplicated, the stored procedure rejects it
+            hasKey[i] = id != null && id.isTextual();
+            if (hasKey[i]) {
+                keys[i] = DEDUPLICATION_HASH_FUNCTION.newHasher()
+                        .putUnencodedChars(id.textValue())
+                        .putByte((byte) 0)
+                        .putUnencodedChars(resolution.effectivePartitionKey)
+                        .hash().asLong();
+            }
+        });
+
+        return deduplicator.bucket(documentsAsArray, partitionKeyRangeIds, rangeIndexes, keys, hasKey);
+    }
+
+    int getDocumentSizeOrThrow(String document) {
+        return checkDocumentSize(document.getBytes(Charset.forName("UTF-8")).length);
+    }
+
+    private int checkDocumentSize(int documentSize) {
         if (documentSize > maxMiniBatchSize) {
             logger.error("Document size {} larger than script payload limit. {}", documentSize, maxMiniBatchSize);
             throw new UnsupportedOperationException("Cannot import a document whose size is larger than script payload limit.");
@@ -440,6 +953,7 @@ public class DocumentBulkImporter implements AutoCloseable {
     }
 
     private ListenableFuture<BulkImportResponse> executeBulkImportAsyncImpl(Collection<String> documents,
+            List<Object> partitionKeyValues,
             boolean isUpsert) throws Exception {
         Stopwatch watch = Stopwatch.createStarted();
 
@@ -447,20 +961,36 @@ public class DocumentBulkImporter implements AutoCloseable {
 
         logger.debug("Bucketing documents ...");
 
-        ConcurrentHashMap<String, Set<String>> documentsToImportByPartition = new ConcurrentHashMap<String, Set<String>>();
+        Map<String, ? extends Collection<String>> documentsToImportByPartition;
         ConcurrentHashMap<String, List<List<String>>> miniBatchesToImportByPartition = new ConcurrentHashMap<String, List<List<String>>>();
 
         for (String partitionKeyRangeId: partitionKeyRangeIds) {
-            documentsToImportByPartition.put(partitionKeyRangeId,  ConcurrentHashMap.newKeySet(documents.size() / partitionKeyRangeIds.size()));
             miniBatchesToImportByPartition.put(partitionKeyRangeId, new ArrayList<List<String>>(1000));
         }
 
-        documents.parallelStream().forEach(documentAsString -> {
-            PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(documentAsString, partitionKeyDefinition);
-            String effectivePartitionKey = partitionKeyValue.getEffectivePartitionKeyString(partitionKeyDefinition, true);
-            String partitionRangeId = collectionRoutingMap.getRangeByEffectivePartitionKey(effectivePartitionKey).getId();
-            documentsToImportByPartition.get(partitionRangeId).add(documentAsString);
-        });
+        final int numberOfDuplicates;
+        if (deduplicationPolicy == DeduplicationPolicy.NONE && (inputOrderPreserved || partitionKeyValues != null)) {
+            documentsToImportByPartition = bucketInInputOrder(documents, partitionKeyValues);
+            numberOfDuplicates = 0;
+        } else if (deduplicationPolicy == DeduplicationPolicy.NONE) {
+            ConcurrentHashMap<String, Set<String>> documentsByPartition = new ConcurrentHashMap<String, Set<String>>();
+            for (String partitionKeyRangeId: partitionKeyRangeIds) {
+                documentsByPartition.put(partitionKeyRangeId,  ConcurrentHashMap.newKeySet(documents.size() / partitionKeyRangeIds.size()));
+            }
+
+            documents.parallelStream().forEach(documentAsString -> {
+                String partitionRangeId = getPartitionKeyRangeId(documentAsString);
+                documentsByPartition.get(partitionRangeId).add(documentAsString);
+            });
+
+            documentsToImportByPartition = documentsByPartition;
+            numberOfDuplicates = 0;
+        } else {
+            DocumentDeduplicator deduplicator = new DocumentDeduplicator(deduplicationPolicy);
+            documentsToImportByPartition = bucketAndDeduplicate(documents, deduplicator);
+            numberOfDuplicates = deduplicator.getNumberOfDuplicates();
+            logger.debug("Dropped {} duplicate documents", numberOfDuplicates);
+        }
 
         logger.trace("Creating mini batches within each partition bucket");
 
@@ -468,7 +998,7 @@ public class DocumentBulkImporter implements AutoCloseable {
 
             String partitionRangeId = entry.getKey();
 
-            Set<String> documentsToImportInPartition =  entry.getValue();
+            Collection<String> documentsToImportInPartition =  entry.getValue();
 
             Iterator<String> it = documentsToImportInPartition.iterator();
             ArrayList<String> currentMiniBatch = new ArrayList<String>(500);
@@ -497,6 +1027,88 @@ public class DocumentBulkImporter implements AutoCloseable {
             }
         });
 
+        return importMiniBatchesAsync(miniBatchesToImportByPartition, options, watch, numberOfDuplicates, () -> {});
+    }
+
+    /**
+     * Reads the next documents of the source into a staging with a partition per partition key range, in the order of
+     * {@link #partitionKeyRangeIds}; the staging is closed if the reading fails.
+     *
+     * <p> The partition key ranges share the segments of the staging, so the direct memory used is about the size of
+     * the documents read, bounded by maxNumberOfDocuments, whatever the number of partition key ranges.
+     */
+    private OffHeapDocumentStaging stage(DocumentSource source, int maxNumberOfDocuments) throws IOException {
+        OffHeapDocumentStaging staging = new OffHeapDocumentStaging(directBufferPool, partitionKeyRangeIds.size(),
+                Math.min(STAGING_READ_SIZE, maxNumberOfDocuments));
+
+        try {
+            int numberOfDocumentsRead = 0;
+            while (numberOfDocumentsRead < maxNumberOfDocuments) {
+                List<String> documents = source.readBatch(Math.min(STAGING_READ_SIZE, maxNumberOfDocuments - numberOfDocumentsRead));
+                if (documents.isEmpty()) {
+                    break;
+                }
+                numberOfDocumentsRead += documents.size();
+
+                // the ranges are resolved and the documents encoded in parallel, then copied in source order
+                int[] rangeIndexes = new int[documents.size()];
+                byte[][] encodedDocuments = new byte[documents.size()][];
+                IntStream.range(0, documents.size()).parallel().forEach(i -> {
+                    String document = documents.get(i);
+                    rangeIndexes[i] = partitionKeyRangeResolver.resolveDocument(document).rangeIndex;
+                    encodedDocuments[i] = document.getBytes(StandardCharsets.UTF_8);
+                    checkDocumentSize(encodedDocuments[i].length);
+                });
+
+                for (int i = 0; i < encodedDocuments.length; i++) {
+                    staging.append(rangeIndexes[i], encodedDocuments[i]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            staging.close();
+            throw e;
+        }
+
+        return staging;
+    }
+
+    private ListenableFuture<BulkImportResponse> executeStagedBulkImportAsyncImpl(OffHeapDocumentStaging staging,
+            boolean isUpsert,
+            Stopwatch watch) throws Exception {
+        Runnable onCompletion = () -> {
+            if (documentCache != null) {
+                // failed imports may still have written some of the documents
+                for (int i = 0; i < staging.size(); i++) {
+                    invalidateCachedDocument(staging.get(i));
+                }
+            }
+            staging.close();
+        };
+
+        try {
+            BulkImportStoredProcedureOptions options = new BulkImportStoredProcedureOptions(true, true, null, false, isUpsert);
+
+            Map<String, List<List<String>>> miniBatchesToImportByPartition = new HashMap<>();
+            for (int r = 0; r < partitionKeyRangeIds.size(); r++) {
+                miniBatchesToImportByPartition.put(partitionKeyRangeIds.get(r), staging.toMiniBatches(r, maxMiniBatchSize));
+            }
+
+            return importMiniBatchesAsync(miniBatchesToImportByPartition, options, watch, 0, onCompletion);
+        } catch (Exception e) {
+            onCompletion.run();
+            throw e;
+        }
+    }
+
+    /**
+     * Imports the mini-batches of each partition key range under its congestion control.
+     * @param onCompletion run once all the mini-batches are imported or failed, before the response is created
+     */
+    private ListenableFuture<BulkImportResponse> importMiniBatchesAsync(Map<String, List<List<String>>> miniBatchesToImportByPartition,
+            BulkImportStoredProcedureOptions options,
+            Stopwatch watch,
+            int numberOfDuplicates,
+            Runnable onCompletion) {
         logger.debug("Beginning bulk import within each partition bucket");
         Map<String, BatchInserter> batchInserters = new HashMap<String, BatchInserter>();
         Map<String, CongestionController> congestionControllers = new HashMap<String, CongestionController>();
@@ -518,7 +1130,8 @@ public class DocumentBulkImporter implements AutoCloseable {
                     collectionThroughput / partitionKeyRangeIds.size(),
                     partitionKeyRangeId,
                     batchInserter,
-                    partitionKeyRangeIdToInferredDegreeOfParallelism.get(partitionKeyRangeId));
+                    partitionKeyRangeIdToInferredDegreeOfParallelism.get(partitionKeyRangeId),
+                    congestionControlSamplePeriod);
 
             congestionControllers.put(partitionKeyRangeId,cc);
 
@@ -542,11 +1155,15 @@ public class DocumentBulkImporter implements AutoCloseable {
 
                 int numberOfDocumentsImported = batchInserters.values().stream().mapToInt(b -> b.getNumberOfDocumentsImported()).sum();
                 double totalRequestUnitsConsumed = batchInserters.values().stream().mapToDouble(b -> b.getTotalRequestUnitsConsumed()).sum();
+                long numberOfThrottles = batchInserters.values().stream().mapToLong(b -> b.getTotalNumberOfThrottles()).sum();
 
                 watch.stop();
 
+                onCompletion.run();
+
                 BulkImportResponse bulkImportResponse = new
-                        BulkImportResponse(numberOfDocumentsImported, totalRequestUnitsConsumed, watch.elapsed(), failures);
+                        BulkImportResponse(numberOfDocumentsImported, totalRequestUnitsConsumed, watch.elapsed(), failures, numberOfDuplicates,
+                                numberOfThrottles);
 
                 return Futures.immediateFuture(bulkImportResponse);
             }
@@ -555,10 +1172,14 @@ public class DocumentBulkImporter implements AutoCloseable {
         return futureContainer.callAsync(completeAsyncCallback, listeningExecutorService);
     }
 
-    private CollectionRoutingMap getCollectionRoutingMap(DocumentClient client) {
+    static CollectionRoutingMap getCollectionRoutingMap(DocumentClient client, String collectionLink, Collection<PartitionKeyRange> givenPartitionKeyRanges) {
         List<ImmutablePair<PartitionKeyRange, Boolean>> ranges = new ArrayList<>();
 
-        for (PartitionKeyRange range : client.readPartitionKeyRanges(this.collectionLink, (FeedOptions) null).getQueryIterable().toList()) {
+        Collection<PartitionKeyRange> partitionKeyRanges = givenPartitionKeyRanges != null
+                ? givenPartitionKeyRanges
+                : client.readPartitionKeyRanges(collectionLink, (FeedOptions) null).getQueryIterable().toList();
+
+        for (PartitionKeyRange range : partitionKeyRanges) {
             ranges.add(new ImmutablePair<>(range, true));
         }
 
@@ -571,4 +1192,17 @@ public class DocumentBulkImporter implements AutoCloseable {
 
         return routingMap;
     }
+
+    /**
+     * @return the ids of the current partition key ranges of the routing map, without the ranges which were split
+     */
+    static List<String> getPartitionKeyRangeIds(CollectionRoutingMap routingMap) {
+        Range<String> fullRange = new Range<String>(
+                PartitionKeyInternal.MinimumInclusiveEffectivePartitionKey,
+                PartitionKeyInternal.MaximumExclusiveEffectivePartitionKey,
+                true,
+                false);
+
+        return routingMap.getOverlappingRanges(fullRange).stream().map(PartitionKeyRange::getId).collect(Collectors.toList());
+    }
 }
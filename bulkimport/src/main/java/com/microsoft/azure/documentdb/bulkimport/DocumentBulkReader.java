@@ -0,0 +1,384 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.FeedOptions;
+import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.PartitionKey;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.ResourceResponse;
+import com.microsoft.azure.documentdb.SqlParameter;
+import com.microsoft.azure.documentdb.SqlParameterCollection;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+import com.microsoft.azure.documentdb.internal.routing.CollectionRoutingMap;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+/**
+ * Reads many documents by id and partition key value: the documents are grouped by partition key range with
+ * the routing map of the collection and each group is read with IN-list queries of up to maxIdsPerQuery ids,
+ * several at once, instead of one point read per document.
+ */
+public class DocumentBulkReader implements AutoCloseable {
+
+    public static class Builder {
+
+        private DocumentClient client;
+        private String collectionLink;
+        private PartitionKeyDefinition partitionKeyDefinition;
+        private int maxIdsPerQuery = DEFAULT_MAX_IDS_PER_QUERY;
+        private int maxDegreeOfConcurrency = DEFAULT_MAX_DEGREE_OF_CONCURRENCY;
+        private Collection<PartitionKeyRange> partitionKeyRanges;
+        private DocumentBatchReader batchReader;
+
+        /**
+         * Use the instance of {@link DocumentClient} to read from the given collection.
+         *
+         * @param client an instance of {@link DocumentClient}
+         * @param databaseName name of the database
+         * @param collectionName name of the collection
+         * @param partitionKeyDefinition specifies the {@link PartitionKeyDefinition} of the collection
+         * @return an instance of {@link Builder}
+         */
+        public Builder from(DocumentClient client,
+                String databaseName,
+                String collectionName,
+                PartitionKeyDefinition partitionKeyDefinition) {
+
+            this.client = client;
+            this.collectionLink = String.format("/dbs/%s/colls/%s", databaseName, collectionName);
+            this.partitionKeyDefinition = partitionKeyDefinition;
+            return this;
+        }
+
+        /**
+         * use the given max number of ids per query.
+         *
+         * If not specified will use 100. A partition key range holding a single of the ids is read with a point read.
+         * @param maxIdsPerQuery max number of ids per query
+         * @return {@link Builder}
+         */
+        public Builder withMaxIdsPerQuery(int maxIdsPerQuery) {
+            Preconditions.checkArgument(maxIdsPerQuery > 0, "maxIdsPerQuery must be positive");
+
+            this.maxIdsPerQuery = maxIdsPerQuery;
+            return this;
+        }
+
+        /**
+         * use the given max number of reads in flight, across all the partition key ranges.
+         *
+         * If not specified will use 20.
+         * @param maxDegreeOfConcurrency max number of reads in flight
+         * @return {@link Builder}
+         */
+        public Builder withMaxDegreeOfConcurrency(int maxDegreeOfConcurrency) {
+            Preconditions.checkArgument(maxDegreeOfConcurrency > 0, "maxDegreeOfConcurrency must be positive");
+
+            this.maxDegreeOfConcurrency = maxDegreeOfConcurrency;
+            return this;
+        }
+
+        /**
+         * use the given partition key ranges instead of reading them from the collection.
+         *
+         * @param partitionKeyRanges the complete set of partition key ranges of the collection
+         * @return {@link Builder}
+         */
+        Builder withPartitionKeyRanges(Collection<PartitionKeyRange> partitionKeyRanges) {
+            this.partitionKeyRanges = partitionKeyRanges;
+            return this;
+        }
+
+        /**
+         * use the given reader instead of reading the documents with the client.
+         *
+         * @param batchReader an instance of {@link DocumentBatchReader}
+         * @return {@link Builder}
+         */
+        Builder withBatchReader(DocumentBatchReader batchReader) {
+            this.batchReader = batchReader;
+            return this;
+        }
+
+        /**
+         * Instantiates {@link DocumentBulkReader} given the configured {@link Builder}.
+         *
+         * @return the new reader
+         */
+        public DocumentBulkReader build() {
+            Preconditions.checkNotNull(client, "client cannot be null");
+
+            return new DocumentBulkReader(this);
+        }
+
+        private Builder() {}
+    }
+
+    /**
+     * Creates a new {@link DocumentBulkReader.Builder} instance
+     * @return an instance of {@link DocumentBulkReader.Builder}
+     */
+    public static DocumentBulkReader.Builder builder() {
+        return new DocumentBulkReader.Builder();
+    }
+
+    private final static int DEFAULT_MAX_IDS_PER_QUERY = 100;
+
+    private final static int DEFAULT_MAX_DEGREE_OF_CONCURRENCY = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentBulkReader.class);
+
+    private final DocumentClient client;
+
+    private final String collectionLink;
+
+    private final PartitionKeyDefinition partitionKeyDefinition;
+
+    private final PartitionKeyAccessor partitionKeyAccessor;
+
+    private final int maxIdsPerQuery;
+
+    private final CollectionRoutingMap collectionRoutingMap;
+
+    private final DocumentBatchReader batchReader;
+
+    private final ListeningExecutorService listeningExecutorService;
+
+    private final DoubleAdder requestUnitsConsumed = new DoubleAdder();
+
+    private DocumentBulkReader(Builder builder) {
+        this.client = builder.client;
+        this.collectionLink = builder.collectionLink;
+        this.partitionKeyDefinition = builder.partitionKeyDefinition;
+        this.partitionKeyAccessor = PartitionKeyAccessor.compile(builder.partitionKeyDefinition);
+        this.maxIdsPerQuery = builder.maxIdsPerQuery;
+        this.collectionRoutingMap = DocumentBulkImporter.getCollectionRoutingMap(client, collectionLink, builder.partitionKeyRanges);
+        this.batchReader = builder.batchReader != null ? builder.batchReader : this::readBatchFromClient;
+        this.listeningExecutorService = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(builder.maxDegreeOfConcurrency));
+    }
+
+    /**
+     * Reads the documents of the given ids and partition key values.
+     *
+     * <p> The reads of all the partition key ranges start at once and the documents are streamed as each read completes,
+     * so they come in no particular order. Documents not found are missing from the stream. A failed read fails
+     * the stream with an {@link com.google.common.util.concurrent.UncheckedExecutionException}; closing the stream
+     * cancels the reads not started yet.
+     *
+     * @param ids the ids of the documents
+     * @param partitionKeyValues the partition key values of the documents, in the order of the ids: a String, a Number,
+     *        a Boolean or {@link JSONObject#NULL}
+     * @return the documents found
+     */
+    public Stream<Document> readMany(List<String> ids, List<Object> partitionKeyValues) {
+        Preconditions.checkNotNull(ids, "ids cannot be null");
+        Preconditions.checkArgument(partitionKeyValues != null && partitionKeyValues.size() == ids.size(),
+                "partitionKeyValues must have one value per id");
+
+        Map<String, List<Integer>> indexesByPartitionKeyRange = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            indexesByPartitionKeyRange.computeIfAbsent(getPartitionKeyRangeId(partitionKeyValues.get(i)), id -> new ArrayList<>()).add(i);
+        }
+
+        List<ListenableFuture<List<Document>>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : indexesByPartitionKeyRange.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            for (int start = 0; start < indexes.size(); start += maxIdsPerQuery) {
+                List<String> batchIds = new ArrayList<>();
+                List<Object> batchPartitionKeyValues = new ArrayList<>();
+                for (int index : indexes.subList(start, Math.min(start + maxIdsPerQuery, indexes.size()))) {
+                    batchIds.add(ids.get(index));
+                    batchPartitionKeyValues.add(partitionKeyValues.get(index));
+                }
+
+                futures.add(listeningExecutorService.submit(() -> readBatch(entry.getKey(), batchIds, batchPartitionKeyValues)));
+            }
+        }
+
+        logger.debug("Reading {} documents from {} partition key ranges with {} reads", ids.size(), indexesByPartitionKeyRange.size(), futures.size());
+
+        return Futures.inCompletionOrder(futures).stream()
+                .flatMap(future -> Futures.getUnchecked(future).stream())
+                .onClose(() -> futures.forEach(future -> future.cancel(false)));
+    }
+
+    /**
+     * @return the request units consumed by the reads so far
+     */
+    public double getTotalRequestUnitsConsumed() {
+        return requestUnitsConsumed.sum();
+    }
+
+    /**
+     * Releases any internal resources.
+     * It is responsibility of the caller to close {@link DocumentClient}.
+     */
+    @Override
+    public void close() {
+        listeningExecutorService.shutdownNow();
+        try {
+            if (!listeningExecutorService.awaitTermination(60, TimeUnit.SECONDS)) {
+                logger.error("some tasks did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Document> readBatch(String partitionKeyRangeId, List<String> ids, List<Object> partitionKeyValues) throws Exception {
+        DocumentBatchReader.Batch batch;
+        while (true) {
+            try {
+                batch = batchReader.read(partitionKeyRangeId, ids, partitionKeyValues);
+                break;
+            } catch (DocumentClientException e) {
+                if (!ExceptionUtils.isThrottled(e)) {
+                    throw e;
+                }
+                Thread.sleep(e.getRetryAfterInMilliseconds());
+            }
+        }
+        requestUnitsConsumed.add(batch.getRequestCharge());
+
+        // the same id may be used with another partition key value of the same partition key range
+        Set<String> requested = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            requested.add(key(ids.get(i), toPartitionKeyInternal(partitionKeyValues.get(i))));
+        }
+
+        List<Document> documents = new ArrayList<>(batch.getDocuments().size());
+        for (Document document : batch.getDocuments()) {
+            PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(document.toJson(), partitionKeyAccessor);
+            if (requested.contains(key(document.getId(), partitionKeyValue))) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    private String key(String id, PartitionKeyInternal partitionKeyValue) {
+        return partitionKeyValue.getEffectivePartitionKeyString(partitionKeyDefinition, true) + "/" + id;
+    }
+
+    private PartitionKeyInternal toPartitionKeyInternal(Object partitionKeyValue) {
+        return partitionKeyAccessor.isEmpty()
+                ? PartitionKeyInternal.getEmpty()
+                : DocumentAnalyzer.fromPartitionKeyvalue(partitionKeyValue);
+    }
+
+    String getPartitionKeyRangeId(Object partitionKeyValue) {
+        String effectivePartitionKey = toPartitionKeyInternal(partitionKeyValue).getEffectivePartitionKeyString(partitionKeyDefinition, true);
+        return collectionRoutingMap.getRangeByEffectivePartitionKey(effectivePartitionKey).getId();
+    }
+
+    /**
+     * @return SELECT * FROM c WHERE c.id IN (@id0, @id1, ...) with the ids as parameters
+     */
+    static SqlQuerySpec createQuery(List<String> ids) {
+        StringBuilder query = new StringBuilder("SELECT * FROM c WHERE c.id IN (");
+        SqlParameterCollection parameters = new SqlParameterCollection();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                query.append(", ");
+            }
+            query.append("@id").append(i);
+            parameters.add(new SqlParameter("@id" + i, ids.get(i)));
+        }
+        return new SqlQuerySpec(query.append(")").toString(), parameters);
+    }
+
+    private DocumentBatchReader.Batch readBatchFromClient(String partitionKeyRangeId, List<String> ids, List<Object> partitionKeyValues) throws DocumentClientException {
+        if (ids.size() == 1 && isPointReadable(ids.get(0), partitionKeyValues.get(0))) {
+            RequestOptions options = new RequestOptions();
+            if (!partitionKeyAccessor.isEmpty()) {
+                options.setPartitionKey(new PartitionKey(partitionKeyValues.get(0)));
+            }
+
+            try {
+                ResourceResponse<Document> response = client.readDocument(String.format("%s/docs/%s", collectionLink, ids.get(0)), options);
+                return new DocumentBatchReader.Batch(Collections.singletonList(response.getResource()), response.getRequestCharge());
+            } catch (DocumentClientException e) {
+                if (e.getStatusCode() == HttpConstants.StatusCodes.NOTFOUND) {
+                    return new DocumentBatchReader.Batch(Collections.emptyList(), 0);
+                }
+                throw e;
+            }
+        }
+
+        FeedOptions feedOptions = new FeedOptions();
+        feedOptions.setPartitionKeyRangeIdInternal(partitionKeyRangeId);
+        feedOptions.setPageSize(ids.size());
+
+        List<Document> documents = new ArrayList<>(ids.size());
+        double requestCharge = 0;
+        String continuation = null;
+        do {
+            feedOptions.setRequestContinuation(continuation);
+            FeedResponse<Document> response = client.queryDocuments(collectionLink, createQuery(ids), feedOptions);
+            List<Document> page = response.getQueryIterable().fetchNextBlock();
+            if (page != null) {
+                documents.addAll(page);
+            }
+            requestCharge += response.getRequestCharge();
+            continuation = response.getResponseContinuation();
+        } while (continuation != null);
+
+        return new DocumentBatchReader.Batch(documents, requestCharge);
+    }
+
+    /**
+     * ids with characters not allowed in a link, and values the point read cannot address, are queried instead.
+     */
+    private static boolean isPointReadable(String id, Object partitionKeyValue) {
+        return id.indexOf('/') < 0 && id.indexOf('\\') < 0 && id.indexOf('?') < 0 && id.indexOf('#') < 0
+                && (partitionKeyValue instanceof String || partitionKeyValue instanceof Number || partitionKeyValue instanceof Boolean);
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.json.JSONObject;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.microsoft.azure.documentdb.AccessCondition;
+import com.microsoft.azure.documentdb.AccessConditionType;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKey;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.ResourceResponse;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+/**
+ * A read-through cache of the point reads of one collection, keyed on the partition key value and the id.
+ *
+ * <p> A cached document is served without a read for the time to live, then it is revalidated with a read
+ * conditional on its etag, which is cheaper than a full read when the document did not change. The cache
+ * is bounded by the size of the cached documents; the least recently used ones are evicted first.
+ *
+ * <p> Writes made elsewhere are not seen before the time to live elapsed, so let the writes of this process go
+ * through {@link #upsert(Document)} or through an importer built with
+ * {@link DocumentBulkImporter.Builder#withDocumentCache(DocumentCache)}, which invalidate the written documents.
+ */
+public class DocumentCache {
+
+    public static class Builder {
+
+        private DocumentClient client;
+        private String collectionLink;
+        private PartitionKeyDefinition partitionKeyDefinition;
+        private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+        private Duration timeToLive = DEFAULT_TIME_TO_LIVE;
+        private Ticker ticker = Ticker.systemTicker();
+        private DocumentReader documentReader;
+
+        /**
+         * Use the instance of {@link DocumentClient} to read from the given collection.
+         *
+         * @param client an instance of {@link DocumentClient}
+         * @param databaseName name of the database
+         * @param collectionName name of the collection
+         * @param partitionKeyDefinition specifies the {@link PartitionKeyDefinition} of the collection
+         * @return an instance of {@link Builder}
+         */
+        public Builder from(DocumentClient client,
+                String databaseName,
+                String collectionName,
+                PartitionKeyDefinition partitionKeyDefinition) {
+
+            this.client = client;
+            this.collectionLink = String.format("/dbs/%s/colls/%s", databaseName, collectionName);
+            this.partitionKeyDefinition = partitionKeyDefinition;
+            return this;
+        }
+
+        /**
+         * use the given max size of the cached documents, in bytes of their JSON.
+         *
+         * If not specified will use 64MB.
+         * @param maximumWeight max size of the cached documents
+         * @return {@link Builder}
+         */
+        public Builder withMaximumWeight(long maximumWeight) {
+            Preconditions.checkArgument(maximumWeight > 0, "maximumWeight must be positive");
+
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        /**
+         * use the given time a cached document is served before being revalidated.
+         *
+         * If not specified will use 30 seconds.
+         * @param timeToLive time to live of the cached documents
+         * @return {@link Builder}
+         */
+        public Builder withTimeToLive(Duration timeToLive) {
+            Preconditions.checkArgument(!timeToLive.isNegative(), "timeToLive cannot be negative");
+
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * use the given time source instead of the system one.
+         *
+         * @param ticker the time source
+         * @return {@link Builder}
+         */
+        Builder withTicker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * use the given reader instead of reading the documents with the client.
+         *
+         * @param documentReader an instance of {@link DocumentReader}
+         * @return {@link Builder}
+         */
+        Builder withDocumentReader(DocumentReader documentReader) {
+            this.documentReader = documentReader;
+            return this;
+        }
+
+        /**
+         * Instantiates {@link DocumentCache} given the configured {@link Builder}.
+         *
+         * @return the new cache
+         */
+        public DocumentCache build() {
+            Preconditions.checkArgument(client != null || documentReader != null, "client cannot be null");
+
+            return new DocumentCache(this);
+        }
+
+        private Builder() {}
+    }
+
+    /**
+     * Creates a new {@link DocumentCache.Builder} instance
+     * @return an instance of {@link DocumentCache.Builder}
+     */
+    public static DocumentCache.Builder builder() {
+        return new DocumentCache.Builder();
+    }
+
+    /**
+     * Reads a document, conditionally on its etag.
+     */
+    interface DocumentReader {
+        /**
+         * @param id the id of the document
+         * @param partitionKeyValue the partition key value of the document
+         * @param etag the etag of the cached version, or null
+         * @return the document, {@link DocumentCache#NOT_MODIFIED} if its etag is still the given one, or null if not found
+         * @throws DocumentClientException if the read fails
+         */
+        Document read(String id, Object partitionKeyValue, String etag) throws DocumentClientException;
+    }
+
+    static final Document NOT_MODIFIED = new Document();
+
+    private final static long DEFAULT_MAXIMUM_WEIGHT = 64 * 1024 * 1024;
+
+    private final static Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(30);
+
+    private final static int NOT_MODIFIED_STATUS_CODE = 304;
+
+    /**
+     * Estimated size of an entry besides its document.
+     */
+    private final static int ENTRY_OVERHEAD = 128;
+
+    private static class Entry {
+        private final Document document;
+        private final String etag;
+        private final int weight;
+        private volatile long validatedAtNanos;
+
+        Entry(Document document, int weight, long validatedAtNanos) {
+            this.document = document;
+            this.etag = document.getETag();
+            this.weight = weight;
+            this.validatedAtNanos = validatedAtNanos;
+        }
+    }
+
+    private final DocumentClient client;
+
+    private final String collectionLink;
+
+    private final PartitionKeyDefinition partitionKeyDefinition;
+
+    private final PartitionKeyAccessor partitionKeyAccessor;
+
+    private final long timeToLiveNanos;
+
+    private final Ticker ticker;
+
+    private final DocumentReader documentReader;
+
+    private final Cache<String, Entry> cache;
+
+    /**
+     * Incremented by every invalidation, so a read which raced with a write does not cache what it read.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private DocumentCache(Builder builder) {
+        this.client = builder.client;
+        this.collectionLink = builder.collectionLink;
+        this.partitionKeyDefinition = builder.partitionKeyDefinition;
+        this.partitionKeyAccessor = PartitionKeyAccessor.compile(builder.partitionKeyDefinition);
+        this.timeToLiveNanos = builder.timeToLive.toNanos();
+        this.ticker = builder.ticker;
+        this.documentReader = builder.documentReader != null ? builder.documentReader : this::readFromClient;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(builder.maximumWeight)
+                .weigher((String key, Entry entry) -> entry.weight)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Reads a document through the cache.
+     *
+     * @param id the id of the document
+     * @param partitionKeyValue the partition key value of the document: a String, a Number, a Boolean or {@link JSONObject#NULL}
+     * @return the document, or null if it does not exist. The returned document is shared, do not modify it.
+     * @throws DocumentClientException if the read fails
+     */
+    public Document read(String id, Object partitionKeyValue) throws DocumentClientException {
+        String key = key(id, toPartitionKeyInternal(partitionKeyValue));
+        Entry entry = cache.getIfPresent(key);
+        long now = ticker.read();
+
+        if (entry != null && now - entry.validatedAtNanos < timeToLiveNanos) {
+            hits.increment();
+            return entry.document;
+        }
+
+        long invalidationsBeforeRead = invalidations.get();
+        Document document = documentReader.read(id, partitionKeyValue, entry != null ? entry.etag : null);
+
+        if (document == NOT_MODIFIED) {
+            revalidations.increment();
+            entry.validatedAtNanos = now;
+            return entry.document;
+        }
+
+        misses.increment();
+        if (document == null) {
+            cache.invalidate(key);
+        } else if (invalidations.get() == invalidationsBeforeRead) {
+            cache.put(key, new Entry(document, ENTRY_OVERHEAD + 2 * document.toJson().length(), now));
+        }
+        return document;
+    }
+
+    /**
+     * Upserts a document and invalidates its cached version.
+     *
+     * @param document the document
+     * @return the upserted document
+     * @throws DocumentClientException if the upsert fails
+     */
+    public Document upsert(Document document) throws DocumentClientException {
+        Preconditions.checkNotNull(client, "client cannot be null");
+        try {
+            return client.upsertDocument(collectionLink, document, null, true).getResource();
+        } finally {
+            invalidate(document.toJson());
+        }
+    }
+
+    /**
+     * Invalidates the cached version of a document.
+     *
+     * @param id the id of the document
+     * @param partitionKeyValue the partition key value of the document
+     */
+    public void invalidate(String id, Object partitionKeyValue) {
+        invalidations.incrementAndGet();
+        cache.invalidate(key(id, toPartitionKeyInternal(partitionKeyValue)));
+    }
+
+    /**
+     * Invalidates the cached version of a document written elsewhere, e.g. by an importer.
+     *
+     * @param document the serialized document
+     */
+    public void invalidate(String document) {
+        ImmutablePair<String, PartitionKeyInternal> idAndPartitionKeyValue =
+                DocumentAnalyzer.extractIdAndPartitionKeyValue(document, partitionKeyAccessor);
+        invalidations.incrementAndGet();
+        cache.invalidate(key(idAndPartitionKeyValue.getLeft(), idAndPartitionKeyValue.getRight()));
+    }
+
+    /**
+     * Invalidates all the cached documents.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Gets the number of reads served from the cache without a read.
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of reads which read the document, because it was not cached or it changed.
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of reads served from the cache after a conditional read found the document unchanged.
+     * @return the number of revalidations
+     */
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Gets the number of documents evicted to stay within the max size.
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Gets the number of cached documents.
+     * @return the number of cached documents
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private String key(String id, PartitionKeyInternal partitionKeyValue) {
+        return partitionKeyValue.toJson() + id;
+    }
+
+    private PartitionKeyInternal toPartitionKeyInternal(Object partitionKeyValue) {
+        return partitionKeyAccessor.isEmpty()
+                ? PartitionKeyInternal.getEmpty()
+                : DocumentAnalyzer.fromPartitionKeyvalue(partitionKeyValue);
+    }
+
+    private Document readFromClient(String id, Object partitionKeyValue, String etag) throws DocumentClientException {
+        RequestOptions options = new RequestOptions();
+        if (!partitionKeyAccessor.isEmpty()) {
+            options.setPartitionKey(new PartitionKey(partitionKeyValue == JSONObject.NULL ? null : partitionKeyValue));
+        }
+        if (etag != null) {
+            AccessCondition condition = new AccessCondition();
+            condition.setType(AccessConditionType.IfNoneMatch);
+            condition.setCondition(etag);
+            options.setAccessCondition(condition);
+        }
+
+        try {
+            ResourceResponse<Document> response = client.readDocument(String.format("%s/docs/%s", collectionLink, id), options);
+            return response.getStatusCode() == NOT_MODIFIED_STATUS_CODE ? NOT_MODIFIED : response.getResource();
+        } catch (DocumentClientException e) {
+            if (e.getStatusCode() == HttpConstants.StatusCodes.NOTFOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+}
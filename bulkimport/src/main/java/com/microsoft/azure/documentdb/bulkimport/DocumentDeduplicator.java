@@ -0,0 +1,139 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Buckets the documents of an import by partition key range, keeping a single document per (id, partition key).
+ *
+ * <p> Documents are identified by a 64 bit hash of their id and effective partition key, so the memory used
+ * does not depend on the document or id sizes. Two distinct documents colliding on the hash are treated as
+ * duplicates; among n documents this happens with probability about n^2 / 2^65 (3 * 10^-4 for 100M documents).
+ * Documents with the same id and partition key always land in the same partition key range, so every range is
+ * deduplicated on its own and in parallel. Documents without a string id are never duplicates of each other; they are
+ * all kept, for the stored procedure to report them.
+ */
+class DocumentDeduplicator {
+
+    private final DeduplicationPolicy policy;
+
+    private int numberOfDuplicates;
+
+    DocumentDeduplicator(DeduplicationPolicy policy) {
+        Preconditions.checkArgument(policy != DeduplicationPolicy.NONE, "nothing to deduplicate");
+        this.policy = policy;
+    }
+
+    /**
+     * @param documents the documents in input order
+     * @param partitionKeyRangeIds the ids of all the partition key ranges
+     * @param rangeIndexes for each document, the index of its partition key range in {@code partitionKeyRangeIds}
+     * @param keys for each document, the hash of its id and partition key
+     * @return the documents to import by partition key range id, in input order
+     */
+    Map<String, List<String>> bucket(String[] documents, List<String> partitionKeyRangeIds, int[] rangeIndexes, long[] keys) {
+        return bucket(documents, partitionKeyRangeIds, rangeIndexes, keys, null);
+    }
+
+    /**
+     * @param documents the documents in input order
+     * @param partitionKeyRangeIds the ids of all the partition key ranges
+     * @param rangeIndexes for each document, the index of its partition key range in {@code partitionKeyRangeIds}
+     * @param keys for each document, the hash of its id and partition key
+     * @param hasKey for each document, whether it has a key (a string id), null if they all have one; the documents
+     * without a key are kept
+     * @return the documents to import by partition key range id, in input order
+     */
+    Map<String, List<String>> bucket(String[] documents, List<String> partitionKeyRangeIds, int[] rangeIndexes, long[] keys, boolean[] hasKey) {
+        Preconditions.checkArgument(documents.length == rangeIndexes.length && documents.length == keys.length
+                && (hasKey == null || documents.length == hasKey.length),
+                "one range index and one key per document expected");
+
+        // indexes of the documents of each range, in input order
+        int[] counts = new int[partitionKeyRangeIds.size()];
+        for (int rangeIndex : rangeIndexes) {
+            counts[rangeIndex]++;
+        }
+        int[][] documentIndexesByRange = new int[counts.length][];
+        for (int r = 0; r < counts.length; r++) {
+            documentIndexesByRange[r] = new int[counts[r]];
+            counts[r] = 0;
+        }
+        for (int i = 0; i < rangeIndexes.length; i++) {
+            int r = rangeIndexes[i];
+            documentIndexesByRange[r][counts[r]++] = i;
+        }
+
+        List<List<String>> documentsByRange = new ArrayList<>(counts.length);
+        for (int r = 0; r < counts.length; r++) {
+            documentsByRange.add(null);
+        }
+
+        int[] duplicatesByRange = new int[counts.length];
+        IntStream.range(0, counts.length).parallel().forEach(r -> {
+            int[] documentIndexes = documentIndexesByRange[r];
+            boolean[] keep = new boolean[documentIndexes.length];
+            LongHashSet seen = new LongHashSet(documentIndexes.length);
+
+            if (policy == DeduplicationPolicy.FIRST_WINS) {
+                for (int j = 0; j < documentIndexes.length; j++) {
+                    keep[j] = (hasKey != null && !hasKey[documentIndexes[j]]) || seen.add(keys[documentIndexes[j]]);
+                }
+            } else {
+                for (int j = documentIndexes.length - 1; j >= 0; j--) {
+                    keep[j] = (hasKey != null && !hasKey[documentIndexes[j]]) || seen.add(keys[documentIndexes[j]]);
+                }
+            }
+
+            List<String> kept = new ArrayList<>(documentIndexes.length);
+            for (int j = 0; j < documentIndexes.length; j++) {
+                if (keep[j]) {
+                    kept.add(documents[documentIndexes[j]]);
+                }
+            }
+            documentsByRange.set(r, kept);
+            duplicatesByRange[r] = documentIndexes.length - kept.size();
+        });
+
+        Map<String, List<String>> result = new HashMap<>();
+        for (int r = 0; r < counts.length; r++) {
+            result.put(partitionKeyRangeIds.get(r), documentsByRange.get(r));
+            numberOfDuplicates += duplicatesByRange[r];
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of documents dropped by {@link #bucket(String[], List, int[], long[], boolean[])}
+     */
+    int getNumberOfDuplicates() {
+        return numberOfDuplicates;
+    }
+}
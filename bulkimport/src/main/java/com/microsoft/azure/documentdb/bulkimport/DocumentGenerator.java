@@ -0,0 +1,447 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.json.JSONObject;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+
+/**
+ * Generates synthetic documents for import benchmarks, with a configurable partition key distribution, partition key
+ * type, document shape and size.
+ *
+ * <p> Skewed partition key distributions make some partition key ranges hotter than the others, which is what the
+ * per partition congestion control of the importer has to cope with in real workloads. All the randomness, ids
+ * included, comes from a {@link SplittableRandom}, so generating a document costs no {@code SecureRandom} call and
+ * a seeded generator repeats the same documents. The string fields are slices of a shared pool of random characters
+ * at random offsets, copied in bulk.
+ *
+ * <p> Not thread safe: use a generator per thread.
+ */
+class DocumentGenerator {
+
+    /**
+     * How the partition key values of the documents are drawn.
+     */
+    enum KeyDistribution {
+        /**
+         * A distinct value per document.
+         */
+        UNIQUE,
+        /**
+         * Uniformly among the key count values.
+         */
+        UNIFORM,
+        /**
+         * Among the key count values with a Zipf distribution: the k-th value weighs 1/k^exponent.
+         */
+        ZIPFIAN,
+        /**
+         * The first value for the hot key fraction of the documents, uniformly among the others for the rest.
+         */
+        HOT_KEY
+    }
+
+    /**
+     * The JSON type of the partition key values.
+     */
+    enum KeyType {
+        /**
+         * Strings, "key" followed by the index of the value.
+         */
+        STRING,
+        /**
+         * The index of the value.
+         */
+        NUMBER,
+        /**
+         * Whether the index of the value is even, so at most two distinct values.
+         */
+        BOOLEAN,
+        /**
+         * Always null, so a single partition key value.
+         */
+        NULL
+    }
+
+    /**
+     * The structure of the documents.
+     */
+    enum Shape {
+        /**
+         * Ten string fields of the same length.
+         */
+        FLAT,
+        /**
+         * Nested objects and arrays of strings, numbers and booleans, padded with a string field.
+         */
+        NESTED
+    }
+
+    private static final char[] STRING_POOL = new char[64 * 1024];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int NUMBER_OF_FLAT_FIELDS = 10;
+
+    static {
+        char[] alphabet = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < STRING_POOL.length; i++) {
+            STRING_POOL[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+    }
+
+    /**
+     * The fields of the partition key path up to its value, e.g. "address":{"zip": for /address/zip, and the braces
+     * closing them.
+     */
+    private final String partitionKeyPrefix;
+    private final String partitionKeySuffix;
+    private final KeyDistribution keyDistribution;
+    private final int keyCount;
+    private final double hotKeyFraction;
+    private final KeyType keyType;
+    private final Shape shape;
+    private final int minDocumentSize;
+    private final int maxDocumentSize;
+    private final double[] zipfCumulativeWeights;
+    private final SplittableRandom random;
+
+    private final StringBuilder sb = new StringBuilder();
+
+    public static class Builder {
+        private final PartitionKeyDefinition partitionKeyDefinition;
+        private KeyDistribution keyDistribution = KeyDistribution.UNIQUE;
+        private int keyCount = 10000;
+        private double zipfianExponent = 1;
+        private double hotKeyFraction = 0.5;
+        private KeyType keyType = KeyType.STRING;
+        private Shape shape = Shape.FLAT;
+        private int minDocumentSize = 1024;
+        private int maxDocumentSize = 1024;
+        private Long seed;
+
+        private Builder(PartitionKeyDefinition partitionKeyDefinition) {
+            this.partitionKeyDefinition = partitionKeyDefinition;
+        }
+
+        /**
+         * use the given partition key distribution.
+         *
+         * If not specified every document gets a distinct partition key value.
+         * @param keyDistribution the partition key distribution
+         * @param keyCount number of distinct partition key values, ignored by {@link KeyDistribution#UNIQUE}
+         * @return {@link Builder}
+         */
+        public Builder withKeyDistribution(KeyDistribution keyDistribution, int keyCount) {
+            Preconditions.checkArgument(keyCount > 0, "keyCount must be positive");
+            this.keyDistribution = keyDistribution;
+            this.keyCount = keyCount;
+            return this;
+        }
+
+        /**
+         * use the given exponent for {@link KeyDistribution#ZIPFIAN}: 0 is uniform, 1 and above send most documents to a few values.
+         *
+         * If not specified will use 1.
+         * @param exponent the exponent
+         * @return {@link Builder}
+         */
+        public Builder withZipfianExponent(double exponent) {
+            Preconditions.checkArgument(exponent >= 0, "the exponent cannot be negative");
+            this.zipfianExponent = exponent;
+            return this;
+        }
+
+        /**
+         * use the given fraction of the documents for the hot key of {@link KeyDistribution#HOT_KEY}.
+         *
+         * If not specified will use 0.5.
+         * @param fraction the fraction, between 0 and 1
+         * @return {@link Builder}
+         */
+        public Builder withHotKeyFraction(double fraction) {
+            Preconditions.checkArgument(fraction >= 0 && fraction <= 1, "the fraction must be between 0 and 1");
+            this.hotKeyFraction = fraction;
+            return this;
+        }
+
+        /**
+         * use the given JSON type for the partition key values.
+         *
+         * If not specified will use strings.
+         * @param keyType the type
+         * @return {@link Builder}
+         */
+        public Builder withKeyType(KeyType keyType) {
+            this.keyType = keyType;
+            return this;
+        }
+
+        /**
+         * use the given document structure.
+         *
+         * If not specified will use {@link Shape#FLAT}.
+         * @param shape the structure
+         * @return {@link Builder}
+         */
+        public Builder withShape(Shape shape) {
+            this.shape = shape;
+            return this;
+        }
+
+        /**
+         * use document sizes drawn uniformly between the given bounds. The documents of a {@link Shape#NESTED} shape are at
+         * least a few hundred bytes whatever the size.
+         *
+         * If not specified will generate documents of 1KB.
+         * @param minSize minimum size in bytes
+         * @param maxSize maximum size in bytes
+         * @return {@link Builder}
+         */
+        public Builder withDocumentSize(int minSize, int maxSize) {
+            Preconditions.checkArgument(minSize > 0 && maxSize >= minSize, "invalid document size bounds");
+            this.minDocumentSize = minSize;
+            this.maxDocumentSize = maxSize;
+            return this;
+        }
+
+        /**
+         * use the given seed to generate the same documents on every run.
+         *
+         * @param seed the seed
+         * @return {@link Builder}
+         */
+        public Builder withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public DocumentGenerator build() {
+            Preconditions.checkArgument(partitionKeyDefinition != null && partitionKeyDefinition.getPaths().size() == 1,
+                    "the document generator only supports a single partition key path");
+            return new DocumentGenerator(this);
+        }
+    }
+
+    /**
+     * Creates a builder of generators of documents of a collection with the given partition key.
+     *
+     * @param partitionKeyDefinition the partition key definition of the collection, with a single path
+     * @return {@link Builder}
+     */
+    public static Builder builder(PartitionKeyDefinition partitionKeyDefinition) {
+        return new Builder(partitionKeyDefinition);
+    }
+
+    private DocumentGenerator(Builder builder) {
+        List<String> segments = PartitionKeyAccessor.parsePath(builder.partitionKeyDefinition.getPaths().iterator().next());
+        StringBuilder prefix = new StringBuilder();
+        StringBuilder suffix = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i > 0) {
+                prefix.append('{');
+                suffix.append('}');
+            }
+            prefix.append(JSONObject.quote(segments.get(i))).append(':');
+        }
+        this.partitionKeyPrefix = prefix.toString();
+        this.partitionKeySuffix = suffix.toString();
+        this.keyDistribution = builder.keyDistribution;
+        this.keyCount = builder.keyCount;
+        this.hotKeyFraction = builder.hotKeyFraction;
+        this.keyType = builder.keyType;
+        this.shape = builder.shape;
+        this.minDocumentSize = builder.minDocumentSize;
+        this.maxDocumentSize = builder.maxDocumentSize;
+        this.zipfCumulativeWeights = builder.keyDistribution == KeyDistribution.ZIPFIAN
+                ? zipfCumulativeWeights(builder.keyCount, builder.zipfianExponent) : null;
+        this.random = builder.seed != null ? new SplittableRandom(builder.seed) : new SplittableRandom();
+    }
+
+    /**
+     * Generates documents.
+     *
+     * @param numberOfDocuments number of documents
+     * @return the documents
+     */
+    public List<String> generate(int numberOfDocuments) {
+        return generate(numberOfDocuments, null);
+    }
+
+    /**
+     * Generates documents and their partition key values, to be passed to
+     * {@link DocumentBulkImporter#importAll(List, List, boolean)}.
+     *
+     * @param numberOfDocuments number of documents
+     * @param partitionKeyValues receives the partition key value of each document, if not null
+     * @return the documents
+     */
+    public List<String> generate(int numberOfDocuments, List<Object> partitionKeyValues) {
+        List<String> documents = new ArrayList<>(numberOfDocuments);
+        for (int i = 0; i < numberOfDocuments; i++) {
+            Object partitionKeyValue = nextPartitionKeyValue();
+            if (partitionKeyValues != null) {
+                partitionKeyValues.add(partitionKeyValue);
+            }
+            documents.add(nextDocument(partitionKeyValue));
+        }
+        return documents;
+    }
+
+    private Object nextPartitionKeyValue() {
+        long key;
+        switch (keyDistribution) {
+        case UNIQUE:
+            key = random.nextLong() & Long.MAX_VALUE;
+            break;
+        case UNIFORM:
+            key = random.nextInt(keyCount);
+            break;
+        case ZIPFIAN:
+            int index = Arrays.binarySearch(zipfCumulativeWeights, random.nextDouble() * zipfCumulativeWeights[keyCount - 1]);
+            key = index >= 0 ? index : -index - 1;
+            break;
+        case HOT_KEY:
+            key = keyCount == 1 || random.nextDouble() < hotKeyFraction ? 0 : 1 + random.nextInt(keyCount - 1);
+            break;
+        default:
+            throw new IllegalStateException(keyDistribution.toString());
+        }
+
+        switch (keyType) {
+        case STRING:
+            return "key" + key;
+        case NUMBER:
+            return key;
+        case BOOLEAN:
+            return key % 2 == 0;
+        case NULL:
+            return JSONObject.NULL;
+        default:
+            throw new IllegalStateException(keyType.toString());
+        }
+    }
+
+    private String nextDocument(Object partitionKeyValue) {
+        int size = minDocumentSize == maxDocumentSize ? minDocumentSize : minDocumentSize + random.nextInt(maxDocumentSize - minDocumentSize + 1);
+
+        sb.setLength(0);
+        sb.append("{\"id\":\"");
+        appendId();
+        sb.append("\",").append(partitionKeyPrefix);
+        if (partitionKeyValue instanceof String) {
+            sb.append('"').append(partitionKeyValue).append('"');
+        } else {
+            sb.append(partitionKeyValue);
+        }
+        sb.append(partitionKeySuffix);
+
+        if (shape == Shape.FLAT) {
+            // the ten fields share what is left of the size, each costing 8 bytes of name, quotes and separators
+            int fieldLength = Math.max(0, (size - sb.length() - 1) / NUMBER_OF_FLAT_FIELDS - 8);
+            for (int j = 0; j < NUMBER_OF_FLAT_FIELDS; j++) {
+                sb.append(",\"f").append(j).append("\":\"");
+                appendRandomString(j == NUMBER_OF_FLAT_FIELDS - 1 ? Math.max(0, size - sb.length() - 2) : fieldLength);
+                sb.append('"');
+            }
+        } else {
+            appendNestedFields();
+            sb.append(",\"payload\":\"");
+            appendRandomString(Math.max(0, size - sb.length() - 2));
+            sb.append('"');
+        }
+
+        return sb.append('}').toString();
+    }
+
+    private void appendNestedFields() {
+        sb.append(",\"profile\":{\"name\":\"");
+        appendRandomString(12);
+        sb.append("\",\"age\":").append(18 + random.nextInt(80));
+        sb.append(",\"active\":").append(random.nextBoolean());
+        sb.append(",\"score\":").append(random.nextInt(100000) / 100.0);
+        sb.append(",\"address\":{\"city\":\"");
+        appendRandomString(8);
+        sb.append("\",\"zip\":\"").append(10000 + random.nextInt(90000)).append("\",\"location\":[");
+        sb.append(random.nextInt(180000) / 1000.0 - 90).append(',').append(random.nextInt(360000) / 1000.0 - 180);
+        sb.append("]}}");
+
+        sb.append(",\"tags\":[");
+        int numberOfTags = 1 + random.nextInt(5);
+        for (int j = 0; j < numberOfTags; j++) {
+            sb.append(j > 0 ? ",\"" : "\"");
+            appendRandomString(6);
+            sb.append('"');
+        }
+
+        sb.append("],\"items\":[");
+        int numberOfItems = 1 + random.nextInt(3);
+        for (int j = 0; j < numberOfItems; j++) {
+            sb.append(j > 0 ? ",{\"sku\":\"" : "{\"sku\":\"");
+            appendRandomString(10);
+            sb.append("\",\"quantity\":").append(1 + random.nextInt(10));
+            sb.append(",\"price\":").append(random.nextInt(100000) / 100.0);
+            sb.append(",\"discounted\":").append(random.nextBoolean()).append(",\"note\":null}");
+        }
+        sb.append(']');
+    }
+
+    private void appendId() {
+        long high = random.nextLong();
+        long low = random.nextLong();
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(HEX[(int) (high >>> shift) & 0xf]);
+        }
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            sb.append(HEX[(int) (low >>> shift) & 0xf]);
+        }
+    }
+
+    private void appendRandomString(int length) {
+        // a slice of the pool at a random offset: copied in bulk rather than drawn character by character
+        while (length > 0) {
+            int chunk = Math.min(length, STRING_POOL.length);
+            sb.append(STRING_POOL, random.nextInt(STRING_POOL.length - chunk + 1), chunk);
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @return the cumulative weights of the values 1..n of a Zipf distribution, value k weighing 1/k^exponent
+     */
+    static double[] zipfCumulativeWeights(int n, double exponent) {
+        double[] cumulativeWeights = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulativeWeights[k - 1] = sum;
+        }
+        return cumulativeWeights;
+    }
+}
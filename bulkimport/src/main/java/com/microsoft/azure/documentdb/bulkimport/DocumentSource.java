@@ -0,0 +1,58 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of serialized documents read in batches, e.g., to feed
+ * {@link DocumentBulkImporter#importAll(java.util.Collection, boolean)} checkpoint by checkpoint.
+ *
+ * <blockquote>
+ * <pre>
+ * {@code
+ * try (DocumentSource source = DocumentSources.open(Paths.get("documents.json.gz"))) {
+ *     List<String> documents;
+ *     while (!(documents = source.readBatch(500000)).isEmpty()) {
+ *         importer.importAll(documents, false);
+ *     }
+ * }
+ * }
+ * </pre>
+ * </blockquote>
+ */
+public interface DocumentSource extends AutoCloseable {
+
+    /**
+     * Reads the next documents, in source order.
+     *
+     * @param maxNumberOfDocuments max number of documents to return
+     * @return the next documents, or an empty list once the source is exhausted
+     * @throws IOException if the source cannot be read or is malformed
+     */
+    List<String> readBatch(int maxNumberOfDocuments) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Opens {@link DocumentSource}s over files.
+ */
+public final class DocumentSources {
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * How far into the file the format detection looks for the first non whitespace character.
+     */
+    private static final int DETECTION_LENGTH = 64 * 1024;
+
+    /**
+     * Opens a file of newline delimited JSON documents or of a top level JSON array of documents, optionally gzip
+     * compressed. The format is detected from the content: gzip by its magic number, a JSON array by its leading '['.
+     *
+     * <p> Uncompressed files are memory mapped and split at document boundaries so the documents are decoded in
+     * parallel, while the next part of the file is read ahead. Gzip compressed files are decompressed and parsed
+     * as a stream.
+     *
+     * @param file the file to read
+     * @return a new {@link DocumentSource}, to be closed by the caller
+     * @throws IOException if the file cannot be read
+     */
+    public static DocumentSource open(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            if (in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2) {
+                return new GzipDocumentSource(file);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(DETECTION_LENGTH);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+            }
+            head.flip();
+
+            int offset = skipByteOrderMark(head);
+            int firstRecordOffset = offset;
+            while (offset < head.limit() && isWhitespace(head.get(offset))) {
+                offset++;
+            }
+
+            if (offset < head.limit() && head.get(offset) == '[') {
+                return new JsonArrayDocumentSource(file, offset + 1, MappedFileDocumentSource.WINDOW_SIZE);
+            }
+            return new NdjsonDocumentSource(file, firstRecordOffset, MappedFileDocumentSource.WINDOW_SIZE);
+        }
+    }
+
+    /**
+     * @return the length of the UTF-8 byte order mark at the beginning of the buffer, if any
+     */
+    static int skipByteOrderMark(ByteBuffer buffer) {
+        if (buffer.limit() >= 3 && (buffer.get(0) & 0xff) == 0xef && (buffer.get(1) & 0xff) == 0xbb && (buffer.get(2) & 0xff) == 0xbf) {
+            return 3;
+        }
+        return 0;
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private DocumentSources() {}
+}
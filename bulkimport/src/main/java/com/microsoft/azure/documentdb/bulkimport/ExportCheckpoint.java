@@ -0,0 +1,129 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The progress of an export or of a change feed sync per partition key range, persisted as JSON at most once per
+ * interval and replaced atomically so that a crash leaves either the previous or the new checkpoint.
+ */
+class ExportCheckpoint {
+
+    private final static ObjectMapper objectMapper = new ObjectMapper();
+
+    static class RangeState {
+        /**
+         * Continuation of the next page, null before the first page.
+         */
+        public String continuation;
+
+        /**
+         * Whether all the pages were exported.
+         */
+        public boolean done;
+
+        /**
+         * Length of the output file of the range once the pages up to the continuation are written.
+         */
+        public long position;
+
+        public long numberOfDocuments;
+
+        RangeState copy() {
+            RangeState copy = new RangeState();
+            copy.continuation = continuation;
+            copy.done = done;
+            copy.position = position;
+            copy.numberOfDocuments = numberOfDocuments;
+            return copy;
+        }
+    }
+
+    private final Path file;
+
+    private final Duration interval;
+
+    private final Map<String, RangeState> ranges;
+
+    private long lastWriteNanos = System.nanoTime();
+
+    private ExportCheckpoint(Path file, Duration interval, Map<String, RangeState> ranges) {
+        this.file = file;
+        this.interval = interval;
+        this.ranges = ranges;
+    }
+
+    /**
+     * @param file the checkpoint file, or null to not persist the progress
+     * @param interval min time between two writes of the checkpoint file
+     * @return the checkpoint in the file if it exists, else an empty checkpoint
+     */
+    static ExportCheckpoint load(Path file, Duration interval) throws IOException {
+        Map<String, RangeState> ranges = file != null && Files.exists(file)
+                ? objectMapper.readValue(file.toFile(), new TypeReference<TreeMap<String, RangeState>>() {})
+                : new TreeMap<>();
+        return new ExportCheckpoint(file, interval, ranges);
+    }
+
+    synchronized Map<String, RangeState> getRanges() {
+        Map<String, RangeState> copy = new TreeMap<>();
+        ranges.forEach((partitionKeyRangeId, state) -> copy.put(partitionKeyRangeId, state.copy()));
+        return copy;
+    }
+
+    /**
+     * @return the progress of the given partition key range, from scratch if it has none
+     */
+    synchronized RangeState get(String partitionKeyRangeId) {
+        RangeState state = ranges.get(partitionKeyRangeId);
+        return state != null ? state.copy() : new RangeState();
+    }
+
+    synchronized void update(String partitionKeyRangeId, RangeState state) throws IOException {
+        ranges.put(partitionKeyRangeId, state.copy());
+        if (System.nanoTime() - lastWriteNanos >= interval.toNanos()) {
+            write();
+        }
+    }
+
+    synchronized void write() throws IOException {
+        lastWriteNanos = System.nanoTime();
+        if (file == null) {
+            return;
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        objectMapper.writeValue(temporaryFile.toFile(), ranges);
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
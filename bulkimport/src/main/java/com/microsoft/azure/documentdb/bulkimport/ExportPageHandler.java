@@ -0,0 +1,46 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.List;
+
+/**
+ * Receives the pages of documents read by {@link DocumentBulkExporter#exportAll(ExportPageHandler)}.
+ */
+@FunctionalInterface
+public interface ExportPageHandler {
+
+    /**
+     * Handles a page of documents. Pages of the same partition key range are handled one at a time and in order,
+     * pages of different partition key ranges concurrently.
+     *
+     * <p> The page is checkpointed once this method returns, so after a resume the pages handled since the last
+     * checkpoint are handled again.
+     *
+     * @param partitionKeyRangeId the partition key range the documents were read from
+     * @param documents the serialized documents
+     * @throws Exception to stop exporting the partition key range, which is then reported in
+     * {@link BulkExportResponse#getErrors()}
+     */
+    void handle(String partitionKeyRangeId, List<String> documents) throws Exception;
+}
@@ -0,0 +1,161 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a gzip compressed file of newline delimited JSON documents or of a top level JSON array of documents.
+ *
+ * <p> A gzip stream cannot be split, so the file is decompressed and parsed sequentially: line by line for
+ * newline delimited JSON, with a Jackson streaming parser for a JSON array.
+ */
+class GzipDocumentSource implements DocumentSource {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final InputStream in;
+
+    /**
+     * Set for newline delimited JSON.
+     */
+    private final BufferedReader reader;
+
+    /**
+     * Set for a JSON array.
+     */
+    private final JsonParser parser;
+
+    private boolean exhausted;
+
+    GzipDocumentSource(Path file) throws IOException {
+        this.in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE);
+
+        try {
+            if (startsWithArray(in)) {
+                this.reader = null;
+                this.parser = jsonFactory.createParser(in);
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("expected a JSON array");
+                }
+            } else {
+                this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+                this.parser = null;
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static boolean startsWithArray(InputStream in) throws IOException {
+        in.mark(BUFFER_SIZE);
+        try {
+            int b = in.read();
+            if (b == 0xef) {
+                // byte order mark
+                in.read();
+                in.read();
+                b = in.read();
+            }
+            while (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                b = in.read();
+            }
+            return b == '[';
+        } finally {
+            in.reset();
+        }
+    }
+
+    @Override
+    public List<String> readBatch(int maxNumberOfDocuments) throws IOException {
+        List<String> batch = new ArrayList<>(maxNumberOfDocuments);
+
+        while (!exhausted && batch.size() < maxNumberOfDocuments) {
+            String document = parser != null ? nextArrayElement() : nextLine();
+            if (document == null) {
+                exhausted = true;
+            } else {
+                batch.add(document);
+            }
+        }
+
+        return batch;
+    }
+
+    private String nextLine() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (!line.isEmpty()) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private String nextArrayElement() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new IOException("unterminated JSON array");
+        }
+        if (token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException(String.format("expected a JSON object at %s", parser.getCurrentLocation()));
+        }
+
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKind;
+
+/**
+ * Imports generated documents over a grid of importer settings and workloads and prints the docs/s, RU/s and RU per
+ * document of each combination, to pick the {@link DocumentBulkImporter.Builder} settings of a workload.
+ *
+ * <p> The grid is the cross product of the max mini batch sizes, starting degrees of concurrency, document sizes and
+ * partition key skews; offline it also spans the number of partitions of the {@link SimulatedDocumentClient}. Each
+ * combination gets a fresh importer so that the congestion control starts from the given concurrency.
+ *
+ * <p> The documents come from a {@link DocumentGenerator} of the configured key type and shape. Their partition key
+ * values are drawn from a fixed number of distinct values with a Zipf distribution of the given exponent: 0 draws
+ * them uniformly, 1 and above send most of the documents to a few partition key ranges.
+ */
+class ImportSweep {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportSweep.class);
+
+    private static final String OFFLINE_PARTITION_KEY_PATH = "/pk";
+
+    private final DocumentClient client;
+    private final String databaseId;
+    private final String collectionId;
+    private final PartitionKeyDefinition partitionKeyDefinition;
+    private final int offerThroughput;
+    private final Duration offlineLatency;
+
+    private final List<Integer> partitionCounts;
+    private final List<Integer> maxMiniBatchSizes;
+    private final List<Integer> startingConcurrencies;
+    private final List<Integer> documentSizes;
+    private final List<Double> keySkews;
+    private final int numberOfPartitionKeys;
+    private final int numberOfDocuments;
+    private final DocumentGenerator.Builder generatorBuilder;
+
+    /**
+     * Sweeps a live collection.
+     */
+    static ImportSweep live(CmdLineConfiguration cfg, DocumentClient client, PartitionKeyDefinition partitionKeyDefinition, int offerThroughput) {
+        return new ImportSweep(cfg, client, cfg.getDatabaseId(), cfg.getCollectionId(), partitionKeyDefinition, offerThroughput,
+                Arrays.asList(-1), null);
+    }
+
+    /**
+     * Sweeps {@link SimulatedDocumentClient}s of the configured number of partitions, throughput and latency.
+     */
+    static ImportSweep offline(CmdLineConfiguration cfg) {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setKind(PartitionKind.Hash);
+        partitionKeyDefinition.setPaths(Arrays.asList(OFFLINE_PARTITION_KEY_PATH));
+        return new ImportSweep(cfg, null, "offline", "offline", partitionKeyDefinition, cfg.getOfflineThroughput(),
+                cfg.getSweepPartitionCounts(), Duration.ofMillis(cfg.getOfflineLatencyMillis()));
+    }
+
+    private ImportSweep(CmdLineConfiguration cfg, DocumentClient client, String databaseId, String collectionId,
+            PartitionKeyDefinition partitionKeyDefinition, int offerThroughput, List<Integer> partitionCounts, Duration offlineLatency) {
+        Preconditions.checkArgument(partitionKeyDefinition.getPaths().size() == 1,
+                "the command line benchmark tool only support simple partition key path");
+
+        this.client = client;
+        this.databaseId = databaseId;
+        this.collectionId = collectionId;
+        this.partitionKeyDefinition = partitionKeyDefinition;
+        this.offerThroughput = offerThroughput;
+        this.offlineLatency = offlineLatency;
+        this.partitionCounts = partitionCounts;
+        this.maxMiniBatchSizes = cfg.getSweepMaxMiniBatchSizes();
+        this.startingConcurrencies = cfg.getSweepStartingConcurrencies();
+        this.documentSizes = cfg.getSweepDocumentSizes();
+        this.keySkews = cfg.getSweepKeySkews();
+        this.numberOfPartitionKeys = cfg.getPartitionKeyCount();
+        this.numberOfDocuments = cfg.getNumberOfDocumentsForEachCheckpoint();
+        this.generatorBuilder = DocumentGenerator.builder(partitionKeyDefinition)
+                .withKeyType(cfg.getPartitionKeyType())
+                .withShape(cfg.getDocumentShape());
+    }
+
+    /**
+     * Runs every combination of the grid and prints the table of their results.
+     *
+     * @param resultFile file to which a result per combination is appended (a CSV file) or written, null for none
+     */
+    void run(Path resultFile) throws Exception {
+        List<String> rows = new ArrayList<>();
+
+        for (int documentSize : documentSizes) {
+            for (double keySkew : keySkews) {
+                DocumentGenerator generator = generatorBuilder
+                        .withKeyDistribution(DocumentGenerator.KeyDistribution.ZIPFIAN, numberOfPartitionKeys)
+                        .withZipfianExponent(keySkew)
+                        .withDocumentSize(documentSize, documentSize)
+                        .build();
+                for (int partitionCount : partitionCounts) {
+                    for (int maxMiniBatchSize : maxMiniBatchSizes) {
+                        for (int startingConcurrency : startingConcurrencies) {
+                            // generated outside of the measured import, with fresh ids so that every combination inserts
+                            List<String> documents = generator.generate(numberOfDocuments);
+
+                            // created before the import, from which it measures the CPU and garbage collection time
+                            BenchmarkResult result = resultFile == null ? null
+                                    : new BenchmarkResult("bulkimport", String.format("sweep partitions=%s batch=%d concurrency=%d size=%d skew=%.2f",
+                                            partitionCount > 0 ? partitionCount : "-", maxMiniBatchSize, startingConcurrency, documentSize, keySkew));
+
+                            BulkImportResponse response = importAll(partitionCount, maxMiniBatchSize, startingConcurrency, documents);
+
+                            double seconds = 0.001 * response.getTotalTimeTaken().toMillis();
+                            String row = String.format("%10s %10d %11d %8d %6.2f %10.0f %12.0f %8.2f %9d %6d",
+                                    partitionCount > 0 ? Integer.toString(partitionCount) : "-",
+                                    maxMiniBatchSize, startingConcurrency, documentSize, keySkew,
+                                    response.getNumberOfDocumentsImported() / seconds,
+                                    response.getTotalRequestUnitsConsumed() / seconds,
+                                    response.getTotalRequestUnitsConsumed() / response.getNumberOfDocumentsImported(),
+                                    response.getNumberOfThrottles(),
+                                    response.getErrors().size());
+                            LOGGER.info(row);
+                            rows.add(row);
+
+                            if (result != null) {
+                                result.putThroughput(response.getNumberOfDocumentsImported(), response.getTotalRequestUnitsConsumed(), seconds)
+                                        .put("errors", response.getErrors().size())
+                                        .put("throttles", response.getNumberOfThrottles())
+                                        .write(resultFile);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println("##########################################################################################");
+        System.out.println(String.format("%10s %10s %11s %8s %6s %10s %12s %8s %9s %6s",
+                "partitions", "batch(B)", "concurrency", "size(B)", "skew", "docs/s", "RU/s", "RU/doc", "throttles", "errors"));
+        for (String row : rows) {
+            System.out.println(row);
+        }
+        System.out.println("##########################################################################################");
+    }
+
+    private BulkImportResponse importAll(int partitionCount, int maxMiniBatchSize, int startingConcurrency, List<String> documents) throws Exception {
+        if (client != null) {
+            try (DocumentBulkImporter importer = builder(client)
+                    .withMaxMiniBatchSize(maxMiniBatchSize)
+                    .withStartingDegreeOfConcurrency(startingConcurrency)
+                    .build()) {
+                return importer.importAll(documents, false);
+            }
+        }
+
+        try (SimulatedDocumentClient simulatedClient = new SimulatedDocumentClient(partitionKeyDefinition, partitionCount, offerThroughput,
+                offlineLatency, Duration.ZERO);
+                DocumentBulkImporter importer = builder(simulatedClient)
+                        .withPartitionKeyRanges(simulatedClient.getPartitionKeyRanges())
+                        .withMaxMiniBatchSize(maxMiniBatchSize)
+                        .withStartingDegreeOfConcurrency(startingConcurrency)
+                        .build()) {
+            return importer.importAll(documents, false);
+        }
+    }
+
+    private DocumentBulkImporter.Builder builder(DocumentClient documentClient) {
+        return DocumentBulkImporter.builder().from(documentClient, databaseId, collectionId, partitionKeyDefinition, offerThroughput);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Reads a file holding a top level JSON array of documents.
+ *
+ * <p> The documents are delimited by a byte level structural scan (tracking nesting depth, strings and escapes)
+ * instead of a full JSON parse. The documents themselves are validated by the importer.
+ */
+class JsonArrayDocumentSource extends MappedFileDocumentSource {
+
+    /**
+     * @param firstRecordOffset offset right after the opening '[' of the array
+     */
+    JsonArrayDocumentSource(Path file, long firstRecordOffset, int windowSize) throws IOException {
+        super(file, firstRecordOffset, windowSize);
+    }
+
+    @Override
+    int findRecords(ByteBuffer window, long windowOffset, boolean lastWindow, Records records) throws IOException {
+        int limit = window.limit();
+        int position = 0;
+
+        while (true) {
+            // skip the separators between documents
+            while (position < limit && (DocumentSources.isWhitespace(window.get(position)) || window.get(position) == ',')) {
+                position++;
+            }
+
+            if (position == limit) {
+                if (lastWindow) {
+                    throw new IOException("unterminated JSON array");
+                }
+                return position;
+            }
+
+            byte b = window.get(position);
+            if (b == ']') {
+                return END_OF_RECORDS;
+            }
+
+            if (b != '{') {
+                throw new IOException(String.format("expected a JSON object at offset %d", windowOffset + position));
+            }
+
+            int end = findObjectEnd(window, position, limit);
+            if (end < 0) {
+                if (lastWindow) {
+                    throw new IOException(String.format("unterminated JSON object at offset %d", windowOffset + position));
+                }
+                // the document continues in the next window
+                return position;
+            }
+
+            records.add(position, end);
+            position = end;
+        }
+    }
+
+    /**
+     * @return the position right after the '}' closing the object starting at {@code start}, or -1 if it is not
+     * closed before {@code limit}
+     */
+    private static int findObjectEnd(ByteBuffer window, int start, int limit) {
+        int depth = 0;
+        boolean inString = false;
+
+        for (int i = start; i < limit; i++) {
+            byte b = window.get(i);
+
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+/**
+ * A set of primitive longs using open addressing with linear probing.
+ *
+ * <p> Takes about 11 bytes per element at the max load factor, an order of magnitude less than a
+ * {@link java.util.HashSet} of boxed values. The values are expected to be hashes: the slot is picked
+ * from their high bits. Not thread safe.
+ */
+class LongHashSet {
+
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    /**
+     * 0 marks an empty slot, so whether 0 itself is in the set is tracked apart.
+     */
+    private boolean containsZero;
+
+    private long[] slots;
+
+    private int size;
+
+    LongHashSet(int expectedSize) {
+        this.slots = new long[capacityFor(expectedSize)];
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR)));
+    }
+
+    /**
+     * @param value value to add
+     * @return true if the set did not already contain the value
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        if (size + 1 > slots.length * MAX_LOAD_FACTOR) {
+            rehash(slots.length * 2L);
+        }
+
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+
+        int index = indexOf(value, slots.length);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = index + 1 == slots.length ? 0 : index + 1;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static boolean insert(long[] slots, long value) {
+        int index = indexOf(value, slots.length);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = index + 1 == slots.length ? 0 : index + 1;
+        }
+        slots[index] = value;
+        return true;
+    }
+
+    /**
+     * Maps the high bits of the (already well mixed) value to [0, length) without a division.
+     */
+    private static int indexOf(long value, int length) {
+        return (int) (((value >>> 32) * length) >>> 32);
+    }
+
+    private void rehash(long newCapacity) {
+        long[] newSlots = new long[(int) Math.min(Integer.MAX_VALUE - 8, newCapacity)];
+        for (long value : slots) {
+            if (value != 0) {
+                insert(newSlots, value);
+            }
+        }
+        slots = newSlots;
+    }
+}
@@ -22,20 +22,17 @@
  */
 package com.microsoft.azure.documentdb.bulkimport;
 
-import java.util.AbstractMap;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.beust.jcommander.JCommander;
-import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.microsoft.azure.documentdb.ConnectionPolicy;
 import com.microsoft.azure.documentdb.DocumentClient;
@@ -67,6 +64,11 @@ public class Main {
 
         CmdLineConfiguration cfg = parseCommandLineArgs(args);
 
+        if (cfg.isOffline()) {
+            ImportSweep.offline(cfg).run(cfg.getResultFile() != null ? Paths.get(cfg.getResultFile()) : null);
+            return;
+        }
+
         try(DocumentClient client = documentClientFrom(cfg)) {
 
             // set retry options high for initialization
@@ -79,18 +81,46 @@ public class Main {
             DocumentCollection collection = client.readCollection(collectionLink, null).getResource();
 
             int offerThroughput = getOfferThroughput(client, collection);
+
+            if (cfg.getExportDirectory() != null) {
+                export(client, cfg, offerThroughput);
+                return;
+            }
+
+            if (cfg.isSweep()) {
+                // the importers of the sweep handle throttling
+                client.getConnectionPolicy().getRetryOptions().setMaxRetryWaitTimeInSeconds(0);
+                client.getConnectionPolicy().getRetryOptions().setMaxRetryAttemptsOnThrottledRequests(0);
+
+                ImportSweep.live(cfg, client, collection.getPartitionKey(), offerThroughput)
+                        .run(cfg.getResultFile() != null ? Paths.get(cfg.getResultFile()) : null);
+                return;
+            }
             
             Builder bulkImporterBuilder = DocumentBulkImporter.builder().from(client, 
                     cfg.getDatabaseId(), cfg.getCollectionId(), collection.getPartitionKey(),
                     offerThroughput);
 
             // instantiates bulk importer
-            try(DocumentBulkImporter bulkImporter = bulkImporterBuilder.build()) {
+            try(DocumentBulkImporter bulkImporter = bulkImporterBuilder.build();
+                    DocumentSource documentSource = cfg.getInputFile() != null ? DocumentSources.open(Paths.get(cfg.getInputFile())) : null) {
                 
                 // then set retries to 0 to pass control to bulk importer
                 client.getConnectionPolicy().getRetryOptions().setMaxRetryWaitTimeInSeconds(0);
                 client.getConnectionPolicy().getRetryOptions().setMaxRetryAttemptsOnThrottledRequests(0);
 
+                if (cfg.getInputDirectory() != null) {
+                    Path inputDirectory = Paths.get(cfg.getInputDirectory());
+                    Path manifest = cfg.getManifestFile() != null ? Paths.get(cfg.getManifestFile()) : inputDirectory.resolve("bulkimport-manifest.txt");
+
+                    MultiFileImport multiFileImport = new MultiFileImport(bulkImporter, inputDirectory, cfg.getInputGlob(), manifest,
+                            cfg.getNumberOfFileReaders(), cfg.getNumberOfDocumentsForEachCheckpoint(), cfg.isUpsert());
+                    if (!multiFileImport.run()) {
+                        System.err.println("Some files failed to get imported. They are not in the manifest and have to get retried with -upsert.");
+                    }
+                    return;
+                }
+
                 Stopwatch fromStartToEnd = Stopwatch.createStarted();
 
                 Stopwatch totalWatch = Stopwatch.createUnstarted();
@@ -98,28 +128,55 @@ public class Main {
                 double totalRequestCharge = 0;
                 long totalTimeInMillis = 0;
                 long totalNumberOfDocumentsImported = 0;
+                long totalNumberOfErrors = 0;
+                long totalNumberOfThrottles = 0;
+                BenchmarkResult result = cfg.getResultFile() != null ? new BenchmarkResult("bulkimport", "import") : null;
+                DocumentGenerator documentGenerator = documentSource == null ? DataMigrationDocumentSource.generator(cfg, collection.getPartitionKey()) : null;
+                // with off-heap staging the documents are read (or generated) while the importer stages them
+                DocumentSource stagedSource = !cfg.isOffHeapStaging() ? null
+                        : documentSource != null ? documentSource : DataMigrationDocumentSource.asSource(documentGenerator);
 
-                for(int i = 0 ; i < cfg.getNumberOfCheckpoints(); i++) {
+                // an input file is imported until its end, generated documents for the given number of checkpoints
+                for(int i = 0 ; documentSource != null || i < cfg.getNumberOfCheckpoints(); i++) {
 
                     BulkImportResponse bulkImportResponse;
 
-                    Collection<String> documents = DataMigrationDocumentSource.loadDocuments(cfg.getNumberOfDocumentsForEachCheckpoint(), collection.getPartitionKey());
+                    Collection<String> documents = null;
+                    if (stagedSource != null) {
+                        totalWatch.start();
+                        bulkImportResponse = bulkImporter.importAll(stagedSource, cfg.getNumberOfDocumentsForEachCheckpoint(), cfg.isUpsert());
+                        totalWatch.stop();
+                        if (bulkImportResponse.getNumberOfDocumentsImported() == 0 && bulkImportResponse.getErrors().isEmpty()) {
+                            break;
+                        }
+                    } else {
+                        if (documentSource != null) {
+                            documents = documentSource.readBatch(cfg.getNumberOfDocumentsForEachCheckpoint());
+                            if (documents.isEmpty()) {
+                                break;
+                            }
+                        } else {
+                            documents = documentGenerator.generate(cfg.getNumberOfDocumentsForEachCheckpoint());
+
+                            if (documents.size() !=  cfg.getNumberOfDocumentsForEachCheckpoint()) {
+                                throw new RuntimeException("not enough documents generated");
+                            }
+                        }
 
-                    if (documents.size() !=  cfg.getNumberOfDocumentsForEachCheckpoint()) {
-                        throw new RuntimeException("not enough documents generated");
+                        // NOTE: only sum the bulk import time,
+                        // loading/generating documents is out of the scope of bulk importer and so has to be excluded
+                        totalWatch.start();
+                        bulkImportResponse = bulkImporter.importAll(documents, cfg.isUpsert());
+                        totalWatch.stop();
                     }
 
-                    // NOTE: only sum the bulk import time,
-                    // loading/generating documents is out of the scope of bulk importer and so has to be excluded
-                    totalWatch.start();
-                    bulkImportResponse = bulkImporter.importAll(documents, false);
-                    totalWatch.stop();
-
                     System.out.println("##########################################################################################");
 
                     totalNumberOfDocumentsImported += bulkImportResponse.getNumberOfDocumentsImported();
                     totalTimeInMillis += bulkImportResponse.getTotalTimeTaken().toMillis();
                     totalRequestCharge += bulkImportResponse.getTotalRequestUnitsConsumed();
+                    totalNumberOfErrors += bulkImportResponse.getErrors().size();
+                    totalNumberOfThrottles += bulkImportResponse.getNumberOfThrottles();
 
                     // print stats
                     System.out.println("Number of documents inserted in this checkpoint: " + bulkImportResponse.getNumberOfDocumentsImported());
@@ -132,7 +189,7 @@ public class Main {
 
                     // check the number of imported documents to ensure everything is successfully imported
                     // bulkImportResponse.getNumberOfDocumentsImported() == documents.size()
-                    if (bulkImportResponse.getNumberOfDocumentsImported() != cfg.getNumberOfDocumentsForEachCheckpoint()) {
+                    if (documents != null ? bulkImportResponse.getNumberOfDocumentsImported() != documents.size() : !bulkImportResponse.getErrors().isEmpty()) {
                         System.err.println("Some documents failed to get inserted in this checkpoint. This checkpoint has to get retried with upsert enabled");
                         System.err.println("Number of surfaced failures: " + bulkImportResponse.getErrors().size());
                         for(int j = 0; j < bulkImportResponse.getErrors().size(); j++) {
@@ -154,30 +211,92 @@ public class Main {
                 System.out.println("Average RUs/second:" + totalRequestCharge / (totalWatch.elapsed().toMillis() * 0.001));
                 System.out.println("Average #Inserts/second: " + totalNumberOfDocumentsImported / (totalWatch.elapsed().toMillis() * 0.001));
 
+                if (result != null) {
+                    result.putThroughput(totalNumberOfDocumentsImported, totalRequestCharge, totalWatch.elapsed().toMillis() * 0.001)
+                            .put("errors", totalNumberOfErrors)
+                            .put("throttles", totalNumberOfThrottles)
+                            .write(Paths.get(cfg.getResultFile()));
+                }
+
             } // close bulk importer
         } // closes client
     }
 
-    static class DataMigrationDocumentSource {
+    private static void export(DocumentClient client, CmdLineConfiguration cfg, int offerThroughput) throws Exception {
+        Path exportDirectory = Paths.get(cfg.getExportDirectory());
+        Path checkpointFile = cfg.getExportCheckpointFile() != null ? Paths.get(cfg.getExportCheckpointFile()) : exportDirectory.resolve("bulkexport-checkpoint.json");
+
+        // the exporter handles throttling
+        client.getConnectionPolicy().getRetryOptions().setMaxRetryWaitTimeInSeconds(0);
+        client.getConnectionPolicy().getRetryOptions().setMaxRetryAttemptsOnThrottledRequests(0);
 
-        private static String generateDocument(String partitionKeyName, String partitionKeyValue) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("{");
-            sb.append("\"id\":\"").append(UUID.randomUUID().toString()).append("abc\"");
+        BenchmarkResult result = cfg.getResultFile() != null ? new BenchmarkResult("bulkimport", "export") : null;
 
-            String data = UUID.randomUUID().toString();
-            data = data + data + "0123456789012";
+        try (DocumentBulkExporter exporter = DocumentBulkExporter.builder()
+                .from(client, cfg.getDatabaseId(), cfg.getCollectionId(), offerThroughput)
+                .withCheckpointFile(checkpointFile)
+                .build()) {
 
-            for(int j = 0; j < 10;j++) {
-                sb.append(",").append("\"f").append(j).append("\":\"").append(data).append("\"");
+            BulkExportResponse response = exporter.exportAll(exportDirectory);
+
+            System.out.println("##########################################################################################");
+            System.out.println("Total Number of documents exported " + response.getNumberOfDocumentsExported());
+            System.out.println("Total export time in milli seconds " + response.getTotalTimeTaken().toMillis());
+            System.out.println("Total request unit consumed: " + response.getTotalRequestUnitsConsumed());
+            System.out.println("Average RUs/second: " + response.getTotalRequestUnitsConsumed() / (0.001 * response.getTotalTimeTaken().toMillis()));
+            System.out.println("##########################################################################################");
+
+            if (result != null) {
+                result.putThroughput(response.getNumberOfDocumentsExported(), response.getTotalRequestUnitsConsumed(),
+                        0.001 * response.getTotalTimeTaken().toMillis())
+                        .put("errors", response.getErrors().size())
+                        .write(Paths.get(cfg.getResultFile()));
             }
 
-            // partition key
-            sb.append(",\"").append(partitionKeyName).append("\":\"").append(partitionKeyValue).append("\"");
+            if (!response.getErrors().isEmpty()) {
+                System.err.println("Some partition key ranges failed to get exported. Rerun the same command to resume them.");
+                for (Exception e : response.getErrors()) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
 
-            sb.append("}");
+    static class DataMigrationDocumentSource {
 
-            return sb.toString();
+        /**
+         * Creates the generator of the documents configured on the command line.
+         *
+         * @param cfg the command line configuration
+         * @param partitionKeyDefinition
+         * @return the generator
+         */
+        static DocumentGenerator generator(CmdLineConfiguration cfg, PartitionKeyDefinition partitionKeyDefinition) {
+            return DocumentGenerator.builder(partitionKeyDefinition)
+                    .withKeyDistribution(cfg.getPartitionKeyDistribution(), cfg.getPartitionKeyCount())
+                    .withZipfianExponent(cfg.getZipfianExponent())
+                    .withHotKeyFraction(cfg.getHotKeyFraction())
+                    .withKeyType(cfg.getPartitionKeyType())
+                    .withShape(cfg.getDocumentShape())
+                    .withDocumentSize(cfg.getDocumentSize(), cfg.getDocumentSizeMax())
+                    .build();
+        }
+
+        /**
+         * @param generator the generator of the documents
+         * @return an endless source of the documents of the generator, generating them as they are read
+         */
+        static DocumentSource asSource(DocumentGenerator generator) {
+            return new DocumentSource() {
+                @Override
+                public List<String> readBatch(int maxNumberOfDocuments) {
+                    return generator.generate(maxNumberOfDocuments);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
         }
 
         /**
@@ -189,26 +308,9 @@ public class Main {
          */
         public static Collection<String> loadDocuments(int numberOfDocuments, PartitionKeyDefinition partitionKeyDefinition) {
 
-            Preconditions.checkArgument(partitionKeyDefinition != null &&
-                    partitionKeyDefinition.getPaths().size() > 0, "there is no partition key definition");
-
-            Collection<String> partitionKeyPath = partitionKeyDefinition.getPaths();
-            Preconditions.checkArgument(partitionKeyPath.size() == 1,
-                    "the command line benchmark tool only support simple partition key path");
-
-            String partitionKeyName = partitionKeyPath.iterator().next().replaceFirst("^/", "");
-
             // the size of each document is approximately 1KB
-
-            ArrayList<String> allDocs = new ArrayList<>(numberOfDocuments);
-
-            // return documents to be bulk imported
             // if you are reading documents from disk you can change this to read documents from disk
-            return IntStream.range(0, numberOfDocuments).mapToObj(i ->
-            {
-                String partitionKeyValue = UUID.randomUUID().toString();
-                return generateDocument(partitionKeyName, partitionKeyValue);
-            }).collect(Collectors.toCollection(() -> allDocs));
+            return DocumentGenerator.builder(partitionKeyDefinition).build().generate(numberOfDocuments);
         }
 
         /**
@@ -220,28 +322,16 @@ public class Main {
          */
         public static HashMap<String, Object> loadDocumentToPartitionKeyValueMap(int numberOfDocuments, PartitionKeyDefinition partitionKeyDefinition) {
 
-            Preconditions.checkArgument(partitionKeyDefinition != null &&
-                    partitionKeyDefinition.getPaths().size() > 0, "there is no partition key definition");
-
-            Collection<String> partitionKeyPath = partitionKeyDefinition.getPaths();
-            Preconditions.checkArgument(partitionKeyPath.size() == 1,
-                    "the command line benchmark tool only support simple partition key path");
-
-            String partitionKeyName = partitionKeyPath.iterator().next().replaceFirst("^/", "");
-
-            HashMap<String, Object> documentsToPartitionKeyValue = new HashMap<String, Object>(numberOfDocuments);
-
             // the size of each document is approximately 1KB
+            List<Object> partitionKeyValues = new ArrayList<>(numberOfDocuments);
+            List<String> documents = DocumentGenerator.builder(partitionKeyDefinition).build().generate(numberOfDocuments, partitionKeyValues);
 
             // return collection of <document, partitionKeyValue> to be bulk imported
             // if you are reading documents from disk you can change this to read documents from disk
-            IntStream.range(0, numberOfDocuments).mapToObj(i ->
-            {
-                String partitionKeyValue = UUID.randomUUID().toString();
-                String doc = generateDocument(partitionKeyName, partitionKeyValue);
-                return new AbstractMap.SimpleEntry<String, Object>(doc, partitionKeyValue);
-
-            }).forEach(entry -> documentsToPartitionKeyValue.put(entry.getKey(), entry.getValue()));
+            HashMap<String, Object> documentsToPartitionKeyValue = new HashMap<String, Object>(numberOfDocuments);
+            for (int i = 0; i < numberOfDocuments; i++) {
+                documentsToPartitionKeyValue.put(documents.get(i), partitionKeyValues.get(i));
+            }
             return documentsToPartitionKeyValue;
         }
     }
@@ -281,6 +371,21 @@ public class Main {
             System.exit(0);
             return null;
         }
+
+        if (cfg.isOffline() && !cfg.isSweep()) {
+            System.err.println("-offline is only supported with -sweep");
+            jcommander.usage();
+            System.exit(-1);
+            return null;
+        }
+
+        if (!cfg.isOffline() && (cfg.getServiceEndpoint() == null || cfg.getMasterKey() == null
+                || cfg.getDatabaseId() == null || cfg.getCollectionId() == null)) {
+            System.err.println("-serviceEndpoint, -masterKey, -databaseId and -collectionId are required");
+            jcommander.usage();
+            System.exit(-1);
+            return null;
+        }
         return cfg;
     }
 }
@@ -0,0 +1,232 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads the documents of an uncompressed file window by window through memory mappings.
+ *
+ * <p> Each window ends at the last complete document it contains. The document boundaries of a window are found
+ * by a single byte scan, then the documents are decoded in parallel. The next window is read ahead while the
+ * documents of the current one are consumed.
+ */
+abstract class MappedFileDocumentSource implements DocumentSource {
+
+    /**
+     * Size of the mapped windows, way larger than any document.
+     */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Returned by {@link #findRecords} when there is no document after the window.
+     */
+    static final int END_OF_RECORDS = -1;
+
+    /**
+     * Number of documents decoded by a single task.
+     */
+    private static final int DECODING_CHUNK_SIZE = 4096;
+
+    /**
+     * Positions of the documents found in a window.
+     */
+    static class Records {
+        private long[] positions = new long[1024];
+        private int size;
+
+        void add(int start, int end) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = ((long) start << 32) | end;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int start(int index) {
+            return (int) (positions[index] >>> 32);
+        }
+
+        int end(int index) {
+            return (int) positions[index];
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final long fileSize;
+
+    private final int windowSize;
+
+    private final ExecutorService readAheadExecutor;
+
+    /**
+     * Start of the next window to read, only written by the window being read.
+     */
+    private volatile long nextWindowStart;
+
+    private Future<List<String>> readAhead;
+
+    private List<String> currentWindow = Collections.emptyList();
+
+    private int currentIndex;
+
+    MappedFileDocumentSource(Path file, long firstRecordOffset, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.nextWindowStart = firstRecordOffset;
+        this.readAheadExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("document-source-read-ahead-%d").build());
+    }
+
+    /**
+     * Finds the documents in the window.
+     *
+     * @param window the mapped window, from position 0 to its limit
+     * @param windowOffset offset of the window in the file, for error messages
+     * @param lastWindow whether the window ends at the end of the file
+     * @param records to add the position of each document to
+     * @return the number of bytes consumed, up to the end of the last complete document, or {@link #END_OF_RECORDS}
+     * @throws IOException if the content is malformed
+     */
+    abstract int findRecords(ByteBuffer window, long windowOffset, boolean lastWindow, Records records) throws IOException;
+
+    @Override
+    public List<String> readBatch(int maxNumberOfDocuments) throws IOException {
+        List<String> batch = new ArrayList<>(maxNumberOfDocuments);
+
+        while (batch.size() < maxNumberOfDocuments) {
+            if (currentIndex == currentWindow.size()) {
+                currentWindow = takeWindow();
+                currentIndex = 0;
+                if (currentWindow == null) {
+                    currentWindow = Collections.emptyList();
+                    break;
+                }
+            }
+
+            int count = Math.min(maxNumberOfDocuments - batch.size(), currentWindow.size() - currentIndex);
+            batch.addAll(currentWindow.subList(currentIndex, currentIndex + count));
+            currentIndex += count;
+        }
+
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        readAheadExecutor.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * @return the documents of the next window, or null at the end of the file
+     */
+    private List<String> takeWindow() throws IOException {
+        if (readAhead == null) {
+            if (nextWindowStart >= fileSize) {
+                return null;
+            }
+            readAhead = readWindowAsync(nextWindowStart);
+        }
+
+        List<String> window;
+        try {
+            window = readAhead.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        readAhead = nextWindowStart < fileSize ? readWindowAsync(nextWindowStart) : null;
+        return window;
+    }
+
+    private Future<List<String>> readWindowAsync(long start) {
+        return readAheadExecutor.submit(() -> readWindow(start));
+    }
+
+    private List<String> readWindow(long start) throws IOException {
+        long length = Math.min(windowSize, fileSize - start);
+        boolean lastWindow = start + length == fileSize;
+        MappedByteBuffer window = channel.map(MapMode.READ_ONLY, start, length);
+
+        Records records = new Records();
+        int consumed = findRecords(window, start, lastWindow, records);
+
+        if (consumed == END_OF_RECORDS) {
+            nextWindowStart = fileSize;
+        } else if (consumed == 0 && !lastWindow) {
+            throw new IOException(String.format("document at offset %d is larger than %d bytes", start, windowSize));
+        } else {
+            nextWindowStart = start + consumed;
+        }
+
+        String[] documents = new String[records.size()];
+        int numberOfChunks = (records.size() + DECODING_CHUNK_SIZE - 1) / DECODING_CHUNK_SIZE;
+        IntStream.range(0, numberOfChunks).parallel().forEach(chunk -> {
+            ByteBuffer view = window.duplicate();
+            byte[] bytes = new byte[0];
+            int to = Math.min(records.size(), (chunk + 1) * DECODING_CHUNK_SIZE);
+
+            for (int i = chunk * DECODING_CHUNK_SIZE; i < to; i++) {
+                int documentLength = records.end(i) - records.start(i);
+                if (bytes.length < documentLength) {
+                    bytes = new byte[Math.max(documentLength, bytes.length * 2)];
+                }
+                view.position(records.start(i));
+                view.get(bytes, 0, documentLength);
+                documents[i] = new String(bytes, 0, documentLength, StandardCharsets.UTF_8);
+            }
+        });
+
+        return Arrays.asList(documents);
+    }
+}
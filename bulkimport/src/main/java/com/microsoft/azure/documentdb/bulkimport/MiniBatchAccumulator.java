@@ -0,0 +1,287 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Accumulates documents submitted to a {@link BulkImportSession} for a single partition key range into mini-batches
+ * and hands them to the long lived {@link CongestionController} of that range.
+ *
+ * <p> A mini-batch is dispatched once it reaches the linger bytes or once the linger time since its first document
+ * elapsed, whichever comes first. A longer linger time and a larger linger bytes mean fewer and larger stored
+ * procedure calls (higher throughput) at the cost of a higher latency per document.
+ */
+class MiniBatchAccumulator {
+
+    private final Logger logger = LoggerFactory.getLogger(MiniBatchAccumulator.class);
+
+    /**
+     * How often the dispatch loop checks whether it has been asked to stop while there is nothing to import.
+     */
+    private static final long IDLE_POLL_INTERVAL_IN_MILLIS = 100;
+
+    static class PendingDocument {
+        final String document;
+        final int size;
+        final SettableFuture<Void> future = SettableFuture.create();
+
+        PendingDocument(String document, int size) {
+            this.document = document;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The id of the physical partition this accumulator is responsible for.
+     */
+    private final String partitionKeyRangeId;
+
+    /**
+     * Documents submitted but not dispatched yet.
+     */
+    private final BlockingQueue<PendingDocument> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The {@link BatchInserter} which imports the dispatched mini-batches.
+     */
+    private final BatchInserter batchInserter;
+
+    /**
+     * The long lived {@link CongestionController} of the partition.
+     */
+    private final CongestionController congestionController;
+
+    /**
+     * Bytes budget shared by all the partitions of the session. Acquired by the session on submission
+     * and released here once the document is imported or failed.
+     */
+    private final Semaphore pendingBytes;
+
+    /**
+     * Max mini batch size in bytes.
+     */
+    private final int maxMiniBatchSize;
+
+    /**
+     * Max time the first document of a mini-batch waits for more documents.
+     */
+    private final Duration linger;
+
+    /**
+     * Mini-batch size in bytes at which the mini-batch is dispatched without waiting for the linger time.
+     */
+    private final int lingerBytes;
+
+    /**
+     * Tracks the dispatched mini-batches which did not complete yet.
+     */
+    private final Phaser inFlight = new Phaser(1);
+
+    /**
+     * Aggregated metrics of the imported mini-batches.
+     */
+    private InsertMetrics insertMetrics = new InsertMetrics();
+
+    private final Object metricsLock = new Object();
+
+    private volatile boolean closing = false;
+
+    private ListenableFuture<Void> completionFuture;
+
+    public MiniBatchAccumulator(String partitionKeyRangeId, BatchInserter batchInserter, CongestionController congestionController,
+            Semaphore pendingBytes, int maxMiniBatchSize, Duration linger, int lingerBytes) {
+        this.partitionKeyRangeId = partitionKeyRangeId;
+        this.batchInserter = batchInserter;
+        this.congestionController = congestionController;
+        this.pendingBytes = pendingBytes;
+        this.maxMiniBatchSize = maxMiniBatchSize;
+        this.linger = linger;
+        this.lingerBytes = Math.min(lingerBytes, maxMiniBatchSize);
+    }
+
+    public ListenableFuture<Void> add(String document, int size) {
+        PendingDocument pendingDocument = new PendingDocument(document, size);
+        queue.add(pendingDocument);
+        return pendingDocument.future;
+    }
+
+    public InsertMetrics getInsertMetrics() {
+        synchronized (metricsLock) {
+            return insertMetrics;
+        }
+    }
+
+    /**
+     * Stops accepting documents once the queued ones are dispatched and completed.
+     */
+    public void close() {
+        this.closing = true;
+    }
+
+    /**
+     * Starts the dispatch loop on the given executor.
+     * @param executor executor to run the loop on
+     */
+    public void start(ListeningExecutorService executor) {
+        this.completionFuture = executor.submit(dispatchTask());
+    }
+
+    /**
+     * @return future which completes once the accumulator is closed and all the mini-batches completed
+     */
+    public ListenableFuture<Void> getCompletionFuture() {
+        return completionFuture;
+    }
+
+    private Callable<Void> dispatchTask() {
+        return new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                PendingDocument carryOver = null;
+
+                try {
+                    while (true) {
+                        PendingDocument first = carryOver != null ? carryOver : queue.poll(IDLE_POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+                        carryOver = null;
+
+                        if (first == null) {
+                            if (closing && queue.isEmpty()) {
+                                break;
+                            }
+                            continue;
+                        }
+
+                        List<PendingDocument> miniBatch = new ArrayList<>();
+                        miniBatch.add(first);
+                        int miniBatchSize = first.size;
+                        long deadline = System.nanoTime() + linger.toNanos();
+
+                        while (miniBatchSize < lingerBytes) {
+                            long remaining = deadline - System.nanoTime();
+                            PendingDocument next = (remaining > 0 && !closing) ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+
+                            if (next == null) {
+                                break;
+                            }
+
+                            if (miniBatchSize + next.size > maxMiniBatchSize) {
+                                // this batch has reached its max size
+                                carryOver = next;
+                                break;
+                            }
+
+                            miniBatch.add(next);
+                            miniBatchSize += next.size;
+                        }
+
+                        dispatch(miniBatch);
+                    }
+
+                    inFlight.arriveAndAwaitAdvance();
+                    logger.debug("pki {} accumulator drained", partitionKeyRangeId);
+                    return null;
+
+                } catch (InterruptedException e) {
+                    logger.warn("pki {} accumulator interrupted", partitionKeyRangeId, e);
+                    if (carryOver != null) {
+                        fail(carryOver, e);
+                    }
+                    PendingDocument pendingDocument;
+                    while ((pendingDocument = queue.poll()) != null) {
+                        fail(pendingDocument, e);
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private void dispatch(List<PendingDocument> miniBatch) throws InterruptedException {
+        List<String> documents = new ArrayList<>(miniBatch.size());
+        for (PendingDocument pendingDocument : miniBatch) {
+            documents.add(pendingDocument.document);
+        }
+
+        logger.debug("pki {} dispatching mini-batch of {} documents", partitionKeyRangeId, documents.size());
+
+        inFlight.register();
+        ListenableFuture<InsertMetrics> future;
+        try {
+            future = congestionController.submit(batchInserter.miniBatchInsertExecutionCallable(documents));
+        } catch (InterruptedException e) {
+            inFlight.arriveAndDeregister();
+            for (PendingDocument pendingDocument : miniBatch) {
+                fail(pendingDocument, e);
+            }
+            throw e;
+        }
+
+        Futures.addCallback(future, new FutureCallback<InsertMetrics>() {
+
+            @Override
+            public void onSuccess(InsertMetrics result) {
+                synchronized (metricsLock) {
+                    insertMetrics = InsertMetrics.sum(insertMetrics, result);
+                }
+                for (PendingDocument pendingDocument : miniBatch) {
+                    pendingBytes.release(pendingDocument.size);
+                    pendingDocument.future.set(null);
+                }
+                inFlight.arriveAndDeregister();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                for (PendingDocument pendingDocument : miniBatch) {
+                    fail(pendingDocument, t);
+                }
+                inFlight.arriveAndDeregister();
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void fail(PendingDocument pendingDocument, Throwable t) {
+        pendingBytes.release(pendingDocument.size);
+        pendingDocument.future.setException(t);
+    }
+}
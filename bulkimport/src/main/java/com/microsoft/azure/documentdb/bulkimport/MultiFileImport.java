@@ -0,0 +1,273 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.documentdb.DocumentClientException;
+
+/**
+ * Imports all the files of a directory matching a glob through one shared {@link DocumentBulkImporter}.
+ *
+ * <p> Several files are read at once by reader threads, which hand batches of documents to the importing thread
+ * through a queue of one batch per reader, so each reader is at most two batches ahead of the import. Each file imported without failure is
+ * appended to a manifest; files already in the manifest are skipped, so an interrupted run can be restarted. The files in
+ * flight when the run was interrupted are imported again from their start, so restart with upsert enabled.
+ */
+class MultiFileImport {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(MultiFileImport.class);
+
+    /**
+     * A batch of documents read from a file. The last batch of a file may be empty.
+     */
+    private static class FileBatch {
+        final FileStats file;
+        final List<String> documents;
+        final boolean last;
+        final Exception readFailure;
+
+        FileBatch(FileStats file, List<String> documents, boolean last, Exception readFailure) {
+            this.file = file;
+            this.documents = documents;
+            this.last = last;
+            this.readFailure = readFailure;
+        }
+    }
+
+    /**
+     * Import statistics of a file, only updated by the importing thread.
+     */
+    private static class FileStats {
+        final Path path;
+        long numberOfDocumentsRead;
+        long numberOfDocumentsImported;
+        double requestUnitsConsumed;
+        long importTimeInMillis;
+        boolean failed;
+
+        FileStats(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final DocumentBulkImporter importer;
+
+    private final Path directory;
+
+    private final String glob;
+
+    private final Path manifest;
+
+    private final int numberOfReaders;
+
+    private final int batchSize;
+
+    private final boolean isUpsert;
+
+    /**
+     * @param importer the shared importer
+     * @param directory directory holding the files to import
+     * @param glob glob the names of the files to import must match, e.g. "*.json.gz"
+     * @param manifest file recording the imported files
+     * @param numberOfReaders number of files read at once
+     * @param batchSize number of documents handed to each {@link DocumentBulkImporter#importAll(java.util.Collection, boolean)}
+     * @param isUpsert whether enable upsert (overwrite if it exists)
+     */
+    MultiFileImport(DocumentBulkImporter importer, Path directory, String glob, Path manifest, int numberOfReaders, int batchSize,
+            boolean isUpsert) {
+        this.importer = importer;
+        this.directory = directory;
+        this.glob = glob;
+        this.manifest = manifest;
+        this.numberOfReaders = numberOfReaders;
+        this.batchSize = batchSize;
+        this.isUpsert = isUpsert;
+    }
+
+    /**
+     * @return true if all the files were imported
+     */
+    boolean run() throws IOException, InterruptedException {
+        Set<String> alreadyImported = readManifest();
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file) && !file.equals(manifest) && !alreadyImported.contains(manifestEntry(file))) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+
+        System.out.println(String.format("Importing %d files (%d already imported according to %s)", files.size(), alreadyImported.size(), manifest));
+        if (files.isEmpty()) {
+            return true;
+        }
+
+        ConcurrentLinkedQueue<FileStats> filesToRead = new ConcurrentLinkedQueue<>();
+        files.forEach(file -> filesToRead.add(new FileStats(file)));
+
+        BlockingQueue<FileBatch> batches = new ArrayBlockingQueue<>(numberOfReaders);
+        ExecutorService readers = Executors.newFixedThreadPool(numberOfReaders,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("file-reader-%d").build());
+        for (int i = 0; i < numberOfReaders; i++) {
+            readers.submit(() -> read(filesToRead, batches));
+        }
+
+        Stopwatch totalWatch = Stopwatch.createStarted();
+        long totalNumberOfDocumentsImported = 0;
+        double totalRequestUnitsConsumed = 0;
+        int numberOfFilesCompleted = 0;
+        int numberOfFilesFailed = 0;
+
+        try {
+            while (numberOfFilesCompleted < files.size()) {
+                FileBatch batch = batches.take();
+                FileStats file = batch.file;
+
+                if (batch.readFailure != null) {
+                    LOGGER.error("Failed to read {}", file.path, batch.readFailure);
+                    file.failed = true;
+                } else if (!batch.documents.isEmpty() && !file.failed) {
+                    file.numberOfDocumentsRead += batch.documents.size();
+
+                    try {
+                        BulkImportResponse response = importer.importAll(batch.documents, isUpsert);
+                        file.numberOfDocumentsImported += response.getNumberOfDocumentsImported();
+                        file.requestUnitsConsumed += response.getTotalRequestUnitsConsumed();
+                        file.importTimeInMillis += response.getTotalTimeTaken().toMillis();
+                        totalNumberOfDocumentsImported += response.getNumberOfDocumentsImported();
+                        totalRequestUnitsConsumed += response.getTotalRequestUnitsConsumed();
+
+                        if (response.getNumberOfDocumentsImported() + response.getNumberOfDuplicatesDropped() != batch.documents.size()) {
+                            LOGGER.error("Failed to import some documents of {}", file.path, response.getErrors().isEmpty() ? null : response.getErrors().get(0));
+                            file.failed = true;
+                        }
+                    } catch (DocumentClientException e) {
+                        LOGGER.error("Failed to import documents of {}", file.path, e);
+                        file.failed = true;
+                    }
+                }
+
+                if (batch.last) {
+                    numberOfFilesCompleted++;
+                    if (file.failed) {
+                        numberOfFilesFailed++;
+                    } else {
+                        appendToManifest(file.path);
+                    }
+                    printFileStats(file);
+                }
+            }
+        } finally {
+            readers.shutdownNow();
+            readers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        totalWatch.stop();
+        double seconds = totalWatch.elapsed().toMillis() * 0.001;
+
+        System.out.println("##########################################################################################");
+        System.out.println(String.format("Files imported: %d, failed: %d", numberOfFilesCompleted - numberOfFilesFailed, numberOfFilesFailed));
+        System.out.println("Total Number of documents inserted " + totalNumberOfDocumentsImported);
+        System.out.println("Total request unit consumed: " + totalRequestUnitsConsumed);
+        System.out.println("Total import time in milli seconds including reading: " + totalWatch.elapsed().toMillis());
+        System.out.println("Average RUs/second:" + totalRequestUnitsConsumed / seconds);
+        System.out.println("Average #Inserts/second: " + totalNumberOfDocumentsImported / seconds);
+        System.out.println("##########################################################################################");
+
+        return numberOfFilesFailed == 0;
+    }
+
+    private void read(ConcurrentLinkedQueue<FileStats> filesToRead, BlockingQueue<FileBatch> batches) {
+        FileStats file;
+        try {
+            while ((file = filesToRead.poll()) != null) {
+                try (DocumentSource source = DocumentSources.open(file.path)) {
+                    List<String> documents = source.readBatch(batchSize);
+                    while (true) {
+                        // read ahead to know whether this batch is the last one
+                        List<String> next = documents.isEmpty() ? documents : source.readBatch(batchSize);
+                        boolean last = next.isEmpty();
+                        batches.put(new FileBatch(file, documents, last, null));
+                        if (last) {
+                            break;
+                        }
+                        documents = next;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    batches.put(new FileBatch(file, Collections.emptyList(), true, e));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printFileStats(FileStats file) {
+        double seconds = Math.max(file.importTimeInMillis, 1) * 0.001;
+        System.out.println(String.format("%s %s: %d/%d documents inserted in %d milli seconds, %.1f RUs/second, %.1f #Inserts/second",
+                file.failed ? "FAILED" : "DONE", file.path.getFileName(),
+                file.numberOfDocumentsImported, file.numberOfDocumentsRead, file.importTimeInMillis,
+                file.requestUnitsConsumed / seconds, file.numberOfDocumentsImported / seconds));
+    }
+
+    private Set<String> readManifest() throws IOException {
+        if (!Files.exists(manifest)) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+    }
+
+    private void appendToManifest(Path file) throws IOException {
+        Files.write(manifest, Collections.singletonList(manifestEntry(file)), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    private static String manifestEntry(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
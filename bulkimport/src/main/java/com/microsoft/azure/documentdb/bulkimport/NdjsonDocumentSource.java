@@ -0,0 +1,83 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Reads a file of newline delimited JSON documents, one document per line. Blank lines are skipped.
+ */
+class NdjsonDocumentSource extends MappedFileDocumentSource {
+
+    NdjsonDocumentSource(Path file, long firstRecordOffset, int windowSize) throws IOException {
+        super(file, firstRecordOffset, windowSize);
+    }
+
+    @Override
+    int findRecords(ByteBuffer window, long windowOffset, boolean lastWindow, Records records) {
+        int limit = window.limit();
+        int lineStart = 0;
+
+        int newLine;
+        while ((newLine = indexOfNewLine(window, lineStart, limit)) >= 0) {
+            addLine(window, lineStart, newLine, records);
+            lineStart = newLine + 1;
+        }
+
+        if (lastWindow) {
+            // the last line may not end with a new line
+            addLine(window, lineStart, limit, records);
+            return limit;
+        }
+
+        return lineStart;
+    }
+
+    /**
+     * Kept apart from the loop over the lines so the JIT compiles it after a few lines rather than relying on
+     * on-stack replacement of a single loop over the whole window.
+     */
+    private static int indexOfNewLine(ByteBuffer window, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void addLine(ByteBuffer window, int start, int end, Records records) {
+        while (start < end && DocumentSources.isWhitespace(window.get(start))) {
+            start++;
+        }
+        while (end > start && DocumentSources.isWhitespace(window.get(end - 1))) {
+            end--;
+        }
+
+        if (end > start) {
+            records.add(start, end);
+        }
+    }
+}
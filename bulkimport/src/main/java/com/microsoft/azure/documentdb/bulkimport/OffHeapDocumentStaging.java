@@ -0,0 +1,234 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Stages documents as UTF-8 bytes in direct {@link ByteBuffer} segments, keeping only 16 bytes of offset, length and
+ * index per document on the heap.
+ *
+ * <p> The documents of all the partitions (e.g. partition key ranges) share the same segments, one after the other in
+ * the order they are appended, so the direct memory used is the size of the documents rounded up to a segment however
+ * many partitions receive them. Each partition keeps the indexes of its documents.
+ *
+ * <p> The mini-batches built by {@link #toMiniBatches(int, int)} are views decoding the documents on access,
+ * so the {@link String}s sent to the stored procedure live only for the duration of the call.
+ * Appending is not thread safe; reading the mini-batches is.
+ */
+class OffHeapDocumentStaging implements AutoCloseable {
+
+    private final DirectBufferPool pool;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * (segment index << 32 | position) of each document.
+     */
+    private long[] offsets;
+
+    private int[] lengths;
+
+    private int size;
+
+    /**
+     * Indexes of the documents of each partition, in the order they were appended.
+     */
+    private final int[][] partitionIndexes;
+
+    private final int[] partitionSizes;
+
+    /**
+     * Creates a staging with a single partition.
+     */
+    OffHeapDocumentStaging(DirectBufferPool pool, int expectedNumberOfDocuments) {
+        this(pool, 1, expectedNumberOfDocuments);
+    }
+
+    /**
+     * @param pool the pool of the segments
+     * @param numberOfPartitions number of partitions the documents are appended to
+     * @param expectedNumberOfDocuments expected number of documents, of all the partitions
+     */
+    OffHeapDocumentStaging(DirectBufferPool pool, int numberOfPartitions, int expectedNumberOfDocuments) {
+        this.pool = pool;
+        this.offsets = new long[Math.max(16, expectedNumberOfDocuments)];
+        this.lengths = new int[offsets.length];
+        this.partitionIndexes = new int[numberOfPartitions][];
+        this.partitionSizes = new int[numberOfPartitions];
+        int expectedNumberOfDocumentsPerPartition = Math.max(16, expectedNumberOfDocuments / numberOfPartitions);
+        for (int p = 0; p < numberOfPartitions; p++) {
+            partitionIndexes[p] = new int[expectedNumberOfDocumentsPerPartition];
+        }
+    }
+
+    /**
+     * @param document document to stage in the first partition
+     * @return the size of the document in bytes
+     */
+    int append(String document) {
+        return append(0, document.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param partition the partition of the document
+     * @param bytes document to stage, in UTF-8
+     * @return the size of the document in bytes
+     */
+    int append(int partition, byte[] bytes) {
+        Preconditions.checkElementIndex(partition, partitionIndexes.length);
+        Preconditions.checkArgument(bytes.length <= pool.getSegmentSize(), "document larger than a staging segment");
+
+        ByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.remaining() < bytes.length) {
+            segment = pool.acquire();
+            segments.add(segment);
+        }
+
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+
+        offsets[size] = ((long) (segments.size() - 1) << 32) | segment.position();
+        lengths[size] = bytes.length;
+
+        if (partitionSizes[partition] == partitionIndexes[partition].length) {
+            partitionIndexes[partition] = Arrays.copyOf(partitionIndexes[partition], partitionSizes[partition] * 2);
+        }
+        partitionIndexes[partition][partitionSizes[partition]++] = size;
+        size++;
+
+        segment.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * @return the number of documents of all the partitions
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of direct memory segments holding the documents
+     */
+    int getNumberOfSegments() {
+        return segments.size();
+    }
+
+    String get(int index) {
+        Preconditions.checkElementIndex(index, size);
+
+        ByteBuffer segment = segments.get((int) (offsets[index] >>> 32)).duplicate();
+        segment.position((int) offsets[index]);
+
+        byte[] bytes = new byte[lengths[index]];
+        segment.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits the staged documents of the first partition, in staging order, into mini-batches of at most
+     * {@code maxMiniBatchSize} bytes.
+     * @param maxMiniBatchSize max mini batch size in bytes
+     * @return the mini-batches, valid until this staging is closed
+     */
+    List<List<String>> toMiniBatches(int maxMiniBatchSize) {
+        return toMiniBatches(0, maxMiniBatchSize);
+    }
+
+    /**
+     * Splits the staged documents of a partition, in staging order, into mini-batches of at most {@code maxMiniBatchSize} bytes.
+     * @param partition the partition
+     * @param maxMiniBatchSize max mini batch size in bytes
+     * @return the mini-batches, valid until this staging is closed
+     */
+    List<List<String>> toMiniBatches(int partition, int maxMiniBatchSize) {
+        Preconditions.checkElementIndex(partition, partitionIndexes.length);
+        int[] indexes = partitionIndexes[partition];
+        int partitionSize = partitionSizes[partition];
+        List<List<String>> miniBatches = new ArrayList<>();
+
+        int from = 0;
+        int currentMiniBatchSize = 0;
+        for (int i = 0; i < partitionSize; i++) {
+            if (i > from && currentMiniBatchSize + lengths[indexes[i]] > maxMiniBatchSize) {
+                // this batch has reached its max size
+                miniBatches.add(new MiniBatchView(indexes, from, i));
+                from = i;
+                currentMiniBatchSize = 0;
+            }
+            currentMiniBatchSize += lengths[indexes[i]];
+        }
+
+        if (partitionSize > from) {
+            miniBatches.add(new MiniBatchView(indexes, from, partitionSize));
+        }
+
+        return miniBatches;
+    }
+
+    /**
+     * Returns the segments to the pool.
+     */
+    @Override
+    public void close() {
+        for (ByteBuffer segment : segments) {
+            pool.release(segment);
+        }
+        segments.clear();
+        size = 0;
+        Arrays.fill(partitionSizes, 0);
+    }
+
+    private class MiniBatchView extends AbstractList<String> {
+        private final int[] indexes;
+        private final int from;
+        private final int to;
+
+        MiniBatchView(int[] indexes, int from, int to) {
+            this.indexes = indexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            Preconditions.checkElementIndex(index, to - from);
+            return OffHeapDocumentStaging.this.get(indexes[from + index]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.List;
+
+import com.microsoft.azure.documentdb.DocumentClientException;
+
+/**
+ * Reads one page of the documents of a partition key range.
+ */
+interface PageReader {
+
+    class Page {
+        private final List<String> documents;
+        private final String continuation;
+        private final double requestCharge;
+
+        Page(List<String> documents, String continuation, double requestCharge) {
+            this.documents = documents;
+            this.continuation = continuation;
+            this.requestCharge = requestCharge;
+        }
+
+        List<String> getDocuments() {
+            return documents;
+        }
+
+        /**
+         * @return the continuation of the next page, or null after the last page
+         */
+        String getContinuation() {
+            return continuation;
+        }
+
+        double getRequestCharge() {
+            return requestCharge;
+        }
+    }
+
+    /**
+     * @param partitionKeyRangeId the partition key range to read
+     * @param continuation the continuation returned with the previous page, or null for the first page
+     * @param pageSize max number of documents of the page
+     * @return the page
+     * @throws DocumentClientException if the read fails, including when it is throttled
+     */
+    Page readPage(String partitionKeyRangeId, String continuation, int pageSize) throws DocumentClientException;
+}
@@ -0,0 +1,207 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.Undefined;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+/**
+ * The partition key paths of a collection, parsed once into field names so that extracting the partition key value of
+ * a document only walks its tree.
+ *
+ * <p> Each path of the definition starting with a slash is a component of the partition key value, e.g. /address/zip
+ * is the zip field of the address object. A segment in double quotes may contain slashes, with \" and \\ as escapes,
+ * e.g. /"a/b"/c. A path not starting with a slash continues the previous one with one more field name, as in
+ * ["/city", "name"] for /city/name. For compatibility, when a path of several unquoted segments is missing from a
+ * document, its text after the leading slash is looked up as a single field name, e.g. "myPKWith/Slash".
+ */
+class PartitionKeyAccessor {
+
+    private static final PartitionKeyAccessor NONE = new PartitionKeyAccessor(new String[0][], new String[0]);
+
+    private final String[][] components;
+
+    private final String[] literalNames;
+
+    private PartitionKeyAccessor(String[][] components, String[] literalNames) {
+        this.components = components;
+        this.literalNames = literalNames;
+    }
+
+    /**
+     * Parses the paths of a partition key definition.
+     *
+     * @param partitionKeyDefinition the definition, null for a collection without partition key
+     * @return the accessor
+     * @throws IllegalArgumentException if a path is malformed
+     */
+    static PartitionKeyAccessor compile(PartitionKeyDefinition partitionKeyDefinition) {
+        if (partitionKeyDefinition == null || partitionKeyDefinition.getPaths().size() == 0) {
+            return NONE;
+        }
+
+        List<List<String>> components = new ArrayList<>();
+        List<String> literalNames = new ArrayList<>();
+        for (String path : partitionKeyDefinition.getPaths()) {
+            if (path.startsWith("/")) {
+                List<String> segments = parsePath(path);
+                components.add(segments);
+                literalNames.add(segments.size() > 1 && path.indexOf('"') < 0 ? path.substring(1) : null);
+            } else if (!components.isEmpty() && !path.isEmpty()) {
+                components.get(components.size() - 1).add(path);
+                literalNames.set(literalNames.size() - 1, null);
+            } else {
+                throw new IllegalArgumentException(String.format("invalid partition key path %s", path));
+            }
+        }
+
+        String[][] componentsAsArray = new String[components.size()][];
+        for (int i = 0; i < componentsAsArray.length; i++) {
+            componentsAsArray[i] = components.get(i).toArray(new String[0]);
+        }
+        return new PartitionKeyAccessor(componentsAsArray, literalNames.toArray(new String[0]));
+    }
+
+    /**
+     * @param path a path starting with a slash
+     * @return its field names, unquoted
+     */
+    static List<String> parsePath(String path) {
+        List<String> segments = new ArrayList<>();
+        int i = 0;
+        while (i < path.length()) {
+            if (path.charAt(i) != '/' || i + 1 == path.length()) {
+                throw new IllegalArgumentException(String.format("invalid partition key path %s", path));
+            }
+            i++;
+
+            StringBuilder segment = new StringBuilder();
+            if (path.charAt(i) == '"') {
+                i++;
+                while (i < path.length() && path.charAt(i) != '"') {
+                    char c = path.charAt(i++);
+                    if (c == '\\' && i < path.length()) {
+                        c = path.charAt(i++);
+                    }
+                    segment.append(c);
+                }
+                if (i == path.length()) {
+                    throw new IllegalArgumentException(String.format("unterminated quoted segment in partition key path %s", path));
+                }
+                i++;
+            } else {
+                while (i < path.length() && path.charAt(i) != '/') {
+                    segment.append(path.charAt(i++));
+                }
+            }
+
+            if (segment.length() == 0) {
+                throw new IllegalArgumentException(String.format("empty segment in partition key path %s", path));
+            }
+            segments.add(segment.toString());
+        }
+        return segments;
+    }
+
+    /**
+     * @return whether the collection has no partition key
+     */
+    boolean isEmpty() {
+        return components.length == 0;
+    }
+
+    /**
+     * @param root the parsed document
+     * @return the partition key value of the document, with Undefined for its missing components
+     */
+    PartitionKeyInternal extract(JsonNode root) {
+        if (components.length == 0) {
+            return PartitionKeyInternal.getEmpty();
+        }
+        return toPartitionKeyValue(extractKey(root));
+    }
+
+    /**
+     * @param root the parsed document
+     * @return the raw value of the single component of the partition key of the document, or the list of the values of
+     * its components: immutable, with equals and hashCode
+     */
+    Object extractKey(JsonNode root) {
+        Object[] values = new Object[components.length];
+        for (int c = 0; c < components.length; c++) {
+            JsonNode node = root;
+            for (String segment : components[c]) {
+                node = node.path(segment);
+            }
+            if (node.isMissingNode() && literalNames[c] != null) {
+                node = root.path(literalNames[c]);
+            }
+            values[c] = toValue(node);
+        }
+        return values.length == 1 ? values[0] : Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /**
+     * @param key a raw value of {@link #extractKey(JsonNode)}, or the value of a single component partition key
+     * @return the partition key value
+     */
+    static PartitionKeyInternal toPartitionKeyValue(Object key) {
+        if (!(key instanceof List)) {
+            return DocumentAnalyzer.fromPartitionKeyvalue(key);
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            List<Object> values = (List<Object>) key;
+            return PartitionKeyInternal.fromObjectArray(values, true);
+        } catch (Exception e) {
+            throw ExceptionUtils.toRuntimeException(e);
+        }
+    }
+
+    private static Object toValue(JsonNode node) {
+        switch (node.getNodeType()) {
+        case BOOLEAN:
+            return node.booleanValue();
+        case MISSING:
+            return Undefined.Value();
+        case NULL:
+            return JSONObject.NULL;
+        case NUMBER:
+            return node.numberValue();
+        case STRING:
+            return node.textValue();
+        default:
+            throw new RuntimeException(String.format("undefined json type %s", node.getNodeType()));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.internal.routing.CollectionRoutingMap;
+
+/**
+ * Finds the partition key range of an effective partition key by a binary search over the minimum inclusive
+ * boundaries of the ranges, compared as numbers rather than as strings.
+ *
+ * <p> Effective partition keys are upper case hexadecimal strings of varying length. The first 16 digits of each
+ * boundary are encoded as an unsigned long, shorter strings padded with zeros, so that nearly every comparison of the
+ * search is a comparison of two longs; the strings are only compared when their encodings are equal. If the first 16
+ * characters of a boundary are not hexadecimal digits the index is not used and the routing map searches the ranges
+ * instead, as it does for such a key.
+ */
+class PartitionKeyRangeIndex {
+
+    private static final int DIGITS_PER_PREFIX = 16;
+
+    /**
+     * Encoding of the strings which are not hexadecimal, shared with the strings starting with 16 F digits, which are
+     * then routed by the routing map too.
+     */
+    static final long INVALID = -1L;
+
+    /**
+     * Value of the upper case hexadecimal digits, -1 for the other characters below 128.
+     */
+    private static final int[] DIGITS = new int[128];
+
+    static {
+        Arrays.fill(DIGITS, -1);
+        for (char c = '0'; c <= '9'; c++) {
+            DIGITS[c] = c - '0';
+        }
+        for (char c = 'A'; c <= 'F'; c++) {
+            DIGITS[c] = c - 'A' + 10;
+        }
+    }
+
+    private final CollectionRoutingMap routingMap;
+    private final Map<String, Integer> partitionKeyRangeIdToIndex;
+
+    private final long[] minInclusivePrefixes;
+    private final String[] minInclusives;
+    private final int[] rangeIndexes;
+
+    /**
+     * @param routingMap routing map of the collection
+     * @param partitionKeyRangeIdToIndex index of each partition key range id of the routing map
+     */
+    PartitionKeyRangeIndex(CollectionRoutingMap routingMap, Map<String, Integer> partitionKeyRangeIdToIndex) {
+        this.routingMap = routingMap;
+        this.partitionKeyRangeIdToIndex = partitionKeyRangeIdToIndex;
+
+        List<PartitionKeyRange> orderedRanges = routingMap.getOrderedPartitionKeyRanges();
+        long[] prefixes = new long[orderedRanges.size()];
+        String[] mins = new String[orderedRanges.size()];
+        int[] indexes = new int[orderedRanges.size()];
+        boolean hexadecimal = true;
+        for (int i = 0; i < orderedRanges.size(); i++) {
+            PartitionKeyRange range = orderedRanges.get(i);
+            mins[i] = range.getMinInclusive();
+            prefixes[i] = encode(mins[i]);
+            indexes[i] = partitionKeyRangeIdToIndex.get(range.getId());
+            hexadecimal &= prefixes[i] != INVALID || isHexadecimal(mins[i]);
+        }
+
+        this.minInclusivePrefixes = hexadecimal ? prefixes : null;
+        this.minInclusives = mins;
+        this.rangeIndexes = indexes;
+    }
+
+    /**
+     * @param effectivePartitionKey an effective partition key of the collection
+     * @return the index of the partition key range holding it
+     */
+    int getRangeIndex(String effectivePartitionKey) {
+        long prefix = minInclusivePrefixes != null ? encode(effectivePartitionKey) : INVALID;
+        if (prefix == INVALID) {
+            return partitionKeyRangeIdToIndex.get(routingMap.getRangeByEffectivePartitionKey(effectivePartitionKey).getId());
+        }
+
+        // the last range whose minimum inclusive boundary is not greater than the key; the first one's is the empty string
+        int low = 0;
+        int high = minInclusivePrefixes.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            int comparison = Long.compareUnsigned(minInclusivePrefixes[middle], prefix);
+            if (comparison == 0) {
+                comparison = minInclusives[middle].compareTo(effectivePartitionKey);
+            }
+            if (comparison <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return rangeIndexes[low];
+    }
+
+    /**
+     * @return the first 16 hexadecimal digits of the string as an unsigned long, padded with zeros, or {@link #INVALID}
+     * if they are not all upper case hexadecimal digits
+     */
+    static long encode(String hexadecimal) {
+        long prefix = 0;
+        int length = Math.min(hexadecimal.length(), DIGITS_PER_PREFIX);
+        for (int i = 0; i < length; i++) {
+            char c = hexadecimal.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            prefix = (prefix << 4) | digit;
+        }
+        // the shift by 64 of the empty string is a shift by 0 of its prefix 0
+        return prefix << (4 * (DIGITS_PER_PREFIX - length));
+    }
+
+    private static boolean isHexadecimal(String string) {
+        for (int i = 0; i < Math.min(string.length(), DIGITS_PER_PREFIX); i++) {
+            char c = string.charAt(i);
+            if (c >= DIGITS.length || DIGITS[c] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.Undefined;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+/**
+ * Resolves partition key values to their effective partition key and the index of their partition key range in a
+ * {@link PartitionKeyRangeIndex}, caching the resolutions of up to a maximum number of values.
+ *
+ * <p> Resolving a value converts it to a {@link PartitionKeyInternal}, hashes it and searches the ranges; with low
+ * cardinality partition keys (e.g. a tenant id shared by millions of documents) the cache saves all three. The cache
+ * belongs to the routing map it was built for: a new routing map comes with a new resolver, so resolutions never
+ * outlive the ranges they point to.
+ *
+ * <p> Only some of the values missing from the cache are added to it and the cache is cleared once full, so that a
+ * distinct value per document costs little more than without cache.
+ */
+class PartitionKeyRangeResolver {
+
+    /**
+     * The effective partition key of a value and the index of its partition key range.
+     */
+    static final class Resolution {
+        final String effectivePartitionKey;
+        final int rangeIndex;
+
+        private Resolution(String effectivePartitionKey, int rangeIndex) {
+            this.effectivePartitionKey = effectivePartitionKey;
+            this.rangeIndex = rangeIndex;
+        }
+    }
+
+    /**
+     * One in that many resolved values not in the cache is added to it.
+     */
+    private static final int ADMISSION_ODDS = 8;
+
+    private final PartitionKeyRangeIndex rangeIndex;
+    private final PartitionKeyDefinition partitionKeyDefinition;
+    private final PartitionKeyAccessor partitionKeyAccessor;
+    private final Resolution emptyPartitionKeyResolution;
+    private final long maximumSize;
+    private final Map<Object, Resolution> cache;
+
+    /**
+     * @param rangeIndex index of the partition key ranges of the routing map of the collection
+     * @param partitionKeyDefinition partition key definition of the collection
+     * @param partitionKeyAccessor compiled partition key paths of the collection
+     * @param maximumSize maximum number of cached values, 0 to disable the cache
+     */
+    PartitionKeyRangeResolver(PartitionKeyRangeIndex rangeIndex, PartitionKeyDefinition partitionKeyDefinition,
+            PartitionKeyAccessor partitionKeyAccessor, long maximumSize) {
+        this.rangeIndex = rangeIndex;
+        this.partitionKeyDefinition = partitionKeyDefinition;
+        this.partitionKeyAccessor = partitionKeyAccessor;
+        this.emptyPartitionKeyResolution = partitionKeyAccessor.isEmpty() ? resolve(PartitionKeyInternal.getEmpty()) : null;
+        this.maximumSize = maximumSize;
+        this.cache = maximumSize > 0 ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Resolves the partition key value of a serialized document.
+     *
+     * @param document the document
+     */
+    Resolution resolveDocument(String document) {
+        if (emptyPartitionKeyResolution != null) {
+            return emptyPartitionKeyResolution;
+        }
+        return resolveCached(partitionKeyAccessor.extractKey(DocumentAnalyzer.parse(document)));
+    }
+
+    /**
+     * Resolves the partition key value of a parsed document.
+     *
+     * @param root the document
+     */
+    Resolution resolveDocument(JsonNode root) {
+        if (emptyPartitionKeyResolution != null) {
+            return emptyPartitionKeyResolution;
+        }
+        return resolveCached(partitionKeyAccessor.extractKey(root));
+    }
+
+    /**
+     * Resolves a partition key value given by the caller.
+     *
+     * @param partitionKeyValue the value of the partition key
+     */
+    Resolution resolveValue(Object partitionKeyValue) {
+        if (emptyPartitionKeyResolution != null) {
+            return emptyPartitionKeyResolution;
+        }
+        if (!isCacheable(partitionKeyValue)) {
+            return resolve(DocumentAnalyzer.fromPartitionKeyvalue(partitionKeyValue));
+        }
+        return resolveCached(partitionKeyValue);
+    }
+
+    /**
+     * @param key a raw value of {@link PartitionKeyAccessor#extractKey(JsonNode)}, or an immutable value given by the caller
+     */
+    private Resolution resolveCached(Object key) {
+        if (cache == null) {
+            return resolve(PartitionKeyAccessor.toPartitionKeyValue(key));
+        }
+
+        Resolution resolution = cache.get(key);
+        if (resolution == null) {
+            resolution = resolve(PartitionKeyAccessor.toPartitionKeyValue(key));
+            // a value used by many documents gets in after a few of them, while distinct values per document rarely
+            // fill the cache; once full it is cleared rather than tracking the least recently used values on every hit
+            if (ThreadLocalRandom.current().nextInt(ADMISSION_ODDS) == 0) {
+                if (cache.size() >= maximumSize) {
+                    cache.clear();
+                }
+                cache.put(key, resolution);
+            }
+        }
+        return resolution;
+    }
+
+    private Resolution resolve(PartitionKeyInternal partitionKeyValue) {
+        String effectivePartitionKey = partitionKeyValue.getEffectivePartitionKeyString(partitionKeyDefinition, true);
+        return new Resolution(effectivePartitionKey, rangeIndex.getRangeIndex(effectivePartitionKey));
+    }
+
+    /**
+     * @return whether a value given by the caller is immutable, so that it can be a key of the cache
+     */
+    private static boolean isCacheable(Object partitionKeyValue) {
+        return partitionKeyValue instanceof String
+                || partitionKeyValue instanceof Boolean
+                || partitionKeyValue instanceof Integer
+                || partitionKeyValue instanceof Long
+                || partitionKeyValue instanceof Double
+                || partitionKeyValue instanceof Float
+                || partitionKeyValue instanceof Short
+                || partitionKeyValue instanceof Byte
+                || partitionKeyValue instanceof BigInteger
+                || partitionKeyValue instanceof BigDecimal
+                || partitionKeyValue == JSONObject.NULL
+                || partitionKeyValue == Undefined.Value();
+    }
+
+    /**
+     * @return the number of cached values
+     */
+    long size() {
+        return cache != null ? cache.size() : 0;
+    }
+}
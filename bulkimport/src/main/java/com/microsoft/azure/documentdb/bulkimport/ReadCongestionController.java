@@ -0,0 +1,126 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of page reads in flight across all the partition key ranges of an export, using AIMD
+ * (additive increase / multiplicative decrease) like {@link CongestionController} does for imports.
+ */
+class ReadCongestionController {
+
+    private final Logger logger = LoggerFactory.getLogger(ReadCongestionController.class);
+
+    /**
+     * The degree of concurrency to start at.
+     */
+    static final int STARTING_DEGREE_OF_CONCURRENCY = 3;
+
+    /**
+     * If we don't receive a throttle in the sample period, then we increase the degree of concurrency by this amount.
+     */
+    private static final int ADDITIVE_INCREASE_FACTOR = 1;
+
+    /**
+     * If we receive a throttle in the sample period, then we divide the degree of concurrency by this amount.
+     */
+    private static final int DIVISIVE_DECREASE_FACTOR = 2;
+
+    /**
+     * The degree of concurrency only grows while the request units consumed per second are below this fraction of
+     * the collection throughput.
+     */
+    private static final double THROUGHPUT_THRESHOLD = 0.9;
+
+    private final int collectionThroughput;
+
+    private final int maxDegreeOfConcurrency;
+
+    private final Duration samplePeriod;
+
+    private int degreeOfConcurrency;
+
+    private int readsInFlight;
+
+    private long samplePeriodStartNanos = System.nanoTime();
+
+    private double requestUnitsInSamplePeriod;
+
+    private boolean throttledInSamplePeriod;
+
+    ReadCongestionController(int collectionThroughput, int maxDegreeOfConcurrency, Duration samplePeriod) {
+        this.collectionThroughput = collectionThroughput;
+        this.maxDegreeOfConcurrency = maxDegreeOfConcurrency;
+        this.samplePeriod = samplePeriod;
+        this.degreeOfConcurrency = Math.min(STARTING_DEGREE_OF_CONCURRENCY, maxDegreeOfConcurrency);
+    }
+
+    /**
+     * Waits until a read is allowed.
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (readsInFlight >= degreeOfConcurrency) {
+            wait();
+        }
+        readsInFlight++;
+    }
+
+    /**
+     * Records the outcome of a read allowed by {@link #acquire()}.
+     * @param requestCharge the request units consumed by the read
+     * @param throttled whether the read was throttled
+     */
+    synchronized void release(double requestCharge, boolean throttled) {
+        readsInFlight--;
+        requestUnitsInSamplePeriod += requestCharge;
+        throttledInSamplePeriod |= throttled;
+
+        long now = System.nanoTime();
+        long elapsedNanos = now - samplePeriodStartNanos;
+        if (elapsedNanos >= samplePeriod.toNanos()) {
+            double requestUnitsPerSecond = requestUnitsInSamplePeriod * 1e9 / elapsedNanos;
+
+            if (throttledInSamplePeriod) {
+                degreeOfConcurrency = Math.max(1, degreeOfConcurrency / DIVISIVE_DECREASE_FACTOR);
+                logger.debug("Throttled, degree of concurrency decreased to {}", degreeOfConcurrency);
+            } else if (requestUnitsPerSecond < THROUGHPUT_THRESHOLD * collectionThroughput && degreeOfConcurrency < maxDegreeOfConcurrency) {
+                degreeOfConcurrency = Math.min(maxDegreeOfConcurrency, degreeOfConcurrency + ADDITIVE_INCREASE_FACTOR);
+                logger.debug("{} RU/s, degree of concurrency increased to {}", requestUnitsPerSecond, degreeOfConcurrency);
+            }
+
+            samplePeriodStartNanos = now;
+            requestUnitsInSamplePeriod = 0;
+            throttledInSamplePeriod = false;
+        }
+
+        notifyAll();
+    }
+
+    synchronized int getDegreeOfConcurrency() {
+        return degreeOfConcurrency;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.documentdb.ConnectionPolicy;
+import com.microsoft.azure.documentdb.ConsistencyLevel;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.StoredProcedureResponse;
+import com.microsoft.azure.documentdb.internal.DocumentServiceResponse;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+import com.microsoft.azure.documentdb.internal.directconnectivity.StoreResponse;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+/**
+ * An offline stand-in for the bulk import stored procedure, used to benchmark the client side of the
+ * importer without a Cosmos DB account.
+ *
+ * <p> Every stored procedure call sleeps for a fixed round trip latency plus a per document server time and charges
+ * request units proportional to the payload size. Each partition key range gets an equal share of the collection
+ * throughput per second; calls exceeding it are throttled with the time left until the next second.
+ */
+class SimulatedDocumentClient extends DocumentClient {
+
+    /**
+     * Request charge of a 1KB document, as measured against the service (see Readme.txt).
+     */
+    private static final double REQUEST_UNITS_PER_KB = 5.7;
+
+    /**
+     * Fixed request charge of a stored procedure call.
+     */
+    private static final double REQUEST_UNITS_PER_CALL = 2.0;
+
+    private static final String OFFLINE_HOST = "https://localhost:8081/";
+
+    private static final String OFFLINE_MASTER_KEY = "C2y6yDjf5/R+ob0N8A7Cgv30VRDJIWEHLM+4QDU5DE2nQ9nDuVTqobD4b8mGGyPMbIZnqyMsEcaGQy67XIw/Jw==";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Field PARTITION_KEY_RANGE_ID_FIELD;
+
+    private static final Constructor<StoredProcedureResponse> STORED_PROCEDURE_RESPONSE_CONSTRUCTOR;
+
+    static {
+        try {
+            PARTITION_KEY_RANGE_ID_FIELD = RequestOptions.class.getDeclaredField("partitionKeyRangeId");
+            PARTITION_KEY_RANGE_ID_FIELD.setAccessible(true);
+            STORED_PROCEDURE_RESPONSE_CONSTRUCTOR = StoredProcedureResponse.class.getDeclaredConstructor(DocumentServiceResponse.class);
+            STORED_PROCEDURE_RESPONSE_CONSTRUCTOR.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static class PartitionBudget {
+        long windowStartMillis;
+        double requestUnitsConsumedInWindow;
+    }
+
+    private final List<PartitionKeyRange> partitionKeyRanges;
+
+    private final double throughputPerPartition;
+
+    private final Duration roundTripLatency;
+
+    private final Duration serverTimePerDocument;
+
+    private final Map<String, PartitionBudget> budgets = new ConcurrentHashMap<>();
+
+    private final AtomicLong numberOfCalls = new AtomicLong();
+
+    private final AtomicLong numberOfThrottles = new AtomicLong();
+
+    /**
+     * @param partitionKeyDefinition partition key definition of the simulated collection
+     * @param numberOfPartitions number of partition key ranges of the simulated collection
+     * @param collectionThroughput collection throughput in RU/s, shared equally by the partitions
+     * @param roundTripLatency network round trip latency of a stored procedure call
+     * @param serverTimePerDocument time the stored procedure spends per document
+     */
+    SimulatedDocumentClient(PartitionKeyDefinition partitionKeyDefinition, int numberOfPartitions, int collectionThroughput,
+            Duration roundTripLatency, Duration serverTimePerDocument) {
+        super(OFFLINE_HOST, OFFLINE_MASTER_KEY, offlineConnectionPolicy(), ConsistencyLevel.Session);
+        this.partitionKeyRanges = createPartitionKeyRanges(partitionKeyDefinition, numberOfPartitions);
+        this.throughputPerPartition = (double) collectionThroughput / numberOfPartitions;
+        this.roundTripLatency = roundTripLatency;
+        this.serverTimePerDocument = serverTimePerDocument;
+    }
+
+    private static ConnectionPolicy offlineConnectionPolicy() {
+        ConnectionPolicy policy = new ConnectionPolicy();
+        policy.setEnableEndpointDiscovery(false);
+        return policy;
+    }
+
+    /**
+     * Splits the effective partition key space into ranges holding about the same number of random partition key values,
+     * the way the service splits partitions evenly.
+     */
+    private static List<PartitionKeyRange> createPartitionKeyRanges(PartitionKeyDefinition partitionKeyDefinition, int numberOfPartitions) {
+        int numberOfSamples = Math.max(10000, numberOfPartitions * 100);
+        String[] samples = new String[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            samples[i] = DocumentAnalyzer.fromPartitionKeyvalue(UUID.randomUUID().toString())
+                    .getEffectivePartitionKeyString(partitionKeyDefinition, true);
+        }
+        Arrays.sort(samples);
+
+        List<PartitionKeyRange> ranges = new ArrayList<>(numberOfPartitions);
+        String minInclusive = PartitionKeyInternal.MinimumInclusiveEffectivePartitionKey;
+        for (int i = 0; i < numberOfPartitions; i++) {
+            String maxExclusive = i == numberOfPartitions - 1
+                    ? PartitionKeyInternal.MaximumExclusiveEffectivePartitionKey
+                    : samples[(int) ((long) (i + 1) * numberOfSamples / numberOfPartitions)];
+            ranges.add(new PartitionKeyRange(Integer.toString(i), minInclusive, maxExclusive));
+            minInclusive = maxExclusive;
+        }
+        return Collections.unmodifiableList(ranges);
+    }
+
+    List<PartitionKeyRange> getPartitionKeyRanges() {
+        return partitionKeyRanges;
+    }
+
+    long getNumberOfCalls() {
+        return numberOfCalls.get();
+    }
+
+    long getNumberOfThrottles() {
+        return numberOfThrottles.get();
+    }
+
+    @Override
+    public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+            Object[] procedureParams) throws DocumentClientException {
+        numberOfCalls.incrementAndGet();
+
+        String[] documents = (String[]) procedureParams[0];
+        long payloadSize = 0;
+        for (String document : documents) {
+            payloadSize += document.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        double requestCharge = REQUEST_UNITS_PER_CALL + REQUEST_UNITS_PER_KB * payloadSize / 1024;
+        long retryAfterMillis = tryConsume(getPartitionKeyRangeId(options), requestCharge);
+
+        if (retryAfterMillis > 0) {
+            numberOfThrottles.incrementAndGet();
+            Map<String, String> headers = new HashMap<>();
+            headers.put(HttpConstants.HttpHeaders.RETRY_AFTER_IN_MILLISECONDS, Long.toString(retryAfterMillis));
+            throw new DocumentClientException(HttpConstants.StatusCodes.TOO_MANY_REQUESTS,
+                    new com.microsoft.azure.documentdb.Error("{}"), headers);
+        }
+
+        try {
+            long latencyInNanos = roundTripLatency.plus(serverTimePerDocument.multipliedBy(documents.length)).toNanos();
+            Thread.sleep(latencyInNanos / 1000000, (int) (latencyInNanos % 1000000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentClientException(HttpConstants.StatusCodes.TIMEOUT, e);
+        }
+
+        return newStoredProcedureResponse(documents.length, requestCharge);
+    }
+
+    /**
+     * @return 0 if the request charge fits the budget of the current second, otherwise the millis until the next second.
+     */
+    private long tryConsume(String partitionKeyRangeId, double requestCharge) {
+        PartitionBudget budget = budgets.computeIfAbsent(partitionKeyRangeId, id -> new PartitionBudget());
+        synchronized (budget) {
+            long now = System.currentTimeMillis();
+            if (now - budget.windowStartMillis >= 1000) {
+                budget.windowStartMillis = now;
+                budget.requestUnitsConsumedInWindow = 0;
+            }
+
+            if (budget.requestUnitsConsumedInWindow + requestCharge > throughputPerPartition
+                    && budget.requestUnitsConsumedInWindow > 0) {
+                return Math.max(1, 1000 - (now - budget.windowStartMillis));
+            }
+
+            budget.requestUnitsConsumedInWindow += requestCharge;
+            return 0;
+        }
+    }
+
+    private static String getPartitionKeyRangeId(RequestOptions options) {
+        try {
+            return (String) PARTITION_KEY_RANGE_ID_FIELD.get(options);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static StoredProcedureResponse newStoredProcedureResponse(int count, double requestCharge) throws DocumentClientException {
+        try {
+            BulkImportStoredProcedureResponse response = new BulkImportStoredProcedureResponse();
+            response.count = count;
+            response.errorCode = 0;
+
+            String[] headerNames = { HttpConstants.HttpHeaders.REQUEST_CHARGE };
+            String[] headerValues = { Double.toString(requestCharge) };
+            StoreResponse storeResponse = new StoreResponse(headerNames, headerValues, 200,
+                    new ByteArrayInputStream(objectMapper.writeValueAsBytes(response)));
+
+            return STORED_PROCEDURE_RESPONSE_CONSTRUCTOR.newInstance(new DocumentServiceResponse(storeResponse));
+        } catch (Exception e) {
+            throw new DocumentClientException(500, e);
+        }
+    }
+}
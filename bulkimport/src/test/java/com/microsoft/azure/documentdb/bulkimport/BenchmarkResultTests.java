@@ -0,0 +1,131 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BenchmarkResultTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeJson() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("result.json");
+
+        new BenchmarkResult("bulkimport", "import")
+                .putThroughput(1000, 5700, 2)
+                .put("errors", 0)
+                .put("throttles", 3)
+                .write(path);
+
+        JsonNode json = new ObjectMapper().readTree(path.toFile());
+        assertThat(json.path("tool").asText(), equalTo("bulkimport"));
+        assertThat(json.path("name").asText(), equalTo("import"));
+        assertThat(json.path("metrics").path("operationsPerSecond").asDouble(), equalTo(500.0));
+        assertThat(json.path("metrics").path("requestUnitsPerSecond").asDouble(), equalTo(2850.0));
+        assertThat(json.path("metrics").path("requestUnitsPerOperation").asDouble(), equalTo(5.7));
+        assertThat(json.path("metrics").path("throttles").asDouble(), equalTo(3.0));
+        assertThat(json.path("metrics").has("gcCount"), equalTo(true));
+    }
+
+    @Test
+    public void appendCsv() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("results.csv");
+
+        new BenchmarkResult("bulkimport", "import").put("operations", 1).write(path);
+        new BenchmarkResult("bulkimport", "export").put("operations", 2).put("errors", -1).write(path);
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertThat(lines.size(), equalTo(3));
+        assertThat(lines.get(0), equalTo("tool,name,startTime," + String.join(",", BenchmarkResult.METRICS.keySet())));
+
+        // a negative (unavailable) value leaves its column empty
+        List<String> columns = new ArrayList<>(BenchmarkResult.METRICS.keySet());
+        String[] row = lines.get(2).split(",", -1);
+        assertThat(row.length, equalTo(3 + columns.size()));
+        assertThat(row[1], equalTo("export"));
+        assertThat(row[3 + columns.indexOf("operations")], equalTo("2.0"));
+        assertThat(row[3 + columns.indexOf("errors")], equalTo(""));
+    }
+
+    @Test
+    public void readWrittenJson() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("result.json");
+        Instant startTime = Instant.parse("2017-10-19T13:00:00Z");
+
+        new BenchmarkResult("SimpleTests", "read", startTime).put("operations", 1000).put("latencyP99Ms", 12.5).write(path);
+
+        BenchmarkResult result = BenchmarkResult.read(path);
+        assertThat(result.toString(), equalTo("SimpleTests read 2017-10-19T13:00:00Z {operations=1000.0, latencyP99Ms=12.5}"));
+    }
+
+    @Test
+    public void compareFollowsTheDirectionOfEachMetric() {
+        Instant startTime = Instant.now();
+        BenchmarkResult baseline = new BenchmarkResult("SimpleTests", "read", startTime)
+                .put("operations", 1000)
+                .put("operationsPerSecond", 1000)
+                .put("latencyP99Ms", 10)
+                .put("errors", 0)
+                .put("throttles", 0)
+                .put("gcMillis", 100);
+        BenchmarkResult candidate = new BenchmarkResult("SimpleTests", "read", startTime)
+                // neither better nor worse when higher
+                .put("operations", 2000)
+                // worse when lower, within the threshold
+                .put("operationsPerSecond", 960)
+                // worse when higher, beyond the threshold
+                .put("latencyP99Ms", 11)
+                // worse when above 0 from 0
+                .put("errors", 1)
+                .put("throttles", 0)
+                // better when lower
+                .put("gcMillis", 50);
+
+        List<String> report = new ArrayList<>();
+        List<String> regressions = BenchmarkResult.compare(baseline, candidate, 5, report);
+
+        assertThat(regressions, equalTo(Arrays.asList("errors", "latencyP99Ms")));
+        // a header and a line per metric of both runs
+        assertThat(report.size(), equalTo(1 + 6));
+
+        assertThat(BenchmarkResult.compare(baseline, baseline, 0, new ArrayList<>()).isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.StoredProcedureResponse;
+import com.microsoft.azure.documentdb.bulkimport.DocumentBulkImporterTests.RecordingDocumentClient;
+
+public class ChangeFeedSyncWorkerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Serves an in-memory log of changes per partition key range, the continuation being the index of the next change
+     * and the log sequence number of a change its index plus one.
+     */
+    static class InMemoryChangeFeedReader implements ChangeFeedReader {
+        final Map<String, List<String>> changesByPartitionKeyRange = new ConcurrentHashMap<>();
+
+        void append(String partitionKeyRangeId, String document) {
+            List<String> changes = changesByPartitionKeyRange.computeIfAbsent(partitionKeyRangeId, id -> new ArrayList<>());
+            synchronized (changes) {
+                changes.add(document);
+            }
+        }
+
+        @Override
+        public Changes readChanges(String partitionKeyRangeId, String continuation, boolean startFromBeginning, int pageSize)
+                throws DocumentClientException {
+            List<String> changes = changesByPartitionKeyRange.computeIfAbsent(partitionKeyRangeId, id -> new ArrayList<>());
+            synchronized (changes) {
+                int start = continuation != null ? Integer.parseInt(continuation) : (startFromBeginning ? 0 : changes.size());
+                int end = Math.min(start + pageSize, changes.size());
+                return new Changes(new ArrayList<>(changes.subList(start, end)), Integer.toString(end), 1,
+                        changes.size(), end > start ? end : -1);
+            }
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat("timed out", System.nanoTime() < deadline, equalTo(true));
+            Thread.sleep(10);
+        }
+    }
+
+    private static String document(int id, int version) {
+        return String.format("{\"id\":\"%d\",\"pk\":\"%d\",\"version\":%d}", id, id % 5, version);
+    }
+
+    @Test
+    public void syncsChangesAndResumesFromCheckpoint() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint.json");
+
+        InMemoryChangeFeedReader changeFeedReader = new InMemoryChangeFeedReader();
+        for (int i = 0; i < 100; i++) {
+            changeFeedReader.append(Integer.toString(i % 2), document(i, 0));
+        }
+
+        try (SimulatedDocumentClient sourceClient = new SimulatedDocumentClient(partitionKeyDefinition, 2, 1000000, Duration.ZERO, Duration.ZERO);
+                RecordingDocumentClient targetClient = new RecordingDocumentClient(partitionKeyDefinition, 3);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(targetClient, "db", "target", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(targetClient.getPartitionKeyRanges())
+                        .build()) {
+
+            ChangeFeedSyncWorker.Builder builder = ChangeFeedSyncWorker.builder()
+                    .from(sourceClient, "db", "source")
+                    .to(importer)
+                    .withPartitionKeyRanges(sourceClient.getPartitionKeyRanges())
+                    .withChangeFeedReader(changeFeedReader)
+                    .withCheckpointFile(checkpointFile)
+                    .withPollInterval(Duration.ofMillis(10))
+                    .withPageSize(7);
+
+            try (ChangeFeedSyncWorker worker = builder.build()) {
+                worker.start();
+                waitUntil(() -> worker.getNumberOfDocumentsSynced() == 100);
+
+                // later changes are picked up by the next polls
+                for (int i = 0; i < 10; i++) {
+                    changeFeedReader.append(Integer.toString(i % 2), document(i, 1));
+                }
+                waitUntil(() -> worker.getNumberOfDocumentsSynced() == 110);
+                waitUntil(() -> worker.getEstimatedLag().size() == 2 && worker.getEstimatedLag().values().stream().allMatch(lag -> lag == 0));
+            }
+
+            for (int i = 0; i < 10; i++) {
+                changeFeedReader.append(Integer.toString(i % 2), document(i, 2));
+            }
+
+            // a new worker only syncs the changes made after the checkpoint
+            try (ChangeFeedSyncWorker worker = builder.build()) {
+                worker.start();
+                waitUntil(() -> worker.getNumberOfDocumentsSynced() == 10);
+                Thread.sleep(100);
+                assertThat(worker.getNumberOfDocumentsSynced(), equalTo(10L));
+            }
+
+            // the versions of each document reach the target in order
+            for (int i = 0; i < 10; i++) {
+                List<String> versions = new ArrayList<>();
+                for (String document : targetClient.documentsByPartitionKey.get(Integer.toString(i % 5))) {
+                    if (document.startsWith(String.format("{\"id\":\"%d\",", i))) {
+                        versions.add(document);
+                    }
+                }
+                assertThat(versions, equalTo(Arrays.asList(document(i, 0), document(i, 1), document(i, 2))));
+            }
+        }
+    }
+
+    @Test
+    public void skipsChangesWhichFailPermanently() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        InMemoryChangeFeedReader changeFeedReader = new InMemoryChangeFeedReader();
+        for (int i = 0; i < 20; i++) {
+            changeFeedReader.append("0", document(i, 0));
+        }
+        // rejected by the target, failing the changes of its mini-batch with it
+        String rejected = "{\"id\":\"rejected\",\"pk\":\"1\"}";
+        changeFeedReader.append("0", rejected);
+        // larger than a mini-batch
+        String tooLarge = String.format("{\"id\":\"large\",\"pk\":\"1\",\"padding\":\"%s\"}", Strings.repeat("x", 2000));
+        changeFeedReader.append("0", tooLarge);
+
+        Map<String, Exception> deadLetters = new ConcurrentHashMap<>();
+
+        try (SimulatedDocumentClient sourceClient = new SimulatedDocumentClient(partitionKeyDefinition, 1, 1000000, Duration.ZERO, Duration.ZERO);
+                RecordingDocumentClient targetClient = new RecordingDocumentClient(partitionKeyDefinition, 1) {
+                    @Override
+                    public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                            Object[] procedureParams) throws DocumentClientException {
+                        if (Arrays.asList((String[]) procedureParams[0]).contains(rejected)) {
+                            throw new DocumentClientException(400, new IllegalArgumentException("rejected"));
+                        }
+                        return super.executeStoredProcedure(storedProcedureLink, options, procedureParams);
+                    }
+                };
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(targetClient, "db", "target", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(targetClient.getPartitionKeyRanges())
+                        .withMaxMiniBatchSize(1000)
+                        .build();
+                ChangeFeedSyncWorker worker = ChangeFeedSyncWorker.builder()
+                        .from(sourceClient, "db", "source")
+                        .to(importer)
+                        .withPartitionKeyRanges(sourceClient.getPartitionKeyRanges())
+                        .withChangeFeedReader(changeFeedReader)
+                        .withPollInterval(Duration.ofMillis(10))
+                        .withPageSize(100)
+                        .withDeadLetterHandler(deadLetters::put)
+                        .build()) {
+
+            worker.start();
+            waitUntil(() -> worker.getNumberOfDocumentsSkipped() == 2);
+            assertThat(worker.getNumberOfDocumentsSynced(), equalTo(20L));
+            assertThat(deadLetters.keySet(), equalTo(new HashSet<>(Arrays.asList(rejected, tooLarge))));
+
+            // the range keeps syncing
+            changeFeedReader.append("0", document(0, 1));
+            waitUntil(() -> worker.getNumberOfDocumentsSynced() == 21);
+            assertThat(worker.getNumberOfDocumentsSkipped(), equalTo(2L));
+        }
+    }
+
+    @Test
+    public void onlyRejectionsArePermanent() {
+        assertThat(ChangeFeedSyncWorker.isPermanent(new RuntimeException(new DocumentClientException(400, new Exception()))), equalTo(true));
+        assertThat(ChangeFeedSyncWorker.isPermanent(new UnsupportedOperationException("too large")), equalTo(true));
+        assertThat(ChangeFeedSyncWorker.isPermanent(new RuntimeException(new DocumentClientException(429, new Exception()))), equalTo(false));
+        assertThat(ChangeFeedSyncWorker.isPermanent(new RuntimeException(new DocumentClientException(503, new Exception()))), equalTo(false));
+        assertThat(ChangeFeedSyncWorker.isPermanent(new RuntimeException("pki 0 is gone")), equalTo(false));
+    }
+}
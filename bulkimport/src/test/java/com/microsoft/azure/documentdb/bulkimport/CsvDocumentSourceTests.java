@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.microsoft.azure.documentdb.bulkimport.CsvDocumentSource.ColumnType;
+
+public class CsvDocumentSourceTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String content) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static CsvDocumentSource.Builder people(Path file) {
+        return CsvDocumentSource.builder(file)
+                .withColumn("id", "/id", ColumnType.STRING)
+                .withColumn("city", "/address/city", ColumnType.STRING)
+                .withColumn("zip", "/address/zip", ColumnType.INTEGER)
+                .withColumn("score", "/score", ColumnType.NUMBER)
+                .withColumn("active", "/active", ColumnType.BOOLEAN)
+                .withPartitionKeyColumn("city");
+    }
+
+    @Test
+    public void mapsColumnsToJsonPaths() throws Exception {
+        Path file = write("\uFEFFid,ignored,city,zip,score,active\r\n"
+                + "1,x,Zürich,8001,4.5,true\r\n"
+                + "\r\n"
+                + "2,,\"Saint-Denis, \"\"Paris\"\"\",\" 93200 \",-1e3,0\n"
+                + "3,,\"line\nbreak\\\",,,\n");
+
+        try (CsvDocumentSource source = people(file).build()) {
+            assertThat(source.readBatch(10), equalTo(Arrays.asList(
+                    "{\"id\":\"1\",\"address\":{\"city\":\"Zürich\",\"zip\":8001},\"score\":4.5,\"active\":true}",
+                    "{\"id\":\"2\",\"address\":{\"city\":\"Saint-Denis, \\\"Paris\\\"\",\"zip\":93200},\"score\":-1e3,\"active\":false}",
+                    "{\"id\":\"3\",\"address\":{\"city\":\"line\\nbreak\\\\\",\"zip\":null},\"score\":null,\"active\":null}")));
+            assertThat(source.readBatch(10).isEmpty(), equalTo(true));
+        }
+    }
+
+    @Test
+    public void readsPartitionKeyValues() throws Exception {
+        StringBuilder content = new StringBuilder("id;city;zip;score;active\n");
+        for (int i = 0; i < 10; i++) {
+            content.append(i).append(";city").append(i % 3).append(';').append(i).append(";;\n");
+        }
+
+        try (CsvDocumentSource source = people(write(content.toString())).withDelimiter(';').build()) {
+            List<Object> partitionKeyValues = new ArrayList<>();
+            List<String> batch;
+            int numberOfDocuments = 0;
+            while (!(batch = source.readBatch(4, partitionKeyValues)).isEmpty()) {
+                assertThat(batch.size() <= 4, equalTo(true));
+                numberOfDocuments += batch.size();
+                assertThat(partitionKeyValues.size(), equalTo(numberOfDocuments));
+            }
+            assertThat(partitionKeyValues, equalTo(Arrays.<Object>asList(
+                    "city0", "city1", "city2", "city0", "city1", "city2", "city0", "city1", "city2", "city0")));
+        }
+
+        try (CsvDocumentSource source = CsvDocumentSource.builder(write("zip,active\n75001,1\n,FALSE\n"))
+                .withColumn("zip", "/zip", ColumnType.INTEGER)
+                .withColumn("active", "/active", ColumnType.BOOLEAN)
+                .withPartitionKeyColumn("zip")
+                .build()) {
+            List<Object> partitionKeyValues = new ArrayList<>();
+            source.readBatch(10, partitionKeyValues);
+            assertThat(partitionKeyValues, equalTo(Arrays.<Object>asList(75001L, JSONObject.NULL)));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidValues() throws Exception {
+        for (String row : Arrays.asList("1,a,12a,1,true", "1,a,1.5,1,true", "1,a,1,01,true", "1,a,1,1.,true", "1,a,1,1,yes", "1,\"a")) {
+            try (CsvDocumentSource source = people(write("id,city,zip,score,active\n" + row + "\n")).build()) {
+                source.readBatch(10);
+                throw new AssertionError("expected a failure for " + row);
+            } catch (IOException e) {
+                assertThat(e.getMessage().endsWith("line 2"), equalTo(true));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMissingColumn() throws Exception {
+        people(write("id,city\n1,a\n")).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsConflictingPaths() throws Exception {
+        CsvDocumentSource.builder(write("a,b\n1,2\n"))
+                .withColumn("a", "/x", ColumnType.STRING)
+                .withColumn("b", "/x/y", ColumnType.STRING)
+                .build();
+    }
+}
@@ -24,8 +24,10 @@ package com.microsoft.azure.documentdb.bulkimport;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
@@ -271,4 +273,63 @@ public class DocumentAnalyzerTests {
         PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(dataAsString, partitionKeyDefinition);
         assertThat(partitionKeyValue.toJson(), equalTo(mapper.writeValueAsString(Collections.singletonList("pkValue"))));
     }
+
+    @Test
+    public void nestedPath() throws JsonProcessingException {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        Collection<String> paths = new ArrayList<>();
+        paths.add("/address/zip");
+        partitionKeyDefinition.setPaths(paths);
+
+        String dataAsString = "{ \"address\" : { \"city\" : \"Redmond\", \"zip\" : \"98052\" }, \"address/zip\" : \"literal\" }";
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(dataAsString, partitionKeyDefinition);
+        assertThat(partitionKeyValue.toJson(), equalTo(mapper.writeValueAsString(Collections.singletonList("98052"))));
+    }
+
+    @Test
+    public void quotedSegment() throws JsonProcessingException {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        Collection<String> paths = new ArrayList<>();
+        paths.add("/\"a/b\"/\"say \\\"hi\\\"\"");
+        partitionKeyDefinition.setPaths(paths);
+
+        String dataAsString = "{ \"a/b\" : { \"say \\\"hi\\\"\" : 5 } }";
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(dataAsString, partitionKeyDefinition);
+        assertThat(partitionKeyValue.toJson(), equalTo(mapper.writeValueAsString(Collections.singletonList(5.0))));
+    }
+
+    @Test
+    public void multiplePaths() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        Collection<String> paths = new ArrayList<>();
+        paths.add("/tenant");
+        paths.add("/user/id");
+        partitionKeyDefinition.setPaths(paths);
+
+        String dataAsString = "{ \"tenant\" : \"contoso\", \"user\" : { \"id\" : 42 } }";
+
+        PartitionKeyInternal partitionKeyValue = DocumentAnalyzer.extractPartitionKeyValue(dataAsString,
+                PartitionKeyAccessor.compile(partitionKeyDefinition));
+        assertThat(partitionKeyValue, equalTo(PartitionKeyInternal.fromObjectArray(Arrays.asList("contoso", 42), true)));
+    }
+
+    @Test
+    public void malformedPaths() {
+        for (String path : Arrays.asList("city", "/", "/city/", "//city", "/\"city")) {
+            PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+            partitionKeyDefinition.setPaths(Collections.singletonList(path));
+            try {
+                PartitionKeyAccessor.compile(partitionKeyDefinition);
+                fail(path);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.bulkimport.DocumentBulkExporterTests.InMemoryPageReader;
+import com.microsoft.azure.documentdb.bulkimport.DocumentBulkImporterTests.RecordingDocumentClient;
+
+public class DocumentBulkCopierTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Gives the source documents a partition key, and drops one document out of ten.
+     */
+    private static final Function<String, String> TRANSFORM = document -> {
+        int index = Integer.parseInt(document.replaceAll(".*-(\\d+)\".*", "$1"));
+        return index % 10 == 9 ? null : document.replace("}", String.format(",\"pk\":\"%d\"}", index % 7));
+    };
+
+    private static Set<String> expectedDocuments() {
+        Set<String> documents = new HashSet<>();
+        for (int r = 0; r < 4; r++) {
+            for (int i = 0; i < 250; i++) {
+                String transformed = TRANSFORM.apply(InMemoryPageReader.document(Integer.toString(r), i));
+                if (transformed != null) {
+                    documents.add(transformed);
+                }
+            }
+        }
+        return documents;
+    }
+
+    private static Set<String> importedDocuments(RecordingDocumentClient client) {
+        Set<String> documents = new HashSet<>();
+        for (Collection<String> partition : client.documentsByPartitionKey.values()) {
+            documents.addAll(partition);
+        }
+        return documents;
+    }
+
+    @Test
+    public void copyAllTransformsAndResumes() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint.json");
+
+        InMemoryPageReader failingPageReader = new InMemoryPageReader();
+        failingPageReader.failingPartitionKeyRangeId = "1";
+        failingPageReader.failAfterPages = 2;
+
+        try (SimulatedDocumentClient sourceClient = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000, Duration.ZERO, Duration.ZERO);
+                RecordingDocumentClient targetClient = new RecordingDocumentClient(partitionKeyDefinition, 3);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(targetClient, "db", "target", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(targetClient.getPartitionKeyRanges())
+                        .build()) {
+
+            for (PageReader pageReader : Arrays.<PageReader>asList(failingPageReader, new InMemoryPageReader())) {
+                try (DocumentBulkExporter exporter = DocumentBulkExporter.builder()
+                        .from(sourceClient, "db", "source", 1000000)
+                        .withPartitionKeyRanges(sourceClient.getPartitionKeyRanges())
+                        .withPageReader(pageReader)
+                        .withPageSize(20)
+                        .withCheckpointFile(checkpointFile)
+                        .build()) {
+
+                    BulkCopyResponse response = new DocumentBulkCopier(exporter, importer).copyAll(TRANSFORM, true);
+
+                    assertThat(response.getNumberOfDocumentsImported() + response.getNumberOfDocumentsDropped(), equalTo(response.getNumberOfDocumentsRead()));
+                    if (pageReader == failingPageReader) {
+                        assertThat(response.getErrors().size(), equalTo(1));
+                        assertThat(response.getNumberOfDocumentsRead(), equalTo(3L * 250 + 2 * 20));
+                    } else {
+                        // only the rest of the failed source range is copied again
+                        assertThat(response.getErrors().isEmpty(), equalTo(true));
+                        assertThat(response.getNumberOfDocumentsRead(), equalTo(250L - 2 * 20));
+                    }
+                }
+            }
+
+            assertThat(importedDocuments(targetClient), equalTo(expectedDocuments()));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+
+public class DocumentBulkExporterTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int NUMBER_OF_PARTITIONS = 4;
+
+    private static final int DOCUMENTS_PER_PARTITION = 250;
+
+    /**
+     * Serves the documents of each partition key range in pages, the continuation being the index of the next
+     * document; throttles every given number of reads and fails a given range after a given number of pages.
+     */
+    static class InMemoryPageReader implements PageReader {
+        final Map<String, AtomicInteger> readsByPartitionKeyRange = new ConcurrentHashMap<>();
+        final AtomicInteger numberOfReads = new AtomicInteger();
+        final AtomicInteger numberOfThrottles = new AtomicInteger();
+        int throttleEvery = Integer.MAX_VALUE;
+        String failingPartitionKeyRangeId;
+        int failAfterPages;
+
+        static String document(String partitionKeyRangeId, int index) {
+            return String.format("{\"id\":\"%s-%03d\"}", partitionKeyRangeId, index);
+        }
+
+        @Override
+        public Page readPage(String partitionKeyRangeId, String continuation, int pageSize) throws DocumentClientException {
+            if (numberOfReads.incrementAndGet() % throttleEvery == 0) {
+                numberOfThrottles.incrementAndGet();
+                Map<String, String> headers = new HashMap<>();
+                headers.put(HttpConstants.HttpHeaders.RETRY_AFTER_IN_MILLISECONDS, "1");
+                throw new DocumentClientException(HttpConstants.StatusCodes.TOO_MANY_REQUESTS,
+                        new com.microsoft.azure.documentdb.Error("{}"), headers);
+            }
+
+            int pages = readsByPartitionKeyRange.computeIfAbsent(partitionKeyRangeId, id -> new AtomicInteger()).incrementAndGet();
+            if (partitionKeyRangeId.equals(failingPartitionKeyRangeId) && pages > failAfterPages) {
+                throw new DocumentClientException(500, new RuntimeException("simulated failure"));
+            }
+
+            int start = continuation != null ? Integer.parseInt(continuation) : 0;
+            int end = Math.min(start + pageSize, DOCUMENTS_PER_PARTITION);
+            List<String> documents = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                documents.add(document(partitionKeyRangeId, i));
+            }
+            return new Page(documents, end < DOCUMENTS_PER_PARTITION ? Integer.toString(end) : null, documents.size());
+        }
+    }
+
+    private static List<String> expectedDocuments(String partitionKeyRangeId) {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS_PER_PARTITION; i++) {
+            documents.add(InMemoryPageReader.document(partitionKeyRangeId, i));
+        }
+        return documents;
+    }
+
+    private static DocumentBulkExporter exporter(SimulatedDocumentClient client, PageReader pageReader, Path checkpointFile) {
+        return DocumentBulkExporter.builder()
+                .from(client, "db", "coll", 1000000)
+                .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                .withPageReader(pageReader)
+                .withPageSize(7)
+                .withCheckpointFile(checkpointFile)
+                .build();
+    }
+
+    private static SimulatedDocumentClient client() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        return new SimulatedDocumentClient(partitionKeyDefinition, NUMBER_OF_PARTITIONS, 1000000, Duration.ZERO, Duration.ZERO);
+    }
+
+    @Test
+    public void exportAllToFilesRetriesThrottledReads() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        InMemoryPageReader pageReader = new InMemoryPageReader();
+        pageReader.throttleEvery = 5;
+
+        try (SimulatedDocumentClient client = client();
+                DocumentBulkExporter exporter = exporter(client, pageReader, null)) {
+            BulkExportResponse response = exporter.exportAll(directory);
+
+            assertThat(response.getErrors().isEmpty(), equalTo(true));
+            assertThat(response.getNumberOfDocumentsExported(), equalTo((long) NUMBER_OF_PARTITIONS * DOCUMENTS_PER_PARTITION));
+            assertThat(pageReader.numberOfThrottles.get() > 0, equalTo(true));
+            for (int r = 0; r < NUMBER_OF_PARTITIONS; r++) {
+                String partitionKeyRangeId = Integer.toString(r);
+                assertThat(Files.readAllLines(directory.resolve(partitionKeyRangeId + ".ndjson")), equalTo(expectedDocuments(partitionKeyRangeId)));
+            }
+        }
+    }
+
+    @Test
+    public void exportAllResumesFromCheckpoint() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        Path checkpointFile = folder.getRoot().toPath().resolve("checkpoint.json");
+
+        InMemoryPageReader failingPageReader = new InMemoryPageReader();
+        failingPageReader.failingPartitionKeyRangeId = "2";
+        failingPageReader.failAfterPages = 3;
+
+        try (SimulatedDocumentClient client = client()) {
+            try (DocumentBulkExporter exporter = exporter(client, failingPageReader, checkpointFile)) {
+                BulkExportResponse response = exporter.exportAll(directory);
+
+                assertThat(response.getErrors().size(), equalTo(1));
+                assertThat(response.getNumberOfDocumentsExported(), equalTo((long) (NUMBER_OF_PARTITIONS - 1) * DOCUMENTS_PER_PARTITION + 3 * 7));
+            }
+
+            // a partial page left by a crash is truncated on resume
+            Files.write(directory.resolve("2.ndjson"), Collections.singletonList("{\"partial"), StandardOpenOption.APPEND);
+
+            InMemoryPageReader pageReader = new InMemoryPageReader();
+            try (DocumentBulkExporter exporter = exporter(client, pageReader, checkpointFile)) {
+                BulkExportResponse response = exporter.exportAll(directory);
+
+                assertThat(response.getErrors().isEmpty(), equalTo(true));
+                assertThat(response.getNumberOfDocumentsExported(), equalTo((long) NUMBER_OF_PARTITIONS * DOCUMENTS_PER_PARTITION));
+            }
+
+            // only the failed range is read again, from its checkpointed page
+            assertThat(pageReader.readsByPartitionKeyRange.keySet(), equalTo(Collections.singleton("2")));
+            assertThat(pageReader.readsByPartitionKeyRange.get("2").get(), equalTo((DOCUMENTS_PER_PARTITION + 6) / 7 - 3));
+            for (int r = 0; r < NUMBER_OF_PARTITIONS; r++) {
+                String partitionKeyRangeId = Integer.toString(r);
+                assertThat(Files.readAllLines(directory.resolve(partitionKeyRangeId + ".ndjson")), equalTo(expectedDocuments(partitionKeyRangeId)));
+            }
+        }
+    }
+
+    @Test
+    public void exportAllToHandler() throws Exception {
+        Map<String, List<String>> documentsByPartitionKeyRange = new ConcurrentHashMap<>();
+
+        try (SimulatedDocumentClient client = client();
+                DocumentBulkExporter exporter = exporter(client, new InMemoryPageReader(), null)) {
+            BulkExportResponse response = exporter.exportAll((partitionKeyRangeId, documents) ->
+                documentsByPartitionKeyRange.computeIfAbsent(partitionKeyRangeId, id -> new ArrayList<>()).addAll(documents));
+
+            assertThat(response.getErrors().isEmpty(), equalTo(true));
+            for (int r = 0; r < NUMBER_OF_PARTITIONS; r++) {
+                String partitionKeyRangeId = Integer.toString(r);
+                assertThat(documentsByPartitionKeyRange.get(partitionKeyRangeId), equalTo(expectedDocuments(partitionKeyRangeId)));
+            }
+        }
+    }
+
+    @Test
+    public void congestionControllerHalvesOnThrottleAndGrowsOtherwise() throws Exception {
+        ReadCongestionController controller = new ReadCongestionController(1000, 8, Duration.ZERO);
+        assertThat(controller.getDegreeOfConcurrency(), equalTo(ReadCongestionController.STARTING_DEGREE_OF_CONCURRENCY));
+
+        for (int i = 0; i < 10; i++) {
+            controller.acquire();
+            controller.release(0, false);
+        }
+        assertThat(controller.getDegreeOfConcurrency(), equalTo(8));
+
+        controller.acquire();
+        controller.release(0, true);
+        assertThat(controller.getDegreeOfConcurrency(), equalTo(4));
+    }
+}
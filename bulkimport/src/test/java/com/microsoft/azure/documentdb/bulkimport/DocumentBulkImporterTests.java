@@ -0,0 +1,311 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.StoredProcedureResponse;
+
+public class DocumentBulkImporterTests {
+
+    /**
+     * Records the documents received for each partition key value.
+     */
+    static class RecordingDocumentClient extends SimulatedDocumentClient {
+        final Map<String, List<String>> documentsByPartitionKey = new ConcurrentHashMap<>();
+
+        RecordingDocumentClient(PartitionKeyDefinition partitionKeyDefinition, int numberOfPartitions) {
+            super(partitionKeyDefinition, numberOfPartitions, 1000000, Duration.ZERO, Duration.ZERO);
+        }
+
+        @Override
+        public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                Object[] procedureParams) throws DocumentClientException {
+            StoredProcedureResponse response = super.executeStoredProcedure(storedProcedureLink, options, procedureParams);
+            for (String document : (String[]) procedureParams[0]) {
+                documentsByPartitionKey.computeIfAbsent(document.replaceAll(".*\"pk\":\"([^\"]*)\".*", "$1"),
+                        pk -> Collections.synchronizedList(new ArrayList<>())).add(document);
+            }
+            return response;
+        }
+    }
+
+    private static PartitionKeyDefinition partitionKeyDefinition() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        return partitionKeyDefinition;
+    }
+
+    @Test
+    public void importAllPreservesInputOrder() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+
+        try (RecordingDocumentClient client = new RecordingDocumentClient(partitionKeyDefinition, 4);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withInputOrderPreserved(true)
+                        .build()) {
+
+            List<String> documents = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                documents.add(String.format("{\"id\":\"%05d\",\"pk\":\"%d\"}", i, i % 10));
+            }
+
+            BulkImportResponse response = importer.importAll(documents, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(1000));
+
+            // all the documents of a logical partition fit a single mini-batch, so they arrive in input order
+            for (int pk = 0; pk < 10; pk++) {
+                List<String> expected = new ArrayList<>();
+                for (int i = pk; i < 1000; i += 10) {
+                    expected.add(documents.get(i));
+                }
+                assertThat(client.documentsByPartitionKey.get(Integer.toString(pk)), equalTo(expected));
+            }
+        }
+    }
+
+    /**
+     * Generates the documents as they are read, so only the importer may keep them.
+     */
+    static class GeneratingDocumentSource implements DocumentSource {
+        private final int numberOfDocuments;
+        private final int padding;
+        private int numberOfDocumentsRead;
+
+        GeneratingDocumentSource(int numberOfDocuments, int padding) {
+            this.numberOfDocuments = numberOfDocuments;
+            this.padding = padding;
+        }
+
+        static String document(int i, int padding) {
+            return String.format("{\"id\":\"%05d\",\"pk\":\"%d\",\"name\":\"Zoë%s\"}", i, i % 10, Strings.repeat("x", padding));
+        }
+
+        @Override
+        public List<String> readBatch(int maxNumberOfDocuments) {
+            List<String> documents = new ArrayList<>();
+            while (documents.size() < maxNumberOfDocuments && numberOfDocumentsRead < numberOfDocuments) {
+                documents.add(document(numberOfDocumentsRead++, padding));
+            }
+            return documents;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void importAllFromSource() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+
+        try (RecordingDocumentClient client = new RecordingDocumentClient(partitionKeyDefinition, 4);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withMaxMiniBatchSize(1000)
+                        .build();
+                DocumentSource source = new GeneratingDocumentSource(25000, 0)) {
+
+            BulkImportResponse response = importer.importAll(source, 20000, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(20000));
+            response = importer.importAll(source, 20000, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(5000));
+            response = importer.importAll(source, 20000, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(0));
+
+            // decoded from direct memory
+            List<String> expected = new GeneratingDocumentSource(25000, 0).readBatch(25000);
+            List<String> imported = new ArrayList<>();
+            client.documentsByPartitionKey.values().forEach(imported::addAll);
+            Collections.sort(imported);
+            assertThat(imported, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void importAllFromSourceStagesTheDocumentsInSharedSegments() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+        int numberOfRanges = 100;
+        int numberOfDocuments = 20000;
+        int padding = 200;
+        long inputSize = (long) numberOfDocuments * GeneratingDocumentSource.document(0, padding).getBytes(StandardCharsets.UTF_8).length;
+
+        // number of staging segments allocated when the stored procedure is first called
+        AtomicInteger numberOfSegmentsDuringImport = new AtomicInteger(-1);
+        AtomicReference<DocumentBulkImporter> importerReference = new AtomicReference<>();
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, numberOfRanges, 100000000, Duration.ZERO, Duration.ZERO) {
+                    @Override
+                    public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                            Object[] procedureParams) throws DocumentClientException {
+                        numberOfSegmentsDuringImport.compareAndSet(-1, importerReference.get().getDirectBufferPool().getNumberOfAllocatedSegments());
+                        return super.executeStoredProcedure(storedProcedureLink, options, procedureParams);
+                    }
+                };
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 100000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .build();
+                DocumentSource source = new GeneratingDocumentSource(numberOfDocuments, padding)) {
+            importerReference.set(importer);
+
+            assertThat(importer.importAll(source, numberOfDocuments, false).getNumberOfDocumentsImported(), equalTo(numberOfDocuments));
+
+            // the documents of the 100 ranges fill the segments one after the other rather than a segment per range
+            int segmentSize = importer.getDirectBufferPool().getSegmentSize();
+            assertThat(numberOfSegmentsDuringImport.get(), greaterThanOrEqualTo((int) ((inputSize + segmentSize - 1) / segmentSize)));
+            assertThat(numberOfSegmentsDuringImport.get(), lessThanOrEqualTo((int) (inputSize / segmentSize) + 1));
+
+            // the next import reuses the pooled segments
+            try (DocumentSource next = new GeneratingDocumentSource(numberOfDocuments, padding)) {
+                assertThat(importer.importAll(next, numberOfDocuments, false).getNumberOfDocumentsImported(), equalTo(numberOfDocuments));
+            }
+            assertThat(importer.getDirectBufferPool().getNumberOfAllocatedSegments(), equalTo(numberOfSegmentsDuringImport.get()));
+        }
+    }
+
+    @Test
+    public void importAllWithPartitionKeyValues() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+
+        try (RecordingDocumentClient client = new RecordingDocumentClient(partitionKeyDefinition, 4);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .build()) {
+
+            // a given value routes as the same value parsed from a document
+            List<Object> values = Arrays.asList("abc", "", 42L, -1.5, true, JSONObject.NULL);
+            List<String> documents = Arrays.asList("{\"pk\":\"abc\"}", "{\"pk\":\"\"}", "{\"pk\":42}",
+                    "{\"pk\":-1.5}", "{\"pk\":true}", "{\"pk\":null}");
+            for (int i = 0; i < values.size(); i++) {
+                assertThat(importer.getPartitionKeyRangeIdFromValue(values.get(i)), equalTo(importer.getPartitionKeyRangeId(documents.get(i))));
+            }
+
+            List<String> toImport = new ArrayList<>();
+            List<Object> partitionKeyValues = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                toImport.add(String.format("{\"id\":\"%05d\",\"pk\":\"%d\"}", i, i % 10));
+                partitionKeyValues.add(Integer.toString(i % 10));
+            }
+
+            BulkImportResponse response = importer.importAll(toImport, partitionKeyValues, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(1000));
+
+            // routed as if parsed, and in input order
+            for (int pk = 0; pk < 10; pk++) {
+                List<String> expected = new ArrayList<>();
+                for (int i = pk; i < 1000; i += 10) {
+                    expected.add(toImport.get(i));
+                }
+                assertThat(client.documentsByPartitionKey.get(Integer.toString(pk)), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void importAllCountsThrottles() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+
+        // 50 RU/s per partition key range for about 90 RU of small mini-batches each
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 2, 100, Duration.ZERO, Duration.ZERO);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 100)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withMaxMiniBatchSize(100)
+                        .build()) {
+
+            List<String> documents = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                documents.add(String.format("{\"id\":\"%05d\",\"pk\":\"%d\"}", i, i % 10));
+            }
+
+            BulkImportResponse response = importer.importAll(documents, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(200));
+            assertThat(response.getNumberOfThrottles() > 0, equalTo(true));
+            assertThat(response.getNumberOfThrottles(), equalTo(client.getNumberOfThrottles()));
+        }
+    }
+
+    @Test
+    public void importAllStartsWithTheGivenDegreeOfConcurrency() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 1, 1000000, Duration.ofMillis(20), Duration.ZERO) {
+                    @Override
+                    public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                            Object[] procedureParams) throws DocumentClientException {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        try {
+                            return super.executeStoredProcedure(storedProcedureLink, options, procedureParams);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                };
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withMaxMiniBatchSize(100)
+                        .withStartingDegreeOfConcurrency(8)
+                        .build()) {
+
+            List<String> documents = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                documents.add(String.format("{\"id\":\"%05d\",\"pk\":\"%d\"}", i, i % 10));
+            }
+
+            // the import completes within the first sample period, so the congestion control never raises the starting concurrency
+            importer.setCongestionControlSamplePeriod(Duration.ofSeconds(5));
+            BulkImportResponse response = importer.importAll(documents, false);
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(400));
+            assertThat(maxInFlight.get(), equalTo(8));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
+import com.microsoft.azure.documentdb.internal.HttpConstants;
+
+public class DocumentBulkReaderTests {
+
+    private static final int NUMBER_OF_PARTITIONS = 4;
+
+    /**
+     * Serves the documents of the given ids, whatever their partition key values, and records the batches;
+     * throttles every given number of reads.
+     */
+    static class InMemoryBatchReader implements DocumentBatchReader {
+        final Map<String, List<Document>> documentsById = new ConcurrentHashMap<>();
+        final List<List<Object>> batches = new CopyOnWriteArrayList<>();
+        final AtomicInteger numberOfReads = new AtomicInteger();
+        int throttleEvery = Integer.MAX_VALUE;
+
+        void add(String id, String partitionKeyValue) {
+            documentsById.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>())
+                    .add(new Document(String.format("{\"id\":\"%s\",\"pk\":\"%s\"}", id, partitionKeyValue)));
+        }
+
+        @Override
+        public Batch read(String partitionKeyRangeId, List<String> ids, List<Object> partitionKeyValues) throws DocumentClientException {
+            if (numberOfReads.incrementAndGet() % throttleEvery == 0) {
+                Map<String, String> headers = new HashMap<>();
+                headers.put(HttpConstants.HttpHeaders.RETRY_AFTER_IN_MILLISECONDS, "1");
+                throw new DocumentClientException(HttpConstants.StatusCodes.TOO_MANY_REQUESTS,
+                        new com.microsoft.azure.documentdb.Error("{}"), headers);
+            }
+
+            batches.add(partitionKeyValues);
+            List<Document> documents = new ArrayList<>();
+            for (String id : ids) {
+                documents.addAll(documentsById.getOrDefault(id, new ArrayList<>()));
+            }
+            return new Batch(documents, documents.size());
+        }
+    }
+
+    private static SimulatedDocumentClient client() {
+        return new SimulatedDocumentClient(partitionKeyDefinition(), NUMBER_OF_PARTITIONS, 1000000, Duration.ZERO, Duration.ZERO);
+    }
+
+    private static PartitionKeyDefinition partitionKeyDefinition() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        return partitionKeyDefinition;
+    }
+
+    private static DocumentBulkReader reader(SimulatedDocumentClient client, DocumentBatchReader batchReader) {
+        return DocumentBulkReader.builder()
+                .from(client, "db", "coll", partitionKeyDefinition())
+                .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                .withBatchReader(batchReader)
+                .build();
+    }
+
+    @Test
+    public void readManyGroupsByPartitionKeyRange() throws Exception {
+        InMemoryBatchReader batchReader = new InMemoryBatchReader();
+        List<String> ids = new ArrayList<>();
+        List<Object> partitionKeyValues = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add("doc-" + i);
+            partitionKeyValues.add("pk-" + (i % 997));
+            // every tenth document does not exist
+            if (i % 10 != 0) {
+                batchReader.add("doc-" + i, "pk-" + (i % 997));
+            }
+        }
+
+        try (SimulatedDocumentClient client = client();
+                DocumentBulkReader reader = reader(client, batchReader);
+                Stream<Document> documents = reader.readMany(ids, partitionKeyValues)) {
+
+            Set<String> found = documents.map(Document::getId).collect(Collectors.toSet());
+
+            assertThat(found.size(), equalTo(9000));
+            assertThat(found.contains("doc-10"), equalTo(false));
+            assertThat(found.contains("doc-11"), equalTo(true));
+
+            // at most 100 ids per read, all of the same partition key range
+            Map<String, Integer> idsByPartitionKeyRange = new HashMap<>();
+            for (Object partitionKeyValue : partitionKeyValues) {
+                idsByPartitionKeyRange.merge(reader.getPartitionKeyRangeId(partitionKeyValue), 1, Integer::sum);
+            }
+            int expectedReads = idsByPartitionKeyRange.values().stream().mapToInt(n -> (n + 99) / 100).sum();
+            assertThat(batchReader.batches.size(), equalTo(expectedReads));
+            for (List<Object> batch : batchReader.batches) {
+                assertThat(batch.stream().map(reader::getPartitionKeyRangeId).distinct().count(), equalTo(1L));
+            }
+            assertThat(reader.getTotalRequestUnitsConsumed(), equalTo(9000.0));
+        }
+    }
+
+    @Test
+    public void readManyFiltersOtherPartitionKeyValuesAndRetriesThrottledReads() throws Exception {
+        InMemoryBatchReader batchReader = new InMemoryBatchReader();
+        batchReader.throttleEvery = 3;
+        List<String> ids = new ArrayList<>();
+        List<Object> partitionKeyValues = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add("doc-" + i);
+            partitionKeyValues.add("pk-" + i);
+            batchReader.add("doc-" + i, "pk-" + i);
+            // the same id under another partition key value
+            batchReader.add("doc-" + i, "other-pk-" + i);
+        }
+
+        try (SimulatedDocumentClient client = client();
+                DocumentBulkReader reader = DocumentBulkReader.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition())
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withBatchReader(batchReader)
+                        .withMaxIdsPerQuery(7)
+                        .withMaxDegreeOfConcurrency(3)
+                        .build();
+                Stream<Document> documents = reader.readMany(ids, partitionKeyValues)) {
+
+            List<String> found = documents.map(document -> document.getId() + "/" + document.getString("pk")).sorted().collect(Collectors.toList());
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                expected.add("doc-" + i + "/pk-" + i);
+            }
+            expected.sort(null);
+
+            assertThat(found, equalTo(expected));
+            assertThat(batchReader.numberOfReads.get() > batchReader.batches.size(), equalTo(true));
+        }
+    }
+
+    @Test
+    public void createQueryUsesParameters() {
+        SqlQuerySpec query = DocumentBulkReader.createQuery(Arrays.asList("a", "b'c", "d"));
+
+        assertThat(query.getQueryText(), equalTo("SELECT * FROM c WHERE c.id IN (@id0, @id1, @id2)"));
+        assertThat(query.getParameters().size(), equalTo(3));
+    }
+}
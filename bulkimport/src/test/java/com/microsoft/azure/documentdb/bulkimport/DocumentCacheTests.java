@@ -0,0 +1,195 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+
+public class DocumentCacheTests {
+
+    /**
+     * Serves the stored documents, with an etag incremented by every write.
+     */
+    static class InMemoryDocumentReader implements DocumentCache.DocumentReader {
+        final Map<String, Document> documents = new ConcurrentHashMap<>();
+        final AtomicInteger numberOfReads = new AtomicInteger();
+        final AtomicInteger numberOfConditionalReads = new AtomicInteger();
+        private final AtomicInteger etags = new AtomicInteger();
+
+        void write(String id, String partitionKeyValue, String value) {
+            documents.put(partitionKeyValue + "/" + id, new Document(String.format(
+                    "{\"id\":\"%s\",\"pk\":\"%s\",\"value\":\"%s\",\"_etag\":\"%d\"}", id, partitionKeyValue, value, etags.incrementAndGet())));
+        }
+
+        @Override
+        public Document read(String id, Object partitionKeyValue, String etag) {
+            numberOfReads.incrementAndGet();
+            if (etag != null) {
+                numberOfConditionalReads.incrementAndGet();
+            }
+            Document document = documents.get(partitionKeyValue + "/" + id);
+            return document != null && document.getETag().equals(etag) ? DocumentCache.NOT_MODIFIED : document;
+        }
+    }
+
+    static class ManualTicker extends Ticker {
+        final AtomicLong nanos = new AtomicLong();
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    }
+
+    private static PartitionKeyDefinition partitionKeyDefinition() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        return partitionKeyDefinition;
+    }
+
+    private static DocumentCache cache(InMemoryDocumentReader reader, ManualTicker ticker, long maximumWeight) {
+        return DocumentCache.builder()
+                .from(null, "db", "coll", partitionKeyDefinition())
+                .withDocumentReader(reader)
+                .withTicker(ticker)
+                .withTimeToLive(Duration.ofSeconds(10))
+                .withMaximumWeight(maximumWeight)
+                .build();
+    }
+
+    @Test
+    public void readServesCachedDocumentsAndRevalidatesThemAfterTheTimeToLive() throws Exception {
+        InMemoryDocumentReader reader = new InMemoryDocumentReader();
+        ManualTicker ticker = new ManualTicker();
+        DocumentCache cache = cache(reader, ticker, 1024 * 1024);
+        reader.write("a", "x", "1");
+
+        Document first = cache.read("a", "x");
+        assertThat(cache.read("a", "x"), sameInstance(first));
+        assertThat(reader.numberOfReads.get(), equalTo(1));
+
+        // unchanged after the time to live: revalidated with a conditional read
+        ticker.advance(Duration.ofSeconds(11));
+        assertThat(cache.read("a", "x"), sameInstance(first));
+        assertThat(reader.numberOfConditionalReads.get(), equalTo(1));
+        assertThat(cache.read("a", "x"), sameInstance(first));
+
+        // changed after the time to live: read again
+        reader.write("a", "x", "2");
+        assertThat(cache.read("a", "x").getString("value"), equalTo("1"));
+        ticker.advance(Duration.ofSeconds(11));
+        assertThat(cache.read("a", "x").getString("value"), equalTo("2"));
+
+        // the same id under another partition key value is another document
+        assertThat(cache.read("a", "y"), nullValue());
+
+        assertThat(cache.getHitCount(), equalTo(3L));
+        assertThat(cache.getRevalidationCount(), equalTo(1L));
+        assertThat(cache.getMissCount(), equalTo(3L));
+    }
+
+    @Test
+    public void invalidateDropsTheCachedDocument() throws Exception {
+        InMemoryDocumentReader reader = new InMemoryDocumentReader();
+        DocumentCache cache = cache(reader, new ManualTicker(), 1024 * 1024);
+        reader.write("a", "x", "1");
+        reader.write("1", "7", "1");
+
+        cache.read("a", "x");
+        reader.write("a", "x", "2");
+        cache.invalidate("{\"id\":\"a\",\"pk\":\"x\",\"value\":\"2\"}");
+        assertThat(cache.read("a", "x").getString("value"), equalTo("2"));
+
+        cache.read("1", "7");
+        cache.invalidate("1", "7");
+        assertThat(cache.size(), equalTo(1L));
+    }
+
+    @Test
+    public void evictsToStayWithinTheMaximumWeight() throws Exception {
+        InMemoryDocumentReader reader = new InMemoryDocumentReader();
+        DocumentCache cache = cache(reader, new ManualTicker(), 10 * 1024);
+        for (int i = 0; i < 100; i++) {
+            reader.write(Integer.toString(i), "x", "1");
+            cache.read(Integer.toString(i), "x");
+        }
+
+        assertThat(cache.getEvictionCount() > 0, equalTo(true));
+        assertThat(cache.size() < 100, equalTo(true));
+    }
+
+    @Test
+    public void importInvalidatesTheImportedDocuments() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+        InMemoryDocumentReader reader = new InMemoryDocumentReader();
+        DocumentCache cache = cache(reader, new ManualTicker(), 1024 * 1024);
+
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            reader.write(Integer.toString(i), "x", "1");
+            cache.read(Integer.toString(i), "x");
+            documents.add(String.format("{\"id\":\"%d\",\"pk\":\"x\",\"value\":\"2\"}", i));
+        }
+        assertThat(cache.size(), equalTo(100L));
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000, Duration.ZERO, Duration.ZERO);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withDocumentCache(cache)
+                        .build()) {
+
+            importer.importAll(documents.subList(0, 50), true);
+            assertThat(cache.size(), equalTo(50L));
+
+            try (BulkImportSession session = importer.openSession(true)) {
+                for (String document : documents.subList(50, 100)) {
+                    session.submit(document).get(10, TimeUnit.SECONDS);
+                }
+            }
+            assertThat(cache.size(), equalTo(0L));
+        }
+    }
+}
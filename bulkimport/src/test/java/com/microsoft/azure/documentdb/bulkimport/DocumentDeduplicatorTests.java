@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+
+public class DocumentDeduplicatorTests {
+
+    @Test
+    public void firstWins() {
+        DocumentDeduplicator deduplicator = new DocumentDeduplicator(DeduplicationPolicy.FIRST_WINS);
+        Map<String, List<String>> buckets = deduplicator.bucket(
+                new String[] { "a1", "b1", "a2", "c1", "b2" },
+                Arrays.asList("0", "1"),
+                new int[] { 0, 1, 0, 0, 1 },
+                new long[] { 1, 2, 1, 3, 2 });
+
+        assertThat(buckets.get("0"), equalTo(Arrays.asList("a1", "c1")));
+        assertThat(buckets.get("1"), equalTo(Arrays.asList("b1")));
+        assertThat(deduplicator.getNumberOfDuplicates(), equalTo(2));
+    }
+
+    @Test
+    public void lastWinsKeepsInputOrder() {
+        DocumentDeduplicator deduplicator = new DocumentDeduplicator(DeduplicationPolicy.LAST_WINS);
+        Map<String, List<String>> buckets = deduplicator.bucket(
+                new String[] { "a1", "b1", "a2", "c1", "b2" },
+                Arrays.asList("0", "1", "2"),
+                new int[] { 0, 1, 0, 0, 1 },
+                new long[] { 1, 2, 1, 3, 2 });
+
+        assertThat(buckets.get("0"), equalTo(Arrays.asList("a2", "c1")));
+        assertThat(buckets.get("1"), equalTo(Arrays.asList("b2")));
+        assertThat(buckets.get("2"), equalTo(Collections.emptyList()));
+        assertThat(deduplicator.getNumberOfDuplicates(), equalTo(2));
+    }
+
+    @Test
+    public void documentsWithoutKeyAreKept() {
+        DocumentDeduplicator deduplicator = new DocumentDeduplicator(DeduplicationPolicy.FIRST_WINS);
+        Map<String, List<String>> buckets = deduplicator.bucket(
+                new String[] { "a1", "x", "a2", "y", "z" },
+                Arrays.asList("0"),
+                new int[] { 0, 0, 0, 0, 0 },
+                new long[] { 1, 0, 1, 0, 0 },
+                new boolean[] { true, false, true, false, false });
+
+        assertThat(buckets.get("0"), equalTo(Arrays.asList("a1", "x", "y", "z")));
+        assertThat(deduplicator.getNumberOfDuplicates(), equalTo(1));
+    }
+
+    @Test
+    public void longHashSetGrows() {
+        LongHashSet set = new LongHashSet(1);
+        for (long i = 0; i < 10000; i++) {
+            assertThat(set.add(i * 0x9E3779B97F4A7C15L), equalTo(true));
+        }
+        for (long i = 0; i < 10000; i++) {
+            assertThat(set.add(i * 0x9E3779B97F4A7C15L), equalTo(false));
+            assertThat(set.contains(i * 0x9E3779B97F4A7C15L), equalTo(true));
+        }
+        assertThat(set.contains(-1), equalTo(false));
+        assertThat(set.size(), equalTo(10000));
+    }
+
+    @Test
+    public void importAllDropsDuplicatesOfIdAndPartitionKey() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000,
+                Duration.ZERO, Duration.ZERO);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withDeduplicationPolicy(DeduplicationPolicy.LAST_WINS)
+                        .build()) {
+
+            List<String> documents = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                documents.add(String.format("{\"id\":\"%d\",\"pk\":\"%d\",\"version\":1}", i, i));
+                documents.add(String.format("{\"id\":\"%d\",\"pk\":\"%d\",\"version\":2}", i, i));
+                // same id in another logical partition is a distinct document
+                documents.add(String.format("{\"id\":\"%d\",\"pk\":\"other\",\"version\":1}", i));
+            }
+
+            BulkImportResponse response = importer.importAll(documents, true);
+
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(200));
+            assertThat(response.getNumberOfDuplicatesDropped(), equalTo(100));
+            assertThat(response.getErrors().size(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void importAllPassesDocumentsWithoutStringIdThrough() throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000,
+                Duration.ZERO, Duration.ZERO);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withDeduplicationPolicy(DeduplicationPolicy.FIRST_WINS)
+                        .build()) {
+
+            // the same partition key value, without id, with a numeric id, with a null id, and twice the same string id
+            List<String> documents = Arrays.asList(
+                    "{\"pk\":\"a\",\"version\":1}",
+                    "{\"pk\":\"a\",\"version\":2}",
+                    "{\"id\":1,\"pk\":\"a\"}",
+                    "{\"id\":null,\"pk\":\"a\"}",
+                    "{\"id\":\"1\",\"pk\":\"a\",\"version\":1}",
+                    "{\"id\":\"1\",\"pk\":\"a\",\"version\":2}");
+
+            BulkImportResponse response = importer.importAll(documents, false);
+
+            // left to the stored procedure, which the simulated client does not validate
+            assertThat(response.getNumberOfDocumentsImported(), equalTo(5));
+            assertThat(response.getNumberOfDuplicatesDropped(), equalTo(1));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKind;
+import com.microsoft.azure.documentdb.bulkimport.DocumentGenerator.KeyDistribution;
+import com.microsoft.azure.documentdb.bulkimport.DocumentGenerator.KeyType;
+import com.microsoft.azure.documentdb.bulkimport.DocumentGenerator.Shape;
+
+public class DocumentGeneratorTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static PartitionKeyDefinition partitionKeyDefinition() {
+        return partitionKeyDefinition("/pk");
+    }
+
+    private static PartitionKeyDefinition partitionKeyDefinition(String path) {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setKind(PartitionKind.Hash);
+        partitionKeyDefinition.setPaths(Arrays.asList(path));
+        return partitionKeyDefinition;
+    }
+
+    @Test
+    public void documentsOfTheGivenSize() throws Exception {
+        for (Shape shape : Shape.values()) {
+            for (int size : new int[] { 1024, 10 * 1024 }) {
+                List<String> documents = DocumentGenerator.builder(partitionKeyDefinition())
+                        .withShape(shape)
+                        .withDocumentSize(size, size)
+                        .build()
+                        .generate(100);
+
+                for (String document : documents) {
+                    assertThat(document.getBytes(StandardCharsets.UTF_8).length, equalTo(size));
+                    assertThat(objectMapper.readTree(document).path("id").asText().length(), equalTo(32));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void variableSizes() throws Exception {
+        List<String> documents = DocumentGenerator.builder(partitionKeyDefinition())
+                .withShape(Shape.NESTED)
+                .withDocumentSize(1000, 5000)
+                .build()
+                .generate(1000);
+
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (String document : documents) {
+            JsonNode json = objectMapper.readTree(document);
+            assertThat(json.path("profile").path("address").path("location").size(), equalTo(2));
+            assertThat(json.path("items").isArray(), equalTo(true));
+            min = Math.min(min, document.length());
+            max = Math.max(max, document.length());
+        }
+        assertThat(min, lessThan(1500));
+        assertThat(max, greaterThan(4500));
+    }
+
+    @Test
+    public void partitionKeyTypes() throws Exception {
+        for (KeyType keyType : KeyType.values()) {
+            List<Object> partitionKeyValues = new ArrayList<>();
+            List<String> documents = DocumentGenerator.builder(partitionKeyDefinition())
+                    .withKeyDistribution(KeyDistribution.UNIFORM, 10)
+                    .withKeyType(keyType)
+                    .build()
+                    .generate(20, partitionKeyValues);
+
+            for (int i = 0; i < documents.size(); i++) {
+                // the value passed along routes the document the same as the one in the document
+                assertThat(DocumentAnalyzer.extractPartitionKeyValue(documents.get(i), partitionKeyDefinition()),
+                        equalTo(DocumentAnalyzer.fromPartitionKeyvalue(partitionKeyValues.get(i))));
+            }
+            if (keyType == KeyType.NULL) {
+                assertThat(partitionKeyValues.get(0), equalTo(JSONObject.NULL));
+            }
+        }
+    }
+
+    @Test
+    public void nestedAndQuotedPartitionKeyPaths() throws Exception {
+        String[][] pathsAndPointers = {
+                { "/address/zip", "/address/zip" },
+                { "/\"a/b\"", "/a~1b" },
+                { "/tenant/\"x\\\"y\"/id", "/tenant/x\"y/id" } };
+
+        for (String[] pathAndPointer : pathsAndPointers) {
+            for (Shape shape : Shape.values()) {
+                List<Object> partitionKeyValues = new ArrayList<>();
+                List<String> documents = DocumentGenerator.builder(partitionKeyDefinition(pathAndPointer[0]))
+                        .withKeyDistribution(KeyDistribution.UNIFORM, 10)
+                        .withShape(shape)
+                        .build()
+                        .generate(10, partitionKeyValues);
+
+                for (int i = 0; i < documents.size(); i++) {
+                    JsonNode document = objectMapper.readTree(documents.get(i));
+                    assertThat(document.at(pathAndPointer[1]).asText(), equalTo(partitionKeyValues.get(i)));
+                    assertThat(DocumentAnalyzer.extractPartitionKeyValue(documents.get(i), partitionKeyDefinition(pathAndPointer[0])),
+                            equalTo(DocumentAnalyzer.fromPartitionKeyvalue(partitionKeyValues.get(i))));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedPartitionKeyPath() {
+        DocumentGenerator.builder(partitionKeyDefinition("/\"unterminated")).build();
+    }
+
+    @Test
+    public void zipfianKeys() {
+        Map<Object, Integer> counts = countKeys(DocumentGenerator.builder(partitionKeyDefinition())
+                .withKeyDistribution(KeyDistribution.ZIPFIAN, 100)
+                .withZipfianExponent(1), 100000);
+
+        // the first value weighs 1 / H(100) = 19%, the second half of it
+        assertThat(counts.get("key0") / 100000.0, closeTo(0.193, 0.01));
+        assertThat(counts.get("key1") / 100000.0, closeTo(0.096, 0.01));
+    }
+
+    @Test
+    public void hotKey() {
+        Map<Object, Integer> counts = countKeys(DocumentGenerator.builder(partitionKeyDefinition())
+                .withKeyDistribution(KeyDistribution.HOT_KEY, 11)
+                .withHotKeyFraction(0.8), 100000);
+
+        assertThat(counts.size(), equalTo(11));
+        assertThat(counts.get("key0") / 100000.0, closeTo(0.8, 0.01));
+        assertThat(counts.get("key1") / 100000.0, closeTo(0.02, 0.005));
+    }
+
+    @Test
+    public void sameSeedSameDocuments() {
+        List<String> first = DocumentGenerator.builder(partitionKeyDefinition()).withSeed(42).build().generate(10);
+        List<String> second = DocumentGenerator.builder(partitionKeyDefinition()).withSeed(42).build().generate(10);
+
+        assertThat(first, equalTo(second));
+    }
+
+    @Test
+    public void zipfCumulativeWeights() {
+        double[] uniform = DocumentGenerator.zipfCumulativeWeights(4, 0);
+        assertThat(uniform[0], closeTo(1, 1e-9));
+        assertThat(uniform[3], closeTo(4, 1e-9));
+
+        double[] skewed = DocumentGenerator.zipfCumulativeWeights(4, 1);
+        assertThat(skewed[1], closeTo(1.5, 1e-9));
+        assertThat(skewed[3], closeTo(1 + 1 / 2.0 + 1 / 3.0 + 1 / 4.0, 1e-9));
+    }
+
+    private static Map<Object, Integer> countKeys(DocumentGenerator.Builder builder, int numberOfDocuments) {
+        List<Object> partitionKeyValues = new ArrayList<>();
+        builder.build().generate(numberOfDocuments, partitionKeyValues);
+
+        Map<Object, Integer> counts = new HashMap<>();
+        for (Object partitionKeyValue : partitionKeyValues) {
+            counts.merge(partitionKeyValue, 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentSourcesTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<String> DOCUMENTS = Arrays.asList(
+            "{\"id\":\"1\",\"name\":\"Zoë\"}",
+            "{\"id\":\"2\",\"text\":\"braces } { and \\\"quotes\\\" in strings\"}",
+            "{\"id\":\"3\",\"nested\":{\"array\":[1,{\"a\":[]}]}}",
+            "{\"id\":\"4\"}");
+
+    private Path write(String name, String content, boolean gzip) throws IOException {
+        Path file = folder.newFile(name).toPath();
+        try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(file)) : Files.newOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static List<String> readAll(DocumentSource source, int batchSize) throws IOException {
+        List<String> documents = new ArrayList<>();
+        List<String> batch;
+        while (!(batch = source.readBatch(batchSize)).isEmpty()) {
+            assertThat(batch.size() <= batchSize, equalTo(true));
+            documents.addAll(batch);
+        }
+        return documents;
+    }
+
+    private static String ndjsonContent() {
+        return "\uFEFF" + DOCUMENTS.get(0) + "\r\n\n  " + DOCUMENTS.get(1) + "\n" + DOCUMENTS.get(2) + "\n" + DOCUMENTS.get(3);
+    }
+
+    private static String jsonArrayContent() {
+        return " [\n  " + String.join(",\n  ", DOCUMENTS) + "\n]\n";
+    }
+
+    @Test
+    public void ndjson() throws Exception {
+        try (DocumentSource source = DocumentSources.open(write("docs.ndjson", ndjsonContent(), false))) {
+            assertThat(source, instanceOf(NdjsonDocumentSource.class));
+            assertThat(readAll(source, 3), equalTo(DOCUMENTS));
+        }
+    }
+
+    @Test
+    public void jsonArray() throws Exception {
+        try (DocumentSource source = DocumentSources.open(write("docs.json", jsonArrayContent(), false))) {
+            assertThat(source, instanceOf(JsonArrayDocumentSource.class));
+            assertThat(readAll(source, 3), equalTo(DOCUMENTS));
+        }
+    }
+
+    @Test
+    public void gzipNdjson() throws Exception {
+        try (DocumentSource source = DocumentSources.open(write("docs.ndjson.gz", ndjsonContent(), true))) {
+            assertThat(source, instanceOf(GzipDocumentSource.class));
+            assertThat(readAll(source, 3), equalTo(DOCUMENTS));
+        }
+    }
+
+    @Test
+    public void gzipJsonArray() throws Exception {
+        try (DocumentSource source = DocumentSources.open(write("docs.json.gz", jsonArrayContent(), true))) {
+            assertThat(readAll(source, 3), equalTo(DOCUMENTS));
+        }
+    }
+
+    @Test
+    public void documentsSpanningWindows() throws Exception {
+        List<String> documents = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            documents.add(String.format("{\"id\":\"%d\",\"text\":\"%s\"}", i, i % 7 == 0 ? "}]\\\"" : "x"));
+        }
+
+        Path ndjson = write("many.ndjson", String.join("\n", documents) + "\n", false);
+        try (DocumentSource source = new NdjsonDocumentSource(ndjson, 0, 100)) {
+            assertThat(readAll(source, 77), equalTo(documents));
+        }
+
+        Path jsonArray = write("many.json", "[" + String.join(",", documents) + "]", false);
+        try (DocumentSource source = new JsonArrayDocumentSource(jsonArray, 1, 100)) {
+            assertThat(readAll(source, 77), equalTo(documents));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void documentLargerThanWindow() throws Exception {
+        Path ndjson = write("large.ndjson", DOCUMENTS.get(1) + "\n" + DOCUMENTS.get(0), false);
+        try (DocumentSource source = new NdjsonDocumentSource(ndjson, 0, 16)) {
+            readAll(source, 10);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedJsonArray() throws Exception {
+        try (DocumentSource source = DocumentSources.open(write("broken.json", "[" + DOCUMENTS.get(0) + ",", false))) {
+            readAll(source, 10);
+        }
+    }
+}
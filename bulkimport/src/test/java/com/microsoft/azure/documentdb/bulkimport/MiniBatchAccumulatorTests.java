@@ -0,0 +1,206 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.OFFLINE_HOST;
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.OFFLINE_MASTER_KEY;
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.getBulkImportStoredProcedureResponse;
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.getStoredProcedureResponseWithoutMock;
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.offlineConnectionPolicy;
+import static com.microsoft.azure.documentdb.bulkimport.TestUtils.withRequestCharge;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.microsoft.azure.documentdb.ConsistencyLevel;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.StoredProcedureResponse;
+
+public class MiniBatchAccumulatorTests {
+
+    private static final int TIMEOUT = 10000;
+
+    private ListeningExecutorService listeningExecutorService;
+
+    @Before
+    public void setUp() {
+        listeningExecutorService = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    }
+
+    @After
+    public void shutDown() {
+        listeningExecutorService.shutdownNow();
+    }
+
+    /**
+     * Imports every batch it receives, failing the batches which contain a "poison" document.
+     */
+    static class FakeDocumentClient extends DocumentClient {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        FakeDocumentClient() {
+            super(OFFLINE_HOST, OFFLINE_MASTER_KEY, offlineConnectionPolicy(), ConsistencyLevel.Session);
+        }
+
+        @Override
+        public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                Object[] procedureParams) throws DocumentClientException {
+            String[] documents = (String[]) procedureParams[0];
+            batchSizes.add(documents.length);
+
+            for (String document : documents) {
+                if (document.contains("poison")) {
+                    throw new DocumentClientException(400, "bad request");
+                }
+            }
+
+            try {
+                return getStoredProcedureResponseWithoutMock(getBulkImportStoredProcedureResponse(documents.length, 0),
+                        withRequestCharge(null, documents.length * 2.0));
+            } catch (Exception e) {
+                throw new DocumentClientException(500, e);
+            }
+        }
+    }
+
+    private final Semaphore pendingBytes = new Semaphore(1024 * 1024);
+
+    private ListenableFuture<Void> add(MiniBatchAccumulator accumulator, String document, int size) throws InterruptedException {
+        // the session acquires the bytes budget before handing the document to the accumulator
+        pendingBytes.acquire(size);
+        return accumulator.add(document, size);
+    }
+
+    private MiniBatchAccumulator accumulator(FakeDocumentClient client, int maxMiniBatchSize, Duration linger) {
+        return accumulator(client, maxMiniBatchSize, linger, maxMiniBatchSize);
+    }
+
+    private MiniBatchAccumulator accumulator(FakeDocumentClient client, int maxMiniBatchSize, Duration linger, int lingerBytes) {
+        BulkImportStoredProcedureOptions options = new BulkImportStoredProcedureOptions(true, true, null, false, false);
+        BatchInserter bi = new BatchInserter("0", Collections.emptyList(), client, "sproc", options);
+        CongestionController cc = new CongestionController(listeningExecutorService, 10000, "0", bi, 1);
+        cc.start();
+
+        MiniBatchAccumulator accumulator = new MiniBatchAccumulator("0", bi, cc, pendingBytes, maxMiniBatchSize, linger, lingerBytes);
+        accumulator.start(listeningExecutorService);
+        return accumulator;
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void mergesSubmissionsUpToMaxMiniBatchSize() throws Exception {
+        try (FakeDocumentClient client = new FakeDocumentClient()) {
+            // each document is 10 bytes and a mini-batch fits 4 of them
+            MiniBatchAccumulator accumulator = accumulator(client, 40, Duration.ofSeconds(1));
+
+            List<ListenableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(add(accumulator, String.format("{\"id\":%d}", i), 10));
+            }
+
+            accumulator.close();
+            accumulator.getCompletionFuture().get();
+
+            for (ListenableFuture<Void> future : futures) {
+                assertThat(future.isDone(), equalTo(true));
+                future.get();
+            }
+
+            assertThat(client.batchSizes, equalTo(Arrays.asList(4, 4, 2)));
+            assertThat(pendingBytes.availablePermits(), equalTo(1024 * 1024));
+            assertThat(accumulator.getInsertMetrics().numberOfDocumentsInserted, equalTo(10L));
+            assertThat(accumulator.getInsertMetrics().requestUnitsConsumed, equalTo(20.0));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void lingerDispatchesPartialMiniBatch() throws Exception {
+        try (FakeDocumentClient client = new FakeDocumentClient()) {
+            MiniBatchAccumulator accumulator = accumulator(client, 1000, Duration.ofMillis(10));
+
+            // completes without closing the accumulator once the linger time elapsed
+            add(accumulator, "{\"id\":\"1\"}", 10).get();
+            assertThat(client.batchSizes, equalTo(Collections.singletonList(1)));
+
+            accumulator.close();
+            accumulator.getCompletionFuture().get();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void lingerBytesDispatchesBeforeLingerTime() throws Exception {
+        try (FakeDocumentClient client = new FakeDocumentClient()) {
+            // the linger time is way above the test timeout, only the linger bytes can dispatch
+            MiniBatchAccumulator accumulator = accumulator(client, 1000, Duration.ofMinutes(1), 20);
+
+            ListenableFuture<Void> first = add(accumulator, "{\"id\":\"1\"}", 10);
+            ListenableFuture<Void> second = add(accumulator, "{\"id\":\"2\"}", 10);
+            first.get();
+            second.get();
+            assertThat(client.batchSizes, equalTo(Collections.singletonList(2)));
+
+            accumulator.close();
+            accumulator.getCompletionFuture().get();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void failedMiniBatchOnlyFailsItsDocuments() throws Exception {
+        try (FakeDocumentClient client = new FakeDocumentClient()) {
+            MiniBatchAccumulator accumulator = accumulator(client, 1000, Duration.ofMillis(10));
+
+            ListenableFuture<Void> poisoned = add(accumulator, "{\"id\":\"poison\"}", 10);
+            AtomicInteger failures = new AtomicInteger();
+            try {
+                poisoned.get();
+            } catch (ExecutionException e) {
+                failures.incrementAndGet();
+            }
+            assertThat(failures.get(), equalTo(1));
+
+            // the accumulator keeps importing after the failure
+            add(accumulator, "{\"id\":\"healthy\"}", 10).get();
+
+            accumulator.close();
+            accumulator.getCompletionFuture().get();
+            assertThat(accumulator.getInsertMetrics().numberOfDocumentsInserted, equalTo(1L));
+        }
+    }
+}
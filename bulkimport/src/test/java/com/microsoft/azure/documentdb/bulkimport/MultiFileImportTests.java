@@ -0,0 +1,133 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.RequestOptions;
+import com.microsoft.azure.documentdb.StoredProcedureResponse;
+
+public class MultiFileImportTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeDocuments(Path file, int from, int to) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add(String.format("{\"id\":\"%d\",\"pk\":\"%d\"}", i, i));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void importsFilesAndSkipsTheOnesInTheManifest() throws Exception {
+        Path directory = folder.newFolder("input").toPath();
+        writeDocuments(directory.resolve("a.ndjson"), 0, 250);
+        writeDocuments(directory.resolve("b.ndjson"), 250, 300);
+        Files.write(directory.resolve("c.ndjson"), Collections.singletonList("not json"), StandardCharsets.UTF_8);
+        Files.write(directory.resolve("ignored.txt"), Collections.singletonList("not json"), StandardCharsets.UTF_8);
+        Path manifest = folder.getRoot().toPath().resolve("manifest.txt");
+
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000, Duration.ZERO, Duration.ZERO);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .build()) {
+
+            // c.ndjson cannot be imported
+            assertThat(new MultiFileImport(importer, directory, "*.ndjson", manifest, 2, 100, false).run(), equalTo(false));
+            assertThat(Files.readAllLines(manifest).size(), equalTo(2));
+
+            // only c.ndjson is retried
+            writeDocuments(directory.resolve("c.ndjson"), 300, 310);
+            long callsBefore = client.getNumberOfCalls();
+            assertThat(new MultiFileImport(importer, directory, "*.ndjson", manifest, 2, 100, false).run(), equalTo(true));
+            assertThat(Files.readAllLines(manifest).size(), equalTo(3));
+            assertThat(client.getNumberOfCalls() - callsBefore <= 4, equalTo(true));
+        }
+    }
+
+    @Test
+    public void restartsTheInterruptedFileWithUpsert() throws Exception {
+        Path directory = folder.newFolder("input").toPath();
+        writeDocuments(directory.resolve("a.ndjson"), 0, 250);
+        Path manifest = folder.getRoot().toPath().resolve("manifest.txt");
+
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        // fails the inserts of the documents already imported, as the stored procedure does
+        Set<String> imported = ConcurrentHashMap.newKeySet();
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 4, 1000000, Duration.ZERO, Duration.ZERO) {
+                    @Override
+                    public StoredProcedureResponse executeStoredProcedure(String storedProcedureLink, RequestOptions options,
+                            Object[] procedureParams) throws DocumentClientException {
+                        boolean isUpsert = ((BulkImportStoredProcedureOptions) procedureParams[1]).enableUpsert;
+                        for (String document : (String[]) procedureParams[0]) {
+                            if (!imported.add(document) && !isUpsert) {
+                                throw new DocumentClientException(409);
+                            }
+                        }
+                        return super.executeStoredProcedure(storedProcedureLink, options, procedureParams);
+                    }
+                };
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, 1000000)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .build()) {
+
+            // the first 100 documents of a.ndjson were imported before the run was interrupted
+            List<String> firstBatch = Files.readAllLines(directory.resolve("a.ndjson"), StandardCharsets.UTF_8).subList(0, 100);
+            assertThat(importer.importAll(firstBatch, false).getNumberOfDocumentsImported(), equalTo(100));
+
+            assertThat(new MultiFileImport(importer, directory, "*.ndjson", manifest, 1, 100, false).run(), equalTo(false));
+            assertThat(Files.exists(manifest), equalTo(false));
+
+            assertThat(new MultiFileImport(importer, directory, "*.ndjson", manifest, 1, 100, true).run(), equalTo(true));
+            assertThat(Files.readAllLines(manifest).size(), equalTo(1));
+            assertThat(imported.size(), equalTo(250));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OffHeapDocumentStagingTests {
+
+    @Test
+    public void appendAndGetAcrossSegments() {
+        DirectBufferPool pool = new DirectBufferPool(16, 10);
+        try (OffHeapDocumentStaging staging = new OffHeapDocumentStaging(pool, 1)) {
+            List<String> documents = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                // "é" and "€" take 2 and 3 bytes in UTF-8
+                documents.add(String.format("{\"é€\":%d}", i));
+            }
+
+            for (String document : documents) {
+                assertThat(staging.append(document), equalTo(document.getBytes(StandardCharsets.UTF_8).length));
+            }
+
+            assertThat(staging.size(), equalTo(100));
+            for (int i = 0; i < documents.size(); i++) {
+                assertThat(staging.get(i), equalTo(documents.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void miniBatchesAreSplitBySize() {
+        DirectBufferPool pool = new DirectBufferPool(1024, 10);
+        try (OffHeapDocumentStaging staging = new OffHeapDocumentStaging(pool, 10)) {
+            for (int i = 0; i < 10; i++) {
+                // 10 bytes each
+                staging.append(String.format("{\"id\":%03d}", i));
+            }
+
+            List<List<String>> miniBatches = staging.toMiniBatches(40);
+            assertThat(miniBatches.size(), equalTo(3));
+            assertThat(miniBatches.get(0), equalTo(Arrays.asList("{\"id\":000}", "{\"id\":001}", "{\"id\":002}", "{\"id\":003}")));
+            assertThat(miniBatches.get(2), equalTo(Arrays.asList("{\"id\":008}", "{\"id\":009}")));
+            assertThat(miniBatches.get(1).subList(1, 3).toArray(new String[0]), equalTo(new String[] { "{\"id\":005}", "{\"id\":006}" }));
+        }
+    }
+
+    @Test
+    public void partitionsShareTheSegments() {
+        DirectBufferPool pool = new DirectBufferPool(100, 10);
+        try (OffHeapDocumentStaging staging = new OffHeapDocumentStaging(pool, 50, 0)) {
+            // 10 bytes each, in a round robin over the 50 partitions
+            for (int i = 0; i < 100; i++) {
+                staging.append(i % 50, String.format("{\"id\":%03d}", i).getBytes(StandardCharsets.UTF_8));
+            }
+
+            assertThat(staging.size(), equalTo(100));
+            assertThat(staging.getNumberOfSegments(), equalTo(10));
+            assertThat(pool.getNumberOfAllocatedSegments(), equalTo(10));
+
+            for (int p = 0; p < 50; p++) {
+                List<List<String>> miniBatches = staging.toMiniBatches(p, 1000);
+                assertThat(miniBatches.size(), equalTo(1));
+                assertThat(miniBatches.get(0), equalTo(Arrays.asList(String.format("{\"id\":%03d}", p), String.format("{\"id\":%03d}", p + 50))));
+            }
+        }
+    }
+
+    @Test
+    public void poolKeepsSegmentsUpToItsBound() {
+        DirectBufferPool pool = new DirectBufferPool(16, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        first.put((byte) 1);
+
+        pool.release(first);
+        pool.release(second);
+
+        ByteBuffer reused = pool.acquire();
+        assertThat(reused == first, equalTo(true));
+        assertThat(reused.position(), equalTo(0));
+        assertThat(pool.acquire() == second, equalTo(false));
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.PartitionKind;
+import com.microsoft.azure.documentdb.internal.routing.CollectionRoutingMap;
+import com.microsoft.azure.documentdb.internal.routing.PartitionKeyInternal;
+
+public class PartitionKeyRangeIndexTests {
+
+    private static Map<String, Integer> partitionKeyRangeIdToIndex(List<PartitionKeyRange> ranges) {
+        Map<String, Integer> partitionKeyRangeIdToIndex = new HashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            partitionKeyRangeIdToIndex.put(ranges.get(i).getId(), i);
+        }
+        return partitionKeyRangeIdToIndex;
+    }
+
+    @Test
+    public void sameRangesAsTheRoutingMap() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setKind(PartitionKind.Hash);
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 2000, 1000000, Duration.ZERO, Duration.ZERO)) {
+            List<PartitionKeyRange> ranges = client.getPartitionKeyRanges();
+            CollectionRoutingMap routingMap = DocumentBulkImporter.getCollectionRoutingMap(client, "/dbs/db/colls/coll", ranges);
+            Map<String, Integer> partitionKeyRangeIdToIndex = partitionKeyRangeIdToIndex(ranges);
+            PartitionKeyRangeIndex index = new PartitionKeyRangeIndex(routingMap, partitionKeyRangeIdToIndex);
+
+            List<String> effectivePartitionKeys = new ArrayList<>();
+            effectivePartitionKeys.add(PartitionKeyInternal.MinimumInclusiveEffectivePartitionKey);
+            for (PartitionKeyRange range : ranges) {
+                // the boundaries and their neighbors, of other lengths and sharing their prefix
+                effectivePartitionKeys.add(range.getMinInclusive());
+                effectivePartitionKeys.add(range.getMinInclusive() + "0");
+                effectivePartitionKeys.add(range.getMinInclusive() + "00");
+                if (!range.getMinInclusive().isEmpty()) {
+                    effectivePartitionKeys.add(range.getMinInclusive().substring(0, range.getMinInclusive().length() - 1));
+                }
+            }
+            for (int i = 0; i < 10000; i++) {
+                effectivePartitionKeys.add(DocumentAnalyzer.fromPartitionKeyvalue(UUID.randomUUID().toString())
+                        .getEffectivePartitionKeyString(partitionKeyDefinition, true));
+            }
+
+            for (String effectivePartitionKey : effectivePartitionKeys) {
+                if (effectivePartitionKey.compareTo(PartitionKeyInternal.MaximumExclusiveEffectivePartitionKey) >= 0) {
+                    continue;
+                }
+                int expected = partitionKeyRangeIdToIndex.get(routingMap.getRangeByEffectivePartitionKey(effectivePartitionKey).getId());
+                assertThat(effectivePartitionKey, index.getRangeIndex(effectivePartitionKey), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void encodingKeepsTheOrder() {
+        Collection<String> ordered = Arrays.asList("", "0", "00", "05", "05C1", "05C1D7", "09", "0A", "0F", "1", "A", "A0", "A00000000000000000",
+                "A000000000000000001", "A1", "F", "FF");
+        String previous = null;
+        for (String current : ordered) {
+            if (previous != null) {
+                int comparison = Long.compareUnsigned(PartitionKeyRangeIndex.encode(previous), PartitionKeyRangeIndex.encode(current));
+                // equal encodings are told apart by comparing the strings
+                assertThat(previous + " " + current, comparison <= 0, equalTo(true));
+                assertThat(previous.compareTo(current), lessThan(0));
+            }
+            previous = current;
+        }
+        assertThat(Long.compareUnsigned(PartitionKeyRangeIndex.encode("FF"), PartitionKeyRangeIndex.encode("7F")), greaterThan(0));
+    }
+
+    @Test
+    public void nonHexadecimalKeysUseTheRoutingMap() {
+        List<PartitionKeyRange> ranges = Arrays.asList(
+                new PartitionKeyRange("0", "", "M"),
+                new PartitionKeyRange("1", "M", "FF"));
+        CollectionRoutingMap routingMap = DocumentBulkImporter.getCollectionRoutingMap(null, "/dbs/db/colls/coll", ranges);
+        PartitionKeyRangeIndex index = new PartitionKeyRangeIndex(routingMap, partitionKeyRangeIdToIndex(ranges));
+
+        assertThat(index.getRangeIndex("A"), equalTo(0));
+        assertThat(index.getRangeIndex("N"), equalTo(1));
+    }
+
+    @Test
+    public void keysOfSixteenFDigitsAreRouted() {
+        List<PartitionKeyRange> ranges = Arrays.asList(
+                new PartitionKeyRange("0", "", "FFFFFFFFFFFFFFFF"),
+                new PartitionKeyRange("1", "FFFFFFFFFFFFFFFF", "FF"));
+        CollectionRoutingMap routingMap = DocumentBulkImporter.getCollectionRoutingMap(null, "/dbs/db/colls/coll", ranges);
+        PartitionKeyRangeIndex index = new PartitionKeyRangeIndex(routingMap, partitionKeyRangeIdToIndex(ranges));
+
+        assertThat(PartitionKeyRangeIndex.encode("0a"), equalTo(PartitionKeyRangeIndex.INVALID));
+        assertThat(index.getRangeIndex("FFFFFFFFFFFFFFFE"), equalTo(0));
+        assertThat(index.getRangeIndex("FFFFFFFFFFFFFFFF"), equalTo(1));
+        assertThat(index.getRangeIndex("FFFFFFFFFFFFFFFF01"), equalTo(1));
+    }
+}
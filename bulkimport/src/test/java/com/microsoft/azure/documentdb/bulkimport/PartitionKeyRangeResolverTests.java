@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKind;
+import com.microsoft.azure.documentdb.internal.routing.CollectionRoutingMap;
+
+public class PartitionKeyRangeResolverTests {
+
+    private static PartitionKeyDefinition partitionKeyDefinition() {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setKind(PartitionKind.Hash);
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+        return partitionKeyDefinition;
+    }
+
+    private static PartitionKeyRangeResolver resolver(long maximumSize) {
+        PartitionKeyDefinition partitionKeyDefinition = partitionKeyDefinition();
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, 20, 100000, Duration.ZERO, Duration.ZERO)) {
+            CollectionRoutingMap routingMap = DocumentBulkImporter.getCollectionRoutingMap(client, "/dbs/db/colls/coll", client.getPartitionKeyRanges());
+            Map<String, Integer> partitionKeyRangeIdToIndex = new HashMap<>();
+            for (int i = 0; i < client.getPartitionKeyRanges().size(); i++) {
+                partitionKeyRangeIdToIndex.put(client.getPartitionKeyRanges().get(i).getId(), i);
+            }
+            return new PartitionKeyRangeResolver(new PartitionKeyRangeIndex(routingMap, partitionKeyRangeIdToIndex), partitionKeyDefinition,
+                    PartitionKeyAccessor.compile(partitionKeyDefinition), maximumSize);
+        }
+    }
+
+    @Test
+    public void cachedResolutionsMatchUncachedOnes() {
+        PartitionKeyRangeResolver cached = resolver(1000);
+        PartitionKeyRangeResolver uncached = resolver(0);
+
+        List<Object> values = Arrays.asList("tenant1", "tenant2", 42, 42L, 42.5, new BigDecimal("1e3"), true, false, JSONObject.NULL);
+        for (int pass = 0; pass < 100; pass++) {
+            for (Object value : values) {
+                PartitionKeyRangeResolver.Resolution expected = uncached.resolveValue(value);
+                PartitionKeyRangeResolver.Resolution resolution = cached.resolveValue(value);
+                assertThat(resolution.effectivePartitionKey, equalTo(expected.effectivePartitionKey));
+                assertThat(resolution.rangeIndex, equalTo(expected.rangeIndex));
+
+                // the same value in a document resolves the same way
+                String document = new JSONObject().put("id", "1").put("pk", value).toString();
+                assertThat(cached.resolveDocument(document).rangeIndex, equalTo(expected.rangeIndex));
+            }
+        }
+
+        assertThat(cached.size(), greaterThan(0L));
+        assertThat(uncached.size(), equalTo(0L));
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        PartitionKeyRangeResolver resolver = resolver(100);
+
+        for (int i = 0; i < 100000; i++) {
+            resolver.resolveValue("key" + i);
+            assertThat(resolver.size(), lessThanOrEqualTo(100L));
+        }
+    }
+}
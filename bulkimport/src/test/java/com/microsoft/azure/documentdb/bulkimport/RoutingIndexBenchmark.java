@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.PartitionKind;
+import com.microsoft.azure.documentdb.internal.routing.CollectionRoutingMap;
+
+/**
+ * Measures the time to find the partition key range of an effective partition key with the routing map of the SDK
+ * and with {@link PartitionKeyRangeIndex}, on collections of up to tens of thousands of partition key ranges split by
+ * {@link SimulatedDocumentClient}.
+ *
+ * <p> Each lookup resolves one of 1,000,000 precomputed effective partition keys of random partition key values, on a
+ * single thread, after a warm up.
+ */
+public class RoutingIndexBenchmark {
+
+    private static final int NUMBER_OF_KEYS = 1000000;
+    private static final int NUMBER_OF_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setKind(PartitionKind.Hash);
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        String[] effectivePartitionKeys = new String[NUMBER_OF_KEYS];
+        for (int i = 0; i < NUMBER_OF_KEYS; i++) {
+            effectivePartitionKeys[i] = DocumentAnalyzer.fromPartitionKeyvalue(UUID.randomUUID().toString())
+                    .getEffectivePartitionKeyString(partitionKeyDefinition, true);
+        }
+
+        System.out.println("ranges  routing map(ns/lookup)  index(ns/lookup)");
+        for (int numberOfPartitions : new int[] { 10, 100, 1000, 5000, 20000 }) {
+            try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, numberOfPartitions, 1000000,
+                    Duration.ZERO, Duration.ZERO)) {
+                run(client, effectivePartitionKeys);
+            }
+        }
+    }
+
+    private static void run(SimulatedDocumentClient client, String[] effectivePartitionKeys) {
+        List<PartitionKeyRange> ranges = client.getPartitionKeyRanges();
+        CollectionRoutingMap routingMap = DocumentBulkImporter.getCollectionRoutingMap(client, "/dbs/db/colls/coll", ranges);
+        Map<String, Integer> partitionKeyRangeIdToIndex = new HashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            partitionKeyRangeIdToIndex.put(ranges.get(i).getId(), i);
+        }
+        PartitionKeyRangeIndex index = new PartitionKeyRangeIndex(routingMap, partitionKeyRangeIdToIndex);
+
+        long routingMapNanos = 0;
+        long indexNanos = 0;
+        long checksum = 0;
+        for (int round = 0; round <= NUMBER_OF_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String effectivePartitionKey : effectivePartitionKeys) {
+                checksum += partitionKeyRangeIdToIndex.get(routingMap.getRangeByEffectivePartitionKey(effectivePartitionKey).getId());
+            }
+            long middle = System.nanoTime();
+            for (String effectivePartitionKey : effectivePartitionKeys) {
+                checksum -= index.getRangeIndex(effectivePartitionKey);
+            }
+            long end = System.nanoTime();
+
+            // the first round warms up
+            if (round > 0) {
+                routingMapNanos += middle - start;
+                indexNanos += end - middle;
+            }
+        }
+
+        if (checksum != 0) {
+            throw new IllegalStateException("the index and the routing map disagree");
+        }
+
+        long lookups = (long) NUMBER_OF_ROUNDS * effectivePartitionKeys.length;
+        System.out.println(String.format("%6d  %22.1f  %16.1f", ranges.size(), (double) routingMapNanos / lookups, (double) indexNanos / lookups));
+    }
+}
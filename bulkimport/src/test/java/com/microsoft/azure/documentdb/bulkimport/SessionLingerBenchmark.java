@@ -0,0 +1,123 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.documentdb.bulkimport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.PartitionKeyDefinition;
+
+/**
+ * Measures the latency/throughput trade-off of the {@link BulkImportSession} linger configuration
+ * against {@link SimulatedDocumentClient}, without a Cosmos DB account.
+ *
+ * <p> Documents of about 1KB are submitted at a fixed rate. For each linger time the benchmark reports
+ * the p50/p99 latency from submission to import, the achieved throughput, the number of stored procedure calls
+ * and the request units consumed per document.
+ */
+public class SessionLingerBenchmark {
+
+    private static final int NUMBER_OF_PARTITIONS = 10;
+    private static final int COLLECTION_THROUGHPUT = 400000;
+    private static final Duration ROUND_TRIP_LATENCY = Duration.ofMillis(5);
+    private static final Duration SERVER_TIME_PER_DOCUMENT = Duration.ofNanos(20000);
+
+    private static final int DOCUMENTS_PER_SECOND = 20000;
+    private static final int NUMBER_OF_DOCUMENTS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        PartitionKeyDefinition partitionKeyDefinition = new PartitionKeyDefinition();
+        partitionKeyDefinition.setPaths(Arrays.asList("/pk"));
+
+        String padding = StringUtils.repeat('x', 800);
+        List<String> documents = new ArrayList<>(NUMBER_OF_DOCUMENTS);
+        for (int i = 0; i < NUMBER_OF_DOCUMENTS; i++) {
+            Document d = new Document();
+            d.setId(UUID.randomUUID().toString());
+            d.set("pk", UUID.randomUUID().toString());
+            d.set("payload", padding);
+            documents.add(d.toJson());
+        }
+
+        System.out.println(String.format("%d partitions, %d RU/s, %d docs/s offered, %d docs per run",
+                NUMBER_OF_PARTITIONS, COLLECTION_THROUGHPUT, DOCUMENTS_PER_SECOND, NUMBER_OF_DOCUMENTS));
+        System.out.println("linger(ms)  p50(ms)  p99(ms)  docs/s  sproc calls  RU/doc");
+
+        for (long lingerInMillis : new long[] { 0, 1, 5, 20, 50 }) {
+            run(partitionKeyDefinition, documents, Duration.ofMillis(lingerInMillis));
+        }
+    }
+
+    private static void run(PartitionKeyDefinition partitionKeyDefinition, List<String> documents, Duration linger) throws Exception {
+        try (SimulatedDocumentClient client = new SimulatedDocumentClient(partitionKeyDefinition, NUMBER_OF_PARTITIONS,
+                COLLECTION_THROUGHPUT, ROUND_TRIP_LATENCY, SERVER_TIME_PER_DOCUMENT);
+                DocumentBulkImporter importer = DocumentBulkImporter.builder()
+                        .from(client, "db", "coll", partitionKeyDefinition, COLLECTION_THROUGHPUT)
+                        .withPartitionKeyRanges(client.getPartitionKeyRanges())
+                        .withSessionLinger(linger, Integer.MAX_VALUE)
+                        .build()) {
+
+            ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+            long intervalInNanos = TimeUnit.SECONDS.toNanos(1) / DOCUMENTS_PER_SECOND;
+
+            BulkImportSession session = importer.openSession(false);
+            long start = System.nanoTime();
+            for (int i = 0; i < documents.size(); i++) {
+                long intendedStart = start + i * intervalInNanos;
+                long now;
+                while ((now = System.nanoTime()) < intendedStart) {
+                    LockSupport.parkNanos(intendedStart - now);
+                }
+
+                ListenableFuture<Void> future = session.submit(documents.get(i));
+                future.addListener(() -> latencies.add(System.nanoTime() - intendedStart), MoreExecutors.directExecutor());
+            }
+            session.close();
+            long elapsed = System.nanoTime() - start;
+
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.println(String.format("%10d  %7.1f  %7.1f  %6.0f  %11d  %6.2f",
+                    linger.toMillis(),
+                    percentile(sorted, 0.50) / 1e6,
+                    percentile(sorted, 0.99) / 1e6,
+                    session.getNumberOfDocumentsImported() * 1e9 / elapsed,
+                    client.getNumberOfCalls(),
+                    session.getTotalRequestUnitsConsumed() / session.getNumberOfDocumentsImported()));
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+}
@@ -24,6 +24,7 @@ package com.microsoft.azure.documentdb.bulkimport;
 
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
@@ -33,10 +34,13 @@ import org.mockito.Mockito;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.documentdb.ConnectionPolicy;
+import com.microsoft.azure.documentdb.DocumentClient;
 import com.microsoft.azure.documentdb.DocumentClientException;
 import com.microsoft.azure.documentdb.StoredProcedureResponse;
 import com.microsoft.azure.documentdb.internal.DocumentServiceResponse;
 import com.microsoft.azure.documentdb.internal.HttpConstants;
+import com.microsoft.azure.documentdb.internal.directconnectivity.StoreResponse;
 
 public class TestUtils {
     private static final ObjectMapper MAPPER = new ObjectMapper();
@@ -82,4 +86,39 @@ public class TestUtils {
 
         return storedProcedureResponse;
     }
+
+    /**
+     * Same as {@link #getStoredProcedureResponse(BulkImportStoredProcedureResponse, Map)} but without mocking,
+     * for the tests which use a fake {@link DocumentClient} instead of a mocked one.
+     */
+    public static StoredProcedureResponse getStoredProcedureResponseWithoutMock(
+            BulkImportStoredProcedureResponse bulkImportResponse, Map<String, String> headerResponse) throws Exception {
+
+        String[] headerNames = headerResponse.keySet().toArray(new String[0]);
+        String[] headerValues = new String[headerNames.length];
+        for (int i = 0; i < headerNames.length; i++) {
+            headerValues[i] = headerResponse.get(headerNames[i]);
+        }
+
+        byte[] body = MAPPER.writeValueAsBytes(bulkImportResponse);
+        StoreResponse storeResponse = new StoreResponse(headerNames, headerValues, 200, new ByteArrayInputStream(body));
+
+        Constructor<StoredProcedureResponse> constructor = StoredProcedureResponse.class
+                .getDeclaredConstructor(DocumentServiceResponse.class);
+        constructor.setAccessible(true);
+
+        return constructor.newInstance(new DocumentServiceResponse(storeResponse));
+    }
+
+    /**
+     * Connection policy for a fake {@link DocumentClient} which overrides the operations under test and never reaches a service.
+     */
+    public static ConnectionPolicy offlineConnectionPolicy() {
+        ConnectionPolicy policy = new ConnectionPolicy();
+        policy.setEnableEndpointDiscovery(false);
+        return policy;
+    }
+
+    public static final String OFFLINE_HOST = "https://localhost:8081/";
+    public static final String OFFLINE_MASTER_KEY = "C2y6yDjf5/R+ob0N8A7Cgv30VRDJIWEHLM+4QDU5DE2nQ9nDuVTqobD4b8mGGyPMbIZnqyMsEcaGQy67XIw/Jw==";
 }
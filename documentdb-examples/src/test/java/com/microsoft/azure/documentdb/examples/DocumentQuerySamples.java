@@ -37,6 +37,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import com.microsoft.azure.documentdb.ConnectionMode;
 import com.microsoft.azure.documentdb.ConnectionPolicy;
@@ -50,6 +51,7 @@ import com.microsoft.azure.documentdb.Document;
 import com.microsoft.azure.documentdb.DocumentClient;
 import com.microsoft.azure.documentdb.DocumentClientException;
 import com.microsoft.azure.documentdb.FeedOptions;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
 
 
 public class DocumentQuerySamples
@@ -253,6 +255,36 @@ public class DocumentQuerySamples
         System.out.println("TOTAL UNIQUE DOC COUNT: " + uniqueDocCount.size());
     }
 
+    @Test
+    public void parallelDocumentQuery() {
+
+        // DISCLAIMER: Sample query used for testing purposes only - modify as needed
+        SqlQuerySpec query = new SqlQuerySpec(
+            "SELECT * from c where c.expectedProcessTime >= '2019-06-01T00:00' AND c.expectedProcessTime <= '2039-06-01T00:00'");
+
+        // reads 4 partition key ranges at once, each up to 2 pages of 100 documents ahead
+        ParallelQueryExecutor executor = new ParallelQueryExecutor(client, collectionLink, 4, 2, 100);
+
+        String ct = null;
+        Set<String> uniqueDocCount = new java.util.HashSet<>();
+
+        do {
+            try (ParallelQueryExecutor.Results results = executor.execute(query, ct)) {
+                List<Document> docs = results.stream().limit(10).collect(Collectors.toList());
+                System.out.println(docs.size() + " docs");
+                for (Document doc : docs) {
+                    System.out.println("  - " + "(" + doc.getId() + ", " + doc.getResourceId() + ")");
+                    uniqueDocCount.add(doc.getId());
+                }
+
+                ct = results.getContinuation();
+                System.out.println("CONTINUATION: " + ct);
+            }
+        } while (ct != null);
+
+        System.out.println("TOTAL UNIQUE DOC COUNT: " + uniqueDocCount.size());
+    }
+
     private static class Page {
         private final List<Document> docs;
         private final String continuation;
@@ -266,7 +298,7 @@ public class DocumentQuerySamples
         public String getContinuation() { return this.continuation; }
     }
 
-    private static class DocumentResourceId {
+    static class DocumentResourceId {
         private final int database;
         private final int documentCollection;
         private final long document;
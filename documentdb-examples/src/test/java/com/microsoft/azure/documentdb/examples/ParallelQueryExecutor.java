@@ -0,0 +1,385 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.microsoft.azure.documentdb.examples;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.json.JSONObject;
+
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.DocumentClient;
+import com.microsoft.azure.documentdb.DocumentClientException;
+import com.microsoft.azure.documentdb.FeedOptions;
+import com.microsoft.azure.documentdb.FeedResponse;
+import com.microsoft.azure.documentdb.PartitionKeyRange;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
+import com.microsoft.azure.documentdb.examples.DocumentQuerySamples.DocumentResourceId;
+
+/**
+ * Runs a query against every partition key range of a collection in parallel and merges the documents
+ * in the order the pages arrive, so it suits queries without ORDER BY, TOP or aggregates.
+ *
+ * At most maxDegreeOfParallelism ranges are read at once and each range reads up to prefetchDepth pages
+ * ahead of the caller, so the next page is usually there when the caller gets to it.
+ *
+ * The continuation has the {@code <CosmosContinuation>|rid|pkRangeId} layout of
+ * {@link DocumentQuerySamples}: the first fragment is the base64 encoded JSON of the continuation of every range
+ * and of the _rid of the last document returned from it, the others are the _rid and the range of the last document returned.
+ */
+public class ParallelQueryExecutor {
+
+    private final DocumentClient client;
+    private final String collectionLink;
+    private final int maxDegreeOfParallelism;
+    private final int prefetchDepth;
+    private final int pageSize;
+
+    public ParallelQueryExecutor(DocumentClient client, String collectionLink, int maxDegreeOfParallelism, int prefetchDepth, int pageSize) {
+        if (maxDegreeOfParallelism < 1 || prefetchDepth < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("maxDegreeOfParallelism, prefetchDepth and pageSize must be positive");
+        }
+        this.client = client;
+        this.collectionLink = collectionLink;
+        this.maxDegreeOfParallelism = maxDegreeOfParallelism;
+        this.prefetchDepth = prefetchDepth;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Starts the query, from the beginning or from the continuation of a previous {@link Results}.
+     * The results must be closed, which stops the prefetching.
+     */
+    public Results execute(SqlQuerySpec querySpec, String continuation) {
+        List<String> partitionKeyRangeIds = readPartitionKeyRangeIds();
+        Map<String, RangeState> states = parseContinuation(continuation, partitionKeyRangeIds);
+        return new Results(querySpec, states);
+    }
+
+    /**
+     * @return the ids of the current partition key ranges, without the ranges which were split
+     */
+    protected List<String> readPartitionKeyRangeIds() {
+        List<PartitionKeyRange> ranges = client.readPartitionKeyRanges(collectionLink, (FeedOptions) null).getQueryIterable().toList();
+
+        Set<String> parents = new HashSet<>();
+        for (PartitionKeyRange range : ranges) {
+            if (range.getParents() != null) {
+                parents.addAll(range.getParents());
+            }
+        }
+
+        List<String> ids = new ArrayList<>();
+        ranges.stream()
+                .filter(range -> !parents.contains(range.getId()))
+                .sorted(Comparator.comparing(PartitionKeyRange::getMinInclusive))
+                .forEach(range -> ids.add(range.getId()));
+        return ids;
+    }
+
+    /**
+     * Reads one page of the query from a single partition key range.
+     */
+    protected RangePage readPage(SqlQuerySpec querySpec, String partitionKeyRangeId, String continuation) throws DocumentClientException {
+        FeedOptions options = new FeedOptions();
+        options.setPartitionKeyRangeIdInternal(partitionKeyRangeId);
+        options.setPageSize(pageSize);
+        options.setRequestContinuation(continuation);
+
+        FeedResponse<Document> response = client.queryDocuments(collectionLink, querySpec, options);
+        List<Document> documents = response.getQueryIterable().fetchNextBlock();
+
+        return new RangePage(partitionKeyRangeId, continuation,
+                documents != null ? documents : Collections.<Document>emptyList(),
+                response.getResponseContinuation());
+    }
+
+    private static Map<String, RangeState> parseContinuation(String continuation, List<String> partitionKeyRangeIds) {
+        Map<String, RangeState> states = new LinkedHashMap<>();
+        for (String partitionKeyRangeId : partitionKeyRangeIds) {
+            states.put(partitionKeyRangeId, new RangeState());
+        }
+
+        if (continuation == null) {
+            return states;
+        }
+
+        String[] continuationFragments = continuation.split(Pattern.quote("|"));
+        JSONObject ranges = new JSONObject(new String(Base64.getDecoder().decode(continuationFragments[0]), StandardCharsets.UTF_8));
+
+        for (Object key : ranges.keySet()) {
+            String partitionKeyRangeId = (String) key;
+            RangeState state = states.get(partitionKeyRangeId);
+            if (state == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Partition key range %s of the continuation no longer exists, the collection was repartitioned: restart the query",
+                        partitionKeyRangeId));
+            }
+
+            JSONObject range = ranges.getJSONObject(partitionKeyRangeId);
+            state.continuation = range.optString("continuation", null);
+            state.lastResourceId = range.optString("rid", null);
+            state.done = range.optBoolean("done");
+        }
+
+        return states;
+    }
+
+    /**
+     * Where the caller is in a partition key range: the continuation of the page it is reading
+     * and the _rid of the last document it got from that page.
+     */
+    private static class RangeState {
+        private String continuation;
+        private String lastResourceId;
+        private boolean done;
+    }
+
+    protected static class RangePage {
+        private final String partitionKeyRangeId;
+        private final String requestContinuation;
+        private final List<Document> documents;
+        private final String responseContinuation;
+        private final Exception failure;
+
+        public RangePage(String partitionKeyRangeId, String requestContinuation, List<Document> documents, String responseContinuation) {
+            this(partitionKeyRangeId, requestContinuation, documents, responseContinuation, null);
+        }
+
+        private RangePage(String partitionKeyRangeId, String requestContinuation, List<Document> documents, String responseContinuation,
+                Exception failure) {
+            this.partitionKeyRangeId = partitionKeyRangeId;
+            this.requestContinuation = requestContinuation;
+            this.documents = documents;
+            this.responseContinuation = responseContinuation;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * The documents of the query, merged from all the partition key ranges.
+     */
+    public class Results implements Iterator<Document>, AutoCloseable {
+        private final SqlQuerySpec querySpec;
+        private final Map<String, RangeState> states;
+        private final Map<String, Semaphore> prefetchPermits = new LinkedHashMap<>();
+        private final BlockingQueue<RangePage> pages = new LinkedBlockingQueue<>();
+        private final ExecutorService executor;
+        private volatile boolean closed;
+
+        private int numberOfRangesRemaining;
+        private RangePage currentPage;
+        private int currentIndex;
+        private String lastResourceId = "";
+        private String lastPartitionKeyRangeId = "";
+
+        private Results(SqlQuerySpec querySpec, Map<String, RangeState> states) {
+            this.querySpec = querySpec;
+            this.states = states;
+            this.executor = Executors.newFixedThreadPool(maxDegreeOfParallelism, runnable -> {
+                Thread thread = new Thread(runnable, "parallel-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            for (Map.Entry<String, RangeState> entry : states.entrySet()) {
+                if (entry.getValue().done) {
+                    continue;
+                }
+
+                numberOfRangesRemaining++;
+                Semaphore permits = new Semaphore(prefetchDepth);
+                prefetchPermits.put(entry.getKey(), permits);
+
+                String partitionKeyRangeId = entry.getKey();
+                String continuation = entry.getValue().continuation;
+                String skipDocumentsIncludingResourceId = entry.getValue().lastResourceId;
+                executor.execute(() -> readRange(partitionKeyRangeId, continuation, skipDocumentsIncludingResourceId, permits));
+            }
+
+            executor.shutdown();
+        }
+
+        private void readRange(String partitionKeyRangeId, String continuation, String skipDocumentsIncludingResourceId, Semaphore permits) {
+            try {
+                do {
+                    permits.acquire();
+                    if (closed) {
+                        return;
+                    }
+
+                    RangePage page = readPage(querySpec, partitionKeyRangeId, continuation);
+
+                    // resuming in the middle of a page: skip the documents returned before
+                    if (skipDocumentsIncludingResourceId != null) {
+                        DocumentResourceId skipped = DocumentResourceId.parse(skipDocumentsIncludingResourceId);
+                        List<Document> documents = new ArrayList<>();
+                        for (Document document : page.documents) {
+                            if (DocumentResourceId.compareTo(skipped, DocumentResourceId.parse(document.getResourceId())) < 0) {
+                                documents.add(document);
+                            }
+                        }
+                        page = new RangePage(partitionKeyRangeId, continuation, documents, page.responseContinuation);
+                        skipDocumentsIncludingResourceId = null;
+                    }
+
+                    pages.add(page);
+                    continuation = page.responseContinuation;
+                } while (continuation != null);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                pages.add(new RangePage(partitionKeyRangeId, continuation, null, null, e));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                throw new IllegalStateException("The results were closed");
+            }
+
+            while (currentPage == null) {
+                if (numberOfRangesRemaining == 0) {
+                    return false;
+                }
+
+                RangePage page;
+                try {
+                    page = pages.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the next page", e);
+                }
+
+                if (page.failure != null) {
+                    close();
+                    throw new IllegalStateException(String.format("Failed to query partition key range %s", page.partitionKeyRangeId),
+                            page.failure);
+                }
+
+                if (page.documents.isEmpty()) {
+                    completePage(page);
+                } else {
+                    currentPage = page;
+                    currentIndex = 0;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            RangePage page = currentPage;
+            Document document = page.documents.get(currentIndex++);
+
+            RangeState state = states.get(page.partitionKeyRangeId);
+            state.continuation = page.requestContinuation;
+            state.lastResourceId = document.getResourceId();
+            lastResourceId = document.getResourceId();
+            lastPartitionKeyRangeId = page.partitionKeyRangeId;
+
+            if (currentIndex == page.documents.size()) {
+                currentPage = null;
+                completePage(page);
+            }
+
+            return document;
+        }
+
+        private void completePage(RangePage page) {
+            RangeState state = states.get(page.partitionKeyRangeId);
+            state.continuation = page.responseContinuation;
+            state.lastResourceId = null;
+
+            if (page.responseContinuation == null) {
+                state.done = true;
+                numberOfRangesRemaining--;
+            }
+
+            prefetchPermits.get(page.partitionKeyRangeId).release();
+        }
+
+        /**
+         * @return the continuation to resume after the last document returned, null when all the documents were returned
+         */
+        public String getContinuation() {
+            if (numberOfRangesRemaining == 0) {
+                return null;
+            }
+
+            JSONObject ranges = new JSONObject();
+            for (Map.Entry<String, RangeState> entry : states.entrySet()) {
+                RangeState state = entry.getValue();
+                JSONObject range = new JSONObject();
+                range.put("continuation", state.continuation);
+                range.put("rid", state.lastResourceId);
+                range.put("done", state.done);
+                ranges.put(entry.getKey(), range);
+            }
+
+            return Base64.getEncoder().encodeToString(ranges.toString().getBytes(StandardCharsets.UTF_8))
+                    + "|"
+                    + lastResourceId
+                    + "|"
+                    + lastPartitionKeyRangeId;
+        }
+
+        public Stream<Document> stream() {
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false).onClose(this::close);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            executor.shutdownNow();
+        }
+    }
+}
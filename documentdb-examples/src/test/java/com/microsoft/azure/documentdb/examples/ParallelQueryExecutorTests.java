@@ -0,0 +1,192 @@
+/**
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Microsoft Corporation
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.microsoft.azure.documentdb.examples;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.microsoft.azure.documentdb.Document;
+import com.microsoft.azure.documentdb.SqlQuerySpec;
+
+/**
+ * Runs {@link ParallelQueryExecutor} against in-memory partition key ranges, without an account or the emulator.
+ */
+public class ParallelQueryExecutorTests {
+
+    private static final SqlQuerySpec QUERY = new SqlQuerySpec("SELECT * FROM root");
+
+    /**
+     * Serves the documents of each partition key range in pages of pageSize documents,
+     * the continuation being the index of the first document of the next page.
+     */
+    static class InMemoryQueryExecutor extends ParallelQueryExecutor {
+        private final Map<String, List<Document>> documentsByRange;
+        private final int pageSize;
+        final AtomicInteger numberOfPagesRead = new AtomicInteger();
+
+        InMemoryQueryExecutor(Map<String, List<Document>> documentsByRange, int maxDegreeOfParallelism, int prefetchDepth, int pageSize) {
+            super(null, "dbs/db/colls/coll", maxDegreeOfParallelism, prefetchDepth, pageSize);
+            this.documentsByRange = documentsByRange;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        protected List<String> readPartitionKeyRangeIds() {
+            return new ArrayList<>(documentsByRange.keySet());
+        }
+
+        @Override
+        protected RangePage readPage(SqlQuerySpec querySpec, String partitionKeyRangeId, String continuation) {
+            numberOfPagesRead.incrementAndGet();
+
+            List<Document> documents = documentsByRange.get(partitionKeyRangeId);
+            int start = continuation != null ? Integer.parseInt(continuation) : 0;
+            int end = Math.min(start + pageSize, documents.size());
+            return new RangePage(partitionKeyRangeId, continuation, new ArrayList<>(documents.subList(start, end)),
+                    end < documents.size() ? Integer.toString(end) : null);
+        }
+    }
+
+    /**
+     * @return the _rid of the given document of a collection, which orders as the document number
+     */
+    private static String resourceId(long document) {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(1);
+        buffer.putInt(0x81);
+        buffer.putLong(document);
+        return Base64.getEncoder().encodeToString(buffer.array()).replace('/', '-');
+    }
+
+    private static Map<String, List<Document>> documentsByRange(int numberOfRanges, int numberOfDocumentsPerRange) {
+        Map<String, List<Document>> documentsByRange = new LinkedHashMap<>();
+        for (int r = 0; r < numberOfRanges; r++) {
+            List<Document> documents = new ArrayList<>();
+            for (int i = 0; i < numberOfDocumentsPerRange; i++) {
+                documents.add(new Document(String.format("{\"id\":\"%d-%d\",\"_rid\":\"%s\"}", r, i, resourceId(i + 1))));
+            }
+            documentsByRange.put(Integer.toString(r), documents);
+        }
+        return documentsByRange;
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        List<String> ids = new ArrayList<>();
+        for (Document document : documents) {
+            ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void mergeKeepsTheOrderOfEachRange() {
+        Map<String, List<Document>> documentsByRange = documentsByRange(5, 37);
+        InMemoryQueryExecutor executor = new InMemoryQueryExecutor(documentsByRange, 2, 2, 4);
+
+        List<String> merged = new ArrayList<>();
+        try (ParallelQueryExecutor.Results results = executor.execute(QUERY, null)) {
+            results.forEachRemaining(document -> merged.add(document.getId()));
+            assertThat(results.getContinuation(), equalTo(null));
+        }
+
+        assertThat(merged.size(), equalTo(5 * 37));
+        assertThat(new HashSet<>(merged).size(), equalTo(5 * 37));
+
+        // the ranges are interleaved, each one in its own order
+        for (Map.Entry<String, List<Document>> entry : documentsByRange.entrySet()) {
+            List<String> ofRange = new ArrayList<>();
+            for (String id : merged) {
+                if (id.startsWith(entry.getKey() + "-")) {
+                    ofRange.add(id);
+                }
+            }
+            assertThat(ofRange, equalTo(ids(entry.getValue())));
+        }
+    }
+
+    @Test
+    public void resumesEachRangeFromTheContinuation() {
+        Map<String, List<Document>> documentsByRange = documentsByRange(4, 50);
+        Random random = new Random(42);
+
+        List<String> returned = new ArrayList<>();
+        String continuation = null;
+        do {
+            // a new executor per step, closed in the middle of the pages of the ranges
+            InMemoryQueryExecutor executor = new InMemoryQueryExecutor(documentsByRange, 4, 2, 7);
+            try (ParallelQueryExecutor.Results results = executor.execute(QUERY, continuation)) {
+                int numberOfDocuments = 1 + random.nextInt(30);
+                for (int i = 0; i < numberOfDocuments && results.hasNext(); i++) {
+                    returned.add(results.next().getId());
+                }
+                continuation = results.getContinuation();
+            }
+        } while (continuation != null);
+
+        Set<String> expected = new HashSet<>();
+        documentsByRange.values().forEach(documents -> expected.addAll(ids(documents)));
+        assertThat(returned.size(), equalTo(expected.size()));
+        assertThat(new HashSet<>(returned), equalTo(expected));
+    }
+
+    @Test
+    public void closeStopsThePrefetching() throws Exception {
+        int numberOfRanges = 3;
+        int prefetchDepth = 2;
+        InMemoryQueryExecutor executor = new InMemoryQueryExecutor(documentsByRange(numberOfRanges, 1000), numberOfRanges, prefetchDepth, 10);
+
+        ParallelQueryExecutor.Results results = executor.execute(QUERY, null);
+        results.next();
+        Thread.sleep(100);
+        results.close();
+
+        // each range read at most its prefetched pages and the page in flight
+        int numberOfPagesRead = executor.numberOfPagesRead.get();
+        assertThat(numberOfPagesRead, lessThanOrEqualTo(numberOfRanges * (prefetchDepth + 1)));
+        Thread.sleep(100);
+        assertThat(executor.numberOfPagesRead.get(), equalTo(numberOfPagesRead));
+
+        try {
+            results.hasNext();
+            throw new AssertionError("closed results must not return documents");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}